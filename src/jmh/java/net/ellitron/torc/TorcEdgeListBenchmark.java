@@ -0,0 +1,138 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import net.ellitron.torc.util.LdbcData;
+import net.ellitron.torc.util.TorcHelper;
+import net.ellitron.torc.util.UInt128;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for decoding edge list segments as they are returned from
+ * RAMCloud, for edge lists of various degrees, with and without edge
+ * properties, and with and without compression. decodeHeadSegment measures
+ * a list held entirely in its head segment, while decodeList measures the
+ * same edges split into a head and tail segments the way prepend() stores
+ * them, so that tail segment decoding is covered as well.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class TorcEdgeListBenchmark {
+
+  @Param({"1", "10", "50", "1000"})
+  public int degree;
+
+  @Param({"true", "false"})
+  public boolean edgeProperties;
+
+  @Param({"-1", "0"})
+  public int compressionThreshold;
+
+  private byte[] headSegValue;
+
+  /* Segment values of the split list, in read order: head, then tails. */
+  private List<byte[]> listSegValues;
+
+  @Setup
+  public void setup() {
+    Random rand = new Random(42);
+    List<byte[]> serializedProps = new ArrayList<>(degree);
+    int segLen = Integer.BYTES;
+    for (int i = 0; i < degree; i++) {
+      byte[] props;
+      if (edgeProperties) {
+        props = TorcHelper.serializeObject(LdbcData.knowsProperties(rand));
+      } else {
+        props = new byte[0];
+      }
+      serializedProps.add(props);
+      segLen += UInt128.BYTES + Short.BYTES + props.length;
+    }
+
+    ByteBuffer seg = ByteBuffer.allocate(segLen)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    seg.putInt(compressionThreshold >= 0 ? TorcEdgeList.FRAMED_LIST_FLAG : 0);
+    List<UInt128> neighborIds = new ArrayList<>(degree);
+    for (int i = 0; i < degree; i++) {
+      /* Neighbor IDs within a list tend to be close together. */
+      UInt128 neighborId = new UInt128(0, 1000000 + rand.nextInt(10000));
+      neighborIds.add(neighborId);
+      seg.put(neighborId.toByteArray());
+      seg.putShort((short) serializedProps.get(i).length);
+      seg.put(serializedProps.get(i));
+    }
+
+    headSegValue = TorcEdgeList.encodeHeadSegment(seg.array(),
+        compressionThreshold);
+
+    /*
+     * prependAll() returns the tail segments in the order they were split
+     * off, followed by the head. Reads go from the head to the most recently
+     * split tail, so reverse the tails.
+     */
+    List<byte[]> segKeys = new ArrayList<>();
+    List<byte[]> segValues = new ArrayList<>();
+    TorcEdgeList.prependAll(new byte[0], null, neighborIds, serializedProps,
+        compressionThreshold, segKeys, segValues);
+    listSegValues = new ArrayList<>(segValues.size());
+    for (int i = segValues.size() - 1; i >= 0; i--) {
+      listSegValues.add(segValues.get(i));
+    }
+  }
+
+  @Benchmark
+  public List<TorcSerializedEdge> decodeHeadSegment() {
+    List<TorcSerializedEdge> eList = new ArrayList<>(degree);
+    ByteBuffer seg = TorcEdgeList.decodeHeadSegment(headSegValue);
+    seg.getInt();
+    TorcEdgeList.decodeSerializedEdges(seg, eList);
+    return eList;
+  }
+
+  @Benchmark
+  public List<TorcSerializedEdge> decodeList() {
+    List<TorcSerializedEdge> eList = new ArrayList<>(degree);
+    ByteBuffer seg = TorcEdgeList.decodeHeadSegment(listSegValues.get(0));
+    boolean framed = (seg.getInt() & TorcEdgeList.FRAMED_LIST_FLAG) != 0;
+    TorcEdgeList.decodeSerializedEdges(seg, eList);
+    for (int i = 1; i < listSegValues.size(); i++) {
+      TorcEdgeList.decodeSerializedEdges(
+          TorcEdgeList.decodeTailSegment(listSegValues.get(i), framed), eList);
+    }
+    return eList;
+  }
+}
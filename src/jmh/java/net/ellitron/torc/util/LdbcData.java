@@ -0,0 +1,94 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates property maps shaped like those of the LDBC SNB dataset, for use
+ * in benchmarks.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class LdbcData {
+
+  private static final String[] FIRST_NAMES = {"Jun", "Hossein", "Mahinda",
+    "Carmen", "Ali", "Chen", "Jan", "Alim", "Bryn", "Eli"};
+  private static final String[] LAST_NAMES = {"Wang", "Forouhar", "Perera",
+    "Lepland", "Abouba", "Zhang", "Zakrzewski", "Guliyev", "Davies", "Peretz"};
+  private static final String[] BROWSERS = {"Firefox", "Chrome",
+    "Internet Explorer", "Safari", "Opera"};
+  private static final String[] LANGUAGES = {"zh", "en", "fa", "ta", "es",
+    "pt", "uz", "de"};
+  private static final String[] GENDERS = {"male", "female"};
+
+  private static final long BASE_DATE = 1262304000000L;
+  private static final long DATE_RANGE = 3L * 365 * 24 * 60 * 60 * 1000;
+
+  public static Map<Object, Object> personProperties(Random rand) {
+    Map<Object, Object> props = new PropertyMap<>();
+    props.put("firstName", pick(rand, FIRST_NAMES));
+    props.put("lastName", pick(rand, LAST_NAMES));
+    props.put("gender", pick(rand, GENDERS));
+    props.put("birthday", BASE_DATE - rand.nextInt(Integer.MAX_VALUE) * 10L);
+    props.put("creationDate", BASE_DATE + (long) (rand.nextDouble() * DATE_RANGE));
+    props.put("locationIP", String.format("%d.%d.%d.%d", rand.nextInt(256),
+          rand.nextInt(256), rand.nextInt(256), rand.nextInt(256)));
+    props.put("browserUsed", pick(rand, BROWSERS));
+    List<Object> speaks = new ArrayList<>();
+    speaks.add(pick(rand, LANGUAGES));
+    speaks.add("en");
+    props.put("speaks", speaks);
+    List<Object> emails = new ArrayList<>();
+    for (int i = 0; i < 1 + rand.nextInt(3); i++) {
+      emails.add(String.format("%s%d@%s.com", pick(rand, FIRST_NAMES),
+            rand.nextInt(100000), pick(rand, new String[] {"gmail", "yahoo", 
+              "hotmail", "gmx"})));
+    }
+    props.put("email", emails);
+    return props;
+  }
+
+  public static Map<Object, Object> postProperties(Random rand) {
+    Map<Object, Object> props = new PropertyMap<>();
+    props.put("imageFile", "");
+    props.put("creationDate", BASE_DATE + (long) (rand.nextDouble() * DATE_RANGE));
+    props.put("locationIP", String.format("%d.%d.%d.%d", rand.nextInt(256),
+          rand.nextInt(256), rand.nextInt(256), rand.nextInt(256)));
+    props.put("browserUsed", pick(rand, BROWSERS));
+    props.put("language", pick(rand, LANGUAGES));
+    StringBuilder content = new StringBuilder();
+    int words = 10 + rand.nextInt(100);
+    for (int i = 0; i < words; i++) {
+      content.append(pick(rand, LAST_NAMES)).append(' ');
+    }
+    props.put("content", content.toString());
+    props.put("length", content.length());
+    return props;
+  }
+
+  public static Map<Object, Object> knowsProperties(Random rand) {
+    Map<Object, Object> props = new PropertyMap<>();
+    props.put("creationDate", BASE_DATE + (long) (rand.nextDouble() * DATE_RANGE));
+    return props;
+  }
+
+  private static String pick(Random rand, String[] choices) {
+    return choices[rand.nextInt(choices.length)];
+  }
+}
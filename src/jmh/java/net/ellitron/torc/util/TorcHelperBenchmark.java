@@ -0,0 +1,91 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import net.ellitron.torc.TorcVertex;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the client-side serialization paths in TorcHelper.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class TorcHelperBenchmark {
+
+  @Param({"person", "post"})
+  public String shape;
+
+  @Param({"1000"})
+  public int numVertices;
+
+  private Map<Object, Object> propMap;
+  private byte[] serializedPropMap;
+  private List<TorcVertex> vertices;
+
+  @Setup
+  public void setup() {
+    Random rand = new Random(42);
+    if (shape.equals("person")) {
+      propMap = LdbcData.personProperties(rand);
+    } else {
+      propMap = LdbcData.postProperties(rand);
+    }
+    serializedPropMap = TorcHelper.serializeObject(propMap);
+
+    vertices = new ArrayList<>(numVertices);
+    for (int i = 0; i < numVertices; i++) {
+      vertices.add(new TorcVertex(null, new UInt128(1, rand.nextLong())));
+    }
+  }
+
+  @Benchmark
+  public byte[] serializeObject() {
+    return TorcHelper.serializeObject(propMap);
+  }
+
+  @Benchmark
+  public Object deserializeObject() {
+    return TorcHelper.deserializeObject(serializedPropMap);
+  }
+
+  @Benchmark
+  public List<byte[]> getEdgeListKeyPrefixes() {
+    return TorcHelper.getEdgeListKeyPrefixes(vertices, "knows", Direction.OUT,
+        "Person");
+  }
+}
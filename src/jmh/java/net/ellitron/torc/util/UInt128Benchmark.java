@@ -0,0 +1,88 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing UInt128 IDs from the forms they arrive in: decimal
+ * and hex strings from queries, and big-endian bytes from edge lists.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class UInt128Benchmark {
+
+  private String decimalId;
+  private String hexId;
+  private Long longId;
+  private byte[] idBytes;
+  private ByteBuffer idBuffer;
+
+  @Setup
+  public void setup() {
+    Random rand = new Random(42);
+    UInt128 id = new UInt128(rand.nextLong() & Long.MAX_VALUE, 
+        rand.nextLong());
+    decimalId = new BigInteger(1, id.toByteArray()).toString();
+    hexId = id.toString();
+    longId = rand.nextLong() & Long.MAX_VALUE;
+    idBytes = id.toByteArray();
+    idBuffer = ByteBuffer.wrap(idBytes);
+  }
+
+  @Benchmark
+  public UInt128 decodeDecimalString() {
+    return UInt128.decode(decimalId);
+  }
+
+  @Benchmark
+  public UInt128 decodeHexString() {
+    return UInt128.decode(hexId);
+  }
+
+  @Benchmark
+  public UInt128 decodeLong() {
+    return UInt128.decode(longId);
+  }
+
+  @Benchmark
+  public UInt128 fromByteArray() {
+    return new UInt128(idBytes);
+  }
+
+  @Benchmark
+  public UInt128 parseFromByteBuffer() {
+    idBuffer.rewind();
+    return UInt128.parseFromByteBuffer(idBuffer);
+  }
+}
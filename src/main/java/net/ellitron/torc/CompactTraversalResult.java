@@ -0,0 +1,697 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import net.ellitron.torc.util.TorcHelper;
+import net.ellitron.torc.util.UInt128;
+import net.ellitron.torc.util.UInt128ObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * The result of a traversal stored in compressed sparse row form, as a
+ * compact alternative to {@link TraversalResult}. Base vertex IDs are kept
+ * sorted in a flat array of (upper, lower) long pairs, and the neighbors of
+ * base vertex i are the entries offsets[i] to offsets[i + 1] of a parallel
+ * flat array of neighbor IDs. Vertex labels are stored as indexes into a
+ * small label dictionary, and edge properties, when present, are kept
+ * serialized. A result costs about 20 bytes per edge instead of the several
+ * objects per edge that TraversalResult's maps hold.
+ *
+ * The vMap(), pMap() and vSet() views have the same content as the fields of
+ * the equivalent TraversalResult. They are built on first use and dropped
+ * when the result is modified. Operations in {@link TorcHelper} work on
+ * compact results directly, without building the views.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class CompactTraversalResult {
+
+  private final TorcGraph graph;
+  private String[] labels;
+  private long[] baseIds;
+  private short[] baseLabels;
+  private int[] offsets;
+  private long[] neighborIds;
+  private short[] neighborLabels;
+  /* Serialized edge properties, or null if the result has none. */
+  private byte[][] properties;
+
+  /* Lazily built views. */
+  private Map<TorcVertex, List<TorcVertex>> vMap;
+  private Map<TorcVertex, List<Map<Object, Object>>> pMap;
+  private Set<TorcVertex> vSet;
+
+  /**
+   * Constructs a result from its arrays, which are used as is. Base vertex
+   * IDs must be sorted as unsigned 128 bit integers and distinct, and every
+   * base vertex must have at least one neighbor.
+   *
+   * @param graph Graph that the vertices belong to.
+   * @param labels Dictionary of vertex labels.
+   * @param baseIds Base vertex IDs, as (upper, lower) pairs.
+   * @param baseLabels Index in labels of the label of each base vertex.
+   * @param offsets Offset of the first neighbor of each base vertex, plus a
+   * final entry with the number of edges.
+   * @param neighborIds Neighbor vertex IDs, as (upper, lower) pairs.
+   * @param neighborLabels Index in labels of the label of each neighbor.
+   * @param properties Serialized properties of each edge, or null.
+   */
+  public CompactTraversalResult(TorcGraph graph, String[] labels,
+      long[] baseIds, short[] baseLabels, int[] offsets, long[] neighborIds,
+      short[] neighborLabels, byte[][] properties) {
+    this.graph = graph;
+    this.labels = labels;
+    this.baseIds = baseIds;
+    this.baseLabels = baseLabels;
+    this.offsets = offsets;
+    this.neighborIds = neighborIds;
+    this.neighborLabels = neighborLabels;
+    this.properties = properties;
+  }
+
+  /**
+   * Returns the number of base vertices.
+   */
+  public int size() {
+    return baseLabels.length;
+  }
+
+  /**
+   * Returns the number of edges.
+   */
+  public int edgeCount() {
+    return neighborLabels.length;
+  }
+
+  /**
+   * Returns whether the result holds edge properties.
+   */
+  public boolean hasProperties() {
+    return properties != null;
+  }
+
+  public long[] getBaseIds() {
+    return baseIds;
+  }
+
+  public int[] getOffsets() {
+    return offsets;
+  }
+
+  public long[] getNeighborIds() {
+    return neighborIds;
+  }
+
+  public byte[][] getProperties() {
+    return properties;
+  }
+
+  public TorcVertex getBaseVertex(int i) {
+    return new TorcVertex(graph, new UInt128(baseIds[2 * i],
+          baseIds[2 * i + 1]), labels[baseLabels[i]]);
+  }
+
+  public TorcVertex getNeighbor(int j) {
+    return new TorcVertex(graph, new UInt128(neighborIds[2 * j],
+          neighborIds[2 * j + 1]), labels[neighborLabels[j]]);
+  }
+
+  public Map<Object, Object> getEdgeProperties(int j) {
+    if (properties == null) {
+      return null;
+    }
+    return (Map<Object, Object>) TorcHelper.deserializeObject(properties[j]);
+  }
+
+  /**
+   * Finds a base vertex by binary search.
+   *
+   * @param upper Upper 64 bits of the vertex ID.
+   * @param lower Lower 64 bits of the vertex ID.
+   *
+   * @return Index of the base vertex, or -1 if it is not a base vertex.
+   */
+  public int indexOf(long upper, long lower) {
+    int lo = 0;
+    int hi = size() - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = compareIds(baseIds, mid, upper, lower);
+      if (c < 0) {
+        lo = mid + 1;
+      } else if (c > 0) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns a map from each base vertex to its list of neighbors, as in
+   * {@link TraversalResult#vMap}. Built on first use.
+   */
+  public Map<TorcVertex, List<TorcVertex>> vMap() {
+    if (vMap == null) {
+      buildViews();
+    }
+    return vMap;
+  }
+
+  /**
+   * Returns a map from each base vertex to the properties of its edges, as
+   * in {@link TraversalResult#pMap}, or null if the result has no edge
+   * properties. Built on first use.
+   */
+  public Map<TorcVertex, List<Map<Object, Object>>> pMap() {
+    if (vMap == null) {
+      buildViews();
+    }
+    return pMap;
+  }
+
+  /**
+   * Returns the set of distinct neighbor vertices, as in
+   * {@link TraversalResult#vSet}. Built on first use.
+   */
+  public Set<TorcVertex> vSet() {
+    if (vMap == null) {
+      buildViews();
+    }
+    return vSet;
+  }
+
+  /**
+   * Returns an equivalent TraversalResult, which shares this result's views.
+   */
+  public TraversalResult toTraversalResult() {
+    return new TraversalResult(vMap(), pMap(), vSet());
+  }
+
+  private void buildViews() {
+    Map<TorcVertex, List<TorcVertex>> newVMap = new HashMap<>(size());
+    Map<TorcVertex, List<Map<Object, Object>>> newPMap = null;
+    if (properties != null) {
+      newPMap = new HashMap<>(size());
+    }
+    UInt128ObjectMap<TorcVertex> nbrDedupMap = new UInt128ObjectMap<>();
+    List<TorcVertex> uniqNbrList = new ArrayList<>();
+
+    for (int i = 0; i < size(); i++) {
+      List<TorcVertex> nList = new ArrayList<>(offsets[i + 1] - offsets[i]);
+      List<Map<Object, Object>> pList = null;
+      if (newPMap != null) {
+        pList = new ArrayList<>(offsets[i + 1] - offsets[i]);
+      }
+
+      for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+        long upper = neighborIds[2 * j];
+        long lower = neighborIds[2 * j + 1];
+        TorcVertex n = nbrDedupMap.get(upper, lower);
+        if (n == null) {
+          n = new TorcVertex(graph, new UInt128(upper, lower), 
+              labels[neighborLabels[j]]);
+          nbrDedupMap.put(upper, lower, n);
+          uniqNbrList.add(n);
+        }
+        nList.add(n);
+        if (pList != null) {
+          pList.add(getEdgeProperties(j));
+        }
+      }
+
+      TorcVertex b = getBaseVertex(i);
+      newVMap.put(b, nList);
+      if (newPMap != null) {
+        newPMap.put(b, pList);
+      }
+    }
+
+    vMap = newVMap;
+    pMap = newPMap;
+    vSet = new HashSet<>(uniqNbrList);
+  }
+
+  /**
+   * Keeps only the edges to the given vertices, dropping base vertices left
+   * without neighbors.
+   *
+   * @param vertices Neighbors to keep.
+   */
+  public void retainNeighbors(Collection<TorcVertex> vertices) {
+    long[] sorted = sortedIds(vertices);
+    boolean[] keep = new boolean[edgeCount()];
+    for (int j = 0; j < keep.length; j++) {
+      keep[j] = contains(sorted, neighborIds[2 * j], neighborIds[2 * j + 1]);
+    }
+    retainEdges(keep);
+  }
+
+  /**
+   * Removes the edges to the given vertices, dropping base vertices left
+   * without neighbors.
+   *
+   * @param vertices Neighbors to remove.
+   */
+  public void removeNeighbors(Collection<TorcVertex> vertices) {
+    long[] sorted = sortedIds(vertices);
+    boolean[] keep = new boolean[edgeCount()];
+    for (int j = 0; j < keep.length; j++) {
+      keep[j] = !contains(sorted, neighborIds[2 * j], neighborIds[2 * j + 1]);
+    }
+    retainEdges(keep);
+  }
+
+  /**
+   * Removes the edges for which the function returns true, given the
+   * neighbor vertex and the edge's properties (null if the result has no
+   * properties), dropping base vertices left without neighbors.
+   *
+   * @param f Function deciding which edges to remove.
+   */
+  public void removeEdgeIf(
+      BiFunction<TorcVertex, Map<Object, Object>, Boolean> f) {
+    boolean[] keep = new boolean[edgeCount()];
+    for (int j = 0; j < keep.length; j++) {
+      keep[j] = !f.apply(getNeighbor(j), getEdgeProperties(j));
+    }
+    retainEdges(keep);
+  }
+
+  /**
+   * Joins this result with another, mapping each base vertex of this result
+   * to the neighbors, in the other result, of its neighbors. Edge properties
+   * are not carried over.
+   *
+   * @param other Result to join with.
+   * @param dedup Whether to remove duplicate neighbors of each base vertex.
+   *
+   * @return The joined result.
+   */
+  public CompactTraversalResult fuse(CompactTraversalResult other,
+      boolean dedup) {
+    /* Both label dictionaries are merged into one. */
+    Map<String, Short> labelIndexes = new HashMap<>();
+    List<String> newLabels = new ArrayList<>();
+    short[] thisLabelMap = mapLabels(labels, labelIndexes, newLabels);
+    short[] otherLabelMap = mapLabels(other.labels, labelIndexes, newLabels);
+
+    LongArray newBaseIds = new LongArray();
+    ShortArray newBaseLabels = new ShortArray();
+    IntArray newOffsets = new IntArray();
+    LongArray newNeighborIds = new LongArray();
+    ShortArray newNeighborLabels = new ShortArray();
+    IntArray fused = new IntArray();
+    newOffsets.add(0);
+
+    for (int i = 0; i < size(); i++) {
+      fused.clear();
+      for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+        int k = other.indexOf(neighborIds[2 * j], neighborIds[2 * j + 1]);
+        if (k >= 0) {
+          for (int l = other.offsets[k]; l < other.offsets[k + 1]; l++) {
+            fused.add(l);
+          }
+        }
+      }
+
+      if (fused.size == 0) {
+        continue;
+      }
+
+      int[] order = fused.values;
+      int count = fused.size;
+      if (dedup) {
+        order = sortedOrder(other.neighborIds, fused.values, fused.size);
+        count = 0;
+        for (int m = 0; m < fused.size; m++) {
+          if (count == 0 || compareIds(other.neighborIds, order[count - 1],
+                order[m]) != 0) {
+            order[count++] = order[m];
+          }
+        }
+      }
+
+      newBaseIds.add(baseIds[2 * i], baseIds[2 * i + 1]);
+      newBaseLabels.add(thisLabelMap[baseLabels[i]]);
+      for (int m = 0; m < count; m++) {
+        int l = order[m];
+        newNeighborIds.add(other.neighborIds[2 * l],
+            other.neighborIds[2 * l + 1]);
+        newNeighborLabels.add(otherLabelMap[other.neighborLabels[l]]);
+      }
+      newOffsets.add(newNeighborLabels.size);
+    }
+
+    return new CompactTraversalResult(graph,
+        newLabels.toArray(new String[0]), newBaseIds.toArray(),
+        newBaseLabels.toArray(), newOffsets.toArray(),
+        newNeighborIds.toArray(), newNeighborLabels.toArray(), null);
+  }
+
+  /**
+   * Returns the base vertices, in ID order.
+   */
+  public List<TorcVertex> keylist() {
+    List<TorcVertex> keylist = new ArrayList<>(size());
+    for (int i = 0; i < size(); i++) {
+      keylist.add(getBaseVertex(i));
+    }
+    return keylist;
+  }
+
+  /*
+   * Compacts the arrays, keeping only the edges with keep set.
+   */
+  private void retainEdges(boolean[] keep) {
+    int numBases = 0;
+    int numEdges = 0;
+    for (int i = 0; i < size(); i++) {
+      int start = numEdges;
+      for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+        if (keep[j]) {
+          neighborIds[2 * numEdges] = neighborIds[2 * j];
+          neighborIds[2 * numEdges + 1] = neighborIds[2 * j + 1];
+          neighborLabels[numEdges] = neighborLabels[j];
+          if (properties != null) {
+            properties[numEdges] = properties[j];
+          }
+          numEdges++;
+        }
+      }
+
+      if (numEdges > start) {
+        baseIds[2 * numBases] = baseIds[2 * i];
+        baseIds[2 * numBases + 1] = baseIds[2 * i + 1];
+        baseLabels[numBases] = baseLabels[i];
+        offsets[numBases] = start;
+        numBases++;
+      }
+    }
+    offsets[numBases] = numEdges;
+
+    baseIds = Arrays.copyOf(baseIds, 2 * numBases);
+    baseLabels = Arrays.copyOf(baseLabels, numBases);
+    offsets = Arrays.copyOf(offsets, numBases + 1);
+    neighborIds = Arrays.copyOf(neighborIds, 2 * numEdges);
+    neighborLabels = Arrays.copyOf(neighborLabels, numEdges);
+    if (properties != null) {
+      properties = Arrays.copyOf(properties, numEdges);
+    }
+
+    vMap = null;
+    pMap = null;
+    vSet = null;
+  }
+
+  private static short[] mapLabels(String[] labels,
+      Map<String, Short> labelIndexes, List<String> newLabels) {
+    short[] map = new short[labels.length];
+    for (int i = 0; i < labels.length; i++) {
+      map[i] = labelIndex(labels[i], labelIndexes, newLabels);
+    }
+    return map;
+  }
+
+  private static short labelIndex(String label,
+      Map<String, Short> labelIndexes, List<String> newLabels) {
+    Short index = labelIndexes.get(label);
+    if (index == null) {
+      if (newLabels.size() > Short.MAX_VALUE) {
+        throw new RuntimeException(String.format("Traversal result has more "
+            + "than %d distinct vertex labels", Short.MAX_VALUE + 1));
+      }
+      index = (short) newLabels.size();
+      labelIndexes.put(label, index);
+      newLabels.add(label);
+    }
+    return index;
+  }
+
+  /*
+   * Returns the IDs of the vertices as sorted (upper, lower) pairs.
+   */
+  private static long[] sortedIds(Collection<TorcVertex> vertices) {
+    long[] ids = new long[2 * vertices.size()];
+    int n = 0;
+    for (TorcVertex v : vertices) {
+      ids[2 * n] = v.id().getUpperLong();
+      ids[2 * n + 1] = v.id().getLowerLong();
+      n++;
+    }
+
+    int[] indexes = new int[n];
+    for (int i = 0; i < n; i++) {
+      indexes[i] = i;
+    }
+    int[] order = sortedOrder(ids, indexes, n);
+
+    long[] sorted = new long[2 * n];
+    for (int i = 0; i < n; i++) {
+      sorted[2 * i] = ids[2 * order[i]];
+      sorted[2 * i + 1] = ids[2 * order[i] + 1];
+    }
+    return sorted;
+  }
+
+  private static boolean contains(long[] sorted, long upper, long lower) {
+    int lo = 0;
+    int hi = sorted.length / 2 - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = compareIds(sorted, mid, upper, lower);
+      if (c < 0) {
+        lo = mid + 1;
+      } else if (c > 0) {
+        hi = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Returns the first n of the given indexes into a flat array of IDs,
+   * stably sorted by ID with a merge sort.
+   */
+  static int[] sortedOrder(long[] ids, int[] indexes, int n) {
+    int[] src = Arrays.copyOf(indexes, n);
+    int[] dst = new int[n];
+    for (int width = 1; width < n; width *= 2) {
+      for (int lo = 0; lo < n; lo += 2 * width) {
+        int mid = Math.min(lo + width, n);
+        int hi = Math.min(lo + 2 * width, n);
+        int a = lo;
+        int b = mid;
+        for (int k = lo; k < hi; k++) {
+          if (a < mid && (b >= hi || compareIds(ids, src[a], src[b]) <= 0)) {
+            dst[k] = src[a++];
+          } else {
+            dst[k] = src[b++];
+          }
+        }
+      }
+      int[] tmp = src;
+      src = dst;
+      dst = tmp;
+    }
+    return src;
+  }
+
+  static int compareIds(long[] ids, int a, int b) {
+    return compareIds(ids, a, ids[2 * b], ids[2 * b + 1]);
+  }
+
+  static int compareIds(long[] ids, int a, long upper, long lower) {
+    return UInt128.compare(ids[2 * a], ids[2 * a + 1], upper, lower);
+  }
+
+  /**
+   * Builds a CompactTraversalResult from edges added in any order. The
+   * neighbors of each base vertex keep the order in which they were added.
+   */
+  public static class Builder {
+    private final TorcGraph graph;
+    private final boolean withProperties;
+    private final Map<String, Short> labelIndexes = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+
+    /* Edges are recorded in runs of consecutive edges with the same base
+     * vertex, which are grouped by base vertex in build(). */
+    private final LongArray runBaseIds = new LongArray();
+    private final ShortArray runBaseLabels = new ShortArray();
+    private final IntArray runStarts = new IntArray();
+    private final LongArray neighborIds = new LongArray();
+    private final ShortArray neighborLabels = new ShortArray();
+    private byte[][] properties;
+
+    /**
+     * @param graph Graph that the vertices belong to.
+     * @param withProperties Whether edges are added with properties.
+     */
+    public Builder(TorcGraph graph, boolean withProperties) {
+      this.graph = graph;
+      this.withProperties = withProperties;
+      if (withProperties) {
+        properties = new byte[16][];
+      }
+    }
+
+    /**
+     * Adds an edge.
+     *
+     * @param baseId ID of the base vertex.
+     * @param baseLabel Label of the base vertex.
+     * @param neighborId ID of the neighbor vertex.
+     * @param neighborLabel Label of the neighbor vertex.
+     * @param serializedProperties Serialized properties of the edge. Ignored
+     * if the builder was created without properties.
+     */
+    public void add(UInt128 baseId, String baseLabel, UInt128 neighborId,
+        String neighborLabel, byte[] serializedProperties) {
+      long upper = baseId.getUpperLong();
+      long lower = baseId.getLowerLong();
+      int runs = runBaseLabels.size;
+      if (runs == 0 || runBaseIds.values[2 * runs - 2] != upper
+          || runBaseIds.values[2 * runs - 1] != lower) {
+        runBaseIds.add(upper, lower);
+        runBaseLabels.add(labelIndex(baseLabel, labelIndexes, labels));
+        runStarts.add(neighborLabels.size);
+      }
+
+      int j = neighborLabels.size;
+      neighborIds.add(neighborId.getUpperLong(), neighborId.getLowerLong());
+      neighborLabels.add(labelIndex(neighborLabel, labelIndexes, labels));
+      if (withProperties) {
+        if (j == properties.length) {
+          properties = Arrays.copyOf(properties, 2 * j);
+        }
+        properties[j] = serializedProperties;
+      }
+    }
+
+    public CompactTraversalResult build() {
+      int numRuns = runBaseLabels.size;
+      int numEdges = neighborLabels.size;
+      runStarts.add(numEdges);
+
+      int[] runIndexes = new int[numRuns];
+      for (int r = 0; r < numRuns; r++) {
+        runIndexes[r] = r;
+      }
+      int[] runOrder = sortedOrder(runBaseIds.values, runIndexes, numRuns);
+
+      LongArray baseIds = new LongArray();
+      ShortArray baseLabels = new ShortArray();
+      IntArray offsets = new IntArray();
+      long[] newNeighborIds = new long[2 * numEdges];
+      short[] newNeighborLabels = new short[numEdges];
+      byte[][] newProperties = withProperties ? new byte[numEdges][] : null;
+
+      int j = 0;
+      for (int k = 0; k < numRuns; k++) {
+        int r = runOrder[k];
+        if (k == 0 || compareIds(runBaseIds.values, runOrder[k - 1], r) != 0) {
+          baseIds.add(runBaseIds.values[2 * r], runBaseIds.values[2 * r + 1]);
+          baseLabels.add(runBaseLabels.values[r]);
+          offsets.add(j);
+        }
+
+        int start = runStarts.values[r];
+        int end = runStarts.values[r + 1];
+        System.arraycopy(neighborIds.values, 2 * start, newNeighborIds,
+            2 * j, 2 * (end - start));
+        System.arraycopy(neighborLabels.values, start, newNeighborLabels,
+            j, end - start);
+        if (withProperties) {
+          System.arraycopy(properties, start, newProperties, j, end - start);
+        }
+        j += end - start;
+      }
+      offsets.add(j);
+
+      return new CompactTraversalResult(graph,
+          labels.toArray(new String[0]), baseIds.toArray(),
+          baseLabels.toArray(), offsets.toArray(), newNeighborIds,
+          newNeighborLabels, newProperties);
+    }
+  }
+
+  /* Growable primitive arrays. */
+
+  private static class LongArray {
+    long[] values = new long[32];
+    int used = 0;
+
+    void add(long upper, long lower) {
+      if (values.length < used + 2) {
+        values = Arrays.copyOf(values, 2 * values.length);
+      }
+      values[used++] = upper;
+      values[used++] = lower;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(values, used);
+    }
+  }
+
+  private static class ShortArray {
+    short[] values = new short[16];
+    int size = 0;
+
+    void add(short value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, 2 * size);
+      }
+      values[size++] = value;
+    }
+
+    short[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  private static class IntArray {
+    int[] values = new int[16];
+    int size = 0;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, 2 * size);
+      }
+      values[size++] = value;
+    }
+
+    void clear() {
+      size = 0;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+
+/**
+ * Describes one hop of a multi-hop traversal (see
+ * {@link TorcGraph#traverse(java.util.Collection, java.util.List)}): the
+ * edges to follow from each vertex of the frontier, and how to form the next
+ * frontier from their neighbors.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class HopSpec {
+
+  private final String edgeLabel;
+  private final Direction direction;
+  private final String[] neighborLabels;
+  private boolean dedup = false;
+  private int limit = Integer.MAX_VALUE;
+  private boolean fillEdge = false;
+  private PropertyPredicate edgeFilter = null;
+
+  /**
+   * @param edgeLabel Label of the edges to traverse.
+   * @param direction Direction of the edges.
+   * @param neighborLabels Labels of neighbor vertices.
+   */
+  public HopSpec(String edgeLabel, Direction direction,
+      String ... neighborLabels) {
+    if (neighborLabels.length == 0) {
+      throw new IllegalArgumentException("A hop needs at least one neighbor "
+          + "label");
+    }
+    this.edgeLabel = edgeLabel;
+    this.direction = direction;
+    this.neighborLabels = neighborLabels;
+  }
+
+  /**
+   * Removes duplicate neighbors from each vertex's list of neighbors in the
+   * hop's result. The frontier passed to the next hop never has duplicates.
+   *
+   * @return This hop.
+   */
+  public HopSpec dedup() {
+    this.dedup = true;
+    return this;
+  }
+
+  /**
+   * Stops the hop once it has found the given number of distinct neighbors.
+   * The rest of the hop's frontier is then not expanded.
+   *
+   * @param limit Maximum number of neighbors in the next frontier.
+   *
+   * @return This hop.
+   */
+  public HopSpec limit(int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "Hop limit must be positive, got %d", limit));
+    }
+    this.limit = limit;
+    return this;
+  }
+
+  /**
+   * Includes the properties of the traversed edges in the hop's result.
+   *
+   * @return This hop.
+   */
+  public HopSpec fillEdge() {
+    this.fillEdge = true;
+    return this;
+  }
+
+  /**
+   * Follows only the edges whose properties satisfy the given predicate.
+   *
+   * @param edgeFilter Predicate on edge properties.
+   *
+   * @return This hop.
+   */
+  public HopSpec where(PropertyPredicate edgeFilter) {
+    this.edgeFilter = edgeFilter;
+    return this;
+  }
+
+  public String getEdgeLabel() {
+    return edgeLabel;
+  }
+
+  public Direction getDirection() {
+    return direction;
+  }
+
+  public String[] getNeighborLabels() {
+    return neighborLabels;
+  }
+
+  public boolean isDedup() {
+    return dedup;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public boolean isFillEdge() {
+    return fillEdge;
+  }
+
+  public PropertyPredicate getEdgeFilter() {
+    return edgeFilter;
+  }
+}
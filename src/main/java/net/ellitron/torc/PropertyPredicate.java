@@ -0,0 +1,203 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import net.ellitron.torc.util.TorcHelper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A conjunction of comparisons of properties against constants, such as
+ * creationDate >= a and creationDate < b, that can be evaluated directly on a
+ * serialized property map without deserializing it. Traversals use it to
+ * filter edges (and neighbor vertices) as their serialized forms are
+ * decoded, so that only the survivors are ever materialized. A comparison
+ * against a property that is missing, or whose value cannot be compared with
+ * the constant, fails (except for NEQ, which then succeeds). Integer and Long
+ * values compare numerically with each other, and strings compare in code
+ * point order.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class PropertyPredicate {
+
+  /**
+   * Comparison of a property's value against a constant.
+   */
+  public enum Op {
+    EQ, NEQ, LT, LTE, GT, GTE;
+
+    boolean accepts(int cmp) {
+      if (cmp == TorcHelper.INCOMPARABLE) {
+        return this == NEQ;
+      }
+      switch (this) {
+        case EQ:
+          return cmp == 0;
+        case NEQ:
+          return cmp != 0;
+        case LT:
+          return cmp < 0;
+        case LTE:
+          return cmp <= 0;
+        case GT:
+          return cmp > 0;
+        default:
+          return cmp >= 0;
+      }
+    }
+  }
+
+  private final String[] keys;
+  private final byte[][] serializedKeys;
+  private final Op[] ops;
+  private final byte[][] serializedConstants;
+
+  private PropertyPredicate(String[] keys, byte[][] serializedKeys, Op[] ops,
+      byte[][] serializedConstants) {
+    this.keys = keys;
+    this.serializedKeys = serializedKeys;
+    this.ops = ops;
+    this.serializedConstants = serializedConstants;
+  }
+
+  /**
+   * Returns a predicate comparing a single property against a constant.
+   *
+   * @param key Property key.
+   * @param op Comparison.
+   * @param constant Integer, Long or String to compare against.
+   *
+   * @return The predicate.
+   */
+  public static PropertyPredicate of(String key, Op op, Object constant) {
+    return new PropertyPredicate(new String[0], new byte[0][], new Op[0],
+        new byte[0][]).and(key, op, constant);
+  }
+
+  /**
+   * Returns a predicate that also requires the given comparison.
+   *
+   * @param key Property key.
+   * @param op Comparison.
+   * @param constant Integer, Long or String to compare against.
+   *
+   * @return The predicate.
+   */
+  public PropertyPredicate and(String key, Op op, Object constant) {
+    if (!(constant instanceof Integer || constant instanceof Long 
+          || constant instanceof String)) {
+      throw new IllegalArgumentException(String.format(
+          "Unsupported constant type in property predicate: %s",
+          constant == null ? null : constant.getClass()));
+    }
+
+    int n = keys.length;
+    String[] newKeys = Arrays.copyOf(keys, n + 1);
+    byte[][] newSerializedKeys = Arrays.copyOf(serializedKeys, n + 1);
+    Op[] newOps = Arrays.copyOf(ops, n + 1);
+    byte[][] newSerializedConstants = 
+        Arrays.copyOf(serializedConstants, n + 1);
+    newKeys[n] = key;
+    newSerializedKeys[n] = TorcHelper.serializeObject(key);
+    newOps[n] = op;
+    newSerializedConstants[n] = TorcHelper.serializeObject(constant);
+    return new PropertyPredicate(newKeys, newSerializedKeys, newOps,
+        newSerializedConstants);
+  }
+
+  /**
+   * Returns the keys of the properties the predicate looks at.
+   *
+   * @return Property keys, one per comparison.
+   */
+  public String[] getKeys() {
+    return keys.clone();
+  }
+
+  /**
+   * Evaluates the predicate on a serialized property map.
+   *
+   * @param value Buffer holding the serialized property map.
+   * @param offset Offset of the map in the buffer.
+   * @param length Length of the serialized map, which is 0 if there are no
+   * properties.
+   *
+   * @return True if the properties satisfy the predicate.
+   */
+  public boolean test(byte[] value, int offset, int length) {
+    if (length == 0) {
+      return test(Collections.emptyMap());
+    }
+
+    if (!TorcHelper.isSerializedMap(value, offset)) {
+      // Compressed property maps need to be decompressed first.
+      return test((Map<Object, Object>) TorcHelper.deserializeObject(value,
+            offset));
+    }
+
+    for (int i = 0; i < keys.length; i++) {
+      int valueOffset = TorcHelper.findSerializedMapValue(value, offset,
+          serializedKeys[i]);
+      int cmp = (valueOffset < 0) ? TorcHelper.INCOMPARABLE 
+          : TorcHelper.compareSerialized(value, valueOffset, 
+              serializedConstants[i], 0);
+      if (!ops[i].accepts(cmp)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Evaluates the predicate on a deserialized property map.
+   *
+   * @param properties Property map.
+   *
+   * @return True if the properties satisfy the predicate.
+   */
+  public boolean test(Map<Object, Object> properties) {
+    for (int i = 0; i < keys.length; i++) {
+      Object value = properties.get(keys[i]);
+      int cmp = TorcHelper.INCOMPARABLE;
+      if (value instanceof Integer || value instanceof Long 
+          || value instanceof String) {
+        cmp = TorcHelper.compareSerialized(TorcHelper.serializeObject(value),
+            0, serializedConstants[i], 0);
+      }
+      if (!ops[i].accepts(cmp)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < keys.length; i++) {
+      if (i > 0) {
+        sb.append(" and ");
+      }
+      sb.append(keys[i]).append(' ').append(ops[i]).append(' ')
+          .append(TorcHelper.deserializeObject(serializedConstants[i]));
+    }
+    return sb.toString();
+  }
+}
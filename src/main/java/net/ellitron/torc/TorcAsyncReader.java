@@ -0,0 +1,347 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Serves reads for the asynchronous TorcGraph API from a small pool of I/O
+ * threads. Callers queue requests and immediately get back a future. Each I/O
+ * thread takes a request off the queue together with whatever other requests
+ * have queued up behind it, and serves them all with combined multireads:
+ * edge list reads for the same table are merged into one batch read and
+ * vertex table object reads into another. Under load, many outstanding
+ * requests are therefore served by a few large multireads instead of one
+ * blocked thread per request. Futures are completed on the I/O threads, so
+ * callbacks chained onto them should not block. Each I/O thread runs
+ * threadInit before serving its first request (e.g. to open its own RAMCloud
+ * client) and threadCleanup when the reader is shut down. If threadInit
+ * fails, every request from then on fails with its exception, and requests
+ * made after the reader is shut down fail with an IllegalStateException.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+class TorcAsyncReader {
+
+  /* Limit on the number of keys served by one round of combined reads. */
+  static final int MAX_COALESCED_KEYS = 1 << 14;
+
+  private static final Request SHUTDOWN = new Request(null, 
+      Collections.emptyList(), null, null);
+
+  private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+  private final Thread[] threads;
+  private final BiFunction<Long, List<byte[]>, Map<byte[], 
+      List<TorcSerializedEdge>>> edgeListReader;
+  private final Function<List<byte[]>, byte[][]> objectReader;
+  /* Failure of an I/O thread's threadInit, if any. */
+  private volatile Throwable initFailure = null;
+  /* Guarded by this, so that no request is queued behind the SHUTDOWN
+   * requests. */
+  private boolean shutdown = false;
+
+  /*
+   * A queued read. Edge list reads have a table ID and key prefixes, object
+   * reads have no table ID (they always go to the vertex table) and keys.
+   * Only the future for the kind of read is set.
+   */
+  private static class Request {
+    final Long tableId;
+    final List<byte[]> keys;
+    final CompletableFuture<Map<byte[], List<TorcSerializedEdge>>> 
+        edgeListFuture;
+    final CompletableFuture<byte[][]> objectFuture;
+
+    Request(Long tableId, List<byte[]> keys, 
+        CompletableFuture<Map<byte[], List<TorcSerializedEdge>>> 
+            edgeListFuture,
+        CompletableFuture<byte[][]> objectFuture) {
+      this.tableId = tableId;
+      this.keys = keys;
+      this.edgeListFuture = edgeListFuture;
+      this.objectFuture = objectFuture;
+    }
+
+    int size() {
+      return keys.size();
+    }
+
+    void fail(Throwable t) {
+      if (tableId == null) {
+        objectFuture.completeExceptionally(t);
+      } else {
+        edgeListFuture.completeExceptionally(t);
+      }
+    }
+  }
+
+  /**
+   * Starts the I/O threads.
+   *
+   * @param numThreads Number of I/O threads.
+   * @param edgeListReader Reads the edge lists with the given key prefixes
+   * from the given table, returning them keyed by prefix.
+   * @param objectReader Reads the vertex table objects with the given keys,
+   * returning their values in key order (null for missing objects).
+   * @param threadInit Run by each I/O thread before serving requests.
+   * @param threadCleanup Run by each I/O thread when the reader is shut down.
+   */
+  TorcAsyncReader(int numThreads,
+      BiFunction<Long, List<byte[]>, Map<byte[], List<TorcSerializedEdge>>>
+          edgeListReader,
+      Function<List<byte[]>, byte[][]> objectReader, Runnable threadInit,
+      Runnable threadCleanup) {
+    this.edgeListReader = edgeListReader;
+    this.objectReader = objectReader;
+    this.threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread(() -> {
+        try {
+          try {
+            threadInit.run();
+          } catch (Throwable t) {
+            /* Keep taking requests, so that they are failed rather than
+             * left waiting, until the reader is shut down. */
+            if (initFailure == null) {
+              initFailure = t;
+            }
+          }
+          serve();
+        } finally {
+          threadCleanup.run();
+        }
+      }, "TorcAsyncReader-" + i);
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+  }
+
+  /**
+   * Reads edge lists asynchronously.
+   *
+   * @param tableId Table holding the edge lists.
+   * @param keyPrefixes Key prefixes of the edge lists.
+   *
+   * @return Future of the edge lists, keyed by the given key prefix objects.
+   */
+  CompletableFuture<Map<byte[], List<TorcSerializedEdge>>> readEdgeLists(
+      long tableId, List<byte[]> keyPrefixes) {
+    CompletableFuture<Map<byte[], List<TorcSerializedEdge>>> future = 
+        new CompletableFuture<>();
+    submit(new Request(tableId, keyPrefixes, future, null));
+    return future;
+  }
+
+  /**
+   * Reads vertex table objects asynchronously.
+   *
+   * @param keys Keys of the objects.
+   *
+   * @return Future of the values of the objects, in key order, with null
+   * for objects that do not exist.
+   */
+  CompletableFuture<byte[][]> readObjects(List<byte[]> keys) {
+    CompletableFuture<byte[][]> future = new CompletableFuture<>();
+    submit(new Request(null, keys, null, future));
+    return future;
+  }
+
+  /**
+   * Stops the I/O threads once they have served all requests queued so far,
+   * and waits for them to exit.
+   */
+  void shutdown() {
+    synchronized (this) {
+      if (!shutdown) {
+        shutdown = true;
+        for (int i = 0; i < threads.length; i++) {
+          queue.add(SHUTDOWN);
+        }
+      }
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void submit(Request request) {
+    if (request.size() == 0) {
+      if (request.tableId == null) {
+        request.objectFuture.complete(new byte[0][]);
+      } else {
+        request.edgeListFuture.complete(new HashMap<>());
+      }
+      return;
+    }
+
+    boolean queued = false;
+    synchronized (this) {
+      if (!shutdown && initFailure == null) {
+        queue.add(request);
+        queued = true;
+      }
+    }
+
+    if (!queued) {
+      /* Completed outside of the lock, since completing runs callbacks. */
+      request.fail(initFailure != null 
+          ? initFailure 
+          : new IllegalStateException("TorcAsyncReader has been shut down"));
+    }
+  }
+
+  private void serve() {
+    while (true) {
+      Request first;
+      try {
+        first = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      if (first == SHUTDOWN) {
+        return;
+      }
+
+      List<Request> batch = new ArrayList<>();
+      batch.add(first);
+      int numKeys = first.size();
+      boolean stop = false;
+      while (numKeys < MAX_COALESCED_KEYS) {
+        Request next = queue.poll();
+        if (next == null) {
+          break;
+        }
+
+        if (next == SHUTDOWN) {
+          /* Serve this batch first. Any requests queued after this point
+           * are served by the threads that have not yet shut down. */
+          stop = true;
+          break;
+        }
+
+        batch.add(next);
+        numKeys += next.size();
+      }
+
+      serveBatch(batch);
+
+      if (stop) {
+        return;
+      }
+    }
+  }
+
+  private void serveBatch(List<Request> batch) {
+    if (initFailure != null) {
+      fail(batch, initFailure);
+      return;
+    }
+
+    Map<Long, List<Request>> edgeListRequests = new HashMap<>();
+    List<Request> objectRequests = new ArrayList<>();
+    for (Request request : batch) {
+      if (request.tableId == null) {
+        objectRequests.add(request);
+      } else {
+        edgeListRequests.computeIfAbsent(request.tableId, 
+            t -> new ArrayList<>()).add(request);
+      }
+    }
+
+    for (Map.Entry<Long, List<Request>> entry : edgeListRequests.entrySet()) {
+      serveEdgeLists(entry.getKey(), entry.getValue());
+    }
+
+    if (!objectRequests.isEmpty()) {
+      serveObjects(objectRequests);
+    }
+  }
+
+  private void serveEdgeLists(long tableId, List<Request> requests) {
+    try {
+      /* Requests may ask for the very same key prefix object, so read each
+       * distinct prefix object once and hand out its edges to all of them. */
+      Map<byte[], Boolean> distinct = new IdentityHashMap<>();
+      List<byte[]> keyPrefixes = new ArrayList<>();
+      for (Request request : requests) {
+        for (byte[] keyPrefix : request.keys) {
+          if (distinct.put(keyPrefix, Boolean.TRUE) == null) {
+            keyPrefixes.add(keyPrefix);
+          }
+        }
+      }
+
+      Map<byte[], List<TorcSerializedEdge>> edgeLists = 
+          edgeListReader.apply(tableId, keyPrefixes);
+
+      for (Request request : requests) {
+        Map<byte[], List<TorcSerializedEdge>> result = 
+            new HashMap<>(request.size());
+        for (byte[] keyPrefix : request.keys) {
+          List<TorcSerializedEdge> edges = edgeLists.get(keyPrefix);
+          if (edges != null) {
+            result.put(keyPrefix, edges);
+          }
+        }
+        request.edgeListFuture.complete(result);
+      }
+    } catch (Throwable t) {
+      fail(requests, t);
+    }
+  }
+
+  private void serveObjects(List<Request> requests) {
+    try {
+      List<byte[]> keys = new ArrayList<>();
+      for (Request request : requests) {
+        keys.addAll(request.keys);
+      }
+
+      byte[][] values = objectReader.apply(keys);
+
+      int offset = 0;
+      for (Request request : requests) {
+        request.objectFuture.complete(Arrays.copyOfRange(values, offset, 
+            offset + request.size()));
+        offset += request.size();
+      }
+    } catch (Throwable t) {
+      fail(requests, t);
+    }
+  }
+
+  private static void fail(List<Request> requests, Throwable t) {
+    for (Request request : requests) {
+      request.fail(t);
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import net.ellitron.torc.util.TorcHelper;
+import net.ellitron.torc.util.UInt128;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.ElementHelper;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Buffers vertex and edge insertions and writes them to a TorcGraph in
+ * batches, for loading a live graph faster than one insertion at a time.
+ * Buffered vertices are written with multiwrites, and buffered edges are
+ * grouped by the edge list they go in so that each edge list is read and
+ * written only once per flush, however many edges are added to it.
+ *
+ * Insertions are not visible to readers until they are flushed, which
+ * happens automatically whenever batchSize insertions have been buffered,
+ * and when the writer is flushed or closed. Outside of a transaction a flush
+ * is not atomic, and edge lists being written by a batch must not be updated
+ * concurrently by other writers. Within a transaction the flushed writes
+ * become part of the transaction as usual. A writer is meant to be used by a
+ * single thread.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcBatchWriter implements AutoCloseable {
+
+  private final TorcGraph graph;
+  private final int batchSize;
+  private int bufferedCount = 0;
+
+  private final List<byte[]> vertexKeys = new ArrayList<>();
+  private final List<byte[]> vertexValues = new ArrayList<>();
+
+  /* Edges to prepend, grouped by edge list key prefix. */
+  private final Map<ByteBuffer, PendingEdgeList> edgeLists = 
+      new LinkedHashMap<>();
+
+  /* Vertices to add to index posting lists, grouped by key prefix. */
+  private final Map<ByteBuffer, List<UInt128>> indexLists = 
+      new LinkedHashMap<>();
+
+  /* Vertices to add to label membership lists, grouped by key prefix. */
+  private final Map<ByteBuffer, List<UInt128>> labelLists = 
+      new LinkedHashMap<>();
+
+  private static class PendingEdgeList {
+    final byte[] keyPrefix;
+    final List<UInt128> neighborIds = new ArrayList<>();
+    final List<byte[]> serializedPropList = new ArrayList<>();
+
+    PendingEdgeList(byte[] keyPrefix) {
+      this.keyPrefix = keyPrefix;
+    }
+  }
+
+  TorcBatchWriter(final TorcGraph graph, final int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "Batch size must be positive, got %d", batchSize));
+    }
+    this.graph = graph;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Buffers the insertion of a vertex. Takes the same arguments as
+   * {@link TorcGraph#addVertex(Object...)}, and likewise allocates an ID if
+   * none is given.
+   *
+   * @param keyValues ID, label and properties of the vertex.
+   *
+   * @return The new vertex.
+   */
+  public TorcVertex addVertex(final Object... keyValues) {
+    Object idValue = ElementHelper.getIdValue(keyValues).orElse(null);
+    final String label =
+        ElementHelper.getLabelValue(keyValues).orElse(Vertex.DEFAULT_LABEL);
+
+    UInt128 vertexId;
+    if (idValue != null) {
+      vertexId = UInt128.decode(idValue);
+    } else {
+      vertexId = graph.allocateVertexId();
+    }
+
+    Map<Object, Object> properties = TorcGraph.buildPropertyMap(keyValues);
+    List<byte[]> keys = new ArrayList<>();
+    List<byte[]> values = new ArrayList<>();
+    graph.serializeVertex(vertexId, label, properties, keys, values);
+
+    /* Fail here rather than part way through a flush. */
+    TorcGraph.checkVertexObjectSizes(values);
+
+    vertexKeys.addAll(keys);
+    vertexValues.addAll(values);
+
+    for (byte[] keyPrefix : graph.getIndexKeyPrefixes(label, properties)) {
+      indexLists.computeIfAbsent(ByteBuffer.wrap(keyPrefix), 
+          k -> new ArrayList<>()).add(vertexId);
+    }
+
+    if (graph.hasLabelLists()) {
+      labelLists.computeIfAbsent(
+          ByteBuffer.wrap(graph.getLabelListKeyPrefix(vertexId, label)), 
+          k -> new ArrayList<>()).add(vertexId);
+    }
+
+    TorcVertex vertex = new TorcVertex(graph, vertexId, label);
+    buffered();
+    return vertex;
+  }
+
+  /**
+   * Buffers the insertion of an edge between two vertices, which may
+   * themselves still be buffered in this writer.
+   *
+   * @param outVertex Vertex the edge goes out of.
+   * @param inVertex Vertex the edge goes into.
+   * @param label Label of the edge.
+   * @param keyValues Properties of the edge.
+   *
+   * @return The new edge.
+   */
+  public TorcEdge addEdge(final TorcVertex outVertex, 
+      final TorcVertex inVertex, final String label, 
+      final Object... keyValues) {
+    ElementHelper.validateLabel(label);
+
+    graph.fillLabels(Arrays.asList(outVertex, inVertex));
+
+    Map<Object, Object> properties = TorcGraph.buildPropertyMap(keyValues);
+    byte[] serializedProperties = TorcHelper.serializeObject(properties);
+
+    addToEdgeList(outVertex.id(), label, Direction.OUT, inVertex, 
+        serializedProperties);
+    addToEdgeList(inVertex.id(), label, Direction.IN, outVertex, 
+        serializedProperties);
+
+    TorcEdge edge = new TorcEdge(graph, outVertex.id(), inVertex.id(), label,
+        properties, serializedProperties);
+    buffered();
+    return edge;
+  }
+
+  /**
+   * Writes all buffered insertions to the graph.
+   */
+  public void flush() {
+    if (bufferedCount == 0) {
+      return;
+    }
+
+    List<byte[]> keyPrefixes = new ArrayList<>(edgeLists.size());
+    List<List<UInt128>> neighborIds = new ArrayList<>(edgeLists.size());
+    List<List<byte[]>> serializedPropLists = 
+        new ArrayList<>(edgeLists.size());
+    for (PendingEdgeList edgeList : edgeLists.values()) {
+      keyPrefixes.add(edgeList.keyPrefix);
+      neighborIds.add(edgeList.neighborIds);
+      serializedPropLists.add(edgeList.serializedPropList);
+    }
+
+    graph.writeBatch(vertexKeys, vertexValues, keyPrefixes, neighborIds,
+        serializedPropLists);
+
+    if (!indexLists.isEmpty()) {
+      graph.writeIndexBatch(keyPrefixes(indexLists), 
+          new ArrayList<>(indexLists.values()));
+    }
+
+    if (!labelLists.isEmpty()) {
+      graph.writeLabelListBatch(keyPrefixes(labelLists), 
+          new ArrayList<>(labelLists.values()));
+    }
+
+    vertexKeys.clear();
+    vertexValues.clear();
+    edgeLists.clear();
+    indexLists.clear();
+    labelLists.clear();
+    bufferedCount = 0;
+  }
+
+  /**
+   * Flushes any buffered insertions.
+   */
+  @Override
+  public void close() {
+    flush();
+  }
+
+  private void addToEdgeList(UInt128 baseVertexId, String label, 
+      Direction direction, TorcVertex neighbor, byte[] serializedProperties) {
+    byte[] keyPrefix = TorcHelper.getEdgeListKeyPrefix(baseVertexId, label, 
+        direction, neighbor.label());
+
+    PendingEdgeList edgeList = edgeLists.computeIfAbsent(
+        ByteBuffer.wrap(keyPrefix), k -> new PendingEdgeList(keyPrefix));
+    edgeList.neighborIds.add(neighbor.id());
+    edgeList.serializedPropList.add(serializedProperties);
+  }
+
+  private static List<byte[]> keyPrefixes(
+      Map<ByteBuffer, List<UInt128>> lists) {
+    List<byte[]> keyPrefixes = new ArrayList<>(lists.size());
+    for (ByteBuffer keyPrefix : lists.keySet()) {
+      keyPrefixes.add(keyPrefix.array());
+    }
+    return keyPrefixes;
+  }
+
+  private void buffered() {
+    if (++bufferedCount >= batchSize) {
+      flush();
+    }
+  }
+}
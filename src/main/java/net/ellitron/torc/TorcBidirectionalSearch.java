@@ -0,0 +1,230 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import net.ellitron.torc.util.UInt128;
+import net.ellitron.torc.util.UInt128ObjectMap;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Finds shortest paths between two vertices with a bidirectional breadth
+ * first search. One search goes forward from the source and one goes
+ * backward from the destination, and each step expands the whole frontier of
+ * whichever search has the smaller one, reading the edge lists of the entire
+ * frontier at once. The search stops after the level in which the two
+ * searches first meet, so only the edges within about half the path length
+ * of either end are read. Visited vertices are kept in primitive ID maps,
+ * together with their parents in the search tree.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+class TorcBidirectionalSearch {
+
+  /**
+   * Reads the edges of a frontier.
+   */
+  interface EdgeReader {
+    /**
+     * Reads the edges of each vertex of the frontier in the given direction.
+     *
+     * @return The edges of each vertex, in frontier order, with null for
+     * vertices without any.
+     */
+    List<List<TorcSerializedEdge>> read(List<TorcVertex> frontier, 
+        Direction dir);
+  }
+
+  /* Vertex visited by one of the searches. */
+  private static class Node {
+    final TorcVertex vertex;
+    final int depth;
+    /* Nodes one level closer to the root of the search from which this one
+     * was reached. Only the first is kept unless finding all paths. */
+    final List<Node> parents = new ArrayList<>(1);
+
+    Node(TorcVertex vertex, int depth) {
+      this.vertex = vertex;
+      this.depth = depth;
+    }
+  }
+
+  /* State of the search from one end. */
+  private static class Side {
+    final Direction dir;
+    final UInt128ObjectMap<Node> visited = new UInt128ObjectMap<>();
+    List<Node> frontier = new ArrayList<>();
+    int depth = 0;
+
+    Side(TorcVertex root, Direction dir) {
+      this.dir = dir;
+      Node node = new Node(root, 0);
+      visited.put(root.id(), node);
+      frontier.add(node);
+    }
+  }
+
+  private final EdgeReader reader;
+  private final Function<UInt128, TorcVertex> vertexFactory;
+
+  /**
+   * @param reader Reads the edges of a frontier.
+   * @param vertexFactory Creates the vertex with a given ID when the search
+   * first visits it.
+   */
+  TorcBidirectionalSearch(EdgeReader reader, 
+      Function<UInt128, TorcVertex> vertexFactory) {
+    this.reader = reader;
+    this.vertexFactory = vertexFactory;
+  }
+
+  /**
+   * Finds shortest paths from src to dst.
+   *
+   * @param src Source vertex.
+   * @param dst Destination vertex.
+   * @param dir Direction of the edges to follow from src towards dst.
+   * @param maxDepth Maximum length of a path, in edges.
+   * @param all Whether to find all shortest paths, rather than just one.
+   *
+   * @return Shortest paths from src to dst, each a list of vertices starting
+   * with src and ending with dst, or no paths if dst is not reachable from
+   * src within maxDepth edges.
+   */
+  List<List<TorcVertex>> run(TorcVertex src, TorcVertex dst, Direction dir, 
+      int maxDepth, boolean all) {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException(String.format(
+          "Maximum path length must not be negative, got %d", maxDepth));
+    }
+
+    if (src.id().equals(dst.id())) {
+      return Collections.singletonList(Collections.singletonList(src));
+    }
+
+    Side fwd = new Side(src, dir);
+    Side bwd = new Side(dst, dir.opposite());
+    while (fwd.depth + bwd.depth < maxDepth) {
+      Side side = (fwd.frontier.size() <= bwd.frontier.size()) ? fwd : bwd;
+      Side other = (side == fwd) ? bwd : fwd;
+
+      List<Node> meets = expand(side, other, all);
+      if (!meets.isEmpty()) {
+        List<List<TorcVertex>> paths = new ArrayList<>();
+        for (Node meet : meets) {
+          Node fwdNode = fwd.visited.get(meet.vertex.id());
+          Node bwdNode = bwd.visited.get(meet.vertex.id());
+          for (List<TorcVertex> head : pathsToRoot(fwdNode)) {
+            Collections.reverse(head);
+            for (List<TorcVertex> tail : pathsToRoot(bwdNode)) {
+              List<TorcVertex> path = 
+                  new ArrayList<>(head.size() + tail.size() - 1);
+              path.addAll(head);
+              path.addAll(tail.subList(1, tail.size()));
+              paths.add(path);
+            }
+          }
+        }
+        return paths;
+      }
+
+      if (side.frontier.isEmpty()) {
+        break;
+      }
+    }
+
+    return Collections.emptyList();
+  }
+
+  /*
+   * Expands the frontier of one side by a level. Returns the vertices newly
+   * visited by this side that the other side has already visited. Since the
+   * two sides have not met before, these are all exactly on the other side's
+   * frontier, and every shortest path goes through one of them. Unless
+   * finding all paths, stops at the first one.
+   */
+  private List<Node> expand(Side side, Side other, boolean all) {
+    List<TorcVertex> vertices = new ArrayList<>(side.frontier.size());
+    for (Node node : side.frontier) {
+      vertices.add(node.vertex);
+    }
+
+    List<List<TorcSerializedEdge>> edgeLists = reader.read(vertices, 
+        side.dir);
+
+    int depth = side.depth + 1;
+    List<Node> next = new ArrayList<>();
+    List<Node> meets = new ArrayList<>();
+    for (int i = 0; i < side.frontier.size(); i++) {
+      List<TorcSerializedEdge> edgeList = edgeLists.get(i);
+      if (edgeList == null) {
+        continue;
+      }
+
+      Node parent = side.frontier.get(i);
+      for (TorcSerializedEdge edge : edgeList) {
+        Node node = side.visited.get(edge.vertexId);
+        if (node == null) {
+          node = new Node(vertexFactory.apply(edge.vertexId), depth);
+          node.parents.add(parent);
+          side.visited.put(edge.vertexId, node);
+          next.add(node);
+
+          if (other.visited.get(edge.vertexId) != null) {
+            meets.add(node);
+            if (!all) {
+              return meets;
+            }
+          }
+        } else if (all && node.depth == depth 
+            && !node.parents.contains(parent)) {
+          node.parents.add(parent);
+        }
+      }
+    }
+
+    side.frontier = next;
+    side.depth = depth;
+    return meets;
+  }
+
+  /*
+   * Returns the paths from the node back to the root of its search, each
+   * starting with the node's vertex.
+   */
+  private static List<List<TorcVertex>> pathsToRoot(Node node) {
+    if (node.parents.isEmpty()) {
+      List<TorcVertex> path = new ArrayList<>();
+      path.add(node.vertex);
+      return Collections.singletonList(path);
+    }
+
+    List<List<TorcVertex>> paths = new ArrayList<>();
+    for (Node parent : node.parents) {
+      for (List<TorcVertex> parentPath : pathsToRoot(parent)) {
+        List<TorcVertex> path = new ArrayList<>(parentPath.size() + 1);
+        path.add(node.vertex);
+        path.addAll(parentPath);
+        paths.add(path);
+      }
+    }
+    return paths;
+  }
+}
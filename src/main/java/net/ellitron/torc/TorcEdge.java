@@ -196,6 +196,14 @@ public class TorcEdge implements Edge, Element {
     return v2.id();
   }
 
+  TorcVertex getV1() {
+    return v1;
+  }
+
+  TorcVertex getV2() {
+    return v2;
+  }
+
   /**
    * Returns the properties of this edge, if any.
    *
@@ -207,7 +215,8 @@ public class TorcEdge implements Edge, Element {
     } else {
       if (serializedProperties != null) {
         properties = (Map<Object, Object>)
-          TorcHelper.deserializeObject(serializedProperties);
+          TorcHelper.deserializeObject(serializedProperties,
+              graph.stringPool);
         return properties;
       } else {
         return null;
@@ -14,6 +14,8 @@
  */
 package net.ellitron.torc;
 
+import net.ellitron.torc.util.LZ4Codec;
+import net.ellitron.torc.util.ObjectCache;
 import net.ellitron.torc.util.TorcHelper;
 import net.ellitron.torc.util.UInt128;
 
@@ -24,6 +26,7 @@ import edu.stanford.ramcloud.RAMCloudTransaction;
 import edu.stanford.ramcloud.RAMCloudTransactionReadOp;
 import edu.stanford.ramcloud.Status;
 import edu.stanford.ramcloud.multiop.MultiReadObject;
+import edu.stanford.ramcloud.multiop.MultiWriteObject;
 
 import org.apache.tinkerpop.gremlin.structure.Direction;
 
@@ -34,6 +37,7 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * A collection of static methods for reading and writing edge lists to
@@ -132,6 +136,26 @@ public class TorcEdgeList {
    */
   private static final int DEFAULT_MAX_MULTIREAD_SIZE = 1 << 11;
 
+  /*
+   * Compression threshold used when none is given. A negative threshold
+   * disables compression, and lists created with compression disabled are
+   * stored in exactly the same format as before compression was supported.
+   */
+  private static final int DEFAULT_COMPRESSION_THRESHOLD = -1;
+
+  /*
+   * Edge lists created with compression enabled are "framed". In a framed
+   * list the high bit of the head segment's tail segment count is set, and
+   * the edges in every segment are preceded by a single codec byte that says
+   * whether they are stored raw or as an LZ4 block (prefixed with the raw
+   * length). Segments at or below the compression threshold are stored raw,
+   * so small lists pay only the codec byte. Whether a list is framed is
+   * decided when the list is created and never changes afterwards.
+   */
+  static final int FRAMED_LIST_FLAG = 0x80000000;
+  private static final byte SEGMENT_CODEC_RAW = 0x00;
+  private static final byte SEGMENT_CODEC_LZ4 = 0x01;
+
   public static boolean prepend(
       RAMCloudTransaction rctx,
       long rcTableId,
@@ -139,7 +163,8 @@ public class TorcEdgeList {
       UInt128 neighborId, 
       byte[] serializedProperties) {
     return prepend(rctx, rcTableId, keyPrefix, neighborId, serializedProperties,
-        DEFAULT_SEGMENT_SIZE_LIMIT, DEFAULT_SEGMENT_TARGET_SPLIT_POINT);
+        DEFAULT_SEGMENT_SIZE_LIMIT, DEFAULT_SEGMENT_TARGET_SPLIT_POINT,
+        DEFAULT_COMPRESSION_THRESHOLD);
   }
 
   public static boolean prepend(
@@ -149,7 +174,58 @@ public class TorcEdgeList {
       UInt128 neighborId, 
       byte[] serializedProperties) {
     return prepend(client, rcTableId, keyPrefix, neighborId, serializedProperties,
-        DEFAULT_SEGMENT_SIZE_LIMIT, DEFAULT_SEGMENT_TARGET_SPLIT_POINT);
+        DEFAULT_SEGMENT_SIZE_LIMIT, DEFAULT_SEGMENT_TARGET_SPLIT_POINT,
+        DEFAULT_COMPRESSION_THRESHOLD);
+  }
+
+  public static boolean prepend(
+      RAMCloudTransaction rctx,
+      long rcTableId,
+      byte[] keyPrefix,
+      UInt128 neighborId, 
+      byte[] serializedProperties,
+      int compressionThreshold) {
+    return prepend(rctx, rcTableId, keyPrefix, neighborId, serializedProperties,
+        DEFAULT_SEGMENT_SIZE_LIMIT, DEFAULT_SEGMENT_TARGET_SPLIT_POINT,
+        compressionThreshold);
+  }
+
+  public static boolean prepend(
+      RAMCloud client,
+      long rcTableId,
+      byte[] keyPrefix,
+      UInt128 neighborId, 
+      byte[] serializedProperties,
+      int compressionThreshold) {
+    return prepend(client, rcTableId, keyPrefix, neighborId, serializedProperties,
+        DEFAULT_SEGMENT_SIZE_LIMIT, DEFAULT_SEGMENT_TARGET_SPLIT_POINT,
+        compressionThreshold);
+  }
+
+  public static boolean prepend(
+      RAMCloudTransaction rctx,
+      long rcTableId,
+      byte[] keyPrefix,
+      UInt128 neighborId, 
+      byte[] serializedProperties,
+      int segment_size_limit,
+      int segment_target_split_point) {
+    return prepend(rctx, rcTableId, keyPrefix, neighborId, serializedProperties,
+        segment_size_limit, segment_target_split_point,
+        DEFAULT_COMPRESSION_THRESHOLD);
+  }
+
+  public static boolean prepend(
+      RAMCloud client,
+      long rcTableId,
+      byte[] keyPrefix,
+      UInt128 neighborId, 
+      byte[] serializedProperties,
+      int segment_size_limit,
+      int segment_target_split_point) {
+    return prepend(client, rcTableId, keyPrefix, neighborId, serializedProperties,
+        segment_size_limit, segment_target_split_point,
+        DEFAULT_COMPRESSION_THRESHOLD);
   }
 
   /**
@@ -168,6 +244,9 @@ public class TorcEdgeList {
    * @param serializedProperties Pre-serialized properties for this edge.
    * @param segment_size_limit Limit on the max size of segments.
    * @param segment_target_split_point Where to split when splitting is needed.
+   * @param compressionThreshold Segments larger than this many bytes are
+   * compressed if the list is framed. A negative value disables compression,
+   * and new lists are only created framed when compression is enabled.
    *
    * @return True if a new edge list was created, false otherwise.
    */
@@ -178,7 +257,8 @@ public class TorcEdgeList {
       UInt128 neighborId, 
       byte[] serializedProperties,
       int segment_size_limit,
-      int segment_target_split_point) {
+      int segment_target_split_point,
+      int compressionThreshold) {
     /* Read out the head segment. */
     ByteBuffer headSeg;
     byte[] headSegKey = getSegmentKey(keyPrefix, 0);
@@ -186,13 +266,11 @@ public class TorcEdgeList {
     try {
       RAMCloudObject headSegObj = rctx.read(rcTableId, headSegKey);
       if (headSegObj != null) {
-        headSeg = ByteBuffer.allocate(headSegObj.getValueBytes().length)
-            .order(ByteOrder.LITTLE_ENDIAN)
-            .put(headSegObj.getValueBytes());
-        headSeg.flip();
+        headSeg = decodeHeadSegment(headSegObj.getValueBytes());
       } else {
         headSeg = ByteBuffer.allocate(Integer.BYTES)
-            .order(ByteOrder.LITTLE_ENDIAN).putInt(0);
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(compressionThreshold >= 0 ? FRAMED_LIST_FLAG : 0);
         headSeg.flip();
         newList = true;
       }
@@ -215,6 +293,7 @@ public class TorcEdgeList {
         ByteBuffer.allocate(serializedEdge.capacity() + headSeg.capacity())
         .order(ByteOrder.LITTLE_ENDIAN);
     int majorSegments = headSeg.getInt();
+    boolean framed = isFramed(majorSegments);
     prependedSeg.putInt(majorSegments);
     prependedSeg.put(serializedEdge);
     prependedSeg.put(headSeg);
@@ -223,65 +302,21 @@ public class TorcEdgeList {
     /* Check if we need to split the head segment. */
     if (prependedSeg.capacity() <= segment_size_limit) {
       /* Common case, don't need to split. */
-      rctx.write(rcTableId, headSegKey, prependedSeg.array());
+      rctx.write(rcTableId, headSegKey,
+          encodeHeadSegment(prependedSeg.array(), compressionThreshold));
     } else {
       /* Head segment is too big, we need to find a good split point. In some
        * special cases we won't be able to split, like when the segment is just
        * one enormous edge. The following code sets splitIndex to the right
        * point to split the head segment. */
-      int splitIndex = prependedSeg.capacity();
-      int currentNumTailSegments = prependedSeg.getInt();
-      while (prependedSeg.hasRemaining()) {
-        int edgeStartPos = prependedSeg.position();
-        int nextEdgeStartPos = edgeStartPos + UInt128.BYTES + Short.BYTES 
-            + prependedSeg.getShort(edgeStartPos + UInt128.BYTES);
-
-        if (nextEdgeStartPos >= segment_target_split_point) {
-          /*
-           * The current edge either stradles the split point, or is right up
-           * against it.
-           *
-           *                                       nextEdgeStartPos
-           *            <--left-->          <--right-->   V
-           * ------|--------------------|-----------------|--------
-           *       ^                    ^
-           * edgeStartPos     DEFAULT_SEGMENT_TARGET_SPLIT_POINT
-           */
-          int left = segment_target_split_point - edgeStartPos;
-          int right = nextEdgeStartPos - segment_target_split_point;
-
-          if (right < left) {
-            /* Target split point is closer to the start of the next edge in
-             * the list than the start of this edge. In this case we generally
-             * want to split at the start of the next edge, except for a
-             * special case handled here. */
-            if (nextEdgeStartPos > segment_size_limit) {
-              /* Special case, the current edge extends beyond the size limit.
-               * To still enforce the size limit policy we choose not to keep
-               * this edge in the head segment. */
-              splitIndex = edgeStartPos;
-              break;
-            } else {
-              splitIndex = nextEdgeStartPos;
-              break;
-            }
-          } else {
-            /* Target split point is closer to the start of this edge than the
-             * next. In this case we choose to make this edge part of the newly
-             * created segment. */
-            splitIndex = edgeStartPos;
-            break;
-          }
-        }
-
-        prependedSeg.position(nextEdgeStartPos);
-      }
-
-      prependedSeg.rewind();
+      int currentNumTailSegments = prependedSeg.getInt(0);
+      int splitIndex = findSplitIndex(prependedSeg, segment_size_limit,
+          segment_target_split_point);
 
       if (splitIndex == prependedSeg.capacity()) {
         /* We have chosen not to split this segment. */
-        rctx.write(rcTableId, headSegKey, prependedSeg.array());
+        rctx.write(rcTableId, headSegKey,
+            encodeHeadSegment(prependedSeg.array(), compressionThreshold));
       } else {
         /* Split based on splitIndex. */
         ByteBuffer newHeadSeg = ByteBuffer.allocate(splitIndex)
@@ -298,10 +333,13 @@ public class TorcEdgeList {
         newTailSeg.put(prependedSeg.array(), splitIndex,
             prependedSeg.capacity() - splitIndex);
 
-        byte[] newTailSegKey = getSegmentKey(keyPrefix, newNumTailSegments);
+        byte[] newTailSegKey = getSegmentKey(keyPrefix,
+            newNumTailSegments & ~FRAMED_LIST_FLAG);
 
-        rctx.write(rcTableId, headSegKey, newHeadSeg.array());
-        rctx.write(rcTableId, newTailSegKey, newTailSeg.array());
+        rctx.write(rcTableId, headSegKey,
+            encodeHeadSegment(newHeadSeg.array(), compressionThreshold));
+        rctx.write(rcTableId, newTailSegKey, encodeTailSegment(
+              newTailSeg.array(), framed, compressionThreshold));
       }
     }
 
@@ -325,6 +363,9 @@ public class TorcEdgeList {
    * @param serializedProperties Pre-serialized properties for this edge.
    * @param segment_size_limit Limit on the max size of segments.
    * @param segment_target_split_point Where to split when splitting is needed.
+   * @param compressionThreshold Segments larger than this many bytes are
+   * compressed if the list is framed. A negative value disables compression,
+   * and new lists are only created framed when compression is enabled.
    *
    * @return True if a new edge list was created, false otherwise.
    */
@@ -335,7 +376,8 @@ public class TorcEdgeList {
       UInt128 neighborId, 
       byte[] serializedProperties,
       int segment_size_limit,
-      int segment_target_split_point) {
+      int segment_target_split_point,
+      int compressionThreshold) {
     /* Read out the head segment. */
     ByteBuffer headSeg;
     byte[] headSegKey = getSegmentKey(keyPrefix, 0);
@@ -343,13 +385,11 @@ public class TorcEdgeList {
     try {
       RAMCloudObject headSegObj = client.read(rcTableId, headSegKey);
       if (headSegObj != null) {
-        headSeg = ByteBuffer.allocate(headSegObj.getValueBytes().length)
-            .order(ByteOrder.LITTLE_ENDIAN)
-            .put(headSegObj.getValueBytes());
-        headSeg.flip();
+        headSeg = decodeHeadSegment(headSegObj.getValueBytes());
       } else {
         headSeg = ByteBuffer.allocate(Integer.BYTES)
-            .order(ByteOrder.LITTLE_ENDIAN).putInt(0);
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(compressionThreshold >= 0 ? FRAMED_LIST_FLAG : 0);
         headSeg.flip();
         newList = true;
       }
@@ -372,6 +412,7 @@ public class TorcEdgeList {
         ByteBuffer.allocate(serializedEdge.capacity() + headSeg.capacity())
         .order(ByteOrder.LITTLE_ENDIAN);
     int majorSegments = headSeg.getInt();
+    boolean framed = isFramed(majorSegments);
     prependedSeg.putInt(majorSegments);
     prependedSeg.put(serializedEdge);
     prependedSeg.put(headSeg);
@@ -380,65 +421,21 @@ public class TorcEdgeList {
     /* Check if we need to split the head segment. */
     if (prependedSeg.capacity() <= segment_size_limit) {
       /* Common case, don't need to split. */
-      client.write(rcTableId, headSegKey, prependedSeg.array(), null);
+      client.write(rcTableId, headSegKey,
+          encodeHeadSegment(prependedSeg.array(), compressionThreshold), null);
     } else {
       /* Head segment is too big, we need to find a good split point. In some
        * special cases we won't be able to split, like when the segment is just
        * one enormous edge. The following code sets splitIndex to the right
        * point to split the head segment. */
-      int splitIndex = prependedSeg.capacity();
-      int currentNumTailSegments = prependedSeg.getInt();
-      while (prependedSeg.hasRemaining()) {
-        int edgeStartPos = prependedSeg.position();
-        int nextEdgeStartPos = edgeStartPos + UInt128.BYTES + Short.BYTES 
-            + prependedSeg.getShort(edgeStartPos + UInt128.BYTES);
-
-        if (nextEdgeStartPos >= segment_target_split_point) {
-          /*
-           * The current edge either stradles the split point, or is right up
-           * against it.
-           *
-           *                                       nextEdgeStartPos
-           *            <--left-->          <--right-->   V
-           * ------|--------------------|-----------------|--------
-           *       ^                    ^
-           * edgeStartPos     DEFAULT_SEGMENT_TARGET_SPLIT_POINT
-           */
-          int left = segment_target_split_point - edgeStartPos;
-          int right = nextEdgeStartPos - segment_target_split_point;
-
-          if (right < left) {
-            /* Target split point is closer to the start of the next edge in
-             * the list than the start of this edge. In this case we generally
-             * want to split at the start of the next edge, except for a
-             * special case handled here. */
-            if (nextEdgeStartPos > segment_size_limit) {
-              /* Special case, the current edge extends beyond the size limit.
-               * To still enforce the size limit policy we choose not to keep
-               * this edge in the head segment. */
-              splitIndex = edgeStartPos;
-              break;
-            } else {
-              splitIndex = nextEdgeStartPos;
-              break;
-            }
-          } else {
-            /* Target split point is closer to the start of this edge than the
-             * next. In this case we choose to make this edge part of the newly
-             * created segment. */
-            splitIndex = edgeStartPos;
-            break;
-          }
-        }
-
-        prependedSeg.position(nextEdgeStartPos);
-      }
-
-      prependedSeg.rewind();
+      int currentNumTailSegments = prependedSeg.getInt(0);
+      int splitIndex = findSplitIndex(prependedSeg, segment_size_limit,
+          segment_target_split_point);
 
       if (splitIndex == prependedSeg.capacity()) {
         /* We have chosen not to split this segment. */
-        client.write(rcTableId, headSegKey, prependedSeg.array(), null);
+        client.write(rcTableId, headSegKey,
+            encodeHeadSegment(prependedSeg.array(), compressionThreshold), null);
       } else {
         /* Split based on splitIndex. */
         ByteBuffer newHeadSeg = ByteBuffer.allocate(splitIndex)
@@ -455,16 +452,261 @@ public class TorcEdgeList {
         newTailSeg.put(prependedSeg.array(), splitIndex,
             prependedSeg.capacity() - splitIndex);
 
-        byte[] newTailSegKey = getSegmentKey(keyPrefix, newNumTailSegments);
+        byte[] newTailSegKey = getSegmentKey(keyPrefix,
+            newNumTailSegments & ~FRAMED_LIST_FLAG);
 
-        client.write(rcTableId, headSegKey, newHeadSeg.array(), null);
-        client.write(rcTableId, newTailSegKey, newTailSeg.array(), null);
+        client.write(rcTableId, headSegKey,
+            encodeHeadSegment(newHeadSeg.array(), compressionThreshold), null);
+        client.write(rcTableId, newTailSegKey, encodeTailSegment(
+              newTailSeg.array(), framed, compressionThreshold), null);
       }
     }
 
     return newList;
   }
 
+  /*
+   * Finds the point at which to split a head segment that has grown past
+   * segment_size_limit after a prepend. Returns the capacity of the segment
+   * if it should not be split. Leaves the position of prependedSeg at zero.
+   */
+  private static int findSplitIndex(ByteBuffer prependedSeg,
+      int segment_size_limit, int segment_target_split_point) {
+    int splitIndex = prependedSeg.capacity();
+    prependedSeg.position(Integer.BYTES);
+    while (prependedSeg.hasRemaining()) {
+      int edgeStartPos = prependedSeg.position();
+      int nextEdgeStartPos = edgeStartPos + UInt128.BYTES + Short.BYTES 
+          + prependedSeg.getShort(edgeStartPos + UInt128.BYTES);
+
+      if (nextEdgeStartPos >= segment_target_split_point) {
+        /*
+         * The current edge either stradles the split point, or is right up
+         * against it.
+         *
+         *                                       nextEdgeStartPos
+         *            <--left-->          <--right-->   V
+         * ------|--------------------|-----------------|--------
+         *       ^                    ^
+         * edgeStartPos     DEFAULT_SEGMENT_TARGET_SPLIT_POINT
+         */
+        int left = segment_target_split_point - edgeStartPos;
+        int right = nextEdgeStartPos - segment_target_split_point;
+
+        if (right < left) {
+          /* Target split point is closer to the start of the next edge in
+           * the list than the start of this edge. In this case we generally
+           * want to split at the start of the next edge, except for a
+           * special case handled here. */
+          if (nextEdgeStartPos > segment_size_limit) {
+            /* Special case, the current edge extends beyond the size limit.
+             * To still enforce the size limit policy we choose not to keep
+             * this edge in the head segment. */
+            splitIndex = edgeStartPos;
+            break;
+          } else {
+            splitIndex = nextEdgeStartPos;
+            break;
+          }
+        } else {
+          /* Target split point is closer to the start of this edge than the
+           * next. In this case we choose to make this edge part of the newly
+           * created segment. */
+          splitIndex = edgeStartPos;
+          break;
+        }
+      }
+
+      prependedSeg.position(nextEdgeStartPos);
+    }
+
+    prependedSeg.rewind();
+
+    return splitIndex;
+  }
+
+  /**
+   * Prepends edges to many edge lists at once, with one read and one write
+   * of each list's head segment. The resulting lists are exactly those that
+   * would result from calling prepend() for each edge in turn. This version
+   * performs the operation outside of any transaction context, reading the
+   * head segments with multireads and writing the results with multiwrites,
+   * so the update is not atomic and assumes no other client is updating the
+   * same lists concurrently.
+   *
+   * @param client RAMCloud client to use to perform the operation.
+   * @param rcTableId The table in which the edge lists are (to be) stored.
+   * @param keyPrefixes Key prefixes of the edge lists. Must be distinct.
+   * @param neighborIds For each edge list, remote vertex Ids of the edges to
+   * prepend, in the order they are to be prepended.
+   * @param serializedPropLists For each edge list, pre-serialized properties
+   * of the edges to prepend. Same ordering as neighborIds.
+   * @param compressionThreshold Segments larger than this many bytes are
+   * compressed if the list is framed. A negative value disables compression,
+   * and new lists are only created framed when compression is enabled.
+   */
+  public static void batchPrepend(
+      RAMCloud client,
+      long rcTableId,
+      List<byte[]> keyPrefixes,
+      List<List<UInt128>> neighborIds,
+      List<List<byte[]>> serializedPropLists,
+      int compressionThreshold) {
+    List<byte[]> segKeys = new ArrayList<>();
+    List<byte[]> segValues = new ArrayList<>();
+
+    for (int base = 0; base < keyPrefixes.size(); 
+        base += DEFAULT_MAX_MULTIREAD_SIZE) {
+      int batchSize = 
+          Math.min(keyPrefixes.size() - base, DEFAULT_MAX_MULTIREAD_SIZE);
+      byte[][] headSegKeys = new byte[batchSize][];
+      for (int i = 0; i < batchSize; i++) {
+        headSegKeys[i] = getSegmentKey(keyPrefixes.get(base + i), 0);
+      }
+
+      byte[][] headSegValues = 
+          readSegments(client, null, rcTableId, headSegKeys);
+
+      for (int i = 0; i < batchSize; i++) {
+        prependAll(keyPrefixes.get(base + i), headSegValues[i], 
+            neighborIds.get(base + i), serializedPropLists.get(base + i),
+            compressionThreshold, segKeys, segValues);
+      }
+    }
+
+    for (int base = 0; base < segKeys.size(); 
+        base += DEFAULT_MAX_MULTIREAD_SIZE) {
+      int batchSize = 
+          Math.min(segKeys.size() - base, DEFAULT_MAX_MULTIREAD_SIZE);
+      MultiWriteObject[] requests = new MultiWriteObject[batchSize];
+      for (int i = 0; i < batchSize; i++) {
+        requests[i] = new MultiWriteObject(rcTableId, segKeys.get(base + i), 
+            segValues.get(base + i));
+      }
+
+      client.write(requests);
+
+      for (int i = 0; i < batchSize; i++) {
+        if (requests[i].getStatus() != Status.STATUS_OK) {
+          throw new RuntimeException("Segment write had status " + 
+              requests[i].getStatus());
+        }
+      }
+    }
+  }
+
+  /**
+   * Prepends edges to many edge lists at once, with one read and one write
+   * of each list's head segment. The resulting lists are exactly those that
+   * would result from calling prepend() for each edge in turn.
+   *
+   * @param rctx RAMCloud transaction in which to perform the operation.
+   * @param rcTableId The table in which the edge lists are (to be) stored.
+   * @param keyPrefixes Key prefixes of the edge lists. Must be distinct.
+   * @param neighborIds For each edge list, remote vertex Ids of the edges to
+   * prepend, in the order they are to be prepended.
+   * @param serializedPropLists For each edge list, pre-serialized properties
+   * of the edges to prepend. Same ordering as neighborIds.
+   * @param compressionThreshold Segments larger than this many bytes are
+   * compressed if the list is framed. A negative value disables compression,
+   * and new lists are only created framed when compression is enabled.
+   */
+  public static void batchPrepend(
+      RAMCloudTransaction rctx,
+      long rcTableId,
+      List<byte[]> keyPrefixes,
+      List<List<UInt128>> neighborIds,
+      List<List<byte[]>> serializedPropLists,
+      int compressionThreshold) {
+    List<byte[]> segKeys = new ArrayList<>();
+    List<byte[]> segValues = new ArrayList<>();
+
+    for (int i = 0; i < keyPrefixes.size(); i++) {
+      RAMCloudObject headSegObj;
+      try {
+        headSegObj = rctx.read(rcTableId, 
+            getSegmentKey(keyPrefixes.get(i), 0));
+      } catch (ClientException e) {
+        throw new RuntimeException(e);
+      }
+
+      prependAll(keyPrefixes.get(i), 
+          (headSegObj == null) ? null : headSegObj.getValueBytes(),
+          neighborIds.get(i), serializedPropLists.get(i),
+          compressionThreshold, segKeys, segValues);
+    }
+
+    for (int i = 0; i < segKeys.size(); i++) {
+      rctx.write(rcTableId, segKeys.get(i), segValues.get(i));
+    }
+  }
+
+  /*
+   * Applies prepend() of each of the given edges in turn to the head segment
+   * of a list in memory, using the default segment size limit and split
+   * point. Appends the keys and values of the segments that need to be
+   * written to segKeys and segValues: the tail segments split off along the
+   * way, followed by the final head segment. headSegValue is the stored
+   * value of the head segment, or null if the list does not exist yet.
+   */
+  static void prependAll(byte[] keyPrefix, byte[] headSegValue, 
+      List<UInt128> neighborIds, List<byte[]> serializedPropList, 
+      int compressionThreshold, List<byte[]> segKeys, List<byte[]> segValues) {
+    ByteBuffer headSeg;
+    if (headSegValue != null) {
+      headSeg = decodeHeadSegment(headSegValue);
+    } else {
+      headSeg = ByteBuffer.allocate(Integer.BYTES)
+          .order(ByteOrder.LITTLE_ENDIAN)
+          .putInt(compressionThreshold >= 0 ? FRAMED_LIST_FLAG : 0);
+      headSeg.flip();
+    }
+
+    boolean framed = isFramed(headSeg.getInt(0));
+    byte[] head = Arrays.copyOfRange(headSeg.array(), 
+        headSeg.arrayOffset(), headSeg.arrayOffset() + headSeg.limit());
+
+    for (int i = 0; i < neighborIds.size(); i++) {
+      byte[] serializedProperties = serializedPropList.get(i);
+
+      ByteBuffer prependedSeg = ByteBuffer.allocate(head.length + UInt128.BYTES
+          + Short.BYTES + serializedProperties.length)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      prependedSeg.put(head, 0, Integer.BYTES);
+      prependedSeg.put(neighborIds.get(i).toByteArray());
+      prependedSeg.putShort((short) serializedProperties.length);
+      prependedSeg.put(serializedProperties);
+      prependedSeg.put(head, Integer.BYTES, head.length - Integer.BYTES);
+      prependedSeg.flip();
+
+      int splitIndex = prependedSeg.capacity();
+      if (prependedSeg.capacity() > DEFAULT_SEGMENT_SIZE_LIMIT) {
+        splitIndex = findSplitIndex(prependedSeg, DEFAULT_SEGMENT_SIZE_LIMIT,
+            DEFAULT_SEGMENT_TARGET_SPLIT_POINT);
+      }
+
+      if (splitIndex == prependedSeg.capacity()) {
+        head = prependedSeg.array();
+      } else {
+        int newNumTailSegments = prependedSeg.getInt(0) + 1;
+
+        byte[] newTailSeg = Arrays.copyOfRange(prependedSeg.array(), 
+            splitIndex, prependedSeg.capacity());
+        segKeys.add(getSegmentKey(keyPrefix, 
+              newNumTailSegments & ~FRAMED_LIST_FLAG));
+        segValues.add(encodeTailSegment(newTailSeg, framed, 
+              compressionThreshold));
+
+        head = Arrays.copyOf(prependedSeg.array(), splitIndex);
+        ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(0, newNumTailSegments);
+      }
+    }
+
+    segKeys.add(getSegmentKey(keyPrefix, 0));
+    segValues.add(encodeHeadSegment(head, compressionThreshold));
+  }
+
   /**
    * This method takes an array of edges and creates the same set of RAMCloud
    * key / value pairs that would be created had the edges been added one by
@@ -489,6 +731,23 @@ public class TorcEdgeList {
       byte[] keyPrefix,
       List<UInt128> neighborIds, 
       List<byte[]> serializedPropList) {
+    writeListToFile(edgeListTableOS, keyPrefix, neighborIds,
+        serializedPropList, DEFAULT_COMPRESSION_THRESHOLD);
+  }
+
+  /**
+   * Same as {@link #writeListToFile(OutputStream, byte[], List, List)}, but
+   * writes a framed edge list with segments larger than compressionThreshold
+   * compressed when compressionThreshold is non-negative.
+   */
+  public static void writeListToFile(
+      OutputStream edgeListTableOS,
+      byte[] keyPrefix,
+      List<UInt128> neighborIds, 
+      List<byte[]> serializedPropList,
+      int compressionThreshold) {
+    boolean framed = compressionThreshold >= 0;
+
     /* General strategy here is to simulate the prepending of edges by
      * prepending edge lengths instead of actual edges and split by the sum of
      * the edge lengths in the list, and thus calculate how many edges should go
@@ -631,7 +890,8 @@ public class TorcEdgeList {
         // This is the head segment.
         segKey = getSegmentKey(keyPrefix, 0);
         // Special field in head segment for total number of tail segments.
-        segment.putInt(edgesPerSegment.size() - 1);
+        segment.putInt((edgesPerSegment.size() - 1) 
+            | (framed ? FRAMED_LIST_FLAG : 0));
       } else {
         // This is a tail segment.
         segKey = getSegmentKey(keyPrefix, i + 1);
@@ -654,7 +914,13 @@ public class TorcEdgeList {
         }
       }
 
-      byte[] segVal = segment.array();
+      byte[] segVal;
+      if (i == edgesPerSegment.size() - 1) {
+        segVal = encodeHeadSegment(segment.array(), compressionThreshold);
+      } else {
+        segVal = encodeTailSegment(segment.array(), framed,
+            compressionThreshold);
+      }
 
       keyLen.rewind();
       keyLen.putInt(segKey.length);
@@ -701,13 +967,11 @@ public class TorcEdgeList {
       throw new RuntimeException(e);
     }
 
-    ByteBuffer headSeg =
-        ByteBuffer.allocate(headSegObj.getValueBytes().length)
-        .order(ByteOrder.LITTLE_ENDIAN);
-    headSeg.put(headSegObj.getValueBytes());
-    headSeg.flip();
+    ByteBuffer headSeg = decodeHeadSegment(headSegObj.getValueBytes());
 
     int numTailSegments = headSeg.getInt();
+    boolean framed = isFramed(numTailSegments);
+    numTailSegments &= ~FRAMED_LIST_FLAG;
 
     while (headSeg.hasRemaining()) {
       byte[] neighborIdBytes = new byte[UInt128.BYTES];
@@ -757,11 +1021,8 @@ public class TorcEdgeList {
           continue;
         }
 
-        ByteBuffer tailSeg =
-            ByteBuffer.allocate(tailSegObj.getValueBytes().length)
-            .order(ByteOrder.LITTLE_ENDIAN);
-        tailSeg.put(tailSegObj.getValueBytes());
-        tailSeg.flip();
+        ByteBuffer tailSeg = decodeTailSegment(
+            tailSegObj.getValueBytes(), framed);
 
         while (tailSeg.hasRemaining()) {
           byte[] neighborIdBytes = new byte[UInt128.BYTES];
@@ -820,13 +1081,11 @@ public class TorcEdgeList {
       throw new RuntimeException(e);
     }
 
-    ByteBuffer headSeg =
-        ByteBuffer.allocate(headSegObj.getValueBytes().length)
-        .order(ByteOrder.LITTLE_ENDIAN);
-    headSeg.put(headSegObj.getValueBytes());
-    headSeg.flip();
+    ByteBuffer headSeg = decodeHeadSegment(headSegObj.getValueBytes());
 
     int numTailSegments = headSeg.getInt();
+    boolean framed = isFramed(numTailSegments);
+    numTailSegments &= ~FRAMED_LIST_FLAG;
 
     while (headSeg.hasRemaining()) {
       byte[] neighborIdBytes = new byte[UInt128.BYTES];
@@ -868,11 +1127,8 @@ public class TorcEdgeList {
           continue;
         }
 
-        ByteBuffer tailSeg =
-            ByteBuffer.allocate(tailSegObjs[i].getValueBytes().length)
-            .order(ByteOrder.LITTLE_ENDIAN);
-        tailSeg.put(tailSegObjs[i].getValueBytes());
-        tailSeg.flip();
+        ByteBuffer tailSeg = decodeTailSegment(
+            tailSegObjs[i].getValueBytes(), framed);
 
         while (tailSeg.hasRemaining()) {
           byte[] neighborIdBytes = new byte[UInt128.BYTES];
@@ -927,6 +1183,7 @@ public class TorcEdgeList {
       List<Direction> directions) {
     Map<byte[], LinkedList<RAMCloudTransactionReadOp>> readMap = new HashMap<>();
     Map<byte[], List<TorcEdge>> edgeMap = new HashMap<>();
+    Set<byte[]> framedLists = new HashSet<>();
 
     /* Async. read head segments. */
     for (byte[] kp : keyPrefixes) {
@@ -966,13 +1223,14 @@ public class TorcEdgeList {
         continue;
       }
 
-      ByteBuffer headSeg =
-          ByteBuffer.allocate(headSegObj.getValueBytes().length)
-          .order(ByteOrder.LITTLE_ENDIAN);
-      headSeg.put(headSegObj.getValueBytes());
-      headSeg.flip();
+      ByteBuffer headSeg = decodeHeadSegment(headSegObj.getValueBytes());
 
       int numTailSegments = headSeg.getInt();
+      boolean framed = isFramed(numTailSegments);
+      numTailSegments &= ~FRAMED_LIST_FLAG;
+      if (framed) {
+        framedLists.add(kp);
+      }
 
       while (headSeg.hasRemaining()) {
         byte[] neighborIdBytes = new byte[UInt128.BYTES];
@@ -1020,11 +1278,8 @@ public class TorcEdgeList {
         RAMCloudObject tailSegObj = readOp.getValue();
         readOp.close();
 
-        ByteBuffer tailSeg =
-            ByteBuffer.allocate(tailSegObj.getValueBytes().length)
-            .order(ByteOrder.LITTLE_ENDIAN);
-        tailSeg.put(tailSegObj.getValueBytes());
-        tailSeg.flip();
+        ByteBuffer tailSeg = decodeTailSegment(
+            tailSegObj.getValueBytes(), framedLists.contains(kp));
 
         while (tailSeg.hasRemaining()) {
           byte[] neighborIdBytes = new byte[UInt128.BYTES];
@@ -1066,8 +1321,30 @@ public class TorcEdgeList {
       RAMCloudTransaction rctx,
       long rcTableId,
       List<byte[]> keyPrefixes) {
+    return batchRead(rctx, rcTableId, keyPrefixes, null);
+  }
+
+  /**
+   * Batch reads in parallel the edges for all the given vertices that
+   * satisfy the given predicate on their properties. The predicate is
+   * evaluated on each edge's serialized properties as the segments are
+   * decoded, and edges that do not satisfy it are never materialized.
+   *
+   * @param rctx RAMCloud transaction in which to perform the operation.
+   * @param rcTableId The table in which the edge list is (to be) stored.
+   * @param keyPrefix List of key prefixes for the edge lists.
+   * @param filter Predicate on edge properties, or null for all edges.
+   *
+   * @return List of the matching edges contained in the edge lists.
+   */
+  public static Map<byte[], List<TorcSerializedEdge>> batchRead(
+      RAMCloudTransaction rctx,
+      long rcTableId,
+      List<byte[]> keyPrefixes,
+      PropertyPredicate filter) {
     Map<byte[], LinkedList<RAMCloudTransactionReadOp>> readMap = new HashMap<>();
     Map<byte[], List<TorcSerializedEdge>> eListMap = new HashMap<>();
+    Set<byte[]> framedLists = new HashSet<>();
 
     /* Async. read head segments. */
     for (byte[] kp : keyPrefixes) {
@@ -1101,31 +1378,19 @@ public class TorcEdgeList {
         continue;
       }
 
-      ByteBuffer headSeg =
-          ByteBuffer.allocate(headSegObj.getValueBytes().length)
-          .order(ByteOrder.LITTLE_ENDIAN);
-      headSeg.put(headSegObj.getValueBytes());
-      headSeg.flip();
+      ByteBuffer headSeg = decodeHeadSegment(headSegObj.getValueBytes());
 
       int numTailSegments = headSeg.getInt();
+      boolean framed = isFramed(numTailSegments);
+      numTailSegments &= ~FRAMED_LIST_FLAG;
+      if (framed) {
+        framedLists.add(kp);
+      }
 
-      if (headSeg.hasRemaining()) {
+      if (headSeg.hasRemaining() || numTailSegments > 0) {
         List<TorcSerializedEdge> eList = new LinkedList<>();
         eListMap.put(kp, eList);
-
-        while (headSeg.hasRemaining()) {
-          byte[] neighborIdBytes = new byte[UInt128.BYTES];
-          headSeg.get(neighborIdBytes);
-
-          UInt128 neighborId = new UInt128(neighborIdBytes);
-
-          short propLen = headSeg.getShort();
-
-          byte[] serializedProperties = new byte[propLen];
-          headSeg.get(serializedProperties);
-
-          eList.add(new TorcSerializedEdge(serializedProperties, neighborId));
-        }
+        decodeSerializedEdges(headSeg, eList, filter);
       }
 
       /* Queue up async. reads for tail segments. */
@@ -1150,25 +1415,10 @@ public class TorcEdgeList {
           RAMCloudObject tailSegObj = readOp.getValue();
           readOp.close();
 
-          ByteBuffer tailSeg =
-              ByteBuffer.allocate(tailSegObj.getValueBytes().length)
-              .order(ByteOrder.LITTLE_ENDIAN);
-          tailSeg.put(tailSegObj.getValueBytes());
-          tailSeg.flip();
-
-          while (tailSeg.hasRemaining()) {
-            byte[] neighborIdBytes = new byte[UInt128.BYTES];
-            tailSeg.get(neighborIdBytes);
-
-            UInt128 neighborId = new UInt128(neighborIdBytes);
+          ByteBuffer tailSeg = decodeTailSegment(
+              tailSegObj.getValueBytes(), framedLists.contains(kp));
 
-            short propLen = tailSeg.getShort();
-
-            byte[] serializedProperties = new byte[propLen];
-            tailSeg.get(serializedProperties);
-
-            eList.add(new TorcSerializedEdge(serializedProperties, neighborId));
-          }
+          decodeSerializedEdges(tailSeg, eList, filter);
         }
       }
     }
@@ -1183,6 +1433,7 @@ public class TorcEdgeList {
     public String edgeLabel;
     public Direction direction;
     public boolean isHeadSeg;
+    public boolean framed;
 
     public MultiReadSpec(byte[] keyPrefix, UInt128 baseVertexId, 
         String edgeLabel, Direction direction, boolean isHeadSeg) {
@@ -1217,14 +1468,44 @@ public class TorcEdgeList {
       List<UInt128> baseVertexIds,
       List<String> edgeLabels, 
       List<Direction> directions) {
-    LinkedList<MultiReadObject> requestQ = new LinkedList<>();
+    return batchRead(client, null, rcTableId, keyPrefixes, graph, 
+        baseVertexIds, edgeLabels, directions);
+  }
+
+  /**
+   * Batch reads in parallel all of the TorcEdges for all the given vertices,
+   * serving segments from the given cache where possible and caching the
+   * segments that are read from RAMCloud. This version performs the
+   * operation outside of any transaction context.
+   *
+   * @param client RAMCloud client to use to perform the operation.
+   * @param cache Cache of edge list segments, or null for none.
+   * @param rcTableId The table in which the edge list is (to be) stored.
+   * @param keyPrefix List of key prefixes for the edge lists.
+   * @param graph TorcGraph to which these edges belong. Used for creating
+   * TorcEdge objects.
+   * @param baseVertexId List of IDs of the vertices.
+   * @param label List of the edge labels.
+   * @param direction List of edge directions.
+   *
+   * @return List of all the TorcEdges contained in the edge lists.
+   */
+  public static Map<byte[], List<TorcEdge>> batchRead(
+      RAMCloud client,
+      ObjectCache cache,
+      long rcTableId,
+      List<byte[]> keyPrefixes,
+      TorcGraph graph, 
+      List<UInt128> baseVertexIds,
+      List<String> edgeLabels, 
+      List<Direction> directions) {
+    LinkedList<byte[]> requestQ = new LinkedList<>();
     LinkedList<MultiReadSpec> specQ = new LinkedList<>();
     Map<byte[], List<TorcEdge>> edgeMap = new HashMap<>();
 
     /* Add head segments to queue and prepare edgeMap. */
     for (int i = 0; i < keyPrefixes.size(); i++) {
-      byte[] headSegKey = getSegmentKey(keyPrefixes.get(i), 0);
-      requestQ.addLast(new MultiReadObject(rcTableId, headSegKey));
+      requestQ.addLast(getSegmentKey(keyPrefixes.get(i), 0));
       specQ.addLast(new MultiReadSpec(keyPrefixes.get(i), 
             baseVertexIds.get(i), edgeLabels.get(i), directions.get(i), true));
 
@@ -1235,41 +1516,38 @@ public class TorcEdgeList {
     /* Go through request queue and read at most MAX_ASYNC_READS at a time. */
     while (requestQ.size() > 0) {
       int batchSize = Math.min(requestQ.size(), DEFAULT_MAX_MULTIREAD_SIZE);
-      MultiReadObject[] requests = new MultiReadObject[batchSize];
+      byte[][] segKeys = new byte[batchSize][];
       for (int i = 0; i < batchSize; i++) {
-        requests[i] = requestQ.removeFirst();
+        segKeys[i] = requestQ.removeFirst();
       }
 
-      client.read(requests);
+      byte[][] segValues = readSegments(client, cache, rcTableId, segKeys);
 
-      /* Process this batch, adding more MultiReadObjects to the queue if
+      /* Process this batch, adding more segment keys to the queue if
        * needed. */
       for (int i = 0; i < batchSize; i++) {
         MultiReadSpec spec = specQ.removeFirst();
 
-        if (requests[i].getStatus() != Status.STATUS_OK) {
-          if (requests[i].getStatus() == Status.STATUS_OBJECT_DOESNT_EXIST) {
-            continue;
-          } else {
-            throw new RuntimeException("Segment had status " + 
-                requests[i].getStatus());
-          }
+        if (segValues[i] == null) {
+          continue;
         }
 
         List<TorcEdge> edgeList = edgeMap.get(spec.keyPrefix);
 
-        ByteBuffer seg =
-            ByteBuffer.allocate(requests[i].getValueBytes().length)
-            .order(ByteOrder.LITTLE_ENDIAN);
-        seg.put(requests[i].getValueBytes());
-        seg.flip();
+        ByteBuffer seg;
+        if (spec.isHeadSeg) {
+          seg = decodeHeadSegment(segValues[i]);
+        } else {
+          seg = decodeTailSegment(segValues[i], spec.framed);
+        }
 
         if (spec.isHeadSeg) {
           /* Queue up async. reads for tail segments. */
           int numTailSegments = seg.getInt();
+          spec.framed = isFramed(numTailSegments);
+          numTailSegments &= ~FRAMED_LIST_FLAG;
           for (int j = numTailSegments; j > 0; --j) {
-            byte[] tailSegKey = getSegmentKey(spec.keyPrefix, j);
-            requestQ.addLast(new MultiReadObject(rcTableId, tailSegKey));
+            requestQ.addLast(getSegmentKey(spec.keyPrefix, j));
             spec.isHeadSeg = false;
             specQ.addLast(spec);
           }
@@ -1319,43 +1597,80 @@ public class TorcEdgeList {
       RAMCloud client,
       long rcTableId,
       List<byte[]> keyPrefixes) {
-    LinkedList<MultiReadObject> requestQ = new LinkedList<>();
+    return batchRead(client, null, rcTableId, keyPrefixes);
+  }
+
+  /**
+   * Batch reads in parallel all of the edges for all the given vertices,
+   * serving segments from the given cache where possible and caching the
+   * segments that are read from RAMCloud. This version performs the
+   * operation outside of any transaction context.
+   *
+   * @param client RAMCloud client to use to perform the operation.
+   * @param cache Cache of edge list segments, or null for none.
+   * @param rcTableId The table in which the edge list is (to be) stored.
+   * @param keyPrefix List of key prefixes for the edge lists.
+   *
+   * @return List of all the edges contained in the edge lists.
+   */ 
+  public static Map<byte[], List<TorcSerializedEdge>> batchRead(
+      RAMCloud client,
+      ObjectCache cache,
+      long rcTableId,
+      List<byte[]> keyPrefixes) {
+    return batchRead(client, cache, rcTableId, keyPrefixes, null);
+  }
+
+  /**
+   * Batch reads in parallel the edges for all the given vertices that
+   * satisfy the given predicate on their properties, serving segments from
+   * the given cache where possible. The predicate is evaluated on each edge's
+   * serialized properties as the segments are decoded, and edges that do not
+   * satisfy it are never materialized. This version performs the operation
+   * outside of any transaction context.
+   *
+   * @param client RAMCloud client to use to perform the operation.
+   * @param cache Cache of edge list segments, or null for none.
+   * @param rcTableId The table in which the edge list is (to be) stored.
+   * @param keyPrefix List of key prefixes for the edge lists.
+   * @param filter Predicate on edge properties, or null for all edges.
+   *
+   * @return List of the matching edges contained in the edge lists.
+   */ 
+  public static Map<byte[], List<TorcSerializedEdge>> batchRead(
+      RAMCloud client,
+      ObjectCache cache,
+      long rcTableId,
+      List<byte[]> keyPrefixes,
+      PropertyPredicate filter) {
+    LinkedList<byte[]> requestQ = new LinkedList<>();
     LinkedList<MultiReadSpec> specQ = new LinkedList<>();
     Map<byte[], List<TorcSerializedEdge>> eListMap = new HashMap<>();
 
     /* Add head segments to queue and prepare edgeMap. */
     for (int i = 0; i < keyPrefixes.size(); i++) {
-      byte[] headSegKey = getSegmentKey(keyPrefixes.get(i), 0);
-      requestQ.addLast(new MultiReadObject(rcTableId, headSegKey));
+      requestQ.addLast(getSegmentKey(keyPrefixes.get(i), 0));
       specQ.addLast(new MultiReadSpec(keyPrefixes.get(i), 
             null, null, null, true));
     }
 
     /* Go through request queue and read at most MAX_ASYNC_READS at a time. */
-    ByteBuffer seg =
-        ByteBuffer.allocate(DEFAULT_SEGMENT_SIZE_LIMIT*2)
-        .order(ByteOrder.LITTLE_ENDIAN);
     while (requestQ.size() > 0) {
       int batchSize = Math.min(requestQ.size(), DEFAULT_MAX_MULTIREAD_SIZE);
-      MultiReadObject[] requests = new MultiReadObject[batchSize];
+      byte[][] segKeys = new byte[batchSize][];
       for (int i = 0; i < batchSize; i++) {
-        requests[i] = requestQ.removeFirst();
+        segKeys[i] = requestQ.removeFirst();
       }
 
-      client.read(requests);
+      byte[][] segValues = readSegments(client, cache, rcTableId, segKeys);
 
-      /* Process this batch, adding more MultiReadObjects to the queue if
+      /* Process this batch, adding more segment keys to the queue if
        * needed. */
       for (int i = 0; i < batchSize; i++) {
         MultiReadSpec spec = specQ.removeFirst();
 
-        if (requests[i].getStatus() != Status.STATUS_OK) {
-          if (requests[i].getStatus() == Status.STATUS_OBJECT_DOESNT_EXIST) {
-            continue;
-          } else {
-            throw new RuntimeException("Segment had status " + 
-                requests[i].getStatus());
-          }
+        if (segValues[i] == null) {
+          continue;
         }
 
         List<TorcSerializedEdge> eList;
@@ -1366,38 +1681,457 @@ public class TorcEdgeList {
           eListMap.put(spec.keyPrefix, eList);
         }
 
-        seg.clear();
-        seg.put(requests[i].getValueBytes());
-        seg.flip();
+        ByteBuffer seg;
+        if (spec.isHeadSeg) {
+          seg = decodeHeadSegment(segValues[i]);
+        } else {
+          seg = decodeTailSegment(segValues[i], spec.framed);
+        }
 
         if (spec.isHeadSeg) {
           /* Queue up async. reads for tail segments. */
           int numTailSegments = seg.getInt();
+          spec.framed = isFramed(numTailSegments);
+          numTailSegments &= ~FRAMED_LIST_FLAG;
           for (int j = numTailSegments; j > 0; --j) {
-            byte[] tailSegKey = getSegmentKey(spec.keyPrefix, j);
-            requestQ.addLast(new MultiReadObject(rcTableId, tailSegKey));
+            requestQ.addLast(getSegmentKey(spec.keyPrefix, j));
             spec.isHeadSeg = false;
             specQ.addLast(spec);
           }
         }
 
-        byte[] neighborIdBytes = new byte[UInt128.BYTES];
-        while (seg.hasRemaining()) {
-          seg.get(neighborIdBytes);
+        decodeSerializedEdges(seg, eList, filter);
+      }
+    }
 
-          UInt128 neighborId = new UInt128(neighborIdBytes);
+    return eListMap;
+  }
 
-          short propLen = seg.getShort();
+  /**
+   * Receives the edges of edge lists as they are decoded by
+   * {@link #stream}.
+   */
+  public interface EdgeVisitor {
+    /**
+     * Visits one edge.
+     *
+     * @param listIndex Index of the edge list's key prefix.
+     * @param neighborUpper Upper 64 bits of the neighbor vertex ID.
+     * @param neighborLower Lower 64 bits of the neighbor vertex ID.
+     * @param serializedProperties Buffer whose remaining bytes are the
+     * edge's serialized properties. Only valid during the call.
+     */
+    void visit(int listIndex, long neighborUpper, long neighborLower, 
+        ByteBuffer serializedProperties);
+  }
 
-          byte[] serializedProperties = new byte[propLen];
-          seg.get(serializedProperties);
+  /**
+   * Reads the given edge lists and passes each of their edges to the
+   * visitor as soon as its segment is decoded, without collecting the
+   * edges. At most window segments are read, and held, at a time, so memory
+   * use does not depend on the length of the lists. The edges of a list are
+   * visited in list order, but may be interleaved with the edges of other
+   * lists. This version performs the operation outside of any transaction
+   * context.
+   *
+   * @param client RAMCloud client to use to perform the operation.
+   * @param cache Cache of edge list segments, or null for none.
+   * @param rcTableId The table in which the edge lists are stored.
+   * @param keyPrefixes Key prefixes of the edge lists.
+   * @param window Maximum number of segments to read at a time.
+   * @param visitor Receives the edges.
+   */
+  public static void stream(
+      RAMCloud client,
+      ObjectCache cache,
+      long rcTableId,
+      List<byte[]> keyPrefixes,
+      int window,
+      EdgeVisitor visitor) {
+    stream(segKeys -> readSegments(client, cache, rcTableId, segKeys), 
+        keyPrefixes, window, visitor);
+  }
+
+  /**
+   * Same as {@link #stream(RAMCloud, ObjectCache, long, List, int,
+   * EdgeVisitor)}, but reads the edge lists in the given transaction. At
+   * most window reads are outstanding at a time.
+   *
+   * @param rctx RAMCloud transaction in which to perform the operation.
+   * @param rcTableId The table in which the edge lists are stored.
+   * @param keyPrefixes Key prefixes of the edge lists.
+   * @param window Maximum number of segments to read at a time.
+   * @param visitor Receives the edges.
+   */
+  public static void stream(
+      RAMCloudTransaction rctx,
+      long rcTableId,
+      List<byte[]> keyPrefixes,
+      int window,
+      EdgeVisitor visitor) {
+    stream(segKeys -> readSegments(rctx, rcTableId, segKeys), keyPrefixes,
+        window, visitor);
+  }
+
+  private static void stream(
+      Function<byte[][], byte[][]> reader,
+      List<byte[]> keyPrefixes,
+      int window,
+      EdgeVisitor visitor) {
+    if (window <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "Read window must be positive, got %d", window));
+    }
+
+    /* Tail segments still to be read, as parallel queues of list index,
+     * segment key and whether the list is framed. */
+    ArrayDeque<Integer> tailListQ = new ArrayDeque<>();
+    ArrayDeque<byte[]> tailKeyQ = new ArrayDeque<>();
+    ArrayDeque<Boolean> tailFramedQ = new ArrayDeque<>();
+
+    for (int base = 0; base < keyPrefixes.size(); base += window) {
+      int batchSize = Math.min(keyPrefixes.size() - base, window);
+      byte[][] segKeys = new byte[batchSize][];
+      for (int i = 0; i < batchSize; i++) {
+        segKeys[i] = getSegmentKey(keyPrefixes.get(base + i), 0);
+      }
+
+      byte[][] segValues = reader.apply(segKeys);
+
+      for (int i = 0; i < batchSize; i++) {
+        if (segValues[i] == null) {
+          continue;
+        }
+
+        ByteBuffer seg = decodeHeadSegment(segValues[i]);
+        segValues[i] = null;
+        int numTailSegments = seg.getInt();
+        boolean framed = isFramed(numTailSegments);
+        numTailSegments &= ~FRAMED_LIST_FLAG;
+        for (int j = numTailSegments; j > 0; --j) {
+          tailListQ.addLast(base + i);
+          tailKeyQ.addLast(getSegmentKey(keyPrefixes.get(base + i), j));
+          tailFramedQ.addLast(framed);
+        }
+
+        visitSegment(seg, base + i, visitor);
+      }
 
-          eList.add(new TorcSerializedEdge(serializedProperties, neighborId));
+      while (!tailKeyQ.isEmpty()) {
+        int tailBatchSize = Math.min(tailKeyQ.size(), window);
+        byte[][] tailKeys = new byte[tailBatchSize][];
+        for (int i = 0; i < tailBatchSize; i++) {
+          tailKeys[i] = tailKeyQ.removeFirst();
+        }
+
+        byte[][] tailValues = reader.apply(tailKeys);
+
+        for (int i = 0; i < tailBatchSize; i++) {
+          int listIndex = tailListQ.removeFirst();
+          boolean framed = tailFramedQ.removeFirst();
+          if (tailValues[i] == null) {
+            throw new RuntimeException(String.format("Edge list %d is "
+                  + "missing a tail segment", listIndex));
+          }
+
+          ByteBuffer seg = decodeTailSegment(tailValues[i], framed);
+          tailValues[i] = null;
+          visitSegment(seg, listIndex, visitor);
         }
       }
     }
+  }
 
-    return eListMap;
+  /*
+   * Passes the edges remaining in a decoded segment buffer to the visitor.
+   * Neighbor IDs are stored big-endian in an otherwise little-endian
+   * segment.
+   */
+  private static void visitSegment(ByteBuffer seg, int listIndex, 
+      EdgeVisitor visitor) {
+    ByteBuffer props = seg.duplicate();
+    while (seg.hasRemaining()) {
+      long upper = Long.reverseBytes(seg.getLong());
+      long lower = Long.reverseBytes(seg.getLong());
+      int propLen = seg.getShort();
+      int start = seg.position();
+
+      props.limit(props.capacity());
+      props.position(start);
+      props.limit(start + propLen);
+      visitor.visit(listIndex, upper, lower, props);
+
+      seg.position(start + propLen);
+    }
+  }
+
+  /*
+   * Reads the given segments in a transaction, all of them at once. Returns
+   * the value of each segment, or null for segments that do not exist.
+   */
+  private static byte[][] readSegments(RAMCloudTransaction rctx,
+      long rcTableId, byte[][] segKeys) {
+    RAMCloudTransactionReadOp[] readOps = 
+        new RAMCloudTransactionReadOp[segKeys.length];
+    byte[][] segValues = new byte[segKeys.length][];
+    try {
+      for (int i = 0; i < segKeys.length; i++) {
+        readOps[i] = new RAMCloudTransactionReadOp(rctx, rcTableId, 
+            segKeys[i], true);
+      }
+
+      for (int i = 0; i < segKeys.length; i++) {
+        RAMCloudObject obj = readOps[i].getValue();
+        readOps[i].close();
+        readOps[i] = null;
+        segValues[i] = (obj == null) ? null : obj.getValueBytes();
+      }
+    } catch (ClientException e) {
+      throw new RuntimeException(e);
+    } finally {
+      /* Only has reads left in it if we bailed out with an exception. */
+      for (RAMCloudTransactionReadOp readOp : readOps) {
+        if (readOp != null) {
+          readOp.close();
+        }
+      }
+    }
+
+    return segValues;
+  }
+
+  /*
+   * Reads the given segments of the table, serving them from cache where
+   * possible and reading the rest with a single multiread. Segments read
+   * from RAMCloud are inserted into the cache. Returns the value of each
+   * segment, or null for segments that do not exist.
+   */
+  private static byte[][] readSegments(RAMCloud client, ObjectCache cache,
+      long rcTableId, byte[][] segKeys) {
+    byte[][] segValues = new byte[segKeys.length][];
+    long stamp = (cache == null) ? 0 : cache.stamp();
+
+    int[] missIndexes = new int[segKeys.length];
+    int numMisses = 0;
+    for (int i = 0; i < segKeys.length; i++) {
+      if (cache != null) {
+        segValues[i] = cache.get(rcTableId, segKeys[i]);
+      }
+
+      if (segValues[i] == null) {
+        missIndexes[numMisses++] = i;
+      }
+    }
+
+    if (numMisses == 0) {
+      return segValues;
+    }
+
+    MultiReadObject[] requests = new MultiReadObject[numMisses];
+    for (int i = 0; i < numMisses; i++) {
+      requests[i] = new MultiReadObject(rcTableId, segKeys[missIndexes[i]]);
+    }
+
+    client.read(requests);
+
+    for (int i = 0; i < numMisses; i++) {
+      if (requests[i].getStatus() == Status.STATUS_OK) {
+        byte[] value = requests[i].getValueBytes();
+        segValues[missIndexes[i]] = value;
+        if (cache != null) {
+          cache.put(rcTableId, segKeys[missIndexes[i]], value, 
+              requests[i].getVersion(), stamp);
+        }
+      } else if (requests[i].getStatus() 
+          != Status.STATUS_OBJECT_DOESNT_EXIST) {
+        throw new RuntimeException("Segment had status " + 
+            requests[i].getStatus());
+      }
+    }
+
+    return segValues;
+  }
+
+  /**
+   * Returns the RAMCloud key of the head segment of an edge list. The head
+   * segment is the only segment of a list that is ever rewritten, so it is
+   * the only one that needs to be invalidated in a cache when the list is
+   * updated.
+   *
+   * @param keyPrefix RAMCloud key prefix for the list.
+   *
+   * @return Key of the head segment.
+   */
+  static byte[] getHeadSegmentKey(byte[] keyPrefix) {
+    return getSegmentKey(keyPrefix, 0);
+  }
+
+  /**
+   * Decodes the edges remaining in a segment buffer, as returned by
+   * decodeHeadSegment (after its tail segment count field has been consumed)
+   * or decodeTailSegment, and appends them to eList.
+   *
+   * @param seg Buffer positioned at the first edge of the segment.
+   * @param eList List to which to append the decoded edges.
+   */
+  static void decodeSerializedEdges(ByteBuffer seg,
+      List<TorcSerializedEdge> eList) {
+    decodeSerializedEdges(seg, eList, null);
+  }
+
+  /**
+   * Like decodeSerializedEdges(ByteBuffer, List), but skips edges whose
+   * serialized properties do not satisfy the given predicate.
+   *
+   * @param seg Buffer positioned at the first edge of the segment.
+   * @param eList List to which to append the decoded edges.
+   * @param filter Predicate on edge properties, or null for all edges.
+   */
+  static void decodeSerializedEdges(ByteBuffer seg,
+      List<TorcSerializedEdge> eList, PropertyPredicate filter) {
+    byte[] neighborIdBytes = new byte[UInt128.BYTES];
+    while (seg.hasRemaining()) {
+      seg.get(neighborIdBytes);
+
+      short propLen = seg.getShort();
+
+      if (filter != null && !filter.test(seg.array(), 
+            seg.arrayOffset() + seg.position(), propLen)) {
+        seg.position(seg.position() + propLen);
+        continue;
+      }
+
+      UInt128 neighborId = new UInt128(neighborIdBytes);
+
+      byte[] serializedProperties = new byte[propLen];
+      seg.get(serializedProperties);
+
+      eList.add(new TorcSerializedEdge(serializedProperties, neighborId));
+    }
+  }
+
+  private static boolean isFramed(int numTailSegmentsField) {
+    return (numTailSegmentsField & FRAMED_LIST_FLAG) != 0;
+  }
+
+  /**
+   * Decodes the value of a head segment as stored in RAMCloud. The returned
+   * buffer starts with the tail segment count field (with the framed flag
+   * still set for framed lists) followed by the uncompressed edges.
+   *
+   * @param value Head segment value read from RAMCloud.
+   *
+   * @return Little-endian ByteBuffer over the decoded head segment.
+   */
+  static ByteBuffer decodeHeadSegment(byte[] value) {
+    ByteBuffer seg = ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN);
+    if (isFramed(seg.getInt(0))) {
+      seg = ByteBuffer.wrap(unframeSegment(value, Integer.BYTES))
+          .order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return seg;
+  }
+
+  /**
+   * Decodes the value of a tail segment as stored in RAMCloud.
+   *
+   * @param value Tail segment value read from RAMCloud.
+   * @param framed Whether the list this segment belongs to is framed.
+   *
+   * @return Little-endian ByteBuffer over the uncompressed edges.
+   */
+  static ByteBuffer decodeTailSegment(byte[] value, boolean framed) {
+    if (framed) {
+      value = unframeSegment(value, 0);
+    }
+    return ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Encodes a raw head segment (tail segment count followed by edges) into
+   * the value to store in RAMCloud. Head segments of lists that are not
+   * framed are returned unchanged.
+   */
+  static byte[] encodeHeadSegment(byte[] rawSeg,
+      int compressionThreshold) {
+    int numTailSegmentsField = ByteBuffer.wrap(rawSeg)
+        .order(ByteOrder.LITTLE_ENDIAN).getInt(0);
+    if (!isFramed(numTailSegmentsField)) {
+      return rawSeg;
+    }
+    return frameSegment(rawSeg, Integer.BYTES, compressionThreshold);
+  }
+
+  /**
+   * Encodes a raw tail segment into the value to store in RAMCloud. Tail
+   * segments of lists that are not framed are returned unchanged.
+   */
+  static byte[] encodeTailSegment(byte[] rawSeg, boolean framed,
+      int compressionThreshold) {
+    if (!framed) {
+      return rawSeg;
+    }
+    return frameSegment(rawSeg, 0, compressionThreshold);
+  }
+
+  /*
+   * Inserts a codec byte after the first headerLen bytes of rawSeg, and
+   * compresses the bytes that follow if there are more than
+   * compressionThreshold of them and compressing actually saves space.
+   */
+  private static byte[] frameSegment(byte[] rawSeg, int headerLen, 
+      int compressionThreshold) {
+    int bodyLen = rawSeg.length - headerLen;
+
+    if (compressionThreshold >= 0 && bodyLen > compressionThreshold) {
+      int blockOff = headerLen + Byte.BYTES + Integer.BYTES;
+      byte[] buf = new byte[blockOff + LZ4Codec.maxCompressedLength(bodyLen)];
+      int blockLen = LZ4Codec.compress(rawSeg, headerLen, bodyLen, buf, 
+          blockOff);
+      if (Integer.BYTES + blockLen < bodyLen) {
+        ByteBuffer framedSeg = ByteBuffer.wrap(buf)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        framedSeg.put(rawSeg, 0, headerLen);
+        framedSeg.put(SEGMENT_CODEC_LZ4);
+        framedSeg.putInt(bodyLen);
+        return Arrays.copyOf(buf, blockOff + blockLen);
+      }
+    }
+
+    byte[] framedSeg = new byte[rawSeg.length + Byte.BYTES];
+    System.arraycopy(rawSeg, 0, framedSeg, 0, headerLen);
+    framedSeg[headerLen] = SEGMENT_CODEC_RAW;
+    System.arraycopy(rawSeg, headerLen, framedSeg, headerLen + Byte.BYTES,
+        bodyLen);
+    return framedSeg;
+  }
+
+  /*
+   * Inverse of frameSegment. Returns the first headerLen bytes of the framed
+   * segment followed by the uncompressed edges.
+   */
+  private static byte[] unframeSegment(byte[] framedSeg, int headerLen) {
+    byte codec = framedSeg[headerLen];
+    int bodyOff = headerLen + Byte.BYTES;
+    if (codec == SEGMENT_CODEC_RAW) {
+      byte[] rawSeg = new byte[framedSeg.length - Byte.BYTES];
+      System.arraycopy(framedSeg, 0, rawSeg, 0, headerLen);
+      System.arraycopy(framedSeg, bodyOff, rawSeg, headerLen,
+          framedSeg.length - bodyOff);
+      return rawSeg;
+    } else if (codec == SEGMENT_CODEC_LZ4) {
+      int rawLen = ByteBuffer.wrap(framedSeg).order(ByteOrder.LITTLE_ENDIAN)
+          .getInt(bodyOff);
+      int blockOff = bodyOff + Integer.BYTES;
+      byte[] rawSeg = new byte[headerLen + rawLen];
+      System.arraycopy(framedSeg, 0, rawSeg, 0, headerLen);
+      LZ4Codec.decompress(framedSeg, blockOff, framedSeg.length - blockOff,
+          rawSeg, headerLen, rawLen);
+      return rawSeg;
+    } else {
+      throw new RuntimeException(String.format(
+            "Unrecognized edge list segment codec: %d", codec));
+    }
   }
 
   /**
@@ -1408,7 +2142,7 @@ public class TorcEdgeList {
    *
    * @return Byte array representing the RAMCloud key.
    */
-  private static byte[] getSegmentKey(byte[] keyPrefix, int segmentNumber) {
+  static byte[] getSegmentKey(byte[] keyPrefix, int segmentNumber) {
     ByteBuffer buffer =
         ByteBuffer.allocate(keyPrefix.length + Integer.BYTES)
         .order(ByteOrder.LITTLE_ENDIAN);
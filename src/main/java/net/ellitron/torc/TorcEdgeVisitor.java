@@ -0,0 +1,46 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the edges of a streaming traversal (see
+ * {@link TorcGraph#traverse(java.util.Collection, String,
+ * org.apache.tinkerpop.gremlin.structure.Direction, TorcEdgeVisitor,
+ * String...)}) one at a time, straight from the decoded edge list segments.
+ * Nothing passed to the visitor other than the base vertex may be kept after
+ * the call returns. The serialized properties can be decoded with
+ * TorcHelper.deserializeObject(props.array(), props.arrayOffset() +
+ * props.position()).
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+@FunctionalInterface
+public interface TorcEdgeVisitor {
+
+  /**
+   * Visits one edge.
+   *
+   * @param base Vertex whose edge list the edge was read from.
+   * @param neighborLabel Label of the neighbor vertex.
+   * @param neighborUpper Upper 64 bits of the neighbor vertex ID.
+   * @param neighborLower Lower 64 bits of the neighbor vertex ID.
+   * @param serializedProperties Buffer whose remaining bytes are the edge's
+   * serialized properties.
+   */
+  void visit(TorcVertex base, String neighborLabel, long neighborUpper,
+      long neighborLower, ByteBuffer serializedProperties);
+}
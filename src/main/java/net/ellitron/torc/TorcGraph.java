@@ -14,12 +14,19 @@
  */
 package net.ellitron.torc;
 
+import net.ellitron.torc.util.ObjectCache;
+import net.ellitron.torc.util.PropertyMap;
+import net.ellitron.torc.util.StringPool;
 import net.ellitron.torc.util.TorcHelper;
 import net.ellitron.torc.util.UInt128;
+import net.ellitron.torc.util.UInt128ObjectMap;
+import net.ellitron.torc.util.UInt128Set;
+import net.ellitron.torc.util.VertexLabelCache;
 
 import edu.stanford.ramcloud.*;
 import edu.stanford.ramcloud.ClientException.*;
 import edu.stanford.ramcloud.multiop.MultiReadObject;
+import edu.stanford.ramcloud.multiop.MultiWriteObject;
 
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
@@ -27,6 +34,7 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.log4j.Logger;
 
 import org.apache.tinkerpop.gremlin.process.computer.GraphComputer;
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
 import org.apache.tinkerpop.gremlin.structure.Direction;
 import org.apache.tinkerpop.gremlin.structure.Edge;
@@ -36,6 +44,7 @@ import org.apache.tinkerpop.gremlin.structure.Property;
 import org.apache.tinkerpop.gremlin.structure.T;
 import org.apache.tinkerpop.gremlin.structure.Transaction;
 import org.apache.tinkerpop.gremlin.structure.util.AbstractTransaction;
+import org.apache.tinkerpop.gremlin.structure.util.CloseableIterator;
 import org.apache.tinkerpop.gremlin.structure.util.ElementHelper;
 import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
@@ -48,8 +57,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Collections;
 import java.util.Collection;
@@ -58,6 +69,8 @@ import java.util.function.Consumer;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Map;
@@ -110,26 +123,189 @@ public final class TorcGraph implements Graph {
       "gremlin.torc.rcImageCreationMode";
   public static final String CONFIG_RC_IMAGE_DIRECTORY =
       "gremlin.torc.rcImageDirectory";
+  /*
+   * Vertex property objects and edge list segments larger than this many
+   * bytes are LZ4 compressed before being stored in RAMCloud. Compression is
+   * disabled when this parameter is not set. Reads are self-describing, so
+   * graphs written with and without compression can be read either way.
+   */
+  public static final String CONFIG_COMPRESSION_THRESHOLD =
+      "gremlin.torc.compressionThreshold";
+  /*
+   * Number of distinct strings to keep in the pool used to canonicalize
+   * string property keys and values as this graph deserializes them. Graphs
+   * that repeat a small set of values across many elements save heap this
+   * way. Each graph has its own pool, so the setting only affects the graph
+   * it configures. Pooling is disabled when this parameter is not set or is
+   * 0.
+   */
+  public static final String CONFIG_STRING_POOL_SIZE =
+      "gremlin.torc.stringPoolSize";
+  /*
+   * Layout in which to store vertex properties. With the default "object"
+   * layout all of a vertex's properties are serialized together into one
+   * RAMCloud object. With the "perKey" layout each property is stored in its
+   * own object, so that updating a property does not need to read and rewrite
+   * all the others, and concurrent updates of different properties of the
+   * same vertex do not conflict. CONFIG_PER_KEY_PROPERTY_LABELS can instead
+   * be used to select the "perKey" layout only for vertices with certain
+   * labels. The layout is recorded with each vertex, so readers work with
+   * either.
+   */
+  public static final String CONFIG_PROPERTY_LAYOUT =
+      "gremlin.torc.propertyLayout";
+  public static final String CONFIG_PER_KEY_PROPERTY_LABELS =
+      "gremlin.torc.perKeyPropertyLabels";
+  /*
+   * Maximum number of vertex labels to cache on the client. Vertex labels
+   * never change, so cached labels are always valid. Defaults to
+   * DEFAULT_LABEL_CACHE_SIZE, and 0 disables the cache.
+   */
+  public static final String CONFIG_LABEL_CACHE_SIZE =
+      "gremlin.torc.labelCacheSize";
+  /*
+   * Maximum number of bytes of vertex property objects and edge list
+   * segments to cache on the client. Only reads made outside of a
+   * transaction are served from the cache, and cached objects are re-read
+   * from RAMCloud once they are older than CONFIG_NEAR_CACHE_TTL
+   * milliseconds (DEFAULT_NEAR_CACHE_TTL by default), so updates made by
+   * other clients may go unseen for up to that long. Meant for read-mostly
+   * workloads. Disabled when this parameter is not set.
+   */
+  public static final String CONFIG_NEAR_CACHE_SIZE =
+      "gremlin.torc.nearCacheSize";
+  public static final String CONFIG_NEAR_CACHE_TTL =
+      "gremlin.torc.nearCacheTTL";
+  /*
+   * Vertices added without an ID are given one automatically. Each thread
+   * leases blocks of CONFIG_ID_BLOCK_SIZE IDs at a time (DEFAULT_ID_BLOCK_SIZE
+   * by default) from a counter in the ID table, and hands them out without
+   * further RPCs. The upper 64 bits of allocated IDs are set to
+   * CONFIG_ID_PREFIX (DEFAULT_ID_PREFIX by default), and each prefix has its
+   * own counter, so writers using different prefixes never contend on the
+   * same counter object. The prefix should be chosen so that allocated IDs
+   * cannot collide with IDs that are supplied explicitly.
+   */
+  public static final String CONFIG_ID_BLOCK_SIZE =
+      "gremlin.torc.idBlockSize";
+  public static final String CONFIG_ID_PREFIX =
+      "gremlin.torc.idPrefix";
+  /*
+   * Vertex properties to index, each given as "label.key". Vertices with an
+   * indexed property can be found by its value with lookup(), and has()
+   * steps on indexed properties following g.V() use the index. Indexes are
+   * maintained by addVertex, setVertexProperty and TorcBatchWriter; vertices
+   * loaded from an image or written before a property was indexed are not
+   * indexed.
+   */
+  public static final String CONFIG_INDEXED_PROPERTIES =
+      "gremlin.torc.indexedProperties";
+  /*
+   * Number of threads, each with its own RAMCloud client, used to process
+   * the objects of a table during a full table scan (scanVertices,
+   * scanEdges, and g.V() or g.E() without IDs). Defaults to
+   * DEFAULT_SCAN_THREADS.
+   */
+  public static final String CONFIG_SCAN_THREADS =
+      "gremlin.torc.scanThreads";
+  /*
+   * When set to true, a membership list of the vertices with each label is
+   * kept, so that the vertices with a label can be found without scanning
+   * the vertex table (see verticesByLabel). g.V().hasLabel() uses these
+   * lists. Each label's list is split by vertex ID into
+   * CONFIG_LABEL_LIST_PARTITIONS partitions (DEFAULT_LABEL_LIST_PARTITIONS
+   * by default), so that writers adding vertices with the same label rarely
+   * update the same list, and the partitions are read in parallel. Lists
+   * are maintained by addVertex, TorcBatchWriter and loadVertex, and a graph
+   * must always be opened with the same number of partitions.
+   */
+  public static final String CONFIG_LABEL_LISTS =
+      "gremlin.torc.labelLists";
+  public static final String CONFIG_LABEL_LIST_PARTITIONS =
+      "gremlin.torc.labelListPartitions";
+  /*
+   * Number of I/O threads, each with its own RAMCloud client, serving the
+   * reads of the asynchronous API (traverseAsync, fillPropertiesAsync,
+   * verticesAsync and batchReadAsync). Defaults to DEFAULT_ASYNC_THREADS.
+   */
+  public static final String CONFIG_ASYNC_THREADS =
+      "gremlin.torc.asyncThreads";
+  /*
+   * Number of long-lived threads, each with its own RAMCloud client, on
+   * which the hops of multi-hop traversals (traverse with a list of
+   * HopSpecs, and traverseFrontier) run as a pipeline. A traversal runs its
+   * hops one after the other in the calling thread instead when fewer
+   * threads than it has hops are free. Defaults to DEFAULT_PIPELINE_THREADS.
+   */
+  public static final String CONFIG_PIPELINE_THREADS =
+      "gremlin.torc.pipelineThreads";
 
   // Constants.
   private static final String ID_TABLE_NAME = "idTable";
   private static final String VERTEX_TABLE_NAME = "vertexTable";
   private static final String EDGELIST_TABLE_NAME = "edgeListTable";
+  private static final String INDEX_TABLE_NAME = "indexTable";
+  private static final String LABEL_LIST_TABLE_NAME = "labelListTable";
+  private static final byte[] EMPTY_PROPERTIES = new byte[0];
   private static final int MAX_TX_RETRY_COUNT = 100;
   private static final int RAMCLOUD_OBJECT_SIZE_LIMIT = 1 << 20;
+  // Max number of reads to issue in a multiread / batch
+  private static final int DEFAULT_MAX_MULTIREAD_SIZE = 1 << 11; 
+  // Max number of writes to issue in a multiwrite
+  private static final int DEFAULT_MAX_MULTIWRITE_SIZE = 1 << 11;
+  // Max number of transactional reads to keep in flight at once
+  private static final int DEFAULT_MAX_ASYNC_READS = 1 << 7;
+  private static final int DEFAULT_LABEL_CACHE_SIZE = 1 << 16;
+  private static final long DEFAULT_NEAR_CACHE_TTL = 1000;
+  private static final int DEFAULT_BATCH_SIZE = 1 << 11;
+  private static final int DEFAULT_SCAN_THREADS = 4;
+  private static final int DEFAULT_LABEL_LIST_PARTITIONS = 16;
+  private static final int DEFAULT_ASYNC_THREADS = 2;
+  private static final int DEFAULT_PIPELINE_THREADS = 8;
+  private static final long DEFAULT_ID_BLOCK_SIZE = 10000;
+  private static final long DEFAULT_ID_PREFIX = 0x8000000000000000L;
+  private static final String ID_COUNTER_KEY_PREFIX = "vertexIdCounter:";
 
   // Normal private members.
   private Configuration configuration;
   private String coordinatorLocator;
   private boolean rcImageCreationMode = false;
   private String rcImageDir;
-  private OutputStream vertexTableOS, edgeListTableOS;
+  private OutputStream vertexTableOS, edgeListTableOS, labelListTableOS;
   private int totalMasterServers;
   private int dpdkPort;
   private ConcurrentHashMap<Thread, RAMCloud> threadLocalClientMap;
-  private long idTableId, vertexTableId, edgeListTableId;
+  private long idTableId, vertexTableId, edgeListTableId, indexTableId,
+      labelListTableId;
   private String graphName;
   private TorcGraphTransaction torcGraphTx;
+  private int compressionThreshold = -1;
+  private boolean perKeyPropertyLayout = false;
+  private Set<String> perKeyPropertyLabels = Collections.emptySet();
+  private VertexLabelCache labelCache = null;
+  /* Canonicalizes deserialized strings when set. Read by TorcEdge. */
+  StringPool stringPool = null;
+  private ObjectCache nearCache = null;
+  private Map<String, Set<String>> indexedProperties = Collections.emptyMap();
+  private int scanThreads;
+  private boolean labelLists = false;
+  private int labelListPartitions;
+  private int asyncThreads;
+  /* Serves the asynchronous API. Started on first use. */
+  private TorcAsyncReader asyncReader = null;
+  private int pipelineThreads;
+  /* Runs the hops of multi-hop traversals. Started on first use. */
+  private TorcWorkerPool pipelinePool = null;
+  /* Membership lists of vertices loaded in image creation mode, written to
+   * the image when the graph is closed. */
+  private final Map<ByteBuffer, List<UInt128>> labelListImageMap = 
+      new LinkedHashMap<>();
+  private long idBlockSize;
+  private long idPrefix;
+  private byte[] idCounterKey;
+  /* Each thread's current block of IDs, as {next ID, end of block}. */
+  private final ConcurrentHashMap<Thread, long[]> threadLocalIdBlockMap =
+      new ConcurrentHashMap<>();
 
   /* Set by enableTx() and disableTx(). Controls whether or not reads and writes
    * are performed in a transaction context. TorcDB's default behavior is to
@@ -148,6 +324,99 @@ public final class TorcGraph implements Graph {
 
     graphName = configuration.getString(CONFIG_GRAPH_NAME);
 
+    if (configuration.containsKey(CONFIG_COMPRESSION_THRESHOLD)) {
+      compressionThreshold = 
+          configuration.getInt(CONFIG_COMPRESSION_THRESHOLD);
+    }
+
+    int stringPoolSize = configuration.getInt(CONFIG_STRING_POOL_SIZE, 0);
+    if (stringPoolSize > 0) {
+      stringPool = new StringPool(stringPoolSize,
+          TorcHelper.DEFAULT_STRING_POOL_MAX_LENGTH,
+          TorcHelper.DEFAULT_CHAR_ENCODING);
+    }
+
+    if (configuration.containsKey(CONFIG_PROPERTY_LAYOUT)) {
+      String layout = configuration.getString(CONFIG_PROPERTY_LAYOUT);
+      if (layout.equals("perKey")) {
+        perKeyPropertyLayout = true;
+      } else if (!layout.equals("object")) {
+        throw new IllegalArgumentException(String.format("Unrecognized "
+            + "property layout: %s (must be \"object\" or \"perKey\")",
+            layout));
+      }
+    }
+
+    if (configuration.containsKey(CONFIG_PER_KEY_PROPERTY_LABELS)) {
+      perKeyPropertyLabels = new HashSet<>(Arrays.asList(
+          configuration.getStringArray(CONFIG_PER_KEY_PROPERTY_LABELS)));
+    }
+
+    int labelCacheSize = configuration.getInt(CONFIG_LABEL_CACHE_SIZE,
+        DEFAULT_LABEL_CACHE_SIZE);
+    if (labelCacheSize > 0) {
+      labelCache = new VertexLabelCache(labelCacheSize);
+    }
+
+    if (configuration.containsKey(CONFIG_NEAR_CACHE_SIZE)) {
+      nearCache = new ObjectCache(
+          configuration.getLong(CONFIG_NEAR_CACHE_SIZE),
+          configuration.getLong(CONFIG_NEAR_CACHE_TTL, 
+            DEFAULT_NEAR_CACHE_TTL));
+    }
+
+    if (configuration.containsKey(CONFIG_INDEXED_PROPERTIES)) {
+      indexedProperties = new HashMap<>();
+      for (String property : 
+          configuration.getStringArray(CONFIG_INDEXED_PROPERTIES)) {
+        int dot = property.indexOf('.');
+        if (dot <= 0 || dot == property.length() - 1) {
+          throw new IllegalArgumentException(String.format("Indexed "
+              + "property must be given as \"label.key\", got \"%s\"", 
+              property));
+        }
+        indexedProperties.computeIfAbsent(property.substring(0, dot), 
+            l -> new HashSet<>()).add(property.substring(dot + 1));
+      }
+    }
+
+    scanThreads = configuration.getInt(CONFIG_SCAN_THREADS, 
+        DEFAULT_SCAN_THREADS);
+
+    labelLists = configuration.getBoolean(CONFIG_LABEL_LISTS, false);
+    labelListPartitions = configuration.getInt(CONFIG_LABEL_LIST_PARTITIONS,
+        DEFAULT_LABEL_LIST_PARTITIONS);
+    if (labelListPartitions <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "Number of label list partitions must be positive, got %d", 
+          labelListPartitions));
+    }
+
+    asyncThreads = configuration.getInt(CONFIG_ASYNC_THREADS, 
+        DEFAULT_ASYNC_THREADS);
+    if (asyncThreads <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "Number of async threads must be positive, got %d", asyncThreads));
+    }
+
+    pipelineThreads = configuration.getInt(CONFIG_PIPELINE_THREADS, 
+        DEFAULT_PIPELINE_THREADS);
+    if (pipelineThreads <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "Number of pipeline threads must be positive, got %d", 
+          pipelineThreads));
+    }
+
+    idBlockSize = configuration.getLong(CONFIG_ID_BLOCK_SIZE, 
+        DEFAULT_ID_BLOCK_SIZE);
+    if (idBlockSize <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "ID block size must be positive, got %d", idBlockSize));
+    }
+    idPrefix = configuration.getLong(CONFIG_ID_PREFIX, DEFAULT_ID_PREFIX);
+    idCounterKey = (ID_COUNTER_KEY_PREFIX + Long.toHexString(idPrefix))
+        .getBytes(StandardCharsets.UTF_8);
+
     if (configuration.containsKey(CONFIG_THREADLOCALCLIENTMAP)) {
       this.threadLocalClientMap =
           (ConcurrentHashMap<Thread, RAMCloud>) configuration
@@ -169,6 +438,12 @@ public final class TorcGraph implements Graph {
         edgeListTableOS = new BufferedOutputStream(new FileOutputStream(
               rcImageDir + "/" + graphName + "_" + EDGELIST_TABLE_NAME + 
               ".img"));
+
+        if (labelLists) {
+          labelListTableOS = new BufferedOutputStream(new FileOutputStream(
+                rcImageDir + "/" + graphName + "_" + LABEL_LIST_TABLE_NAME + 
+                ".img"));
+        }
       } catch (FileNotFoundException e) {
         throw new RuntimeException(e);
       }
@@ -244,8 +519,6 @@ public final class TorcGraph implements Graph {
     initialize();
 
     torcGraphTx.readWrite();
-    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
-    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
 
 //    TorcHelper.legalPropertyKeyValueArray(Vertex.class, keyValues);
 
@@ -257,56 +530,27 @@ public final class TorcGraph implements Graph {
     if (idValue != null) {
       vertexId = UInt128.decode(idValue);
     } else {
-      throw new UnsupportedOperationException("Automatic ID generation not supported.");
+      vertexId = allocateVertexId();
     }
 
-    // Create property map.
-    Map<Object, Object> properties = new HashMap<>();
-    for (int i = 0; i < keyValues.length; i = i + 2) {
-      if (!(keyValues[i] instanceof T)) {
-        Object key = keyValues[i];
-        Object val = keyValues[i + 1];
-        if (properties.containsKey(key)) {
-          if (properties.get(key) instanceof List) {
-            ((List)properties.get(key)).add(val);
-          } else {
-            // Convert this to a list.
-            List<Object> list = new ArrayList<>();
-            list.add(properties.get(key));
-            list.add(val);
-            properties.put(key, list);
-          }
-        } else {
-          properties.put(key, val);
-        }
-      }
-    }
+    Map<Object, Object> properties = buildPropertyMap(keyValues);
+
+    List<byte[]> keys = new ArrayList<>();
+    List<byte[]> values = new ArrayList<>();
+    serializeVertex(vertexId, label, properties, keys, values);
 
     /* Perform size checks on objects to be written to RAMCloud. */
-    byte[] labelByteArray = TorcHelper.serializeObject(label);
-    if (labelByteArray.length > RAMCLOUD_OBJECT_SIZE_LIMIT) {
-      throw new IllegalArgumentException(String.format("Size of vertex label "
-          + "exceeds maximum allowable (size=%dB, max=%dB)",
-          labelByteArray.length, RAMCLOUD_OBJECT_SIZE_LIMIT));
-    }
+    checkVertexObjectSizes(values);
 
-    byte[] serializedProps = TorcHelper.serializeObject(properties);
-    if (serializedProps.length > RAMCLOUD_OBJECT_SIZE_LIMIT) {
-      throw new IllegalArgumentException(String.format("Total size of "
-          + "properties exceeds maximum allowable (size=%dB, max=%dB)",
-          serializedProps.length, RAMCLOUD_OBJECT_SIZE_LIMIT));
+    for (int i = 0; i < keys.size(); i++) {
+      writeVertexTableObject(keys.get(i), values.get(i));
     }
 
-    if (txMode) {
-      rctx.write(vertexTableId, TorcHelper.getVertexLabelKey(vertexId),
-          labelByteArray);
-      rctx.write(vertexTableId, TorcHelper.getVertexPropertiesKey(vertexId),
-          serializedProps);
-    } else {
-      client.write(vertexTableId, TorcHelper.getVertexLabelKey(vertexId),
-          labelByteArray, null);
-      client.write(vertexTableId, TorcHelper.getVertexPropertiesKey(vertexId),
-          serializedProps, null);
+    addToLists(indexTableId, vertexId, getIndexKeyPrefixes(label, 
+          properties));
+    if (labelLists) {
+      addToLists(labelListTableId, vertexId, Collections.singletonList(
+            getLabelListKeyPrefix(vertexId, label)));
     }
 
     return new TorcVertex(this, vertexId, label);
@@ -328,8 +572,6 @@ public final class TorcGraph implements Graph {
     initialize();
 
     torcGraphTx.readWrite();
-    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
-    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
 
     ElementHelper.validateMixedElementIds(TorcVertex.class, vertexIds);
 
@@ -340,33 +582,46 @@ public final class TorcGraph implements Graph {
           list.add((Vertex) id);
         });
       } else {
+        TorcVertex[] vertices = new TorcVertex[vertexIds.length];
+        List<Integer> readIndexes = new ArrayList<>();
+        List<byte[]> labelKeys = new ArrayList<>();
         for (int i = 0; i < vertexIds.length; ++i) {
           UInt128 vertexId = UInt128.decode(vertexIds[i]);
 
-          RAMCloudObject obj;
-          try {
-            if (txMode) {
-              obj = rctx.read(vertexTableId,
-                  TorcHelper.getVertexLabelKey(vertexId));
-            } else {
-              obj = client.read(vertexTableId,
-                  TorcHelper.getVertexLabelKey(vertexId));
-            }
-          } catch (ClientException e) {
-            throw new RuntimeException(e);
+          /* A cached label means the vertex exists, since vertices are never
+           * removed. */
+          String cachedLabel = getCachedLabel(vertexId);
+          if (cachedLabel != null) {
+            vertices[i] = new TorcVertex(this, vertexId, cachedLabel);
+          } else {
+            vertices[i] = new TorcVertex(this, vertexId);
+            readIndexes.add(i);
+            labelKeys.add(TorcHelper.getVertexLabelKey(vertexId));
           }
+        }
+
+        /* Read all the uncached labels together rather than paying a round
+         * trip per vertex. */
+        byte[][] values = readVertexTableObjects(labelKeys);
 
-          if (obj == null) {
+        for (int j = 0; j < readIndexes.size(); j++) {
+          int i = readIndexes.get(j);
+          if (values[j] == null) {
             throw Graph.Exceptions.elementNotFound(TorcVertex.class,
                 vertexIds[i]);
           }
-          
-          list.add(new TorcVertex(this, vertexId, 
-                (String)TorcHelper.deserializeObject(obj.getValueBytes())));
+
+          String label = (String) TorcHelper.deserializeObject(values[j],
+              stringPool);
+          cacheLabel(vertices[i].id(), label);
+          vertices[i].setLabel(label);
         }
+
+        list.addAll(Arrays.asList(vertices));
       }
     } else {
-      throw new UnsupportedOperationException("Reading all graph vertices not supported.");
+      /* Streams the table as it is outside of any transaction. */
+      return (Iterator) streamVertices();
     }
 
     return list.iterator();
@@ -395,7 +650,10 @@ public final class TorcGraph implements Graph {
         throw Graph.Exceptions.elementNotFound(TorcEdge.class, edgeIds[0]);
       }
     } else {
-      throw new UnsupportedOperationException("Reading all graph edges not supported.");
+      /* Streams the table as it is outside of any transaction. */
+      return (Iterator) new TorcScanIterator<TorcEdge>(
+          sink -> scanEdgeChunks(scanThreads, sink), 
+          this::initialize, this::closeScanThread);
     }
 
     return list.iterator();
@@ -441,6 +699,18 @@ public final class TorcGraph implements Graph {
         vertexTableOS.close();
         edgeListTableOS.flush();
         edgeListTableOS.close();
+
+        if (labelLists) {
+          for (Map.Entry<ByteBuffer, List<UInt128>> entry : 
+              labelListImageMap.entrySet()) {
+            TorcEdgeList.writeListToFile(labelListTableOS, 
+                entry.getKey().array(), entry.getValue(), 
+                Collections.emptyList(), compressionThreshold);
+          }
+          labelListImageMap.clear();
+          labelListTableOS.flush();
+          labelListTableOS.close();
+        }
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
@@ -450,6 +720,7 @@ public final class TorcGraph implements Graph {
         RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
         client.disconnect();
         threadLocalClientMap.remove(Thread.currentThread());
+        threadLocalIdBlockMap.remove(Thread.currentThread());
       }
     }
   }
@@ -513,30 +784,165 @@ public final class TorcGraph implements Graph {
       Direction dir, 
       boolean fillEdge,
       String ... nLabels) {
+    return traverse(vCol, eLabel, dir, fillEdge, (PropertyPredicate) null, 
+        nLabels);
+  }
+
+  /** 
+   * Traverses an edge type for a set of vertices, following only the edges
+   * whose properties satisfy the given predicate. The predicate is evaluated
+   * on the serialized edge properties while the edge list segments are
+   * decoded, so edges that are filtered out are never deserialized, and
+   * neighbors are only deduplicated and included in the result if at least
+   * one of their edges survives.
+   *
+   * @param vCol Collection of vertices to start from.
+   * @param eLabel Label of edge to traverse.
+   * @param dir Direction of edge.
+   * @param fillEdge Whether or not to fill in edge properties in the return
+   * result
+   * @param edgeFilter Predicate on edge properties, or null for all edges.
+   * @param nLabels Labels of neighbor vertices.
+   *
+   * @return TraversalResult describing the result of the traversal.
+   */
+  public TraversalResult traverse(
+      Collection<TorcVertex> vCol,
+      String eLabel, 
+      Direction dir, 
+      boolean fillEdge,
+      PropertyPredicate edgeFilter,
+      String ... nLabels) {
     initialize();
 
     torcGraphTx.readWrite();
-    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
-    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
 
     List<byte[]> keyPrefixes = 
         TorcHelper.getEdgeListKeyPrefixes(vCol, eLabel, dir, nLabels);
 
-    Map<byte[], List<TorcSerializedEdge>> serEdgeLists;
+    Map<byte[], List<TorcSerializedEdge>> serEdgeLists = 
+        readEdgeLists(keyPrefixes, edgeFilter);
+
+    return buildTraversalResult(vCol, fillEdge, nLabels, keyPrefixes, 
+        serEdgeLists);
+  }
+
+  /** 
+   * Traverses an edge type for a set of vertices and keeps only the
+   * neighbors whose properties satisfy the given predicate, filling in their
+   * properties. This fuses traverse, fillProperties and filtering into one
+   * call: right after the edge lists are read, the property objects of the
+   * distinct neighbors are multiread, the predicate is evaluated on each
+   * serialized property map before it is deserialized, and only matching
+   * neighbors are kept in the result, with their properties (or only the
+   * properties with the given keys) filled in.
+   *
+   * @param vCol Collection of vertices to start from.
+   * @param eLabel Label of edge to traverse.
+   * @param dir Direction of edge.
+   * @param fillEdge Whether or not to fill in edge properties in the return
+   * result
+   * @param edgeFilter Predicate on edge properties, or null for all edges.
+   * @param neighborFilter Predicate on neighbor vertex properties, or null
+   * to keep all neighbors.
+   * @param keys Keys of the neighbor properties to fill in, or none for all
+   * of them.
+   * @param nLabels Labels of neighbor vertices.
+   *
+   * @return TraversalResult describing the result of the traversal.
+   */
+  public TraversalResult traverseWhere(
+      Collection<TorcVertex> vCol,
+      String eLabel, 
+      Direction dir, 
+      boolean fillEdge,
+      PropertyPredicate edgeFilter,
+      PropertyPredicate neighborFilter,
+      String[] keys,
+      String ... nLabels) {
+    TraversalResult r = traverse(vCol, eLabel, dir, fillEdge, edgeFilter, 
+        nLabels);
+
+    /* Vertices stored with the per-key layout only need the filtered and
+     * projected properties read. */
+    String[] readKeys = keys;
+    if (keys.length > 0 && neighborFilter != null) {
+      Set<String> keySet = new LinkedHashSet<>(Arrays.asList(keys));
+      keySet.addAll(Arrays.asList(neighborFilter.getKeys()));
+      readKeys = keySet.toArray(new String[keySet.size()]);
+    }
+
+    List<TorcVertex> nList = new ArrayList<>(r.vSet);
+    PropertyRead read = new PropertyRead(nList, readKeys, neighborFilter);
+    read.decode(readVertexTableObjects(read.propsKeys));
+    if (read.perKeyIndexes.size() > 0) {
+      read.decodePerKey(readVertexTableObjects(read.perKeyKeys));
+    }
+
+    Set<TorcVertex> matches = new HashSet<>();
+    for (int i = 0; i < nList.size(); i++) {
+      Map<Object, Object> properties = read.propMaps.get(i);
+      if (properties == null) {
+        continue;
+      }
+
+      TorcVertex v = nList.get(i);
+      if (keys.length > 0) {
+        Map<Object, Object> projected = new PropertyMap<>(keys.length);
+        for (String key : keys) {
+          Object value = properties.get(key);
+          if (value != null) {
+            projected.put(key, value);
+          }
+        }
+        properties = projected;
+      }
+      v.setProperties(properties);
+      matches.add(v);
+    }
+
+    if (matches.size() < nList.size()) {
+      TorcHelper.intersect(r, matches);
+    }
+
+    return r;
+  }
+
+  /*
+   * Reads the edge lists with the given key prefixes from the edge list
+   * table, in the current transaction if in transactional mode, keeping only
+   * the edges that satisfy edgeFilter (if not null).
+   */
+  private Map<byte[], List<TorcSerializedEdge>> readEdgeLists(
+      List<byte[]> keyPrefixes, PropertyPredicate edgeFilter) {
     if (txMode) {
-      serEdgeLists = TorcEdgeList.batchRead(rctx, edgeListTableId, keyPrefixes);
+      return TorcEdgeList.batchRead(torcGraphTx.getThreadLocalRAMCloudTx(), 
+          edgeListTableId, keyPrefixes, edgeFilter);
     } else {
-      serEdgeLists = TorcEdgeList.batchRead(client, edgeListTableId, keyPrefixes);
+      return TorcEdgeList.batchRead(
+          threadLocalClientMap.get(Thread.currentThread()), nearCache, 
+          edgeListTableId, keyPrefixes, edgeFilter);
     }
+  }
 
+  /*
+   * Builds the result of traversing from the given vertices out of the edge
+   * lists read for them.
+   */
+  private TraversalResult buildTraversalResult(
+      Collection<TorcVertex> vCol,
+      boolean fillEdge,
+      String[] nLabels,
+      List<byte[]> keyPrefixes,
+      Map<byte[], List<TorcSerializedEdge>> serEdgeLists) {
     Map<TorcVertex, List<TorcVertex>> nbrListMap = new HashMap<>();
 
     Map<TorcVertex, List<Map<Object, Object>>> ePropListMap = null;
     if (fillEdge)
       ePropListMap = new HashMap<>();
 
-    Map<UInt128, TorcVertex> nbrDedupMap = new HashMap<>();
-    Set<TorcVertex> uniqNbrSet = new HashSet<>();
+    UInt128ObjectMap<TorcVertex> nbrDedupMap = new UInt128ObjectMap<>();
+    List<TorcVertex> uniqNbrList = new ArrayList<>();
 
     int i = 0;
     for (String nLabel : nLabels) {
@@ -562,18 +968,18 @@ public final class TorcGraph implements Graph {
           }
 
           for (TorcSerializedEdge serEdge : serEdgeList) {
-            if (nbrDedupMap.containsKey(serEdge.vertexId)) {
-              nList.add(nbrDedupMap.get(serEdge.vertexId));
-            } else {
-              TorcVertex v = new TorcVertex(this, serEdge.vertexId, nLabel);
-              nList.add(v);
+            TorcVertex v = nbrDedupMap.get(serEdge.vertexId);
+            if (v == null) {
+              v = new TorcVertex(this, serEdge.vertexId, nLabel);
+              cacheLabel(serEdge.vertexId, nLabel);
               nbrDedupMap.put(serEdge.vertexId, v);
-              uniqNbrSet.add(v);
+              uniqNbrList.add(v);
             }
+            nList.add(v);
 
             if (fillEdge)
               ePropList.add((Map<Object, Object>)TorcHelper.deserializeObject(
-                    serEdge.serializedProperties));
+                    serEdge.serializedProperties, stringPool));
           }
         }
 
@@ -581,242 +987,1685 @@ public final class TorcGraph implements Graph {
       }
     }    
 
-    return new TraversalResult(nbrListMap, ePropListMap, uniqNbrSet);
+    return new TraversalResult(nbrListMap, ePropListMap, 
+        new HashSet<>(uniqNbrList));
   }
 
-  public void fillProperties(TorcVertex v) {
-    fillProperties(Collections.singletonList(v));
+  public CompactTraversalResult traverseCompact(
+      TorcVertex v, 
+      String eLabel, 
+      Direction dir, 
+      boolean fillEdge,
+      String ... neighborLabels) {
+    return traverseCompact(Collections.singleton(v), eLabel, dir, 
+        fillEdge, neighborLabels);
   }
 
-  public void fillProperties(TraversalResult ... rs) {
-    if (rs.length == 1) {
-      fillProperties(rs[0].vSet);
+  public CompactTraversalResult traverseCompact(
+      CompactTraversalResult r, 
+      String eLabel, 
+      Direction dir, 
+      boolean fillEdge,
+      String ... neighborLabels) {
+    return traverseCompact(r.vSet(), eLabel, dir, fillEdge, neighborLabels);
+  }
+
+  /** 
+   * Traverses an edge type for a set of vertices, like
+   * {@link #traverse(Collection, String, Direction, boolean, String...)},
+   * but returns the result in the compact form of a
+   * {@link CompactTraversalResult}. Edge properties are kept serialized
+   * until they are used.
+   *
+   * @param vCol Collection of vertices to start from.
+   * @param eLabel Label of edge to traverse.
+   * @param dir Direction of edge.
+   * @param fillEdge Whether or not to fill in edge properties in the return
+   * result
+   * @param nLabels Labels of neighbor vertices.
+   *
+   * @return CompactTraversalResult describing the result of the traversal.
+   */
+  public CompactTraversalResult traverseCompact(
+      Collection<TorcVertex> vCol,
+      String eLabel, 
+      Direction dir, 
+      boolean fillEdge,
+      String ... nLabels) {
+    return traverseCompact(vCol, eLabel, dir, fillEdge, 
+        (PropertyPredicate) null, nLabels);
+  }
+
+  /** 
+   * Like {@link #traverseCompact(Collection, String, Direction, boolean,
+   * String...)}, but follows only the edges whose properties satisfy the
+   * given predicate, evaluated on the serialized edge properties while the
+   * edge list segments are decoded.
+   *
+   * @param vCol Collection of vertices to start from.
+   * @param eLabel Label of edge to traverse.
+   * @param dir Direction of edge.
+   * @param fillEdge Whether or not to fill in edge properties in the return
+   * result
+   * @param edgeFilter Predicate on edge properties, or null for all edges.
+   * @param nLabels Labels of neighbor vertices.
+   *
+   * @return CompactTraversalResult describing the result of the traversal.
+   */
+  public CompactTraversalResult traverseCompact(
+      Collection<TorcVertex> vCol,
+      String eLabel, 
+      Direction dir, 
+      boolean fillEdge,
+      PropertyPredicate edgeFilter,
+      String ... nLabels) {
+    initialize();
+
+    torcGraphTx.readWrite();
+
+    List<byte[]> keyPrefixes = 
+        TorcHelper.getEdgeListKeyPrefixes(vCol, eLabel, dir, nLabels);
+
+    Map<byte[], List<TorcSerializedEdge>> serEdgeLists = 
+        readEdgeLists(keyPrefixes, edgeFilter);
+
+    CompactTraversalResult.Builder builder = 
+        new CompactTraversalResult.Builder(this, fillEdge);
+
+    int i = 0;
+    for (String nLabel : nLabels) {
+      for (TorcVertex vertex : vCol) {
+        List<TorcSerializedEdge> serEdgeList = 
+            serEdgeLists.get(keyPrefixes.get(i));
+
+        if (serEdgeList != null) {
+          for (TorcSerializedEdge serEdge : serEdgeList) {
+            cacheLabel(serEdge.vertexId, nLabel);
+            builder.add(vertex.id(), vertex.label(), serEdge.vertexId, 
+                nLabel, serEdge.serializedProperties);
+          }
+        }
+
+        i++;
+      }
+    }    
+
+    return builder.build();
+  }
+
+  /** 
+   * Traverses an edge type for a set of vertices, passing each edge to the
+   * visitor as soon as it is decoded instead of collecting a result. Edge
+   * lists are read a window of segments at a time (DEFAULT_MAX_MULTIREAD_SIZE
+   * outside of a transaction, DEFAULT_MAX_ASYNC_READS within one), so memory
+   * use stays bounded however many edges there are, which suits aggregations
+   * such as counts or top-k over large neighborhoods. The visitor is called
+   * in the calling thread. The edges of a vertex are visited in order, but
+   * may be interleaved with the edges of other vertices.
+   *
+   * @param vCol Collection of vertices to start from.
+   * @param eLabel Label of edge to traverse.
+   * @param dir Direction of edge.
+   * @param visitor Receives the edges.
+   * @param nLabels Labels of neighbor vertices.
+   */
+  public void traverse(
+      Collection<TorcVertex> vCol,
+      String eLabel, 
+      Direction dir, 
+      TorcEdgeVisitor visitor,
+      String ... nLabels) {
+    initialize();
+
+    torcGraphTx.readWrite();
+    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
+    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
+
+    List<TorcVertex> vList = (vCol instanceof List) 
+        ? (List<TorcVertex>) vCol : new ArrayList<>(vCol);
+    List<byte[]> keyPrefixes = 
+        TorcHelper.getEdgeListKeyPrefixes(vList, eLabel, dir, nLabels);
+
+    /* Key prefixes are ordered by neighbor label, then by vertex. */
+    TorcEdgeList.EdgeVisitor listVisitor = (listIndex, upper, lower, props) ->
+        visitor.visit(vList.get(listIndex % vList.size()), 
+            nLabels[listIndex / vList.size()], upper, lower, props);
+
+    if (txMode) {
+      TorcEdgeList.stream(rctx, edgeListTableId, keyPrefixes, 
+          DEFAULT_MAX_ASYNC_READS, listVisitor);
     } else {
-      int totalSize = 0;
-      for (TraversalResult r : rs)
-        totalSize += r.vSet.size();
+      TorcEdgeList.stream(client, nearCache, edgeListTableId, keyPrefixes, 
+          DEFAULT_MAX_MULTIREAD_SIZE, listVisitor);
+    }
+  }
 
-      List<TorcVertex> vList = new ArrayList<>(totalSize);
-      for (TraversalResult r : rs)
-        vList.addAll(r.vSet);
+  /**
+   * Traverses several hops from a set of start vertices, and returns the
+   * result of each hop. The frontier of each hop is the set of distinct
+   * neighbors found by the previous hop (or the start vertices for the first
+   * hop), and the result of each hop holds the edges from its frontier to
+   * the neighbors that make up the next frontier.
+   *
+   * Outside of a transaction each hop runs on its own thread of the graph's
+   * pipeline pool (see CONFIG_PIPELINE_THREADS), whose threads keep their
+   * RAMCloud clients from one traversal to the next, and reads the edge
+   * lists of its frontier in chunks as soon as the previous hop finds them,
+   * so that the reads of consecutive hops overlap. Within a transaction, or
+   * when the pool does not have a free thread for every hop, the hops run
+   * one after the other in the calling thread.
+   *
+   * @param start Vertices to start from.
+   * @param hops Hops to traverse, in order.
+   *
+   * @return Result of each hop, in order.
+   */
+  public List<CompactTraversalResult> traverse(Collection<TorcVertex> start,
+      List<HopSpec> hops) {
+    List<HopStage> stages = runHops(start, hops, true);
 
-      fillProperties(vList);
+    List<CompactTraversalResult> results = new ArrayList<>(stages.size());
+    for (HopStage stage : stages) {
+      results.add(stage.builder.build());
+    }
+    return results;
+  }
+
+  /**
+   * Same as {@link #traverse(Collection, List)}, but only returns the
+   * distinct neighbors found by the last hop, without keeping the edges of
+   * any hop.
+   *
+   * @param start Vertices to start from.
+   * @param hops Hops to traverse, in order.
+   *
+   * @return Distinct vertices found by the last hop.
+   */
+  public List<TorcVertex> traverseFrontier(Collection<TorcVertex> start,
+      List<HopSpec> hops) {
+    List<TorcVertex> frontier = new ArrayList<>();
+    runHops(start, hops, false, frontier::addAll);
+    return frontier;
+  }
+
+  private List<HopStage> runHops(Collection<TorcVertex> start,
+      List<HopSpec> hops, boolean keepEdges) {
+    return runHops(start, hops, keepEdges, chunk -> {});
+  }
+
+  private List<HopStage> runHops(Collection<TorcVertex> start,
+      List<HopSpec> hops, boolean keepEdges,
+      Consumer<List<TorcVertex>> sink) {
+    initialize();
+
+    torcGraphTx.readWrite();
+
+    if (hops.isEmpty()) {
+      throw new IllegalArgumentException("At least one hop is required");
+    }
+
+    List<HopStage> stages = new ArrayList<>(hops.size());
+    for (HopSpec hop : hops) {
+      stages.add(new HopStage(hop, keepEdges));
+    }
+
+    /* Transactions are per thread, so the pipeline only runs in parallel
+     * outside of one. */
+    TorcWorkerPool pool = (!txMode && hops.size() > 1) ? pipelinePool() : null;
+
+    TorcHopPipeline.run(new ArrayList<>(new LinkedHashSet<>(start)), 
+        stages, pool, this::initialize, sink);
+
+    return stages;
+  }
+
+  /*
+   * Expands the frontier of one hop of a multi-hop traversal, chunk by
+   * chunk, in the thread of its pipeline stage.
+   */
+  private class HopStage implements TorcHopPipeline.Stage {
+    final HopSpec hop;
+    final CompactTraversalResult.Builder builder;
+    final UInt128Set found = new UInt128Set();
+    List<TorcVertex> pending = new ArrayList<>();
+
+    HopStage(HopSpec hop, boolean keepEdges) {
+      this.hop = hop;
+      this.builder = keepEdges 
+          ? new CompactTraversalResult.Builder(TorcGraph.this, 
+              hop.isFillEdge()) 
+          : null;
+    }
+
+    @Override
+    public void accept(List<TorcVertex> chunk, 
+        Consumer<List<TorcVertex>> out) {
+      if (found.size() >= hop.getLimit()) {
+        return;
+      }
+
+      String[] nLabels = hop.getNeighborLabels();
+      List<byte[]> keyPrefixes = TorcHelper.getEdgeListKeyPrefixes(chunk, 
+          hop.getEdgeLabel(), hop.getDirection(), nLabels);
+
+      Map<byte[], List<TorcSerializedEdge>> serEdgeLists = 
+          readEdgeLists(keyPrefixes, hop.getEdgeFilter());
+
+      UInt128Set listed = hop.isDedup() ? new UInt128Set() : null;
+      int i = 0;
+      for (String nLabel : nLabels) {
+        for (TorcVertex vertex : chunk) {
+          List<TorcSerializedEdge> serEdgeList = 
+              serEdgeLists.get(keyPrefixes.get(i++));
+          if (serEdgeList == null) {
+            continue;
+          }
+
+          if (listed != null) {
+            listed.clear();
+          }
+
+          for (TorcSerializedEdge serEdge : serEdgeList) {
+            if (!found.contains(serEdge.vertexId)) {
+              if (found.size() >= hop.getLimit()) {
+                continue;
+              }
+              found.add(serEdge.vertexId);
+              cacheLabel(serEdge.vertexId, nLabel);
+              pending.add(new TorcVertex(TorcGraph.this, serEdge.vertexId, 
+                    nLabel));
+            }
+
+            if (builder != null 
+                && (listed == null || listed.add(serEdge.vertexId))) {
+              builder.add(vertex.id(), vertex.label(), serEdge.vertexId, 
+                  nLabel, serEdge.serializedProperties);
+            }
+          }
+        }
+      }
+
+      /* Pass on what was found right away, so the next hop can start. */
+      finish(out);
+    }
+
+    @Override
+    public void finish(Consumer<List<TorcVertex>> out) {
+      if (!pending.isEmpty()) {
+        out.accept(pending);
+        pending = new ArrayList<>();
+      }
+    }
+  }
+
+  /**
+   * Finds a shortest path between two vertices, along edges with the given
+   * label between vertices with the given label. Searches from both ends at
+   * once (see {@link TorcBidirectionalSearch}), each step reading the edge
+   * lists of the smaller of the two frontiers in one multiread, and stops as
+   * soon as the two searches meet.
+   *
+   * @param src Source vertex.
+   * @param dst Destination vertex.
+   * @param eLabel Label of the edges to follow.
+   * @param dir Direction of the edges to follow from src towards dst, or
+   * BOTH to ignore the direction of the edges.
+   * @param nLabel Label of the vertices on the path.
+   * @param maxDepth Maximum length of the path, in edges.
+   *
+   * @return Vertices on the path, starting with src and ending with dst, or
+   * an empty list if dst is not reachable from src within maxDepth edges.
+   */
+  public List<TorcVertex> shortestPath(
+      TorcVertex src,
+      TorcVertex dst,
+      String eLabel,
+      Direction dir,
+      String nLabel,
+      int maxDepth) {
+    List<List<TorcVertex>> paths = 
+        shortestPaths(src, dst, eLabel, dir, nLabel, maxDepth, false);
+    return paths.isEmpty() ? Collections.emptyList() : paths.get(0);
+  }
+
+  /**
+   * Same as {@link #shortestPath(TorcVertex, TorcVertex, String, Direction,
+   * String, int)}, but finds all shortest paths. The search still stops
+   * after the level in which the two searches meet, but finishes that level
+   * to find every vertex at which they meet.
+   *
+   * @param src Source vertex.
+   * @param dst Destination vertex.
+   * @param eLabel Label of the edges to follow.
+   * @param dir Direction of the edges to follow from src towards dst, or
+   * BOTH to ignore the direction of the edges.
+   * @param nLabel Label of the vertices on the paths.
+   * @param maxDepth Maximum length of the paths, in edges.
+   *
+   * @return All shortest paths, each starting with src and ending with dst,
+   * or an empty list if dst is not reachable from src within maxDepth edges.
+   */
+  public List<List<TorcVertex>> allShortestPaths(
+      TorcVertex src,
+      TorcVertex dst,
+      String eLabel,
+      Direction dir,
+      String nLabel,
+      int maxDepth) {
+    return shortestPaths(src, dst, eLabel, dir, nLabel, maxDepth, true);
+  }
+
+  private List<List<TorcVertex>> shortestPaths(TorcVertex src, 
+      TorcVertex dst, String eLabel, Direction dir, String nLabel, 
+      int maxDepth, boolean all) {
+    initialize();
+
+    torcGraphTx.readWrite();
+
+    TorcBidirectionalSearch search = new TorcBidirectionalSearch(
+        (frontier, d) -> readEdges(frontier, eLabel, d, nLabel),
+        id -> {
+          cacheLabel(id, nLabel);
+          return new TorcVertex(this, id, nLabel);
+        });
+
+    return search.run(src, dst, dir, maxDepth, all);
+  }
+
+  /*
+   * Reads the edges of each of the given vertices in one multiread, reading
+   * both their outgoing and incoming edge lists for direction BOTH. Returns
+   * the edges of each vertex in order, with null for vertices without any.
+   */
+  private List<List<TorcSerializedEdge>> readEdges(List<TorcVertex> vList,
+      String eLabel, Direction dir, String nLabel) {
+    Direction[] dirs = (dir == Direction.BOTH) 
+        ? new Direction[] {Direction.OUT, Direction.IN} 
+        : new Direction[] {dir};
+
+    List<byte[]> keyPrefixes = new ArrayList<>(vList.size() * dirs.length);
+    for (Direction d : dirs) {
+      keyPrefixes.addAll(
+          TorcHelper.getEdgeListKeyPrefixes(vList, eLabel, d, nLabel));
+    }
+
+    Map<byte[], List<TorcSerializedEdge>> serEdgeLists = 
+        readEdgeLists(keyPrefixes, null);
+
+    List<List<TorcSerializedEdge>> edgeLists = new ArrayList<>(vList.size());
+    for (int i = 0; i < vList.size(); i++) {
+      List<TorcSerializedEdge> edgeList = null;
+      for (int j = 0; j < dirs.length; j++) {
+        List<TorcSerializedEdge> serEdgeList = 
+            serEdgeLists.get(keyPrefixes.get(j * vList.size() + i));
+        if (serEdgeList == null) {
+          continue;
+        }
+
+        if (edgeList == null) {
+          edgeList = serEdgeList;
+        } else {
+          edgeList = new ArrayList<>(edgeList);
+          edgeList.addAll(serEdgeList);
+        }
+      }
+      edgeLists.add(edgeList);
+    }
+    return edgeLists;
+  }
+
+  public void fillProperties(TorcVertex v) {
+    fillProperties(Collections.singletonList(v));
+  }
+
+  public void fillProperties(TraversalResult ... rs) {
+    if (rs.length == 1) {
+      fillProperties(rs[0].vSet);
+    } else {
+      int totalSize = 0;
+      for (TraversalResult r : rs)
+        totalSize += r.vSet.size();
+
+      List<TorcVertex> vList = new ArrayList<>(totalSize);
+      for (TraversalResult r : rs)
+        vList.addAll(r.vSet);
+
+      fillProperties(vList);
+    }
+  }
+
+  public void fillProperties(Iterable<TorcVertex> vertices, String ... keys) {
+    initialize();
+
+    torcGraphTx.readWrite();
+
+    List<TorcVertex> vList = new ArrayList<>();
+    for (TorcVertex v : vertices) {
+      vList.add(v);
+    }
+
+    setProperties(vList, keys, readVertexProperties(vList, keys));
+  }
+
+  private static void setProperties(List<TorcVertex> vList, String[] keys,
+      List<Map<Object, Object>> propMaps) {
+    for (int i = 0; i < vList.size(); i++) {
+      TorcVertex v = vList.get(i);
+      Map<Object, Object> properties = propMaps.get(i);
+      if (keys.length == 1) {
+        v.setProperty(keys[0], properties.get(keys[0]));
+      } else {
+        v.setProperties(properties);
+      }
+    }
+  }
+
+  /*
+   * Reads the properties of the given vertices, returning their property maps
+   * in the same order. Vertices with no properties get an empty map. If keys
+   * are given then vertices stored with the per-key property layout only have
+   * those properties read (vertices stored with the object layout always have
+   * all their properties read).
+   */
+  private List<Map<Object, Object>> readVertexProperties(
+      List<TorcVertex> vList, String[] keys) {
+    return readVertexProperties(vList, keys, txMode);
+  }
+
+  private List<Map<Object, Object>> readVertexProperties(
+      List<TorcVertex> vList, String[] keys, boolean inTx) {
+    PropertyRead read = new PropertyRead(vList, keys);
+    read.decode(readVertexTableObjects(read.propsKeys, inTx));
+
+    if (read.perKeyIndexes.size() > 0) {
+      read.decodePerKey(readVertexTableObjects(read.perKeyKeys, inTx));
+    }
+
+    return read.propMaps;
+  }
+
+  /*
+   * State of a read of the properties of a list of vertices, which takes one
+   * round of reads of the vertices' property objects, and a second round for
+   * vertices stored with the per-key layout. If there is a filter, the
+   * property maps of vertices that do not satisfy it are left null. Property
+   * objects stored as uncompressed maps are filtered before they are
+   * deserialized.
+   */
+  private class PropertyRead {
+    final List<TorcVertex> vList;
+    final String[] keys;
+    final PropertyPredicate filter;
+    final List<byte[]> propsKeys;
+    final List<Map<Object, Object>> propMaps;
+    final List<Integer> perKeyIndexes = new ArrayList<>();
+    final List<Integer> perKeyCounts = new ArrayList<>();
+    final List<String> perKeyNames = new ArrayList<>();
+    final List<byte[]> perKeyKeys = new ArrayList<>();
+
+    PropertyRead(List<TorcVertex> vList, String[] keys) {
+      this(vList, keys, null);
+    }
+
+    PropertyRead(List<TorcVertex> vList, String[] keys, 
+        PropertyPredicate filter) {
+      this.vList = vList;
+      this.keys = keys;
+      this.filter = filter;
+      this.propsKeys = new ArrayList<>(vList.size());
+      for (TorcVertex v : vList) {
+        propsKeys.add(TorcHelper.getVertexPropertiesKey(v.id()));
+      }
+      this.propMaps = new ArrayList<>(vList.size());
+    }
+
+    /*
+     * Decodes the values of the vertices' property objects, and collects
+     * the keys of the property objects to read for vertices stored with the
+     * per-key layout.
+     */
+    void decode(byte[][] values) {
+      for (int i = 0; i < vList.size(); i++) {
+        if (values[i] == null) {
+          // This vertex has no properties set.
+          propMaps.add(matches(new PropertyMap<>()));
+          continue;
+        }
+
+        if (filter != null && TorcHelper.isSerializedMap(values[i], 0)) {
+          if (!filter.test(values[i], 0, values[i].length)) {
+            propMaps.add(null);
+            continue;
+          }
+          propMaps.add((Map<Object, Object>) 
+              TorcHelper.deserializeObject(values[i], stringPool));
+          continue;
+        }
+
+        Object stored = TorcHelper.deserializeObject(values[i], stringPool);
+        if (stored instanceof Map) {
+          propMaps.add(matches((Map<Object, Object>) stored));
+        } else {
+          List<String> names = 
+              selectPropertyKeys((List<Object>) stored, keys);
+          UInt128 vertexId = vList.get(i).id();
+          for (String name : names) {
+            perKeyNames.add(name);
+            perKeyKeys.add(TorcHelper.getVertexPropertyKey(vertexId, name));
+          }
+          perKeyIndexes.add(i);
+          perKeyCounts.add(names.size());
+          propMaps.add(null);
+        }
+      }
+    }
+
+    void decodePerKey(byte[][] propValues) {
+      int j = 0;
+      for (int i = 0; i < perKeyIndexes.size(); i++) {
+        int count = perKeyCounts.get(i);
+        Map<Object, Object> properties = new PropertyMap<>(count);
+        for (int k = 0; k < count; k++, j++) {
+          if (propValues[j] != null) {
+            properties.put(perKeyNames.get(j), 
+                TorcHelper.deserializeObject(propValues[j], stringPool));
+          }
+        }
+        propMaps.set(perKeyIndexes.get(i), matches(properties));
+      }
+    }
+
+    private Map<Object, Object> matches(Map<Object, Object> properties) {
+      if (filter != null && !filter.test(properties)) {
+        return null;
+      }
+      return properties;
+    }
+  }
+
+  /*
+   * Given a vertex's list of property keys (per-key property layout), returns
+   * the ones to read: all of them if no keys are requested, otherwise the
+   * requested keys that the vertex has.
+   */
+  private static List<String> selectPropertyKeys(List<Object> propertyKeys,
+      String[] keys) {
+    List<String> names = new ArrayList<>(propertyKeys.size());
+    if (keys.length == 0) {
+      for (Object key : propertyKeys) {
+        names.add((String) key);
+      }
+    } else {
+      for (String key : keys) {
+        if (propertyKeys.contains(key)) {
+          names.add(key);
+        }
+      }
+    }
+    return names;
+  }
+
+  /*
+   * Builds the map of properties given in a TinkerPop style key/value array,
+   * skipping T keys. Keys given more than once get a list of values.
+   */
+  static Map<Object, Object> buildPropertyMap(Object[] keyValues) {
+    Map<Object, Object> properties = new PropertyMap<>();
+    for (int i = 0; i < keyValues.length; i = i + 2) {
+      if (!(keyValues[i] instanceof T)) {
+        Object key = keyValues[i];
+        Object val = keyValues[i + 1];
+        if (properties.containsKey(key)) {
+          if (properties.get(key) instanceof List) {
+            ((List)properties.get(key)).add(val);
+          } else {
+            // Convert this to a list.
+            List<Object> list = new ArrayList<>();
+            list.add(properties.get(key));
+            list.add(val);
+            properties.put(key, list);
+          }
+        } else {
+          properties.put(key, val);
+        }
+      }
+    }
+    return properties;
+  }
+
+  /*
+   * Appends the vertex table keys and values that store a new vertex (its
+   * label followed by its properties) to keys and values.
+   */
+  void serializeVertex(UInt128 vertexId, String label, 
+      Map<Object, Object> properties, List<byte[]> keys, List<byte[]> values) {
+    keys.add(TorcHelper.getVertexLabelKey(vertexId));
+    values.add(TorcHelper.serializeObject(label));
+    serializeVertexProperties(vertexId, label, properties, keys, values);
+  }
+
+  /*
+   * Checks that the vertex table objects serialized for a new vertex by
+   * serializeVertex fit in RAMCloud objects.
+   */
+  static void checkVertexObjectSizes(List<byte[]> values) {
+    if (values.get(0).length > RAMCLOUD_OBJECT_SIZE_LIMIT) {
+      throw new IllegalArgumentException(String.format("Size of vertex label "
+          + "exceeds maximum allowable (size=%dB, max=%dB)",
+          values.get(0).length, RAMCLOUD_OBJECT_SIZE_LIMIT));
+    }
+
+    for (byte[] serializedProps : values.subList(1, values.size())) {
+      if (serializedProps.length > RAMCLOUD_OBJECT_SIZE_LIMIT) {
+        throw new IllegalArgumentException(String.format("Total size of "
+            + "properties exceeds maximum allowable (size=%dB, max=%dB)",
+            serializedProps.length, RAMCLOUD_OBJECT_SIZE_LIMIT));
+      }
+    }
+  }
+
+  /*
+   * Serializes a vertex's properties into the RAMCloud objects that store
+   * them, appending their keys and values to the given lists. Which layout is
+   * used depends on the vertex's label (see CONFIG_PROPERTY_LAYOUT).
+   */
+  private void serializeVertexProperties(UInt128 vertexId, String label,
+      Map<Object, Object> properties, List<byte[]> keys, List<byte[]> values) {
+    if (usesPerKeyPropertyLayout(label)) {
+      List<Object> propertyKeys = new ArrayList<>(properties.size());
+      for (Map.Entry<Object, Object> property : properties.entrySet()) {
+        String key = (String) property.getKey();
+        propertyKeys.add(key);
+        keys.add(TorcHelper.getVertexPropertyKey(vertexId, key));
+        values.add(TorcHelper.compressObject(
+              TorcHelper.serializeObject(property.getValue()), 
+              compressionThreshold));
+      }
+      keys.add(TorcHelper.getVertexPropertiesKey(vertexId));
+      values.add(TorcHelper.serializeObject(propertyKeys));
+    } else {
+      keys.add(TorcHelper.getVertexPropertiesKey(vertexId));
+      values.add(TorcHelper.compressObject(
+            TorcHelper.serializeObject(properties), compressionThreshold));
+    }
+  }
+
+  private boolean usesPerKeyPropertyLayout(String label) {
+    return perKeyPropertyLayout || perKeyPropertyLabels.contains(label);
+  }
+
+  /*
+   * Reads the given keys from the vertex table, returning their values in the
+   * same order, or null for objects that do not exist. In transactional mode
+   * up to DEFAULT_MAX_ASYNC_READS reads are kept in flight: each time the
+   * window fills up we wait on the oldest read before issuing the next.
+   * Otherwise the keys are read with multireads of up to
+   * DEFAULT_MAX_MULTIREAD_SIZE objects.
+   */
+  private byte[][] readVertexTableObjects(List<byte[]> keys) {
+    return readVertexTableObjects(keys, txMode);
+  }
+
+  private byte[][] readVertexTableObjects(List<byte[]> keys, boolean inTx) {
+    byte[][] values = new byte[keys.size()][];
+
+    if (keys.isEmpty()) {
+      return values;
+    }
+
+    if (inTx) {
+      RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
+
+      RAMCloudTransactionReadOp[] window = new RAMCloudTransactionReadOp[
+          Math.min(keys.size(), DEFAULT_MAX_ASYNC_READS)];
+      int next = 0; // Next read to complete.
+      try {
+        for (int i = 0; i < keys.size(); i++) {
+          if (i - next == window.length) {
+            values[next] = completeRead(window, next);
+            next++;
+          }
+
+          window[i % window.length] = new RAMCloudTransactionReadOp(rctx,
+              vertexTableId, keys.get(i), true);
+        }
+
+        while (next < keys.size()) {
+          values[next] = completeRead(window, next);
+          next++;
+        }
+      } finally {
+        /* Only has reads left in it if we bailed out with an exception. */
+        for (RAMCloudTransactionReadOp readOp : window) {
+          if (readOp != null) {
+            readOp.close();
+          }
+        }
+      }
+    } else {
+      RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
+      long stamp = (nearCache == null) ? 0 : nearCache.stamp();
+
+      /* Only objects that are not in the near cache need to be read. */
+      List<Integer> missIndexes = new ArrayList<>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        if (nearCache != null) {
+          values[i] = nearCache.get(vertexTableId, keys.get(i));
+        }
+
+        if (values[i] == null) {
+          missIndexes.add(i);
+        }
+      }
+
+      for (int base = 0; base < missIndexes.size(); 
+          base += DEFAULT_MAX_MULTIREAD_SIZE) {
+        int batchSize = 
+            Math.min(missIndexes.size() - base, DEFAULT_MAX_MULTIREAD_SIZE);
+        MultiReadObject[] requests = new MultiReadObject[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+          requests[i] = new MultiReadObject(vertexTableId, 
+              keys.get(missIndexes.get(base + i)));
+        }
+
+        client.read(requests);
+
+        for (int i = 0; i < batchSize; i++) {
+          int index = missIndexes.get(base + i);
+          if (requests[i].getStatus() == Status.STATUS_OK) {
+            values[index] = requests[i].getValueBytes();
+            if (nearCache != null) {
+              nearCache.put(vertexTableId, keys.get(index), values[index],
+                  requests[i].getVersion(), stamp);
+            }
+          } else if (requests[i].getStatus() 
+              != Status.STATUS_OBJECT_DOESNT_EXIST) {
+            throw new RuntimeException(
+                "Vertex table RAMCloud object had status " + 
+                requests[i].getStatus());
+          }
+        }
+      }
+    }
+
+    return values;
+  }
+
+  /*
+   * Waits on the n'th read in a window of transactional reads and returns its
+   * value, or null if the object does not exist. Closes the read and removes
+   * it from the window.
+   */
+  private static byte[] completeRead(RAMCloudTransactionReadOp[] window, 
+      int n) {
+    RAMCloudTransactionReadOp readOp = window[n % window.length];
+    window[n % window.length] = null;
+    try {
+      RAMCloudObject obj = readOp.getValue();
+      return (obj == null) ? null : obj.getValueBytes();
+    } catch (ClientException e) {
+      throw new RuntimeException(e);
+    } finally {
+      readOp.close();
+    }
+  }
+
+  private void writeVertexTableObject(byte[] key, byte[] value) {
+    if (txMode) {
+      torcGraphTx.getThreadLocalRAMCloudTx().write(vertexTableId, key, value);
+    } else {
+      threadLocalClientMap.get(Thread.currentThread())
+          .write(vertexTableId, key, value, null);
+    }
+
+    invalidateCachedObject(vertexTableId, key);
+  }
+
+  /*
+   * Drops an object that we have written from the near cache. In
+   * transactional mode the object is invalidated again when the transaction
+   * commits, since until then readers may still re-cache the old value.
+   */
+  private void invalidateCachedObject(long tableId, byte[] key) {
+    if (nearCache == null) {
+      return;
+    }
+
+    nearCache.invalidate(tableId, key);
+    if (txMode) {
+      torcGraphTx.invalidateOnCommit(tableId, key);
+    }
+  }
+
+  public void enableTx() {
+    txMode = true;
+  }
+
+  public void disableTx() {
+    txMode = false;
+  }
+
+  public boolean getTxMode() {
+    return txMode;
+  }
+
+  public RAMCloud getClient() {
+    return threadLocalClientMap.get(Thread.currentThread());
+  }
+
+  public boolean isInitialized() {
+    return initialized;
+  }
+
+  /*
+   * Specialized method for quickly loading a vertex. Method works by executing
+   * essentially a blind write of a vertex into the graph, without checking
+   * whether or not the vertex exists. Assumes that the vertex has an ID already
+   * set. Does not perform normal checks on the properties. If outputFile is
+   * non-null, then instead of writing the writing the vertex into RAMCloud, the
+   * vertex's RAMCloud key-value serialization is appended to the given file.
+   * When label lists are enabled, the vertex is also added to its label's
+   * membership list, which is kept in memory and written to the image when
+   * the graph is closed.
+   */
+  public void loadVertex(UInt128 vertexId, String label, 
+      Map<Object, Object> properties) {
+    List<byte[]> keys = new ArrayList<>();
+    List<byte[]> values = new ArrayList<>();
+    serializeVertex(vertexId, label, properties, keys, values);
+
+    for (int i = 0; i < keys.size(); i++) {
+      byte[] key = keys.get(i);
+      byte[] value = values.get(i);
+
+      ByteBuffer buffer = ByteBuffer.allocate(
+          Integer.BYTES +
+          key.length +
+          Integer.BYTES +
+          value.length)
+          .order(ByteOrder.LITTLE_ENDIAN);
+
+      buffer.putInt(key.length);
+      buffer.put(key);
+      buffer.putInt(value.length);
+      buffer.put(value);
+
+      try {
+        vertexTableOS.write(buffer.array());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    if (labelLists) {
+      labelListImageMap.computeIfAbsent(
+          ByteBuffer.wrap(getLabelListKeyPrefix(vertexId, label)), 
+          k -> new ArrayList<>()).add(vertexId);
+    }
+  }
+
+  /*
+   * Specialized method for quickly loading an edge list for a vertex in one
+   * direction. Edge lists for the neighbor vertices must be added separately.
+   */
+  public void loadEdges(final UInt128 baseVertexId, final String edgeLabel,
+      final Direction direction, final String neighborLabel, 
+      final List<UInt128> neighborIds, 
+      final List<Map<Object, Object>> propMaps) {
+    byte[] keyPrefix =
+        TorcHelper.getEdgeListKeyPrefix(baseVertexId, edgeLabel, direction,
+            neighborLabel);
+
+    List<byte[]> serializedPropList = new ArrayList<>(propMaps.size());
+    for (int i = 0; i < propMaps.size(); i++) {
+      serializedPropList.add(TorcHelper.serializeObject(propMaps.get(i)));
+    }
+
+    TorcEdgeList.writeListToFile(edgeListTableOS, keyPrefix, neighborIds,
+        serializedPropList, compressionThreshold);
+  }
+
+  /**
+   * Scans the whole vertex table, passing every vertex (optionally only
+   * those with the given labels) to the consumer. Uses CONFIG_SCAN_THREADS
+   * threads. See {@link #scanVertices(int, boolean, Consumer, String...)}.
+   *
+   * @param fillProperties Whether to read the properties of the vertices.
+   * @param consumer Receives the vertices. Called concurrently from the scan
+   * threads, so it must be thread safe.
+   * @param labels Labels of vertices to scan. Scans all vertices if none are
+   * given.
+   */
+  public void scanVertices(boolean fillProperties, 
+      Consumer<TorcVertex> consumer, String ... labels) {
+    scanVertices(scanThreads, fillProperties, consumer, labels);
+  }
+
+  /**
+   * Scans the whole vertex table, passing every vertex (optionally only
+   * those with the given labels) to the consumer. The table is enumerated
+   * by the calling thread and the vertices are decoded, and their
+   * properties read, by numThreads threads with their own RAMCloud clients.
+   * Vertices are streamed to the consumer as they are found, and in no
+   * particular order. The scan reads the table outside of any transaction,
+   * and returns once every vertex has been passed to the consumer.
+   *
+   * @param numThreads Number of threads processing vertices.
+   * @param fillProperties Whether to read the properties of the vertices.
+   * @param consumer Receives the vertices. Called concurrently from the scan
+   * threads, so it must be thread safe.
+   * @param labels Labels of vertices to scan. Scans all vertices if none are
+   * given.
+   */
+  public void scanVertices(int numThreads, boolean fillProperties, 
+      Consumer<TorcVertex> consumer, String ... labels) {
+    scanVertexChunks(numThreads, fillProperties, 
+        vList -> vList.forEach(consumer), labels);
+  }
+
+  /**
+   * Iterates over every vertex (optionally only those with the given
+   * labels) while the vertex table is being scanned, holding only a bounded
+   * number of vertices in memory at a time. Closing the iterator before the
+   * end stops the scan. The scan uses CONFIG_SCAN_THREADS threads and reads
+   * the table outside of any transaction.
+   *
+   * @param labels Labels of vertices to scan. Scans all vertices if none are
+   * given.
+   *
+   * @return Iterator over the vertices, in no particular order.
+   */
+  public CloseableIterator<TorcVertex> streamVertices(String ... labels) {
+    initialize();
+
+    return new TorcScanIterator<>(
+        sink -> scanVertexChunks(scanThreads, false, sink, labels), 
+        this::initialize, this::closeScanThread);
+  }
+
+  /*
+   * Scans the vertex table, passing the vertices of each chunk of the table
+   * to the consumer as a list.
+   */
+  private void scanVertexChunks(int numThreads, boolean fillProperties, 
+      Consumer<List<TorcVertex>> consumer, String ... labels) {
+    initialize();
+
+    Set<String> labelSet = new HashSet<>(Arrays.asList(labels));
+    byte labelKeyType = (byte) TorcHelper.VertexKeyType.LABEL.ordinal();
+
+    TorcTableScan.run(threadLocalClientMap.get(Thread.currentThread()),
+        vertexTableId, numThreads,
+        key -> key.length == UInt128.BYTES + Byte.BYTES 
+            && key[UInt128.BYTES] == labelKeyType,
+        this::initialize, this::closeScanThread, 
+        chunk -> {
+          List<TorcVertex> vList = new ArrayList<>(chunk.size());
+          for (RAMCloudObject obj : chunk) {
+            String label = 
+                (String) TorcHelper.deserializeObject(obj.getValueBytes(),
+                    stringPool);
+            if (!labelSet.isEmpty() && !labelSet.contains(label)) {
+              continue;
+            }
+
+            ByteBuffer key = ByteBuffer.wrap(obj.getKeyBytes())
+                .order(ByteOrder.LITTLE_ENDIAN);
+            UInt128 vertexId = new UInt128(key.getLong(), key.getLong());
+            cacheLabel(vertexId, label);
+            vList.add(new TorcVertex(this, vertexId, label));
+          }
+
+          if (fillProperties && !vList.isEmpty()) {
+            List<Map<Object, Object>> propMaps = 
+                readVertexProperties(vList, new String[0], false);
+            for (int i = 0; i < vList.size(); i++) {
+              vList.get(i).setProperties(propMaps.get(i));
+            }
+          }
+
+          consumer.accept(vList);
+        });
+  }
+
+  /**
+   * Scans the whole edge list table, passing every edge (optionally only
+   * those with the given labels) to the consumer, once each. Uses
+   * CONFIG_SCAN_THREADS threads. See
+   * {@link #scanEdges(int, Consumer, String...)}.
+   *
+   * @param consumer Receives the edges. Called concurrently from the scan
+   * threads, so it must be thread safe.
+   * @param edgeLabels Labels of edges to scan. Scans all edges if none are
+   * given.
+   */
+  public void scanEdges(Consumer<TorcEdge> consumer, String ... edgeLabels) {
+    scanEdges(scanThreads, consumer, edgeLabels);
+  }
+
+  /**
+   * Scans the whole edge list table, passing every edge (optionally only
+   * those with the given labels) to the consumer, once each. The table is
+   * enumerated by the calling thread, which hands the head segments of
+   * outgoing edge lists to numThreads threads with their own RAMCloud
+   * clients. These read the rest of each list and pass its edges to the
+   * consumer. Edges are streamed in no particular order, their in-vertex
+   * labels are set, and the scan reads the table outside of any
+   * transaction.
+   *
+   * @param numThreads Number of threads reading edge lists.
+   * @param consumer Receives the edges. Called concurrently from the scan
+   * threads, so it must be thread safe.
+   * @param edgeLabels Labels of edges to scan. Scans all edges if none are
+   * given.
+   */
+  public void scanEdges(int numThreads, Consumer<TorcEdge> consumer,
+      String ... edgeLabels) {
+    scanEdgeChunks(numThreads, eList -> eList.forEach(consumer), 
+        edgeLabels);
+  }
+
+  /*
+   * Scans the edge list table, passing the edges of each chunk of edge lists
+   * to the consumer as a list.
+   */
+  private void scanEdgeChunks(int numThreads, 
+      Consumer<List<TorcEdge>> consumer, String ... edgeLabels) {
+    initialize();
+
+    Set<String> labelSet = new HashSet<>(Arrays.asList(edgeLabels));
+
+    TorcTableScan.run(threadLocalClientMap.get(Thread.currentThread()),
+        edgeListTableId, numThreads,
+        key -> {
+          /* Every edge is stored in the lists of both of its vertices, so
+           * only outgoing lists are scanned. Each list is read in full when
+           * its head segment is found. */
+          ByteBuffer buf = ByteBuffer.wrap(key).order(ByteOrder.LITTLE_ENDIAN);
+          if (buf.getInt(key.length - Integer.BYTES) != 0) {
+            return false;
+          }
+          int eLabelLen = buf.getShort(UInt128.BYTES);
+          int dirPos = UInt128.BYTES + Short.BYTES + eLabelLen;
+          if (key[dirPos] != (byte) Direction.OUT.ordinal()) {
+            return false;
+          }
+          return labelSet.isEmpty() || labelSet.contains(new String(key, 
+                UInt128.BYTES + Short.BYTES, eLabelLen, 
+                TorcHelper.DEFAULT_CHAR_ENCODING));
+        },
+        this::initialize, this::closeScanThread,
+        chunk -> {
+          List<byte[]> keyPrefixes = new ArrayList<>(chunk.size());
+          for (RAMCloudObject obj : chunk) {
+            byte[] key = obj.getKeyBytes();
+            keyPrefixes.add(Arrays.copyOf(key, key.length - Integer.BYTES));
+          }
+
+          Map<byte[], List<TorcSerializedEdge>> serEdgeLists = 
+              TorcEdgeList.batchRead(
+                  threadLocalClientMap.get(Thread.currentThread()), 
+                  nearCache, edgeListTableId, keyPrefixes);
+
+          List<TorcEdge> eList = new ArrayList<>();
+          for (byte[] keyPrefix : keyPrefixes) {
+            List<TorcSerializedEdge> serEdgeList = 
+                serEdgeLists.get(keyPrefix);
+            if (serEdgeList == null) {
+              continue;
+            }
+
+            ByteBuffer buf = ByteBuffer.wrap(keyPrefix)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            UInt128 baseVertexId = new UInt128(buf.getLong(), buf.getLong());
+            byte[] eLabelBytes = new byte[buf.getShort()];
+            buf.get(eLabelBytes);
+            buf.get(); // Direction.
+            byte[] nLabelBytes = new byte[buf.getShort()];
+            buf.get(nLabelBytes);
+            String eLabel = 
+                new String(eLabelBytes, TorcHelper.DEFAULT_CHAR_ENCODING);
+            String nLabel = 
+                new String(nLabelBytes, TorcHelper.DEFAULT_CHAR_ENCODING);
+
+            for (TorcSerializedEdge serEdge : serEdgeList) {
+              TorcEdge edge = new TorcEdge(this, baseVertexId, 
+                  serEdge.vertexId, eLabel, serEdge.serializedProperties);
+              edge.getV2().setLabel(nLabel);
+              eList.add(edge);
+            }
+          }
+
+          consumer.accept(eList);
+        });
+  }
+
+  /*
+   * Releases the RAMCloud client of a table scan thread.
+   */
+  private void closeScanThread() {
+    RAMCloud client = threadLocalClientMap.remove(Thread.currentThread());
+    if (client != null) {
+      client.disconnect();
+    }
+    threadLocalIdBlockMap.remove(Thread.currentThread());
+  }
+
+  /*
+   * Returns the pool running the hops of multi-hop traversals, creating it
+   * if need be.
+   */
+  private synchronized TorcWorkerPool pipelinePool() {
+    if (pipelinePool == null) {
+      pipelinePool = new TorcWorkerPool("TorcHopPipeline", pipelineThreads, 
+          this::closeScanThread);
+    }
+
+    return pipelinePool;
+  }
+
+  /*
+   * Returns the reader serving the asynchronous API, starting its I/O
+   * threads if need be.
+   */
+  private synchronized TorcAsyncReader asyncReader() {
+    if (asyncReader == null) {
+      asyncReader = new TorcAsyncReader(asyncThreads,
+          (tableId, keyPrefixes) -> TorcEdgeList.batchRead(
+              threadLocalClientMap.get(Thread.currentThread()), nearCache, 
+              tableId, keyPrefixes),
+          keys -> readVertexTableObjects(keys, false),
+          this::initialize, this::closeScanThread);
+    }
+
+    return asyncReader;
+  }
+
+  /**
+   * Asynchronous version of {@link TorcEdgeList#batchRead(RAMCloud,
+   * ObjectCache, long, List)} on the edge list table. Like the rest of the
+   * asynchronous API, the read is served by the graph's I/O threads (see
+   * CONFIG_ASYNC_THREADS) outside of any transaction, batched together with
+   * other concurrently outstanding reads. The future is completed on an I/O
+   * thread, so callbacks chained onto it should not block.
+   *
+   * @param keyPrefixes Key prefixes of the edge lists to read.
+   *
+   * @return Future of the edge lists, keyed by the given key prefix objects.
+   */
+  public CompletableFuture<Map<byte[], List<TorcSerializedEdge>>> 
+      batchReadAsync(List<byte[]> keyPrefixes) {
+    /* The table IDs must be known before the request is queued. */
+    initialize();
+
+    return asyncReader().readEdgeLists(edgeListTableId, keyPrefixes);
+  }
+
+  /**
+   * Asynchronous version of {@link #traverse(Collection, String, Direction,
+   * boolean, String...)}. See {@link #batchReadAsync(List)}.
+   *
+   * @param vCol Vertices to traverse from.
+   * @param eLabel Edge label.
+   * @param dir Direction of edge.
+   * @param fillEdge Whether or not to fill in edge properties in the return
+   * result
+   * @param nLabels Labels of neighbor vertices.
+   *
+   * @return Future of the result of the traversal.
+   */
+  public CompletableFuture<TraversalResult> traverseAsync(
+      Collection<TorcVertex> vCol,
+      String eLabel, 
+      Direction dir, 
+      boolean fillEdge,
+      String ... nLabels) {
+    List<byte[]> keyPrefixes = 
+        TorcHelper.getEdgeListKeyPrefixes(vCol, eLabel, dir, nLabels);
+
+    return batchReadAsync(keyPrefixes).thenApply(serEdgeLists -> 
+        buildTraversalResult(vCol, fillEdge, nLabels, keyPrefixes, 
+            serEdgeLists));
+  }
+
+  /**
+   * Asynchronous version of {@link #fillProperties(Iterable, String...)}.
+   * See {@link #batchReadAsync(List)}.
+   *
+   * @param vertices Vertices whose properties to fill in.
+   * @param keys Keys of the properties to fill in, or none for all of them.
+   *
+   * @return Future completed once the properties are filled in.
+   */
+  public CompletableFuture<Void> fillPropertiesAsync(
+      Iterable<TorcVertex> vertices, String ... keys) {
+    initialize();
+
+    List<TorcVertex> vList = new ArrayList<>();
+    for (TorcVertex v : vertices) {
+      vList.add(v);
+    }
+
+    TorcAsyncReader reader = asyncReader();
+    PropertyRead read = new PropertyRead(vList, keys);
+    return reader.readObjects(read.propsKeys).thenCompose(values -> {
+      read.decode(values);
+      if (read.perKeyIndexes.isEmpty()) {
+        return CompletableFuture.completedFuture(null);
+      }
+      return reader.readObjects(read.perKeyKeys).thenAccept(
+          read::decodePerKey);
+    }).thenAccept(v -> setProperties(vList, keys, read.propMaps));
+  }
+
+  /**
+   * Asynchronous version of {@link #vertices(Object...)} for a list of vertex
+   * IDs. See {@link #batchReadAsync(List)}.
+   *
+   * @param vertexIds IDs of the vertices.
+   *
+   * @return Future of the vertices, in the order of the IDs. Completed
+   * exceptionally if a vertex does not exist.
+   */
+  public CompletableFuture<List<TorcVertex>> verticesAsync(
+      Object... vertexIds) {
+    initialize();
+
+    TorcVertex[] vertices = new TorcVertex[vertexIds.length];
+    List<Integer> readIndexes = new ArrayList<>();
+    List<byte[]> labelKeys = new ArrayList<>();
+    for (int i = 0; i < vertexIds.length; ++i) {
+      UInt128 vertexId = UInt128.decode(vertexIds[i]);
+
+      String cachedLabel = getCachedLabel(vertexId);
+      if (cachedLabel != null) {
+        vertices[i] = new TorcVertex(this, vertexId, cachedLabel);
+      } else {
+        vertices[i] = new TorcVertex(this, vertexId);
+        readIndexes.add(i);
+        labelKeys.add(TorcHelper.getVertexLabelKey(vertexId));
+      }
+    }
+
+    return asyncReader().readObjects(labelKeys).thenApply(values -> {
+      for (int j = 0; j < readIndexes.size(); j++) {
+        int i = readIndexes.get(j);
+        if (values[j] == null) {
+          throw Graph.Exceptions.elementNotFound(TorcVertex.class,
+              vertexIds[i]);
+        }
+
+        String label = (String) TorcHelper.deserializeObject(values[j],
+            stringPool);
+        cacheLabel(vertices[i].id(), label);
+        vertices[i].setLabel(label);
+      }
+
+      return Arrays.asList(vertices);
+    });
+  }
+
+  /**
+   * Returns whether the given property of vertices with the given label is
+   * indexed (see CONFIG_INDEXED_PROPERTIES).
+   *
+   * @param label Vertex label.
+   * @param key Property key.
+   *
+   * @return True if the property is indexed.
+   */
+  public boolean isIndexed(String label, String key) {
+    Set<String> keys = indexedProperties.get(label);
+    return keys != null && keys.contains(key);
+  }
+
+  /**
+   * Finds the vertices with the given label that have the given value for an
+   * indexed property. Values are compared as by Compare.eq, so an Integer
+   * finds vertices that stored the same Long. Multi-valued properties match
+   * if any of their values is equal to the given value.
+   *
+   * @param label Vertex label.
+   * @param key Property key. Must be indexed for the label.
+   * @param value Property value to look for.
+   *
+   * @return List of matching vertices, each appearing once.
+   */
+  public List<TorcVertex> lookup(String label, String key, Object value) {
+    initialize();
+
+    torcGraphTx.readWrite();
+    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
+    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
+
+    if (!isIndexed(label, key)) {
+      throw new IllegalArgumentException(String.format("Property %s of %s "
+          + "vertices is not indexed", key, label));
+    }
+
+    List<byte[]> keyPrefixes = Collections.singletonList(
+        TorcHelper.getIndexKeyPrefix(label, key, value));
+
+    Map<byte[], List<TorcSerializedEdge>> postingLists;
+    if (txMode) {
+      postingLists = TorcEdgeList.batchRead(rctx, indexTableId, keyPrefixes);
+    } else {
+      postingLists = TorcEdgeList.batchRead(client, nearCache, indexTableId,
+          keyPrefixes);
+    }
+
+    List<TorcSerializedEdge> postings = postingLists.get(keyPrefixes.get(0));
+    if (postings == null) {
+      return new ArrayList<>();
+    }
+
+    UInt128Set seen = new UInt128Set();
+    List<TorcVertex> candidates = new ArrayList<>(postings.size());
+    for (TorcSerializedEdge posting : postings) {
+      if (seen.add(posting.vertexId)) {
+        candidates.add(new TorcVertex(this, posting.vertexId, label));
+      }
+    }
+
+    /* Postings are never removed when a property changes, so check that
+     * each candidate still has the value. */
+    List<Map<Object, Object>> propMaps = 
+        readVertexProperties(candidates, new String[] {key});
+
+    List<TorcVertex> vertices = new ArrayList<>(candidates.size());
+    for (int i = 0; i < candidates.size(); i++) {
+      Object current = propMaps.get(i).get(key);
+      if (current instanceof List) {
+        for (Object element : (List<?>) current) {
+          if (Compare.eq.test(value, element)) {
+            vertices.add(candidates.get(i));
+            break;
+          }
+        }
+      } else if (Compare.eq.test(value, current)) {
+        vertices.add(candidates.get(i));
+      }
+    }
+
+    return vertices;
+  }
+
+  /*
+   * Returns the key prefixes of the index posting lists that a vertex with
+   * the given label and properties belongs in.
+   */
+  List<byte[]> getIndexKeyPrefixes(String label, 
+      Map<? extends Object, ? extends Object> properties) {
+    Set<String> keys = indexedProperties.get(label);
+    if (keys == null) {
+      return Collections.emptyList();
+    }
+
+    List<byte[]> keyPrefixes = new ArrayList<>();
+    for (String key : keys) {
+      Object value = properties.get(key);
+      if (value instanceof List) {
+        for (Object element : (List) value) {
+          keyPrefixes.add(TorcHelper.getIndexKeyPrefix(label, key, element));
+        }
+      } else if (value != null) {
+        keyPrefixes.add(TorcHelper.getIndexKeyPrefix(label, key, value));
+      }
+    }
+
+    return keyPrefixes;
+  }
+
+  /**
+   * Returns whether label membership lists are kept for this graph (see
+   * CONFIG_LABEL_LISTS).
+   *
+   * @return True if label lists are enabled.
+   */
+  public boolean hasLabelLists() {
+    return labelLists;
+  }
+
+  /**
+   * Finds the vertices with any of the given labels by reading their label
+   * membership lists, rather than scanning the vertex table. All partitions
+   * of the lists are read together with multireads. Label lists must be
+   * enabled (see CONFIG_LABEL_LISTS).
+   *
+   * @param labels Vertex labels.
+   *
+   * @return List of the vertices with the given labels, each appearing once.
+   */
+  public List<TorcVertex> verticesByLabel(String ... labels) {
+    initialize();
+
+    torcGraphTx.readWrite();
+    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
+    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
+
+    if (!labelLists) {
+      throw new UnsupportedOperationException(String.format("Label "
+          + "membership lists are not enabled (set %s)", CONFIG_LABEL_LISTS));
+    }
+
+    List<byte[]> keyPrefixes = 
+        new ArrayList<>(labels.length * labelListPartitions);
+    List<String> keyPrefixLabels = 
+        new ArrayList<>(labels.length * labelListPartitions);
+    for (String label : new LinkedHashSet<>(Arrays.asList(labels))) {
+      for (int i = 0; i < labelListPartitions; i++) {
+        keyPrefixes.add(TorcHelper.getLabelListKeyPrefix(label, i));
+        keyPrefixLabels.add(label);
+      }
+    }
+
+    Map<byte[], List<TorcSerializedEdge>> memberLists;
+    if (txMode) {
+      memberLists = TorcEdgeList.batchRead(rctx, labelListTableId, 
+          keyPrefixes);
+    } else {
+      memberLists = TorcEdgeList.batchRead(client, nearCache, 
+          labelListTableId, keyPrefixes);
+    }
+
+    /* A vertex added more than once appears more than once in its list. */
+    UInt128Set seen = new UInt128Set();
+    List<TorcVertex> vertices = new ArrayList<>();
+    for (int i = 0; i < keyPrefixes.size(); i++) {
+      List<TorcSerializedEdge> members = memberLists.get(keyPrefixes.get(i));
+      if (members == null) {
+        continue;
+      }
+
+      String label = keyPrefixLabels.get(i);
+      for (TorcSerializedEdge member : members) {
+        if (seen.add(member.vertexId)) {
+          cacheLabel(member.vertexId, label);
+          vertices.add(new TorcVertex(this, member.vertexId, label));
+        }
+      }
+    }
+
+    return vertices;
+  }
+
+  /*
+   * Returns the key prefix of the label membership list partition that the
+   * given vertex belongs in.
+   */
+  byte[] getLabelListKeyPrefix(UInt128 vertexId, String label) {
+    return TorcHelper.getLabelListKeyPrefix(label, 
+        Math.floorMod(vertexId.hashCode(), labelListPartitions));
+  }
+
+  /*
+   * Adds a vertex to index posting lists or label membership lists.
+   */
+  private void addToLists(long tableId, UInt128 vertexId, 
+      List<byte[]> keyPrefixes) {
+    for (byte[] keyPrefix : keyPrefixes) {
+      if (txMode) {
+        TorcEdgeList.prepend(torcGraphTx.getThreadLocalRAMCloudTx(), 
+            tableId, keyPrefix, vertexId, EMPTY_PROPERTIES, 
+            compressionThreshold);
+      } else {
+        TorcEdgeList.prepend(threadLocalClientMap.get(Thread.currentThread()),
+            tableId, keyPrefix, vertexId, EMPTY_PROPERTIES, 
+            compressionThreshold);
+      }
+
+      invalidateCachedObject(tableId, 
+          TorcEdgeList.getHeadSegmentKey(keyPrefix));
+    }
+  }
+
+  /*
+   * Allocates a new vertex ID from this thread's block of IDs, leasing a new
+   * block from the ID table when the current one runs out. Leasing is done
+   * outside of any transaction, so IDs are never handed out twice even if
+   * the transaction adding the vertex aborts (the ID is just skipped).
+   */
+  UInt128 allocateVertexId() {
+    initialize();
+
+    long[] block = threadLocalIdBlockMap.computeIfAbsent(
+        Thread.currentThread(), t -> new long[2]);
+
+    if (block[0] == block[1]) {
+      RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
+      long end;
+      try {
+        end = client.incrementInt64(idTableId, idCounterKey, idBlockSize, 
+            null);
+      } catch (ClientException e) {
+        throw new RuntimeException(e);
+      }
+      block[0] = end - idBlockSize;
+      block[1] = end;
     }
+
+    return new UInt128(idPrefix, block[0]++);
   }
 
-  public void fillProperties(Iterable<TorcVertex> vertices, String ... keys) {
+  /**
+   * Returns a writer that buffers vertex and edge insertions and writes them
+   * to the graph in batches. See {@link TorcBatchWriter}.
+   *
+   * @return New batch writer.
+   */
+  public TorcBatchWriter batch() {
+    return batch(DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Returns a writer that buffers vertex and edge insertions and writes them
+   * to the graph in batches. See {@link TorcBatchWriter}.
+   *
+   * @param batchSize Number of vertex and edge insertions to buffer before
+   * flushing them automatically.
+   *
+   * @return New batch writer.
+   */
+  public TorcBatchWriter batch(int batchSize) {
     initialize();
 
-    torcGraphTx.readWrite();
+    return new TorcBatchWriter(this, batchSize);
+  }
 
-    // Max number of reads to issue in a multiread / batch
-    int DEFAULT_MAX_MULTIREAD_SIZE = 1 << 11; 
+  /*
+   * Writes a batch of vertex table objects and edge list prepends buffered
+   * by a TorcBatchWriter. Outside of a transaction the vertex table objects
+   * are written with multiwrites, and each edge list is read and written
+   * once regardless of how many edges are prepended to it.
+   */
+  void writeBatch(List<byte[]> vertexKeys, List<byte[]> vertexValues,
+      List<byte[]> keyPrefixes, List<List<UInt128>> neighborIds,
+      List<List<byte[]>> serializedPropLists) {
+    torcGraphTx.readWrite();
+    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
 
     if (txMode) {
-//      RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
-//
-//      // Keeps track of where we are in the vList.
-//      int vListMarker = 0;
-//
-//      while (vListMarker < vList.size()) {
-//        // Queue up a batchSize of asynchronous ReadOps.
-//        int batchSize = Math.min(vList.size() - vListMarker, 
-//            DEFAULT_MAX_MULTIREAD_SIZE);
-//
-//        RAMCloudTransactionReadOp[] readOps = 
-//          new RAMCloudTransactionReadOp[batchSize];
-//        for (int i = 0; i < batchSize; i++) {
-//          readOps[i] = new RAMCloudTransactionReadOp(rctx, vertexTableId,
-//              TorcHelper.getVertexPropertiesKey(vList.get(vListMarker + i).id()), 
-//              true);
-//        }
-//
-//        for (int i = 0; i < batchSize; i++) {
-//          TorcVertex v = vList.get(vListMarker + i);
-//
-//          RAMCloudObject obj;
-//          try {
-//            obj = readOps[i].getValue();
-//            if (obj == null) {
-//              // This vertex has no properties set.
-//              v.setProperties(new HashMap<>());
-//              continue;
-//            }
-//          } catch (ClientException e) {
-//            throw new RuntimeException(e);
-//          } finally {
-//            readOps[i].close();
-//          }
-//
-//          Map<Object, Object> properties = 
-//            (Map<Object, Object>)TorcHelper.deserializeObject(obj.getValueBytes());
-//          v.setProperties(properties);
-//        }
-//
-//        vListMarker += batchSize;
-//      }
-    } else {
-      RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
-
-      Iterator<TorcVertex> it = vertices.iterator();
-      LinkedList<MultiReadObject> requestQ = new LinkedList<>();
-      LinkedList<TorcVertex> vertexQ = new LinkedList<>();
-      while (it.hasNext()) {
-        TorcVertex v = it.next();
-        requestQ.addLast(new MultiReadObject(vertexTableId, 
-              TorcHelper.getVertexPropertiesKey(v.id())));
-        vertexQ.addLast(v);
-        if (requestQ.size() == DEFAULT_MAX_MULTIREAD_SIZE) {
-          MultiReadObject[] requests = new MultiReadObject[requestQ.size()];
-          for (int i = 0; i < requests.length; i++) {
-            requests[i] = requestQ.removeFirst();
-          }
-
-          client.read(requests);
-        
-          for (int i = 0; i < requests.length; i++) {
-            v = vertexQ.removeFirst();
-
-            if (requests[i].getStatus() != Status.STATUS_OK) {
-              if (requests[i].getStatus() == Status.STATUS_OBJECT_DOESNT_EXIST) {
-                // This vertex has no properties set.
-                continue;
-              } else {
-                throw new RuntimeException(
-                    "Vertex properties RAMCloud object had status " + 
-                    requests[i].getStatus());
-              }
-            }
-
-            Map<Object, Object> properties = (Map<Object, Object>)
-              TorcHelper.deserializeObject(requests[i].getValueBytes());
-            if (keys.length == 1) {
-              v.setProperty(keys[0], properties.get(keys[0]));
-            } else {
-              v.setProperties(properties);
-            }
-          } 
-        } 
+      for (int i = 0; i < vertexKeys.size(); i++) {
+        writeVertexTableObject(vertexKeys.get(i), vertexValues.get(i));
       }
-
-      if (requestQ.size() > 0) {
-        MultiReadObject[] requests = new MultiReadObject[requestQ.size()];
-        for (int i = 0; i < requests.length; i++) {
-          requests[i] = requestQ.removeFirst();
+    } else {
+      for (int base = 0; base < vertexKeys.size(); 
+          base += DEFAULT_MAX_MULTIWRITE_SIZE) {
+        int batchSize = 
+            Math.min(vertexKeys.size() - base, DEFAULT_MAX_MULTIWRITE_SIZE);
+        MultiWriteObject[] requests = new MultiWriteObject[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+          requests[i] = new MultiWriteObject(vertexTableId, 
+              vertexKeys.get(base + i), vertexValues.get(base + i));
         }
 
-        client.read(requests);
-      
-        for (int i = 0; i < requests.length; i++) {
-          TorcVertex v = vertexQ.removeFirst();
+        client.write(requests);
 
+        for (int i = 0; i < batchSize; i++) {
           if (requests[i].getStatus() != Status.STATUS_OK) {
-            if (requests[i].getStatus() == Status.STATUS_OBJECT_DOESNT_EXIST) {
-              // This vertex has no properties set.
-              continue;
-            } else {
-              throw new RuntimeException(
-                  "Vertex properties RAMCloud object had status " + 
-                  requests[i].getStatus());
-            }
-          }
-
-          Map<Object, Object> properties = (Map<Object, Object>)
-            TorcHelper.deserializeObject(requests[i].getValueBytes());
-          if (keys.length == 1) {
-            v.setProperty(keys[0], properties.get(keys[0]));
-          } else {
-            v.setProperties(properties);
+            throw new RuntimeException(
+                "Vertex table RAMCloud write had status " + 
+                requests[i].getStatus());
           }
+          invalidateCachedObject(vertexTableId, vertexKeys.get(base + i));
         }
       }
     }
-  }
-
-  public void enableTx() {
-    txMode = true;
-  }
-
-  public void disableTx() {
-    txMode = false;
-  }
-
-  public boolean getTxMode() {
-    return txMode;
-  }
 
-  public RAMCloud getClient() {
-    return threadLocalClientMap.get(Thread.currentThread());
+    batchPrepend(edgeListTableId, keyPrefixes, neighborIds, 
+        serializedPropLists);
   }
 
-  public boolean isInitialized() {
-    return initialized;
+  /*
+   * Adds vertices to index posting lists for a TorcBatchWriter, with each
+   * posting list read and written once.
+   */
+  void writeIndexBatch(List<byte[]> keyPrefixes, 
+      List<List<UInt128>> vertexIds) {
+    writeListBatch(indexTableId, keyPrefixes, vertexIds);
   }
 
   /*
-   * Specialized method for quickly loading a vertex. Method works by executing
-   * essentially a blind write of a vertex into the graph, without checking
-   * whether or not the vertex exists. Assumes that the vertex has an ID already
-   * set. Does not perform normal checks on the properties. If outputFile is
-   * non-null, then instead of writing the writing the vertex into RAMCloud, the
-   * vertex's RAMCloud key-value serialization is appended to the given file.
+   * Adds vertices to label membership lists for a TorcBatchWriter, with
+   * each list partition read and written once.
    */
-  public void loadVertex(UInt128 vertexId, String label, 
-      Map<Object, Object> properties) {
-    List<byte[]> keys = new ArrayList<>();
-    List<byte[]> values = new ArrayList<>();
-
-    // Label
-    keys.add(TorcHelper.getVertexLabelKey(vertexId));
-    values.add(TorcHelper.serializeObject(label));
-
-    // Properties
-    keys.add(TorcHelper.getVertexPropertiesKey(vertexId));
-    values.add(TorcHelper.serializeObject(properties));
-
-    for (int i = 0; i < keys.size(); i++) {
-      byte[] key = keys.get(i);
-      byte[] value = values.get(i);
-
-      ByteBuffer buffer = ByteBuffer.allocate(
-          Integer.BYTES +
-          key.length +
-          Integer.BYTES +
-          value.length)
-          .order(ByteOrder.LITTLE_ENDIAN);
+  void writeLabelListBatch(List<byte[]> keyPrefixes, 
+      List<List<UInt128>> vertexIds) {
+    writeListBatch(labelListTableId, keyPrefixes, vertexIds);
+  }
 
-      buffer.putInt(key.length);
-      buffer.put(key);
-      buffer.putInt(value.length);
-      buffer.put(value);
+  private void writeListBatch(long tableId, List<byte[]> keyPrefixes, 
+      List<List<UInt128>> vertexIds) {
+    torcGraphTx.readWrite();
 
-      try {
-        vertexTableOS.write(buffer.array());
-      } catch (IOException e) {
-        throw new RuntimeException(e);
-      }
+    List<List<byte[]>> serializedPropLists = 
+        new ArrayList<>(keyPrefixes.size());
+    for (List<UInt128> ids : vertexIds) {
+      serializedPropLists.add(Collections.nCopies(ids.size(), 
+            EMPTY_PROPERTIES));
     }
-  }
 
-  /*
-   * Specialized method for quickly loading an edge list for a vertex in one
-   * direction. Edge lists for the neighbor vertices must be added separately.
-   */
-  public void loadEdges(final UInt128 baseVertexId, final String edgeLabel,
-      final Direction direction, final String neighborLabel, 
-      final List<UInt128> neighborIds, 
-      final List<Map<Object, Object>> propMaps) {
-    byte[] keyPrefix =
-        TorcHelper.getEdgeListKeyPrefix(baseVertexId, edgeLabel, direction,
-            neighborLabel);
+    batchPrepend(tableId, keyPrefixes, vertexIds, serializedPropLists);
+  }
 
-    List<byte[]> serializedPropList = new ArrayList<>(propMaps.size());
-    for (int i = 0; i < propMaps.size(); i++) {
-      serializedPropList.add(TorcHelper.serializeObject(propMaps.get(i)));
+  private void batchPrepend(long tableId, List<byte[]> keyPrefixes, 
+      List<List<UInt128>> neighborIds, 
+      List<List<byte[]>> serializedPropLists) {
+    if (txMode) {
+      TorcEdgeList.batchPrepend(torcGraphTx.getThreadLocalRAMCloudTx(), 
+          tableId, keyPrefixes, neighborIds, serializedPropLists, 
+          compressionThreshold);
+    } else {
+      TorcEdgeList.batchPrepend(
+          threadLocalClientMap.get(Thread.currentThread()), tableId, 
+          keyPrefixes, neighborIds, serializedPropLists, 
+          compressionThreshold);
     }
 
-    TorcEdgeList.writeListToFile(edgeListTableOS, keyPrefix, neighborIds,
-        serializedPropList);
+    for (byte[] keyPrefix : keyPrefixes) {
+      invalidateCachedObject(tableId, 
+          TorcEdgeList.getHeadSegmentKey(keyPrefix));
+    }
   }
 
   /** 
@@ -879,7 +2728,7 @@ public final class TorcGraph implements Graph {
         for (Direction edgeDir : eDirs) {
           for (String neighborLabel : neighborLabels) {
             brKeyPrefixes.add(TorcHelper.getEdgeListKeyPrefix(vertex.id(), 
-                  edgeLabel, direction, neighborLabel));
+                  edgeLabel, edgeDir, neighborLabel));
             brVertexList.add(vertex);
             brBaseVertexIds.add(vertex.id());
             brEdgeLabels.add(edgeLabel);
@@ -896,7 +2745,7 @@ public final class TorcGraph implements Graph {
           edgeListTableId, brKeyPrefixes, this, brBaseVertexIds, brEdgeLabels, 
           brDirections);
     } else {
-      edgeListMap = TorcEdgeList.batchRead(client, 
+      edgeListMap = TorcEdgeList.batchRead(client, nearCache, 
           edgeListTableId, brKeyPrefixes, this, brBaseVertexIds, brEdgeLabels, 
           brDirections);
     }
@@ -922,11 +2771,10 @@ public final class TorcGraph implements Graph {
       }
 
       for (TorcEdge edge : edgeList) {
-        if (dir == Direction.OUT) {
-          neighborList.add(new TorcVertex(this, edge.getV2Id(), neighborLabel));
-        } else {
-          neighborList.add(new TorcVertex(this, edge.getV1Id(), neighborLabel));
-        }
+        UInt128 neighborId = 
+            (dir == Direction.OUT) ? edge.getV2Id() : edge.getV1Id();
+        cacheLabel(neighborId, neighborLabel);
+        neighborList.add(new TorcVertex(this, neighborId, neighborLabel));
       }
     }    
 
@@ -999,7 +2847,7 @@ public final class TorcGraph implements Graph {
         for (Direction edgeDir : eDirs) {
           for (String neighborLabel : neighborLabels) {
             brKeyPrefixes.add(TorcHelper.getEdgeListKeyPrefix(vertex.id(), 
-                  edgeLabel, direction, neighborLabel));
+                  edgeLabel, edgeDir, neighborLabel));
             brVertexList.add(vertex);
             brBaseVertexIds.add(vertex.id());
             brEdgeLabels.add(edgeLabel);
@@ -1016,7 +2864,7 @@ public final class TorcGraph implements Graph {
           edgeListTableId, brKeyPrefixes, this, brBaseVertexIds, brEdgeLabels, 
           brDirections); 
     } else {
-      edgeListMap = TorcEdgeList.batchRead(client, 
+      edgeListMap = TorcEdgeList.batchRead(client, nearCache, 
           edgeListTableId, brKeyPrefixes, this, brBaseVertexIds, brEdgeLabels, 
           brDirections);
     }
@@ -1033,6 +2881,8 @@ public final class TorcGraph implements Graph {
 
       List<TorcEdge> edgeList = edgeListMap.get(keyPrefix);
 
+      setEdgeEndpointLabels(edgeList, (TorcVertex) v, dir, neighborLabel);
+
       List<Edge> incidentEdgeList;
       if (map.containsKey(v)) {
         incidentEdgeList = map.get(v);
@@ -1064,6 +2914,18 @@ public final class TorcGraph implements Graph {
    * finishing the current test and moving on to the next.
    */
   public void closeAllThreads() {
+    synchronized (this) {
+      if (asyncReader != null) {
+        asyncReader.shutdown();
+        asyncReader = null;
+      }
+
+      if (pipelinePool != null) {
+        pipelinePool.shutdown();
+        pipelinePool = null;
+      }
+    }
+
     torcGraphTx.doRollbackAllThreads();
 
     threadLocalClientMap.forEach((thread, client) -> {
@@ -1079,6 +2941,7 @@ public final class TorcGraph implements Graph {
     });
 
     threadLocalClientMap.clear();
+    threadLocalIdBlockMap.clear();
   }
 
   /**
@@ -1119,6 +2982,27 @@ public final class TorcGraph implements Graph {
         totalMasterServers);
     edgeListTableId = client.createTable(graphName + "_" + EDGELIST_TABLE_NAME,
         totalMasterServers);
+    if (!indexedProperties.isEmpty()) {
+      client.dropTable(graphName + "_" + INDEX_TABLE_NAME);
+      indexTableId = client.createTable(graphName + "_" + INDEX_TABLE_NAME,
+          totalMasterServers);
+    }
+    if (labelLists) {
+      client.dropTable(graphName + "_" + LABEL_LIST_TABLE_NAME);
+      labelListTableId = 
+          client.createTable(graphName + "_" + LABEL_LIST_TABLE_NAME,
+              totalMasterServers);
+    }
+
+    if (labelCache != null) {
+      labelCache.clear();
+    }
+
+    if (nearCache != null) {
+      nearCache.clear();
+    }
+
+    threadLocalIdBlockMap.clear();
   }
 
   /* **************************************************************************
@@ -1161,6 +3045,16 @@ public final class TorcGraph implements Graph {
       edgeListTableId =
           client.createTable(graphName + "_" + EDGELIST_TABLE_NAME,
               totalMasterServers);
+      if (!indexedProperties.isEmpty()) {
+        indexTableId =
+            client.createTable(graphName + "_" + INDEX_TABLE_NAME,
+                totalMasterServers);
+      }
+      if (labelLists) {
+        labelListTableId =
+            client.createTable(graphName + "_" + LABEL_LIST_TABLE_NAME,
+                totalMasterServers);
+      }
 
       initialized = true;
 
@@ -1173,6 +3067,11 @@ public final class TorcGraph implements Graph {
   }
 
   String getLabel(TorcVertex v) {
+    String cachedLabel = getCachedLabel(v.id());
+    if (cachedLabel != null) {
+      return cachedLabel;
+    }
+
     RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
     RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
 
@@ -1191,8 +3090,105 @@ public final class TorcGraph implements Graph {
           "RAMCloud object does not exist");
     }
 
-    return (String)
-      TorcHelper.deserializeObject(neighborLabelRCObj.getValueBytes());
+    String label = (String)
+      TorcHelper.deserializeObject(neighborLabelRCObj.getValueBytes(),
+          stringPool);
+    cacheLabel(v.id(), label);
+    return label;
+  }
+
+  /**
+   * Reads in bulk the labels of all the given vertices whose labels are not
+   * already known, so that subsequent calls to {@link TorcVertex#label()} do
+   * not each need to make a round trip to RAMCloud. Reads are batched the same
+   * way as in {@link #fillProperties(Iterable, String...)}.
+   *
+   * @param vertices Vertices whose labels to fill in.
+   */
+  public void fillLabels(Iterable<? extends TorcVertex> vertices) {
+    initialize();
+
+    torcGraphTx.readWrite();
+
+    List<TorcVertex> vList = new ArrayList<>();
+    List<byte[]> labelKeys = new ArrayList<>();
+    for (TorcVertex v : vertices) {
+      if (!v.hasLabel()) {
+        String cachedLabel = getCachedLabel(v.id());
+        if (cachedLabel != null) {
+          v.setLabel(cachedLabel);
+        } else {
+          vList.add(v);
+          labelKeys.add(TorcHelper.getVertexLabelKey(v.id()));
+        }
+      }
+    }
+
+    byte[][] values = readVertexTableObjects(labelKeys);
+
+    for (int i = 0; i < vList.size(); i++) {
+      TorcVertex v = vList.get(i);
+      if (values[i] == null) {
+        throw Graph.Exceptions.elementNotFound(TorcVertex.class, v.id());
+      }
+
+      String label = (String) TorcHelper.deserializeObject(values[i],
+          stringPool);
+      cacheLabel(v.id(), label);
+      v.setLabel(label);
+    }
+  }
+
+  /**
+   * Returns the near cache of vertex property objects and edge list segments
+   * kept by this graph, e.g. for reading its hit and miss counts.
+   *
+   * @return The near cache, or null if near caching is disabled.
+   */
+  public ObjectCache getNearCache() {
+    return nearCache;
+  }
+
+  /**
+   * Returns the cache of vertex labels kept by this graph, e.g. for reading
+   * its hit and miss counts.
+   *
+   * @return The label cache, or null if label caching is disabled.
+   */
+  public VertexLabelCache getLabelCache() {
+    return labelCache;
+  }
+
+  private String getCachedLabel(UInt128 vertexId) {
+    if (labelCache == null) {
+      return null;
+    }
+    return labelCache.get(vertexId);
+  }
+
+  private void cacheLabel(UInt128 vertexId, String label) {
+    if (labelCache != null) {
+      labelCache.put(vertexId, label);
+    }
+  }
+
+  /*
+   * Edges read from edge lists are created with label-less endpoints. Fill in
+   * the labels we know for free: that of the vertex whose edge list it is, if
+   * known, and that of the neighbors, which is part of the edge list key.
+   */
+  private void setEdgeEndpointLabels(List<TorcEdge> edgeList, 
+      TorcVertex baseVertex, Direction dir, String neighborLabel) {
+    String baseLabel = baseVertex.hasLabel() ? baseVertex.label() : null;
+    for (TorcEdge edge : edgeList) {
+      TorcVertex base = (dir == Direction.OUT) ? edge.getV1() : edge.getV2();
+      TorcVertex neighbor = (dir == Direction.OUT) ? edge.getV2() : edge.getV1();
+      if (baseLabel != null) {
+        base.setLabel(baseLabel);
+      }
+      neighbor.setLabel(neighborLabel);
+      cacheLabel(neighbor.id(), neighborLabel);
+    }
   }
 
   void removeVertex(final TorcVertex vertex) {
@@ -1213,25 +3209,7 @@ public final class TorcGraph implements Graph {
 
 //    TorcHelper.legalPropertyKeyValueArray(Edge.class, keyValues);
 
-    // Create property map.
-    Map<Object, Object> properties = new HashMap<>();
-    for (int i = 0; i < keyValues.length; i = i + 2) {
-      Object key = keyValues[i];
-      Object val = keyValues[i + 1];
-      if (properties.containsKey(key)) {
-        if (properties.get(key) instanceof List) {
-          ((List)properties.get(key)).add(val);
-        } else {
-          // Convert this to a list.
-          List<Object> list = new ArrayList<>();
-          list.add(properties.get(key));
-          list.add(val);
-          properties.put(key, list);
-        }
-      } else {
-        properties.put(key, val);
-      }
-    }
+    Map<Object, Object> properties = buildPropertyMap(keyValues);
 
     byte[] serializedProperties =
         TorcHelper.serializeObject(properties);
@@ -1267,11 +3245,14 @@ public final class TorcGraph implements Graph {
       boolean newListCreated;
       if (txMode) {
         newListCreated = TorcEdgeList.prepend(rctx, edgeListTableId, keyPrefix, 
-            neighborVertex.id(), serializedProperties);
+            neighborVertex.id(), serializedProperties, compressionThreshold);
       } else {
         newListCreated = TorcEdgeList.prepend(client, edgeListTableId, keyPrefix, 
-            neighborVertex.id(), serializedProperties);
+            neighborVertex.id(), serializedProperties, compressionThreshold);
       }
+
+      invalidateCachedObject(edgeListTableId, 
+          TorcEdgeList.getHeadSegmentKey(keyPrefix));
     }
 
     return new TorcEdge(this, vertex1.id(), vertex2.id(), edgeLabel,
@@ -1327,6 +3308,8 @@ public final class TorcGraph implements Graph {
                 keyPrefix, this, vertex.id(), edgeLabel, dir);
           }
 
+          setEdgeEndpointLabels(edgeList, vertex, dir, neighborLabel);
+
           edges.addAll(edgeList);
         }
       }
@@ -1382,13 +3365,10 @@ public final class TorcGraph implements Graph {
           }
 
           for (TorcEdge edge : edgeList) {
-            if (dir == Direction.OUT) {
-              vertices.add(new TorcVertex(this, edge.getV2Id(), 
-                    neighborLabel));
-            } else {
-              vertices.add(new TorcVertex(this, edge.getV1Id(), 
-                    neighborLabel));
-            } 
+            UInt128 neighborId = 
+                (dir == Direction.OUT) ? edge.getV2Id() : edge.getV1Id();
+            cacheLabel(neighborId, neighborLabel);
+            vertices.add(new TorcVertex(this, neighborId, neighborLabel));
           }
         }
       }
@@ -1399,51 +3379,17 @@ public final class TorcGraph implements Graph {
 
   Map<Object, Object> getVertexPropeteryMap(final TorcVertex vertex) {
     torcGraphTx.readWrite();
-    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
-    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
-
-    RAMCloudObject obj;
-    if (txMode) {
-      obj  = rctx.read(vertexTableId,
-        TorcHelper.getVertexPropertiesKey(vertex.id()));
-    } else {
-      obj  = client.read(vertexTableId,
-        TorcHelper.getVertexPropertiesKey(vertex.id()));
-    }
 
-    Map<Object, Object> properties;
-    if (obj != null) {
-      properties = 
-        (Map<Object, Object>)TorcHelper.deserializeObject(obj.getValueBytes());
-    } else {
-      properties = new HashMap<>();
-    }
-  
-    return properties;
+    return readVertexProperties(Collections.singletonList(vertex),
+        new String[0]).get(0);
   }
 
   <V> Iterator<VertexProperty<V>> getVertexProperties(final TorcVertex vertex,
       final String[] propertyKeys) {
     torcGraphTx.readWrite();
-    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
-    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
 
-    RAMCloudObject obj;
-    if (txMode) {
-      obj  = rctx.read(vertexTableId,
-        TorcHelper.getVertexPropertiesKey(vertex.id()));
-    } else {
-      obj  = client.read(vertexTableId,
-        TorcHelper.getVertexPropertiesKey(vertex.id()));
-    }
-
-    Map<Object, Object> properties;
-    if (obj != null) {
-      properties = 
-        (Map<Object, Object>)TorcHelper.deserializeObject(obj.getValueBytes());
-    } else {
-      properties = new HashMap<>();
-    }
+    Map<Object, Object> properties = readVertexProperties(
+        Collections.singletonList(vertex), propertyKeys).get(0);
 
     List<VertexProperty<V>> propList = new ArrayList<>();
 
@@ -1480,51 +3426,117 @@ public final class TorcGraph implements Graph {
 //      throw Property.Exceptions.dataTypeOfPropertyValueNotSupported(value);
 //    }
 
+    byte[] propsKey = TorcHelper.getVertexPropertiesKey(vertex.id());
+
     RAMCloudObject obj; 
     if (txMode) {
-      obj  = rctx.read(vertexTableId,
-          TorcHelper.getVertexPropertiesKey(vertex.id()));
+      obj  = rctx.read(vertexTableId, propsKey);
     } else {
-      obj  = client.read(vertexTableId,
-          TorcHelper.getVertexPropertiesKey(vertex.id()));
+      obj  = client.read(vertexTableId, propsKey);
     }
 
-    Map<Object, Object> properties;
+    Object stored = null;
     if (obj != null) {
-      properties = 
-        (Map<Object, Object>)TorcHelper.deserializeObject(obj.getValueBytes());
-    } else {
-      properties = new HashMap<>();
+      stored = TorcHelper.deserializeObject(obj.getValueBytes(), stringPool);
     }
 
-    if (properties.containsKey(key)) {
-      if (cardinality == VertexProperty.Cardinality.single) {
-        properties.put(key, value);
-      } else if (cardinality == VertexProperty.Cardinality.list) {
-        ((List)properties.get(key)).add(value);
-      } else if (cardinality == VertexProperty.Cardinality.set) {
-        if (!((Set)properties.get(key)).contains(value)) {
-          ((Set)properties.get(key)).add(value);
-        }
+    boolean perKeyLayout;
+    if (stored != null) {
+      perKeyLayout = stored instanceof List;
+    } else {
+      perKeyLayout = usesPerKeyPropertyLayout(vertex.label());
+    }
+
+    if (perKeyLayout) {
+      /* Properties object holds the list of this vertex's property keys, and
+       * each property is its own object. Setting a single valued property
+       * reads only the (small) list of keys above, not the other
+       * properties, and writes just the one property object. The list of
+       * keys is only written when a new key is added. */
+      List<Object> propertyKeys;
+      if (stored != null) {
+        propertyKeys = (List<Object>) stored;
       } else {
-        throw new UnsupportedOperationException("Do not recognize Cardinality "
-            + "of this type: " + cardinality.toString());
+        propertyKeys = new ArrayList<>();
+      }
+
+      byte[] propKey = TorcHelper.getVertexPropertyKey(vertex.id(), key);
+      boolean newKey = !propertyKeys.contains(key);
+
+      Object newValue = value;
+      if (!newKey && cardinality != VertexProperty.Cardinality.single) {
+        RAMCloudObject propObj;
+        if (txMode) {
+          propObj = rctx.read(vertexTableId, propKey);
+        } else {
+          propObj = client.read(vertexTableId, propKey);
+        }
+
+        if (propObj != null) {
+          newValue = mergePropertyValue(
+              TorcHelper.deserializeObject(propObj.getValueBytes(),
+                  stringPool),
+              cardinality, value);
+        }
+      }
+
+      writeVertexTableObject(propKey, TorcHelper.compressObject(
+            TorcHelper.serializeObject(newValue), compressionThreshold));
+
+      if (newKey) {
+        propertyKeys.add(key);
+        writeVertexTableObject(propsKey, 
+            TorcHelper.serializeObject(propertyKeys));
       }
     } else {
-      properties.put(key, value);
+      Map<Object, Object> properties;
+      if (stored != null) {
+        properties = (Map<Object, Object>) stored;
+      } else {
+        properties = new PropertyMap<>();
+      }
+
+      if (properties.containsKey(key)) {
+        properties.put(key, 
+            mergePropertyValue(properties.get(key), cardinality, value));
+      } else {
+        properties.put(key, value);
+      }
+
+      writeVertexTableObject(propsKey, TorcHelper.compressObject(
+            TorcHelper.serializeObject(properties), compressionThreshold));
     }
 
-    if (txMode) {
-      rctx.write(vertexTableId, TorcHelper.getVertexPropertiesKey(vertex.id()),
-          TorcHelper.serializeObject(properties));
-    } else {
-      client.write(vertexTableId, TorcHelper.getVertexPropertiesKey(vertex.id()),
-          TorcHelper.serializeObject(properties), null);
+    if (!indexedProperties.isEmpty()) {
+      addToLists(indexTableId, vertex.id(), getIndexKeyPrefixes(vertex.label(), 
+            Collections.singletonMap(key, value)));
     }
 
     return new TorcVertexProperty(vertex, key, value);
   }
 
+  /*
+   * Returns the new value of a property that already has value oldValue when
+   * value is added to it with the given cardinality.
+   */
+  private static Object mergePropertyValue(Object oldValue,
+      VertexProperty.Cardinality cardinality, Object value) {
+    if (cardinality == VertexProperty.Cardinality.single) {
+      return value;
+    } else if (cardinality == VertexProperty.Cardinality.list) {
+      ((List)oldValue).add(value);
+      return oldValue;
+    } else if (cardinality == VertexProperty.Cardinality.set) {
+      if (!((Set)oldValue).contains(value)) {
+        ((Set)oldValue).add(value);
+      }
+      return oldValue;
+    } else {
+      throw new UnsupportedOperationException("Do not recognize Cardinality "
+          + "of this type: " + cardinality.toString());
+    }
+  }
+
   void removeEdge(final TorcEdge edge) {
     throw Edge.Exceptions.edgeRemovalNotSupported();
   }
@@ -1532,50 +3544,21 @@ public final class TorcGraph implements Graph {
   Iterator<Vertex> edgeVertices(final TorcEdge edge,
       final Direction direction) {
     torcGraphTx.readWrite();
-    RAMCloudTransaction rctx = torcGraphTx.getThreadLocalRAMCloudTx();
-    RAMCloud client = threadLocalClientMap.get(Thread.currentThread());
 
-    List<Vertex> list = new ArrayList<>();
+    List<TorcVertex> list = new ArrayList<>(2);
 
     if (direction.equals(Direction.OUT) || direction.equals(Direction.BOTH)) {
-      RAMCloudObject obj; 
-      if (txMode) {
-        obj  = rctx.read(vertexTableId,
-            TorcHelper.getVertexLabelKey(edge.getV1Id()));
-      } else {
-        obj  = client.read(vertexTableId,
-            TorcHelper.getVertexLabelKey(edge.getV1Id()));
-      }
-
-      if (obj == null) {
-        throw Graph.Exceptions.elementNotFound(TorcVertex.class,
-            edge.getV1Id());
-      }
-
-      list.add(new TorcVertex(this, edge.getV1Id(), 
-            (String)TorcHelper.deserializeObject(obj.getValueBytes())));
+      list.add(edge.getV1());
     }
 
     if (direction.equals(Direction.IN) || direction.equals(Direction.BOTH)) {
-      RAMCloudObject obj; 
-      if (txMode) {
-        obj  = rctx.read(vertexTableId,
-            TorcHelper.getVertexLabelKey(edge.getV2Id()));
-      } else {
-        obj  = client.read(vertexTableId,
-            TorcHelper.getVertexLabelKey(edge.getV2Id()));
-      }
-
-      if (obj == null) {
-        throw Graph.Exceptions.elementNotFound(TorcVertex.class,
-            edge.getV2Id());
-      }
-
-      list.add(new TorcVertex(this, edge.getV2Id(), 
-            (String)TorcHelper.deserializeObject(obj.getValueBytes())));
+      list.add(edge.getV2());
     }
 
-    return list.iterator();
+    /* Reads both labels at once, if needed. */
+    fillLabels(list);
+
+    return new ArrayList<Vertex>(list).iterator();
   }
 
   <V> Iterator<Property<V>> getEdgeProperties(final TorcEdge edge,
@@ -1636,6 +3619,11 @@ public final class TorcGraph implements Graph {
     private final ConcurrentHashMap<Thread, RAMCloudTransaction> threadLocalRCTXMap =
         new ConcurrentHashMap<>();
 
+    /* Near cache invalidations to repeat once each thread's transaction has
+     * committed. */
+    private final ConcurrentHashMap<Thread, List<Runnable>> 
+        threadLocalInvalidationsMap = new ConcurrentHashMap<>();
+
     public TorcGraphTransaction() {
       super(TorcGraph.this);
     }
@@ -1650,6 +3638,19 @@ public final class TorcGraph implements Graph {
       return threadLocalRCTXMap.get(Thread.currentThread());
     }
 
+    /**
+     * Records that the given object, written in this thread's transaction,
+     * must be invalidated in the near cache when the transaction commits.
+     *
+     * @param tableId RAMCloud table ID of the object.
+     * @param key RAMCloud key of the object.
+     */
+    protected void invalidateOnCommit(long tableId, byte[] key) {
+      threadLocalInvalidationsMap.computeIfAbsent(Thread.currentThread(),
+          t -> new ArrayList<>()).add(
+            () -> nearCache.invalidate(tableId, key));
+    }
+
     /**
      * This method rolls back the transactions of all threads that have not
      * closed their transactions themselves. It is meant to be used as a final
@@ -1677,6 +3678,7 @@ public final class TorcGraph implements Graph {
       });
 
       threadLocalRCTXMap.clear();
+      threadLocalInvalidationsMap.clear();
     }
 
     @Override
@@ -1713,6 +3715,12 @@ public final class TorcGraph implements Graph {
       } finally {
         rctx.close();
         threadLocalRCTXMap.remove(Thread.currentThread());
+
+        List<Runnable> invalidations = 
+            threadLocalInvalidationsMap.remove(Thread.currentThread());
+        if (invalidations != null) {
+          invalidations.forEach(Runnable::run);
+        }
       }
     }
 
@@ -1727,6 +3735,7 @@ public final class TorcGraph implements Graph {
         throw new AbstractTransaction.TransactionException(e);
       } finally {
         threadLocalRCTXMap.remove(Thread.currentThread());
+        threadLocalInvalidationsMap.remove(Thread.currentThread());
       }
     }
 
@@ -53,8 +53,35 @@ public final class TorcGraphProviderOptimizationStrategy extends
       if (TraversalHelper.onGraphComputer(traversal))
         return;
 
+      // Fold has() steps that directly follow a g.V() into a TorcGraphStep,
+      // which can answer them from a property index.
       for (final GraphStep originalGraphStep : 
         TraversalHelper.getStepsOfClass(GraphStep.class, traversal)) {
+        if (!originalGraphStep.returnsVertex() 
+            || originalGraphStep.getIds().length > 0)
+          continue;
+
+        final TorcGraphStep<?, ?> torcGraphStep = 
+            new TorcGraphStep<>(originalGraphStep);
+        TraversalHelper.replaceStep(originalGraphStep, torcGraphStep,
+            traversal);
+
+        Step<?, ?> currentStep = torcGraphStep.getNextStep();
+        while (currentStep instanceof HasStep 
+            || currentStep instanceof NoOpBarrierStep) {
+          if (currentStep instanceof HasStep) {
+            for (final HasContainer hasContainer : 
+                ((HasContainerHolder) currentStep).getHasContainers()) {
+              if (!GraphStep.processHasContainerIds(torcGraphStep, 
+                    hasContainer))
+                torcGraphStep.addHasContainer(hasContainer);
+            }
+            TraversalHelper.copyLabels(currentStep, 
+                currentStep.getPreviousStep(), false);
+            traversal.removeStep(currentStep);
+          }
+          currentStep = currentStep.getNextStep();
+        }
       }
 
       for (final VertexStep originalVertexStep : 
@@ -0,0 +1,211 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.HasContainerHolder;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.GraphStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.util.AndP;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.CloseableIterator;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Custom GraphStep for g.V() steps followed by has() steps. Absorbs the has()
+ * steps, and when they select a vertex label and an indexed property value,
+ * finds the matching vertices with {@link TorcGraph#lookup} instead of
+ * reading all vertices. Otherwise vertices selected by label are read from
+ * the label membership lists when the graph keeps them
+ * ({@link TorcGraph#verticesByLabel}), and the vertices are found with a
+ * table scan, filtered by label if any are given, when it does not. Any
+ * other has() conditions are then applied to the vertices found.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcGraphStep<S, E extends Element> extends GraphStep<S, E> 
+    implements HasContainerHolder {
+
+  private final List<HasContainer> hasContainers = new ArrayList<>();
+
+  public TorcGraphStep(final GraphStep<S, E> originalGraphStep) {
+    super(originalGraphStep.getTraversal(), 
+        originalGraphStep.getReturnClass(), 
+        originalGraphStep.isStartStep(), 
+        originalGraphStep.getIds());
+    originalGraphStep.getLabels().forEach(this::addLabel);
+    this.setIteratorSupplier(this::vertices);
+  }
+
+  private Iterator<E> vertices() {
+    TorcGraph graph = (TorcGraph) this.getTraversal().getGraph().get();
+
+    if (ids != null && ids.length > 0) {
+      return filter((Iterator<E>) graph.vertices(ids), hasContainers);
+    }
+
+    HasContainer labelContainer = null;
+    String[] labels = null;
+    for (HasContainer hasContainer : hasContainers) {
+      if (hasContainer.getKey().equals(T.label.getAccessor())) {
+        if (hasContainer.getBiPredicate() == Compare.eq) {
+          labelContainer = hasContainer;
+          labels = new String[] {(String) hasContainer.getValue()};
+          break;
+        } else if (hasContainer.getBiPredicate() == Contains.within) {
+          labelContainer = hasContainer;
+          labels = ((Collection<?>) hasContainer.getValue())
+              .toArray(new String[0]);
+          break;
+        }
+      }
+    }
+
+    if (labelContainer != null && labels.length == 1) {
+      String label = labels[0];
+      for (HasContainer hasContainer : hasContainers) {
+        if (hasContainer.getBiPredicate() == Compare.eq 
+            && graph.isIndexed(label, hasContainer.getKey())
+            && isIndexable(hasContainer.getValue())) {
+          List<TorcVertex> vertices = graph.lookup(label, 
+              hasContainer.getKey(), hasContainer.getValue());
+
+          /* The lookup already guarantees the label and the property. */
+          List<HasContainer> remaining = new ArrayList<>(hasContainers);
+          remaining.remove(labelContainer);
+          remaining.remove(hasContainer);
+
+          return filter((Iterator<E>) (Iterator) vertices.iterator(), 
+              remaining);
+        }
+      }
+    }
+
+    /* No usable index, so read the label membership lists if there are
+     * any, or else fall back to streaming a scan of the vertex table, which
+     * can at least filter on the label. */
+    Iterator<TorcVertex> vertices;
+    List<HasContainer> remaining = new ArrayList<>(hasContainers);
+    if (labelContainer != null && graph.hasLabelLists()) {
+      vertices = graph.verticesByLabel(labels).iterator();
+      remaining.remove(labelContainer);
+    } else if (labelContainer != null) {
+      vertices = graph.streamVertices(labels);
+      remaining.remove(labelContainer);
+    } else {
+      vertices = graph.streamVertices();
+    }
+
+    return filter((Iterator<E>) (Iterator) vertices, remaining);
+  }
+
+  /*
+   * Returns whether an eq() value can be answered from an index. Index keys
+   * hold integral numbers as Longs, but eq() also matches across integral
+   * and floating point numbers (5.0 equals 5L), so those are left to the
+   * filter.
+   */
+  private static boolean isIndexable(Object value) {
+    return value instanceof String || value instanceof Long 
+        || value instanceof Integer || value instanceof Short 
+        || value instanceof Byte;
+  }
+
+  /*
+   * Lazily filters the elements of the iterator, closing it when the
+   * filtering iterator is closed.
+   */
+  private static <E extends Element> Iterator<E> filter(Iterator<E> it, 
+      List<HasContainer> hasContainers) {
+    if (hasContainers.isEmpty()) {
+      return it;
+    }
+
+    return new CloseableIterator<E>() {
+      private E next = null;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && it.hasNext()) {
+          E element = it.next();
+          if (HasContainer.testAll(element, hasContainers)) {
+            next = element;
+          }
+        }
+        return next != null;
+      }
+
+      @Override
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        E element = next;
+        next = null;
+        return element;
+      }
+
+      @Override
+      public void close() {
+        CloseableIterator.closeIterator(it);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    if (this.hasContainers.isEmpty()) {
+      return super.toString();
+    } else {
+      return StringFactory.stepString(this, 
+          this.returnClass.getSimpleName().toLowerCase(), 
+          Arrays.toString(this.ids), this.hasContainers);
+    }
+  }
+
+  @Override
+  public List<HasContainer> getHasContainers() {
+    return this.hasContainers;
+  }
+
+  @Override
+  public void addHasContainer(final HasContainer hasContainer) {
+    if (hasContainer.getPredicate() instanceof AndP) {
+      for (P<?> predicate : 
+          ((AndP<?>) hasContainer.getPredicate()).getPredicates()) {
+        this.addHasContainer(new HasContainer(hasContainer.getKey(), 
+              predicate));
+      }
+    } else {
+      this.hasContainers.add(hasContainer);
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode() ^ this.hasContainers.hashCode();
+  }
+}
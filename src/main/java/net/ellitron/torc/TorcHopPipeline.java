@@ -0,0 +1,225 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs the hops of a multi-hop traversal as a pipeline. Each hop is a stage
+ * that expands chunks of its frontier and passes the new neighbors it finds
+ * on to the next stage in chunks as well. When run in parallel every stage
+ * runs on its own thread of a {@link TorcWorkerPool}, so a hop starts
+ * reading the edge lists of the first neighbors found by the previous hop
+ * while the previous hop is still reading the rest of its frontier. Only a
+ * bounded number of chunks are queued between two stages. Each stage runs
+ * threadInit on its pool thread before its first chunk (e.g. to make sure
+ * the thread has a RAMCloud client).
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+class TorcHopPipeline {
+
+  static final int CHUNK_SIZE = 1 << 8;
+  private static final int QUEUED_CHUNKS = 4;
+
+  /**
+   * One hop of the pipeline.
+   */
+  interface Stage {
+    /**
+     * Expands a chunk of the frontier, passing chunks of new neighbors to
+     * out.
+     */
+    void accept(List<TorcVertex> chunk, Consumer<List<TorcVertex>> out);
+
+    /**
+     * Called after the last chunk, to pass on any remaining neighbors.
+     */
+    void finish(Consumer<List<TorcVertex>> out);
+  }
+
+  private TorcHopPipeline() {
+  }
+
+  /**
+   * Runs the pipeline, blocking until the last stage has finished.
+   *
+   * @param start Frontier of the first stage.
+   * @param stages Stages, in hop order.
+   * @param pool Pool on which to run each stage in its own thread, or null.
+   * The stages are run one after the other in the calling thread if there
+   * is no pool or it does not have a free thread for every stage.
+   * @param threadInit Run by each stage on its pool thread before processing
+   * chunks.
+   * @param sink Receives the chunks output by the last stage.
+   */
+  static void run(List<TorcVertex> start, List<? extends Stage> stages,
+      TorcWorkerPool pool, Runnable threadInit, 
+      Consumer<List<TorcVertex>> sink) {
+    if (pool == null || !pool.tryReserve(stages.size())) {
+      List<List<TorcVertex>> chunks = split(start);
+      for (Stage stage : stages) {
+        List<List<TorcVertex>> output = new ArrayList<>();
+        for (List<TorcVertex> chunk : chunks) {
+          stage.accept(chunk, output::add);
+        }
+        stage.finish(output::add);
+        chunks = output;
+      }
+      chunks.forEach(sink);
+      return;
+    }
+
+    final List<TorcVertex> endOfInput = new ArrayList<>(0);
+    int numStages = stages.size();
+    List<BlockingQueue<List<TorcVertex>>> queues = new ArrayList<>();
+    for (int i = 0; i < numStages; i++) {
+      queues.add(new ArrayBlockingQueue<>(QUEUED_CHUNKS));
+    }
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    CountDownLatch finished = new CountDownLatch(numStages);
+
+    for (int i = 0; i < numStages; i++) {
+      Stage stage = stages.get(i);
+      BlockingQueue<List<TorcVertex>> in = queues.get(i);
+      BlockingQueue<List<TorcVertex>> next = 
+          (i < numStages - 1) ? queues.get(i + 1) : null;
+      Consumer<List<TorcVertex>> out;
+      if (next != null) {
+        out = chunk -> {
+          try {
+            next.put(chunk);
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        };
+      } else {
+        out = sink;
+      }
+
+      pool.execute(() -> {
+        try {
+          threadInit.run();
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+
+        try {
+          while (true) {
+            List<TorcVertex> chunk = in.take();
+            if (chunk == endOfInput) {
+              break;
+            }
+
+            /* After a failure keep draining the queue, so that the previous
+             * stage never blocks, but skip the work. */
+            if (failure.get() == null) {
+              try {
+                stage.accept(chunk, out);
+              } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+              }
+            }
+          }
+
+          if (failure.get() == null) {
+            try {
+              stage.finish(out);
+            } catch (Throwable t) {
+              failure.compareAndSet(null, t);
+            }
+          }
+        } catch (InterruptedException e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          if (next != null && putUninterruptibly(next, endOfInput)) {
+            failure.compareAndSet(null, new InterruptedException());
+          }
+          finished.countDown();
+        }
+      });
+    }
+
+    boolean interrupted = false;
+    try {
+      for (List<TorcVertex> chunk : split(start)) {
+        if (failure.get() != null) {
+          break;
+        }
+        queues.get(0).put(chunk);
+      }
+    } catch (InterruptedException e) {
+      interrupted = true;
+      failure.compareAndSet(null, e);
+    } catch (Throwable t) {
+      failure.compareAndSet(null, t);
+    }
+
+    /* Even if interrupted, always end the input and wait for every stage to
+     * finish, since a stage left waiting for input would hold its pool
+     * thread forever. The interrupt is re-asserted afterwards. */
+    interrupted |= putUninterruptibly(queues.get(0), endOfInput);
+    while (true) {
+      try {
+        finished.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted) {
+      failure.compareAndSet(null, new InterruptedException());
+      Thread.currentThread().interrupt();
+    }
+
+    if (failure.get() != null) {
+      throw new RuntimeException("Multi-hop traversal failed", failure.get());
+    }
+  }
+
+  /*
+   * Puts chunk on queue, retrying if interrupted.
+   *
+   * @return Whether the calling thread was interrupted while waiting.
+   */
+  private static boolean putUninterruptibly(
+      BlockingQueue<List<TorcVertex>> queue, List<TorcVertex> chunk) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        queue.put(chunk);
+        return interrupted;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+  }
+
+  private static List<List<TorcVertex>> split(List<TorcVertex> vertices) {
+    List<List<TorcVertex>> chunks = new ArrayList<>();
+    for (int i = 0; i < vertices.size(); i += CHUNK_SIZE) {
+      chunks.add(vertices.subList(i, Math.min(i + CHUNK_SIZE,
+              vertices.size())));
+    }
+    return chunks;
+  }
+}
@@ -0,0 +1,178 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import org.apache.tinkerpop.gremlin.structure.util.CloseableIterator;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Iterates over the elements found by a table scan while the scan is still
+ * running, so that a scan of the whole table (e.g. g.V()) never holds more
+ * than a bounded number of elements in memory. The scan runs in its own
+ * thread and passes chunks of elements to a bounded queue, blocking when the
+ * consumer falls behind. A failure of the scan is rethrown by hasNext().
+ *
+ * If the consumer stops early, the scan is cancelled when the iterator is
+ * closed (as TinkerPop does when a traversal is closed), or once the
+ * iterator has been garbage collected, so an abandoned scan does not keep
+ * its threads and RAMCloud clients.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+class TorcScanIterator<T> implements CloseableIterator<T> {
+
+  private static final int QUEUED_CHUNKS = 16;
+  /* How often a scan blocked on a full queue checks for cancellation. */
+  private static final long OFFER_TIMEOUT_MS = 100;
+
+  /* State shared with the scan thread. The scan thread must not reference
+   * the iterator itself, or an abandoned iterator would never be collected. */
+  private static class Channel<T> {
+    final BlockingQueue<List<T>> queue = 
+        new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    final List<T> endOfScan = new ArrayList<>(0);
+    volatile boolean cancelled = false;
+    volatile Throwable failure = null;
+
+    /*
+     * Queues the chunk, returning false if the scan was cancelled, either
+     * explicitly or by the iterator being collected.
+     */
+    boolean offer(List<T> chunk, WeakReference<?> owner) 
+        throws InterruptedException {
+      while (!cancelled) {
+        if (queue.offer(chunk, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+        if (owner.get() == null) {
+          cancelled = true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Channel<T> channel = new Channel<>();
+  private Iterator<T> current = Collections.emptyIterator();
+  private boolean done = false;
+
+  /**
+   * Starts the scan.
+   *
+   * @param scan Runs the scan, passing chunks of elements to the given
+   * consumer, which may be called concurrently.
+   * @param threadInit Run by the scan thread before the scan (e.g. to open
+   * its own RAMCloud client).
+   * @param threadCleanup Run by the scan thread when done.
+   */
+  TorcScanIterator(Consumer<Consumer<List<T>>> scan, Runnable threadInit,
+      Runnable threadCleanup) {
+    Channel<T> channel = this.channel;
+    WeakReference<TorcScanIterator<T>> owner = new WeakReference<>(this);
+
+    Consumer<List<T>> sink = chunk -> {
+      if (chunk.isEmpty()) {
+        return;
+      }
+
+      try {
+        if (!channel.offer(chunk, owner)) {
+          throw new CancellationException();
+        }
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    };
+
+    Thread thread = new Thread(() -> {
+      try {
+        threadInit.run();
+        scan.accept(sink);
+      } catch (Throwable t) {
+        if (!channel.cancelled) {
+          channel.failure = t;
+        }
+      } finally {
+        threadCleanup.run();
+        try {
+          channel.offer(channel.endOfScan, owner);
+        } catch (InterruptedException e) {
+          channel.cancelled = true;
+        }
+      }
+    }, "TorcScanIterator");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (done) {
+        return false;
+      }
+
+      List<T> chunk;
+      try {
+        chunk = channel.queue.take();
+      } catch (InterruptedException e) {
+        close();
+        throw new RuntimeException(e);
+      }
+
+      if (chunk == channel.endOfScan) {
+        done = true;
+        if (channel.failure != null) {
+          throw new RuntimeException("Table scan failed", channel.failure);
+        }
+        return false;
+      }
+
+      current = chunk.iterator();
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /**
+   * Stops the scan, if it is still running, and discards any elements not
+   * yet iterated over.
+   */
+  @Override
+  public void close() {
+    done = true;
+    current = Collections.emptyIterator();
+    channel.cancelled = true;
+    channel.queue.clear();
+  }
+}
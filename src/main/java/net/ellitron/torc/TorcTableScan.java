@@ -0,0 +1,146 @@
+/* Copyright (c) 2019-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import edu.stanford.ramcloud.RAMCloud;
+import edu.stanford.ramcloud.RAMCloudObject;
+import edu.stanford.ramcloud.TableIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Scans a RAMCloud table in parallel. The calling thread enumerates the table
+ * and hands the objects it finds, in chunks, to a pool of worker threads
+ * which process them. Only a bounded number of chunks are queued up at once,
+ * so the table is streamed through the workers rather than buffered. Each
+ * worker runs threadInit before processing its first chunk (e.g. to open its
+ * own RAMCloud client) and threadCleanup when it is done.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+class TorcTableScan {
+
+  private static final int CHUNK_SIZE = 1 << 8;
+  private static final int CHUNKS_PER_THREAD = 2;
+
+  private TorcTableScan() {
+  }
+
+  /**
+   * Scans the table, blocking until all objects have been processed.
+   *
+   * @param client RAMCloud client with which to enumerate the table.
+   * @param tableId Table to scan.
+   * @param numThreads Number of worker threads.
+   * @param keyFilter Selects the objects to process, by key.
+   * @param threadInit Run by each worker before processing objects.
+   * @param threadCleanup Run by each worker when done.
+   * @param chunkConsumer Processes a chunk of objects. Called concurrently
+   * from the worker threads.
+   */
+  static void run(RAMCloud client, long tableId, int numThreads,
+      Predicate<byte[]> keyFilter, Runnable threadInit, 
+      Runnable threadCleanup, Consumer<List<RAMCloudObject>> chunkConsumer) {
+    if (numThreads <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "Number of scan threads must be positive, got %d", numThreads));
+    }
+
+    final List<RAMCloudObject> endOfScan = new ArrayList<>(0);
+    BlockingQueue<List<RAMCloudObject>> queue = 
+        new ArrayBlockingQueue<>(numThreads * CHUNKS_PER_THREAD);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Thread[] workers = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      workers[i] = new Thread(() -> {
+        try {
+          threadInit.run();
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+
+        try {
+          while (true) {
+            List<RAMCloudObject> chunk = queue.take();
+            if (chunk == endOfScan) {
+              break;
+            }
+
+            /* After a failure keep draining the queue, so that the
+             * enumerating thread never blocks, but skip the work. */
+            if (failure.get() == null) {
+              try {
+                chunkConsumer.accept(chunk);
+              } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+              }
+            }
+          }
+        } catch (InterruptedException e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          threadCleanup.run();
+        }
+      }, "TorcTableScan-" + i);
+      workers[i].start();
+    }
+
+    try {
+      TableIterator it = client.getTableIterator(tableId);
+      List<RAMCloudObject> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (failure.get() == null && it.hasNext()) {
+        RAMCloudObject obj = it.next();
+        if (!keyFilter.test(obj.getKeyBytes())) {
+          continue;
+        }
+
+        chunk.add(obj);
+        if (chunk.size() == CHUNK_SIZE) {
+          queue.put(chunk);
+          chunk = new ArrayList<>(CHUNK_SIZE);
+        }
+      }
+
+      if (!chunk.isEmpty()) {
+        queue.put(chunk);
+      }
+    } catch (Throwable t) {
+      failure.compareAndSet(null, t);
+    } finally {
+      try {
+        for (int i = 0; i < numThreads; i++) {
+          queue.put(endOfScan);
+        }
+
+        for (Thread worker : workers) {
+          worker.join();
+        }
+      } catch (InterruptedException e) {
+        failure.compareAndSet(null, e);
+      }
+    }
+
+    if (failure.get() != null) {
+      throw new RuntimeException("Table scan failed", failure.get());
+    }
+  }
+}
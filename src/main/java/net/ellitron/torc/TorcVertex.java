@@ -14,6 +14,7 @@
  */
 package net.ellitron.torc;
 
+import net.ellitron.torc.util.PropertyMap;
 import net.ellitron.torc.util.UInt128;
 
 import org.apache.tinkerpop.gremlin.structure.Direction;
@@ -27,7 +28,6 @@ import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.Arrays;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -81,6 +81,18 @@ public class TorcVertex implements Vertex, Element {
     }
   }
 
+  /*
+   * Whether or not this vertex's label is already known, i.e. label() will
+   * not need to read it from RAMCloud.
+   */
+  boolean hasLabel() {
+    return label != null;
+  }
+
+  void setLabel(String label) {
+    this.label = label;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -152,7 +164,7 @@ public class TorcVertex implements Vertex, Element {
 
   public void setProperty(String key, Object value) {
     if (properties == null && propKey1 != null) {
-      properties = new HashMap<>();
+      properties = new PropertyMap<>();
       properties.put(propKey1, propVal1);
       properties.put(key, value);
     } else if (properties != null) {
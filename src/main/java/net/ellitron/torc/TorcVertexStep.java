@@ -14,9 +14,14 @@
  */
 package net.ellitron.torc;
 
+import net.ellitron.torc.util.UInt128ObjectMap;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
 import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
 import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
 import org.apache.tinkerpop.gremlin.process.traversal.step.util.AbstractStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.EdgeOtherVertexStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.EdgeVertexStep;
 import org.apache.tinkerpop.gremlin.process.traversal.step.map.VertexStep;
 import org.apache.tinkerpop.gremlin.process.traversal.util.FastNoSuchElementException;
 import org.apache.tinkerpop.gremlin.structure.Direction;                        
@@ -30,7 +35,6 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -83,20 +87,19 @@ public class TorcVertexStep<E extends Element>
     if ((ends == null || !ends.hasNext()) && this.starts.hasNext()) {
       /* First fetch the complete set of starting vertices. */
       List<TorcVertex> startList = new ArrayList<>();
-      Map<Vertex, List<Traverser.Admin<Vertex>>> traverserMap = new HashMap<>();
+      UInt128ObjectMap<List<Traverser.Admin<Vertex>>> traverserMap = 
+          new UInt128ObjectMap<>();
       while(this.starts.hasNext()) {
         Traverser.Admin<Vertex> t = this.starts.next();
         TorcVertex v = (TorcVertex)t.get();
 
-        if (!traverserMap.containsKey(v)) {
+        List<Traverser.Admin<Vertex>> tList = traverserMap.get(v.id());
+        if (tList == null) {
           startList.add(v);
-          List<Traverser.Admin<Vertex>> tList = new ArrayList<>();
-          tList.add(t);
-          traverserMap.put(v, tList);
-        } else {
-          List<Traverser.Admin<Vertex>> tList = traverserMap.get(v);
-          tList.add(t);
+          tList = new ArrayList<>();
+          traverserMap.put(v.id(), tList);
         }
+        tList.add(t);
       }
 
       if (Vertex.class.isAssignableFrom(this.returnClass)) {
@@ -118,7 +121,7 @@ public class TorcVertexStep<E extends Element>
           endVerticesItr.forEachRemaining(e -> {endVertices.add(e);});
           
           List<Traverser.Admin<Vertex>> startTraverserList 
-              = traverserMap.get(startVertex);
+              = traverserMap.get(((TorcVertex) startVertex).id());
 
           for (Traverser.Admin<Vertex> startTraverser : startTraverserList) {
             for (int i = 0; i < endVertices.size(); i++) { 
@@ -140,6 +143,13 @@ public class TorcVertexStep<E extends Element>
                 edgeLabels,
                 neighborLabels);
 
+        /* If the next step moves on to the edges' endpoints then it will need
+         * their labels, so collect the endpoints to read them in bulk. */
+        Step<?, ?> nextStep = this.getNextStep();
+        boolean fillEndpointLabels = nextStep instanceof EdgeVertexStep 
+            || nextStep instanceof EdgeOtherVertexStep;
+        List<TorcVertex> endpoints = new ArrayList<>();
+
         /* Use results to build a complete list of ending elements. */
         List<Traverser.Admin<E>> endList = new ArrayList<>();
         for (Map.Entry<Vertex, Iterator<Edge>> entry : 
@@ -149,8 +159,15 @@ public class TorcVertexStep<E extends Element>
           List<Edge> endEdges = new ArrayList<>();
           endEdgesItr.forEachRemaining(e -> {endEdges.add(e);});
 
+          if (fillEndpointLabels) {
+            for (Edge e : endEdges) {
+              endpoints.add(((TorcEdge) e).getV1());
+              endpoints.add(((TorcEdge) e).getV2());
+            }
+          }
+
           List<Traverser.Admin<Vertex>> startTraverserList 
-              = traverserMap.get(startVertex);
+              = traverserMap.get(((TorcVertex) startVertex).id());
 
           for (Traverser.Admin<Vertex> startTraverser : startTraverserList) {
             for (int i = 0; i < endEdges.size(); i++) { 
@@ -162,6 +179,11 @@ public class TorcVertexStep<E extends Element>
           }
         }
 
+        if (fillEndpointLabels) {
+          ((TorcGraph)this.getTraversal().getGraph().get()).fillLabels(
+              endpoints);
+        }
+
         ends = endList.iterator();
       }
     }
@@ -0,0 +1,108 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-size pool of long-lived worker threads, for running the stages of
+ * multi-hop traversal pipelines. Threads are started as they are first
+ * needed and then kept for the life of the pool, so a thread opens its
+ * RAMCloud client once, when it first runs a task, rather than once per
+ * traversal. Each thread runs threadCleanup when the pool is shut down.
+ *
+ * Pipeline stages block on each other, so all the stages of a pipeline must
+ * run at the same time. Callers therefore reserve as many threads as they
+ * have tasks with tryReserve() before executing them, and run the tasks some
+ * other way (e.g. one after the other in the calling thread) when not
+ * enough threads are free, rather than waiting for threads that may be
+ * blocked by tasks that are themselves waiting.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+class TorcWorkerPool {
+
+  private final ThreadPoolExecutor executor;
+  private final Semaphore free;
+
+  /**
+   * Creates the pool. No threads are started until tasks are executed.
+   *
+   * @param name Prefix of the names of the threads.
+   * @param numThreads Number of threads.
+   * @param threadCleanup Run by each thread when the pool is shut down.
+   */
+  TorcWorkerPool(String name, int numThreads, Runnable threadCleanup) {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.free = new Semaphore(numThreads);
+    this.executor = new ThreadPoolExecutor(numThreads, numThreads, 0, 
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+          Thread thread = new Thread(() -> {
+            try {
+              r.run();
+            } finally {
+              threadCleanup.run();
+            }
+          }, name + "-" + threadCount.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Reserves threads for running tasks, if enough are free.
+   *
+   * @param numThreads Number of threads to reserve.
+   *
+   * @return Whether the threads were reserved. If so, exactly numThreads
+   * tasks must then be executed with execute().
+   */
+  boolean tryReserve(int numThreads) {
+    return free.tryAcquire(numThreads);
+  }
+
+  /**
+   * Runs a task on a thread reserved with tryReserve(). The thread is free
+   * again once the task has finished.
+   *
+   * @param task Task to run.
+   */
+  void execute(Runnable task) {
+    executor.execute(() -> {
+      try {
+        task.run();
+      } finally {
+        free.release();
+      }
+    });
+  }
+
+  /**
+   * Stops the threads once they have finished their tasks, and waits for
+   * them to exit.
+   */
+  void shutdown() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -27,6 +27,10 @@ public class TraversalResult {
   public Map<TorcVertex, List<TorcVertex>> vMap;
   public Map<TorcVertex, List<Map<Object, Object>>> pMap;
   public Set<TorcVertex> vSet;
+  /* Whether the neighbor lists in vMap are sorted by neighbor ID, in which
+   * case set operations in TorcHelper merge them instead of hashing (see
+   * TorcHelper.sortNeighbors). */
+  public boolean sortedNeighbors = false;
 
   public TraversalResult(
       Map<TorcVertex, List<TorcVertex>> vMap, 
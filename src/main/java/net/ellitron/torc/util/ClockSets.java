@@ -0,0 +1,99 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+/**
+ * Slot management shared by the fixed-size, set associative caches in this
+ * package ({@link StringPool} and {@link VertexLabelCache}). Entries of a set
+ * occupy consecutive slots of one array. Each entry carries a mark that is
+ * set when the entry is hit, and replacement within a set follows CLOCK: an
+ * unmarked entry is replaced in preference to a marked one, so entries that
+ * keep being hit survive entries that were inserted once and never used.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+final class ClockSets {
+
+  /**
+   * Base class of cache entries, holding the CLOCK mark.
+   */
+  abstract static class Entry {
+    private volatile boolean used;
+
+    /**
+     * Marks the entry as hit. The mark is only written when not already set,
+     * so that hits on a hot entry from many threads only read its cache line.
+     */
+    final void mark() {
+      if (!used) {
+        used = true;
+      }
+    }
+  }
+
+  private ClockSets() {
+  }
+
+  /**
+   * Returns the number of slots of a cache with the given number of ways
+   * that holds at least capacity entries, rounding the number of sets up to
+   * a power of two so that a set can be selected with a mask.
+   *
+   * @param capacity Requested capacity.
+   * @param ways Number of slots per set.
+   * @param cacheName Name of the cache, for the error message.
+   *
+   * @return Number of slots.
+   */
+  static int slots(int capacity, int ways, String cacheName) {
+    if (capacity < ways) {
+      throw new IllegalArgumentException(String.format(
+          "%s capacity must be at least %d, got %d", cacheName, ways, 
+          capacity));
+    }
+    int sets = (capacity + ways - 1) / ways;
+    if (Integer.bitCount(sets) != 1) {
+      sets = Integer.highestOneBit(sets) << 1;
+    }
+    return sets * ways;
+  }
+
+  /**
+   * Picks the slot to replace in a set. Prefers an empty slot, then an
+   * unmarked one. If every entry is marked, all marks in the set are cleared
+   * (giving them a second chance next time) and the first slot is replaced.
+   *
+   * @param entries Slots of the cache.
+   * @param base Index of the first slot of the set.
+   * @param ways Number of slots per set.
+   *
+   * @return Index of the slot to replace.
+   */
+  static int victim(Entry[] entries, int base, int ways) {
+    for (int i = base; i < base + ways; i++) {
+      Entry e = entries[i];
+      if (e == null || !e.used) {
+        return i;
+      }
+    }
+    for (int i = base; i < base + ways; i++) {
+      Entry e = entries[i];
+      if (e != null) {
+        e.used = false;
+      }
+    }
+    return base;
+  }
+}
@@ -0,0 +1,255 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.Arrays;
+
+/**
+ * A pure Java implementation of the LZ4 block format. Used by TorcDB to
+ * transparently compress large property blobs and edge list segments before
+ * they are written to RAMCloud. The block format carries no length
+ * information of its own, so callers are responsible for recording the
+ * uncompressed length alongside the compressed block.
+ *
+ * This implementation favors simplicity and speed over compression ratio: it
+ * uses a single-probe hash table of 4 byte sequences and does not attempt to
+ * find the longest match.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class LZ4Codec {
+
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT = 12;
+  private static final int MIN_LENGTH = MF_LIMIT + 1;
+  private static final int MAX_DISTANCE = (1 << 16) - 1;
+  private static final int RUN_MASK = 0x0F;
+  private static final int HASH_LOG = 12;
+
+  /* Hash tables are reused across calls to avoid a 16KB allocation for every
+   * compressed object. */
+  private static final ThreadLocal<int[]> hashTables =
+      ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+  /**
+   * Returns the maximum number of bytes that compressing an input of the given
+   * length can produce.
+   *
+   * @param length Length of the uncompressed input.
+   *
+   * @return Worst case compressed length.
+   */
+  public static int maxCompressedLength(int length) {
+    return length + (length / 255) + 16;
+  }
+
+  /**
+   * Compresses srcLen bytes of src starting at srcOff into dst starting at
+   * dstOff. The destination must have at least
+   * {@link #maxCompressedLength(int)} bytes available.
+   *
+   * @param src Source array.
+   * @param srcOff Offset of the first byte to compress.
+   * @param srcLen Number of bytes to compress.
+   * @param dst Destination array.
+   * @param dstOff Offset at which to write the compressed block.
+   *
+   * @return Number of bytes written to dst.
+   */
+  public static int compress(byte[] src, int srcOff, int srcLen, byte[] dst,
+      int dstOff) {
+    int srcEnd = srcOff + srcLen;
+    int anchor = srcOff;
+    int dp = dstOff;
+
+    if (srcLen >= MIN_LENGTH) {
+      int[] hashTable = hashTables.get();
+      Arrays.fill(hashTable, -1);
+
+      int mfLimit = srcEnd - MF_LIMIT;
+      int matchLimit = srcEnd - LAST_LITERALS;
+      int sp = srcOff;
+      while (sp < mfLimit) {
+        int seq = readIntLE(src, sp);
+        int h = hash(seq);
+        int ref = hashTable[h];
+        hashTable[h] = sp;
+
+        if (ref < 0 || sp - ref > MAX_DISTANCE
+            || readIntLE(src, ref) != seq) {
+          sp++;
+          continue;
+        }
+
+        /* Extend the match backwards into the pending literals. */
+        while (sp > anchor && ref > srcOff && src[sp - 1] == src[ref - 1]) {
+          sp--;
+          ref--;
+        }
+
+        /* Extend the match forwards, leaving LAST_LITERALS bytes at the end
+         * of the block as the format requires. */
+        int matchLen = MIN_MATCH;
+        while (sp + matchLen < matchLimit
+            && src[sp + matchLen] == src[ref + matchLen]) {
+          matchLen++;
+        }
+
+        dp = writeSequence(src, anchor, sp - anchor, sp - ref,
+            matchLen - MIN_MATCH, dst, dp);
+
+        sp += matchLen;
+        anchor = sp;
+      }
+    }
+
+    /* Final sequence consists only of literals. */
+    int litLen = srcEnd - anchor;
+    int tokenPos = dp++;
+    if (litLen >= RUN_MASK) {
+      dst[tokenPos] = (byte) (RUN_MASK << 4);
+      dp = writeLength(litLen - RUN_MASK, dst, dp);
+    } else {
+      dst[tokenPos] = (byte) (litLen << 4);
+    }
+    System.arraycopy(src, anchor, dst, dp, litLen);
+    dp += litLen;
+
+    return dp - dstOff;
+  }
+
+  /**
+   * Decompresses an LZ4 block of srcLen bytes of src starting at srcOff into
+   * dst starting at dstOff. The block must decompress to exactly dstLen bytes.
+   *
+   * @param src Source array containing the compressed block.
+   * @param srcOff Offset of the compressed block.
+   * @param srcLen Length of the compressed block.
+   * @param dst Destination array.
+   * @param dstOff Offset at which to write uncompressed bytes.
+   * @param dstLen Expected length of the uncompressed data.
+   */
+  public static void decompress(byte[] src, int srcOff, int srcLen,
+      byte[] dst, int dstOff, int dstLen) {
+    int sp = srcOff;
+    int srcEnd = srcOff + srcLen;
+    int dp = dstOff;
+    int dstEnd = dstOff + dstLen;
+
+    while (true) {
+      int token = src[sp++] & 0xFF;
+
+      int litLen = token >>> 4;
+      if (litLen == RUN_MASK) {
+        int b;
+        do {
+          b = src[sp++] & 0xFF;
+          litLen += b;
+        } while (b == 0xFF);
+      }
+
+      if (sp + litLen > srcEnd || dp + litLen > dstEnd) {
+        throw new RuntimeException("Corrupt LZ4 block: literals overrun.");
+      }
+      System.arraycopy(src, sp, dst, dp, litLen);
+      sp += litLen;
+      dp += litLen;
+
+      if (sp >= srcEnd) {
+        break;
+      }
+
+      int offset = (src[sp++] & 0xFF) | ((src[sp++] & 0xFF) << 8);
+      int matchLen = token & RUN_MASK;
+      if (matchLen == RUN_MASK) {
+        int b;
+        do {
+          b = src[sp++] & 0xFF;
+          matchLen += b;
+        } while (b == 0xFF);
+      }
+      matchLen += MIN_MATCH;
+
+      int ref = dp - offset;
+      if (offset == 0 || ref < dstOff || dp + matchLen > dstEnd) {
+        throw new RuntimeException("Corrupt LZ4 block: bad match.");
+      }
+
+      if (offset >= matchLen) {
+        System.arraycopy(dst, ref, dst, dp, matchLen);
+        dp += matchLen;
+      } else {
+        /* Overlapping copy, must go byte by byte. */
+        for (int i = 0; i < matchLen; i++) {
+          dst[dp++] = dst[ref++];
+        }
+      }
+    }
+
+    if (dp != dstEnd) {
+      throw new RuntimeException(String.format("Corrupt LZ4 block: expected "
+          + "%d bytes but decompressed %d.", dstLen, dp - dstOff));
+    }
+  }
+
+  private static int writeSequence(byte[] src, int litOff, int litLen,
+      int offset, int matchLenMinusMin, byte[] dst, int dp) {
+    int tokenPos = dp++;
+    int token;
+    if (litLen >= RUN_MASK) {
+      token = RUN_MASK << 4;
+      dp = writeLength(litLen - RUN_MASK, dst, dp);
+    } else {
+      token = litLen << 4;
+    }
+
+    System.arraycopy(src, litOff, dst, dp, litLen);
+    dp += litLen;
+
+    dst[dp++] = (byte) offset;
+    dst[dp++] = (byte) (offset >>> 8);
+
+    if (matchLenMinusMin >= RUN_MASK) {
+      token |= RUN_MASK;
+      dp = writeLength(matchLenMinusMin - RUN_MASK, dst, dp);
+    } else {
+      token |= matchLenMinusMin;
+    }
+
+    dst[tokenPos] = (byte) token;
+    return dp;
+  }
+
+  private static int writeLength(int len, byte[] dst, int dp) {
+    while (len >= 0xFF) {
+      dst[dp++] = (byte) 0xFF;
+      len -= 0xFF;
+    }
+    dst[dp++] = (byte) len;
+    return dp;
+  }
+
+  private static int readIntLE(byte[] b, int i) {
+    return (b[i] & 0xFF)
+        | ((b[i + 1] & 0xFF) << 8)
+        | ((b[i + 2] & 0xFF) << 16)
+        | ((b[i + 3] & 0xFF) << 24);
+  }
+
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> (32 - HASH_LOG);
+  }
+}
@@ -0,0 +1,284 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A client-side near cache of RAMCloud objects, keyed by (table ID, key). Used
+ * by TorcGraph to avoid re-reading the property objects and edge list
+ * segments of hot vertices from RAMCloud on every access. Since other clients
+ * may update objects without our knowledge, cached entries only live for a
+ * fixed time-to-live, after which they are dropped and re-read. Writes made
+ * through this client invalidate the affected entries immediately.
+ *
+ * Each entry records the RAMCloud version of the object it holds, and an
+ * insert never replaces an entry with an older version of the same object.
+ * Invalidations leave behind a tombstone stamped with the time of the
+ * invalidation, and a reader that started its read before that time may not
+ * install its (possibly stale) value over the tombstone. Callers therefore
+ * take a {@link #stamp()} before issuing their reads and pass it to
+ * {@link #put(long, byte[], byte[], long, long)}.
+ *
+ * The cache is bounded by the total number of key and value bytes it holds.
+ * It is split into a number of independently locked segments, each of which
+ * evicts its least recently used entries when it exceeds its share of the
+ * bound.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class ObjectCache {
+
+  private static final int SEGMENTS = 16;
+
+  /* Approximate per-entry overhead in bytes, charged against the size bound
+   * so that caches of many small objects are bounded too. */
+  private static final int ENTRY_OVERHEAD = 64;
+
+  private final Segment[] segments;
+  private final long ttlNanos;
+  private final AtomicLong clock = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private static final class Key {
+    final long tableId;
+    final byte[] key;
+    final int hash;
+
+    Key(long tableId, byte[] key) {
+      this.tableId = tableId;
+      this.key = key;
+      this.hash = 31 * Long.hashCode(tableId) + Arrays.hashCode(key);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return tableId == other.tableId && Arrays.equals(key, other.key);
+    }
+  }
+
+  private static final class Entry {
+    /* Null for a tombstone. */
+    final byte[] value;
+    final long version;
+    /* For a tombstone, the stamp at which the object was invalidated. */
+    final long stamp;
+    final long expiresAt;
+    final int size;
+
+    Entry(byte[] value, long version, long stamp, long expiresAt, int size) {
+      this.value = value;
+      this.version = version;
+      this.stamp = stamp;
+      this.expiresAt = expiresAt;
+      this.size = size;
+    }
+  }
+
+  private final class Segment extends LinkedHashMap<Key, Entry> {
+    final long maxBytes;
+    long bytes = 0;
+
+    Segment(long maxBytes) {
+      super(16, 0.75f, true);
+      this.maxBytes = maxBytes;
+    }
+
+    void add(Key key, Entry entry) {
+      Entry old = super.put(key, entry);
+      if (old != null) {
+        bytes -= old.size;
+      }
+      bytes += entry.size;
+
+      Iterator<Entry> it = values().iterator();
+      while (bytes > maxBytes && it.hasNext()) {
+        Entry victim = it.next();
+        if (victim == entry) {
+          continue;
+        }
+        bytes -= victim.size;
+        it.remove();
+        evictions.increment();
+      }
+    }
+
+    void drop(Key key) {
+      Entry old = super.remove(key);
+      if (old != null) {
+        bytes -= old.size;
+      }
+    }
+  }
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxBytes Upper bound on the total size of cached keys and values.
+   * @param ttlMillis Time after which a cached object is considered stale and
+   * is re-read from RAMCloud.
+   */
+  public ObjectCache(long maxBytes, long ttlMillis) {
+    if (maxBytes <= 0 || ttlMillis <= 0) {
+      throw new IllegalArgumentException(String.format(
+          "ObjectCache size and TTL must be positive, got %d bytes and %d ms",
+          maxBytes, ttlMillis));
+    }
+    this.segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(Math.max(1, maxBytes / SEGMENTS));
+    }
+    this.ttlNanos = ttlMillis * 1000000L;
+  }
+
+  /**
+   * Returns a stamp to be taken before reading objects from RAMCloud that
+   * will later be inserted into this cache.
+   *
+   * @return Current stamp.
+   */
+  public long stamp() {
+    return clock.get();
+  }
+
+  /**
+   * Looks up an object.
+   *
+   * @param tableId RAMCloud table ID.
+   * @param key RAMCloud key.
+   *
+   * @return The cached value of the object, or null if the object is not
+   * cached or its entry has expired. The returned array is shared and must
+   * not be modified.
+   */
+  public byte[] get(long tableId, byte[] key) {
+    Key k = new Key(tableId, key);
+    Segment seg = segmentFor(k);
+    synchronized (seg) {
+      Entry entry = seg.get(k);
+      if (entry != null && entry.value != null) {
+        if (System.nanoTime() - entry.expiresAt < 0) {
+          hits.increment();
+          return entry.value;
+        }
+        seg.drop(k);
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  /**
+   * Inserts an object read from RAMCloud. The insert is ignored if the cache
+   * already holds a newer version of the object, or if the object was
+   * invalidated after the given stamp was taken.
+   *
+   * @param tableId RAMCloud table ID.
+   * @param key RAMCloud key.
+   * @param value Value of the object. Must not be modified after insertion.
+   * @param version RAMCloud version of the object.
+   * @param stamp Stamp taken with {@link #stamp()} before the object was read.
+   */
+  public void put(long tableId, byte[] key, byte[] value, long version,
+      long stamp) {
+    Key k = new Key(tableId, key);
+    Segment seg = segmentFor(k);
+    synchronized (seg) {
+      Entry old = seg.get(k);
+      if (old != null) {
+        if (old.value == null && old.stamp > stamp) {
+          return;
+        }
+        if (old.value != null && old.version > version) {
+          return;
+        }
+      }
+      seg.add(k, new Entry(value, version, 0, System.nanoTime() + ttlNanos,
+            ENTRY_OVERHEAD + key.length + value.length));
+    }
+  }
+
+  /**
+   * Invalidates an object that this client has written or removed.
+   *
+   * @param tableId RAMCloud table ID.
+   * @param key RAMCloud key.
+   */
+  public void invalidate(long tableId, byte[] key) {
+    Key k = new Key(tableId, key);
+    Segment seg = segmentFor(k);
+    long now = clock.incrementAndGet();
+    synchronized (seg) {
+      seg.add(k, new Entry(null, 0, now, System.nanoTime() + ttlNanos, 
+            ENTRY_OVERHEAD + key.length));
+    }
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public void clear() {
+    clock.incrementAndGet();
+    for (Segment seg : segments) {
+      synchronized (seg) {
+        seg.clear();
+        seg.bytes = 0;
+      }
+    }
+  }
+
+  /**
+   * @return Number of lookups that found a live entry.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return Number of lookups that did not find a live entry.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return Number of entries evicted to stay within the size bound.
+   */
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  private Segment segmentFor(Key k) {
+    int h = k.hash;
+    h ^= (h >>> 16);
+    return segments[h & (SEGMENTS - 1)];
+  }
+}
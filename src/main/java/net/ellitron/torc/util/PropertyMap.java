@@ -0,0 +1,392 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A compact, insertion-ordered Map specialized for the small string-keyed
+ * property maps that TorcDB deserializes for every vertex and edge.
+ *
+ * Entries are stored densely in insertion order in parallel key, value, and
+ * hash arrays. Lookups go through a small open-addressed (linear probing)
+ * index of entry positions, kept at most half full, and compare precomputed
+ * key hashes before calling equals(). Iterating by position
+ * ({@link #keyAt(int)}, {@link #valueAt(int)}) or via
+ * {@link #forEach(BiConsumer)} allocates nothing, which is how the serializer
+ * walks these maps. Removal compacts the entry arrays and rebuilds the index,
+ * which is O(n) but rare for property maps.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class PropertyMap<K, V> extends AbstractMap<K, V> {
+
+  private static final int DEFAULT_CAPACITY = 4;
+
+  private Object[] keys;
+  private Object[] values;
+  private int[] hashes;
+  /* Entry position + 1 for each occupied slot, 0 for an empty slot. */
+  private int[] index;
+  private int size;
+  private int modCount;
+  private EntrySet entrySet;
+
+  public PropertyMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public PropertyMap(int capacity) {
+    capacity = Math.max(capacity, 1);
+    this.keys = new Object[capacity];
+    this.values = new Object[capacity];
+    this.hashes = new int[capacity];
+    this.index = new int[indexSizeFor(capacity)];
+    this.size = 0;
+  }
+
+  public PropertyMap(Map<? extends K, ? extends V> m) {
+    this(m.size());
+    putAll(m);
+  }
+
+  /**
+   * Returns the key of the entry at the given insertion-order position.
+   *
+   * @param i Position of the entry, 0 <= i < size().
+   *
+   * @return Key of the entry.
+   */
+  public K keyAt(int i) {
+    checkPosition(i);
+    return key(i);
+  }
+
+  /**
+   * Returns the value of the entry at the given insertion-order position.
+   *
+   * @param i Position of the entry, 0 <= i < size().
+   *
+   * @return Value of the entry.
+   */
+  public V valueAt(int i) {
+    checkPosition(i);
+    return value(i);
+  }
+
+  /**
+   * Replaces the value of the entry at the given insertion-order position.
+   *
+   * @param i Position of the entry, 0 <= i < size().
+   * @param value New value.
+   *
+   * @return Previous value of the entry.
+   */
+  public V setValueAt(int i, V value) {
+    checkPosition(i);
+    V oldValue = value(i);
+    values[i] = value;
+    return oldValue;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return find(key, hash(key)) >= 0;
+  }
+
+  @Override
+  public V get(Object key) {
+    int e = find(key, hash(key));
+    return (e >= 0) ? value(e) : null;
+  }
+
+  @Override
+  public V getOrDefault(Object key, V defaultValue) {
+    int e = find(key, hash(key));
+    return (e >= 0) ? value(e) : defaultValue;
+  }
+
+  @Override
+  public V put(K key, V value) {
+    int h = hash(key);
+    int e = find(key, h);
+    if (e >= 0) {
+      V oldValue = value(e);
+      values[e] = value;
+      return oldValue;
+    }
+
+    if (size == keys.length) {
+      grow(size * 2);
+    }
+
+    keys[size] = key;
+    values[size] = value;
+    hashes[size] = h;
+    insertIntoIndex(size, h);
+    size++;
+    modCount++;
+    return null;
+  }
+
+  @Override
+  public V remove(Object key) {
+    int e = find(key, hash(key));
+    if (e < 0) {
+      return null;
+    }
+
+    V oldValue = value(e);
+    removeAt(e);
+    return oldValue;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(values, 0, size, null);
+    Arrays.fill(index, 0);
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    int expectedModCount = modCount;
+    for (int i = 0; i < size; i++) {
+      action.accept(key(i), value(i));
+    }
+    if (modCount != expectedModCount) {
+      throw new ConcurrentModificationException();
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  /* keys and values are only ever filled by put(), with Ks and Vs. */
+  @SuppressWarnings("unchecked")
+  private K key(int e) {
+    return (K) keys[e];
+  }
+
+  @SuppressWarnings("unchecked")
+  private V value(int e) {
+    return (V) values[e];
+  }
+
+  private static int hash(Object key) {
+    if (key == null) {
+      return 0;
+    }
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /*
+   * Smallest power of two that is at least twice the capacity, keeping the
+   * index at most half full.
+   */
+  private static int indexSizeFor(int capacity) {
+    return Integer.highestOneBit(capacity * 2 - 1) << 1;
+  }
+
+  private int find(Object key, int h) {
+    int mask = index.length - 1;
+    int slot = h & mask;
+    while (true) {
+      int e = index[slot] - 1;
+      if (e < 0) {
+        return -1;
+      }
+      if (hashes[e] == h && Objects.equals(keys[e], key)) {
+        return e;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void insertIntoIndex(int e, int h) {
+    int mask = index.length - 1;
+    int slot = h & mask;
+    while (index[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    index[slot] = e + 1;
+  }
+
+  private void rebuildIndex() {
+    Arrays.fill(index, 0);
+    for (int e = 0; e < size; e++) {
+      insertIntoIndex(e, hashes[e]);
+    }
+  }
+
+  private void grow(int capacity) {
+    keys = Arrays.copyOf(keys, capacity);
+    values = Arrays.copyOf(values, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+    index = new int[indexSizeFor(capacity)];
+    rebuildIndex();
+  }
+
+  private void removeAt(int e) {
+    int numMoved = size - e - 1;
+    if (numMoved > 0) {
+      System.arraycopy(keys, e + 1, keys, e, numMoved);
+      System.arraycopy(values, e + 1, values, e, numMoved);
+      System.arraycopy(hashes, e + 1, hashes, e, numMoved);
+    }
+    size--;
+    keys[size] = null;
+    values[size] = null;
+    rebuildIndex();
+    modCount++;
+  }
+
+  private void checkPosition(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException(String.format(
+          "Position %d out of bounds for PropertyMap of size %d", i, size));
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void clear() {
+      PropertyMap.this.clear();
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator();
+    }
+  }
+
+  private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+    private int next = 0;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new Entry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  /*
+   * Entry view backed by a position in the map. setValue() writes through.
+   */
+  private final class Entry implements Map.Entry<K, V> {
+    private final int pos;
+
+    Entry(int pos) {
+      this.pos = pos;
+    }
+
+    @Override
+    public K getKey() {
+      return key(pos);
+    }
+
+    @Override
+    public V getValue() {
+      return value(pos);
+    }
+
+    @Override
+    public V setValue(V value) {
+      V oldValue = value(pos);
+      values[pos] = value;
+      return oldValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      return Objects.equals(getKey(), other.getKey())
+          && Objects.equals(getValue(), other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * A bounded pool of canonical String instances, looked up by their encoded
+ * bytes. TorcDB graphs tend to repeat a small set of string property values
+ * (and property keys) across millions of vertices and edges. Decoding them
+ * through this pool means each distinct value has one String instance on the
+ * heap, and a hit costs a byte comparison rather than a String allocation.
+ *
+ * The pool is a fixed-size, 2-way set associative cache with CLOCK
+ * replacement within each set (see {@link ClockSets}), so values that are
+ * decoded once, such as unique names, are evicted before common values. The
+ * pool is safe to share between threads without locking. Two threads missing
+ * on the same value may each decode and install their own String, so a
+ * value is only canonical on a best-effort basis, which is all deduplicating
+ * the heap needs.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class StringPool {
+
+  private static final int WAYS = 2;
+
+  private final Entry[] entries;
+  private final int setMask;
+  private final int maxStringLength;
+  private final Charset charset;
+
+  private static final class Entry extends ClockSets.Entry {
+    final int hash;
+    final byte[] bytes;
+    final String string;
+
+    Entry(int hash, byte[] bytes, String string) {
+      this.hash = hash;
+      this.bytes = bytes;
+      this.string = string;
+    }
+  }
+
+  /**
+   * Creates a pool.
+   *
+   * @param capacity Maximum number of strings held in the pool. Rounded up to
+   * a power of two.
+   * @param maxStringLength Encoded strings longer than this many bytes are not
+   * pooled, since long strings are rarely repeated.
+   * @param charset Character set of the encoded strings.
+   */
+  public StringPool(int capacity, int maxStringLength, Charset charset) {
+    this.entries = new Entry[ClockSets.slots(capacity, WAYS, "StringPool")];
+    this.setMask = entries.length / WAYS - 1;
+    this.maxStringLength = maxStringLength;
+    this.charset = charset;
+  }
+
+  /**
+   * Returns the canonical String for len bytes of buf starting at off,
+   * decoding and adding it to the pool if it is not already present.
+   *
+   * @param buf Buffer holding the encoded string.
+   * @param off Offset of the first byte of the string.
+   * @param len Length of the encoded string in bytes.
+   *
+   * @return Canonical String instance.
+   */
+  public String intern(byte[] buf, int off, int len) {
+    if (len > maxStringLength) {
+      return new String(buf, off, len, charset);
+    }
+
+    int hash = hash(buf, off, len);
+    int base = (hash & setMask) * WAYS;
+    for (int i = base; i < base + WAYS; i++) {
+      Entry e = entries[i];
+      if (e != null && e.hash == hash && bytesEqual(e.bytes, buf, off, len)) {
+        e.mark();
+        return e.string;
+      }
+    }
+
+    String string = new String(buf, off, len, charset);
+    byte[] bytes = new byte[len];
+    System.arraycopy(buf, off, bytes, 0, len);
+    entries[ClockSets.victim(entries, base, WAYS)] = 
+        new Entry(hash, bytes, string);
+    return string;
+  }
+
+  /**
+   * Empties the pool.
+   */
+  public void clear() {
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = null;
+    }
+  }
+
+  /**
+   * @return Maximum number of strings held in the pool.
+   */
+  public int capacity() {
+    return entries.length;
+  }
+
+  private static int hash(byte[] buf, int off, int len) {
+    int h = 0x811C9DC5;
+    for (int i = off; i < off + len; i++) {
+      h = (h ^ buf[i]) * 0x01000193;
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean bytesEqual(byte[] a, byte[] buf, int off, int len) {
+    if (a.length != len) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (a[i] != buf[off + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -28,14 +28,19 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Collection;
 import java.util.function.BiFunction;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 /**
  *
@@ -45,6 +50,11 @@ public class TorcHelper {
 
   public static Charset DEFAULT_CHAR_ENCODING = Charset.forName("UTF-8");
 
+  /*
+   * Strings longer than this many encoded bytes are never pooled.
+   */
+  public static final int DEFAULT_STRING_POOL_MAX_LENGTH = 64;
+
   public static void legalPropertyKeyValueArray(
       final Class<? extends Element> clazz,
       final Object... propertyKeyValues) throws IllegalArgumentException {
@@ -94,7 +104,8 @@ public class TorcHelper {
     LONG((byte)0x01),
     STRING((byte)0x02),
     LIST((byte)0x03),
-    MAP((byte)0x04);
+    MAP((byte)0x04),
+    COMPRESSED((byte)0x05);
 
     public static final int BYTES = 1;
     private final byte val;
@@ -119,6 +130,8 @@ public class TorcHelper {
           return LIST;
         case 0x04:
           return MAP;
+        case 0x05:
+          return COMPRESSED;
         default:
           throw new RuntimeException(String.format(
                 "Unrecognized TypeCode: %d", val));
@@ -191,12 +204,24 @@ public class TorcHelper {
       Map mapValue = (Map)value;
       List<byte[]> serEnts = new ArrayList<>(2 * mapValue.size());
       int totalBytes = 0;
-      for (Map.Entry e : (Set<Map.Entry>)mapValue.entrySet()) {
-        byte[] serKey = serializeObject(e.getKey());
-        byte[] serVal = serializeObject(e.getValue());
-        serEnts.add(serKey);
-        serEnts.add(serVal);
-        totalBytes += serKey.length + serVal.length;
+      if (mapValue instanceof PropertyMap) {
+        // Walk the entries in place, no entry objects needed.
+        PropertyMap<?, ?> propMap = (PropertyMap<?, ?>)mapValue;
+        for (int i = 0; i < propMap.size(); i++) {
+          byte[] serKey = serializeObject(propMap.keyAt(i));
+          byte[] serVal = serializeObject(propMap.valueAt(i));
+          serEnts.add(serKey);
+          serEnts.add(serVal);
+          totalBytes += serKey.length + serVal.length;
+        }
+      } else {
+        for (Map.Entry e : (Set<Map.Entry>)mapValue.entrySet()) {
+          byte[] serKey = serializeObject(e.getKey());
+          byte[] serVal = serializeObject(e.getValue());
+          serEnts.add(serKey);
+          serEnts.add(serVal);
+          totalBytes += serKey.length + serVal.length;
+        }
       }
       short entries = (short)(serEnts.size()/2);
       byte[] b = new byte[3 + totalBytes];
@@ -220,6 +245,39 @@ public class TorcHelper {
     }
   }
 
+  /*
+   * Compress a serialized object if it is larger than compressionThreshold
+   * bytes. The compressed form is itself a serialized object with TypeCode
+   * COMPRESSED, followed by the uncompressed length, the compressed length,
+   * and an LZ4 block, so that deserializeObject can transparently decompress
+   * it. Objects at or below the threshold, or that do not get any smaller
+   * when compressed, are returned as-is and pay no overhead. A negative
+   * threshold disables compression.
+   */
+  public static byte[] compressObject(byte[] serializedObject,
+      int compressionThreshold) {
+    if (compressionThreshold < 0 
+        || serializedObject.length <= compressionThreshold) {
+      return serializedObject;
+    }
+
+    int headerLen = TypeCode.BYTES + Integer.BYTES + Integer.BYTES;
+    byte[] buf = new byte[headerLen 
+        + LZ4Codec.maxCompressedLength(serializedObject.length)];
+    int blockLen = LZ4Codec.compress(serializedObject, 0, 
+        serializedObject.length, buf, headerLen);
+
+    if (headerLen + blockLen >= serializedObject.length) {
+      return serializedObject;
+    }
+
+    ByteBuffer header = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(TypeCode.COMPRESSED.val());
+    header.putInt(serializedObject.length);
+    header.putInt(blockLen);
+    return Arrays.copyOf(buf, headerLen + blockLen);
+  }
+
   /* 
    * ParseInfo is used as an OUT parameter to parsing functions that allow them
    * to return metadata about the parse to the caller.
@@ -246,6 +304,19 @@ public class TorcHelper {
 
   public static Object deserializeObject(byte[] value, int offset, 
       ParseInfo pinfo) {
+    return deserializeObject(value, offset, pinfo, null);
+  }
+
+  /*
+   * Same as above, but STRING values (including map keys) are canonicalized
+   * through pool when it is not null.
+   */
+  public static Object deserializeObject(byte[] value, StringPool pool) {
+    return deserializeObject(value, 0, new ParseInfo(), pool);
+  }
+
+  public static Object deserializeObject(byte[] value, int offset, 
+      ParseInfo pinfo, StringPool pool) {
     int subOffset;
     TypeCode type = TypeCode.valueOf(value[offset+0]);
     switch (type) {
@@ -271,6 +342,9 @@ public class TorcHelper {
         short strLen = (short)(((value[offset+1] & 0xFF) << 0) | 
                                ((value[offset+2] & 0xFF) << 8));
         pinfo.length = 3 + strLen;
+        if (pool != null) {
+          return pool.intern(value, offset+3, strLen);
+        }
         return new String(value, offset+3, strLen, DEFAULT_CHAR_ENCODING);
       case LIST:
         short size = (short)(((value[offset+1] & 0xFF) << 0) | 
@@ -278,7 +352,7 @@ public class TorcHelper {
         List<Object> list = new ArrayList<>(size);
         subOffset = offset + 3;
         for (int i = 0; i < size; i++) {
-          list.add(deserializeObject(value, subOffset, pinfo));
+          list.add(deserializeObject(value, subOffset, pinfo, pool));
           subOffset += pinfo.length;
         }
         pinfo.length = subOffset - offset;
@@ -286,17 +360,31 @@ public class TorcHelper {
       case MAP:
         short entries = (short)(((value[offset+1] & 0xFF) << 0) | 
                                 ((value[offset+2] & 0xFF) << 8));
-        Map<Object, Object> map = new ArrayMap<>(entries);
+        Map<Object, Object> map = new PropertyMap<>(entries);
         subOffset = offset + 3;
         for (int i = 0; i < entries; i++) {
-          Object key = deserializeObject(value, subOffset, pinfo);
+          Object key = deserializeObject(value, subOffset, pinfo, pool);
           subOffset += pinfo.length;
-          Object val = deserializeObject(value, subOffset, pinfo);
+          Object val = deserializeObject(value, subOffset, pinfo, pool);
           subOffset += pinfo.length;
           map.put(key, val);
         }
         pinfo.length = subOffset - offset;
         return map;
+      case COMPRESSED:
+        int rawLen = ((value[offset+1] & 0xFF) << 0) | 
+                     ((value[offset+2] & 0xFF) << 8) | 
+                     ((value[offset+3] & 0xFF) << 16) | 
+                     ((value[offset+4] & 0xFF) << 24);
+        int blockLen = ((value[offset+5] & 0xFF) << 0) | 
+                       ((value[offset+6] & 0xFF) << 8) | 
+                       ((value[offset+7] & 0xFF) << 16) | 
+                       ((value[offset+8] & 0xFF) << 24);
+        byte[] raw = new byte[rawLen];
+        LZ4Codec.decompress(value, offset + 9, blockLen, raw, 0, rawLen);
+        Object obj = deserializeObject(raw, 0, pinfo, pool);
+        pinfo.length = 9 + blockLen;
+        return obj;
       default:
         throw new RuntimeException(String.format(
               "Unrecognized data type: %s. Unable to serialize.", 
@@ -304,12 +392,139 @@ public class TorcHelper {
     }
   }
 
+  /*
+   * Returns the length in bytes of the serialized object at the given offset,
+   * without deserializing it.
+   */
+  public static int serializedLength(byte[] value, int offset) {
+    TypeCode type = TypeCode.valueOf(value[offset+0]);
+    switch (type) {
+      case INTEGER:
+        return 5;
+      case LONG:
+        return 9;
+      case STRING:
+        return 3 + readShort(value, offset + 1);
+      case LIST:
+      case MAP:
+        int elements = readShort(value, offset + 1);
+        if (type == TypeCode.MAP) {
+          elements *= 2;
+        }
+        int subOffset = offset + 3;
+        for (int i = 0; i < elements; i++) {
+          subOffset += serializedLength(value, subOffset);
+        }
+        return subOffset - offset;
+      case COMPRESSED:
+        return 9 + readInt(value, offset + 5);
+      default:
+        throw new RuntimeException(String.format(
+              "Unrecognized data type: %s.", type));
+    }
+  }
+
+  /*
+   * Returns whether the serialized object at the given offset is an
+   * uncompressed map, whose entries can be searched in place with
+   * findSerializedMapValue.
+   */
+  public static boolean isSerializedMap(byte[] value, int offset) {
+    return value[offset] == TypeCode.MAP.val();
+  }
+
+  /*
+   * Searches the entries of the serialized (uncompressed) map at the given
+   * offset for the entry whose serialized key equals serializedKey, returning
+   * the offset of the entry's serialized value, or -1 if there is no such
+   * entry.
+   */
+  public static int findSerializedMapValue(byte[] value, int offset,
+      byte[] serializedKey) {
+    int entries = readShort(value, offset + 1);
+    int subOffset = offset + 3;
+    for (int i = 0; i < entries; i++) {
+      int keyLen = serializedLength(value, subOffset);
+      boolean match = (keyLen == serializedKey.length);
+      for (int j = 0; match && j < keyLen; j++) {
+        match = (value[subOffset + j] == serializedKey[j]);
+      }
+      subOffset += keyLen;
+      if (match) {
+        return subOffset;
+      }
+      subOffset += serializedLength(value, subOffset);
+    }
+    return -1;
+  }
+
+  /*
+   * Returned by compareSerialized for values that cannot be ordered against
+   * each other.
+   */
+  public static final int INCOMPARABLE = Integer.MIN_VALUE;
+
+  /*
+   * Compares two serialized scalar values in place. Integers and longs
+   * compare numerically with each other, and strings compare in code point
+   * order (that of their UTF-8 bytes). Any other pair of values is
+   * INCOMPARABLE. Otherwise returns a negative number, zero, or a positive
+   * number as the first value is less than, equal to, or greater than the
+   * second.
+   */
+  public static int compareSerialized(byte[] a, int aOffset, byte[] b, 
+      int bOffset) {
+    byte aType = a[aOffset];
+    byte bType = b[bOffset];
+    if (isNumeric(aType) && isNumeric(bType)) {
+      return Long.compare(readNumber(a, aOffset), readNumber(b, bOffset));
+    } else if (aType == TypeCode.STRING.val() 
+        && bType == TypeCode.STRING.val()) {
+      int aLen = readShort(a, aOffset + 1);
+      int bLen = readShort(b, bOffset + 1);
+      for (int i = 0; i < Math.min(aLen, bLen); i++) {
+        int c = (a[aOffset + 3 + i] & 0xFF) - (b[bOffset + 3 + i] & 0xFF);
+        if (c != 0) {
+          return c;
+        }
+      }
+      return aLen - bLen;
+    } else {
+      return INCOMPARABLE;
+    }
+  }
+
+  private static boolean isNumeric(byte type) {
+    return type == TypeCode.INTEGER.val() || type == TypeCode.LONG.val();
+  }
+
+  private static long readNumber(byte[] value, int offset) {
+    if (value[offset] == TypeCode.INTEGER.val()) {
+      return readInt(value, offset + 1);
+    }
+    return ((long) readInt(value, offset + 1) & 0xFFFFFFFFL) 
+        | ((long) readInt(value, offset + 5) << 32);
+  }
+
+  private static int readShort(byte[] value, int offset) {
+    return (short)(((value[offset+0] & 0xFF) << 0) | 
+                   ((value[offset+1] & 0xFF) << 8));
+  }
+
+  private static int readInt(byte[] value, int offset) {
+    return ((value[offset+0] & 0xFF) << 0) | 
+           ((value[offset+1] & 0xFF) << 8) | 
+           ((value[offset+2] & 0xFF) << 16) | 
+           ((value[offset+3] & 0xFF) << 24);
+  }
+
   public static enum VertexKeyType {
 
     LABEL,
     PROPERTIES,
     EDGE_LIST,
     EDGE_LABELS,
+    PROPERTY,
   }
 
   public static byte[] getVertexLabelKey(UInt128 vertexId) {
@@ -330,6 +545,24 @@ public class TorcHelper {
     return buffer.array();
   }
 
+  /*
+   * Key of the object holding a single property of a vertex, for vertices
+   * stored with the per-key property layout. In this layout the object at
+   * getVertexPropertiesKey holds the list of the vertex's property keys.
+   */
+  public static byte[] getVertexPropertyKey(UInt128 vertexId, 
+      String propertyKey) {
+    byte[] propertyKeyByteArray = propertyKey.getBytes(DEFAULT_CHAR_ENCODING);
+    ByteBuffer buffer = ByteBuffer.allocate(UInt128.BYTES + Byte.BYTES 
+        + propertyKeyByteArray.length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putLong(vertexId.getUpperLong());
+    buffer.putLong(vertexId.getLowerLong());
+    buffer.put((byte) VertexKeyType.PROPERTY.ordinal());
+    buffer.put(propertyKeyByteArray);
+    return buffer.array();
+  }
+
   public static VertexKeyType getVertexKeyType(byte[] key) {
     return VertexKeyType.values()[key[UInt128.BYTES]];
   }
@@ -404,6 +637,64 @@ public class TorcHelper {
     return keyPrefixes;
   }
 
+  /**
+   * Generates the key prefix of the posting list that indexes vertices with
+   * the given label by the given value of a property. The posting list is
+   * stored like an edge list under this prefix, with one entry per vertex.
+   * Integral values are widened to Long first, so that values that are
+   * equal under Compare.eq, such as 5 and 5L, share a posting list.
+   *
+   * @param label Vertex label.
+   * @param key Property key.
+   * @param value Property value.
+   *
+   * @return RAMCloud key prefix.
+   */
+  public static byte[] getIndexKeyPrefix(String label, String key, 
+      Object value) {
+    if (value instanceof Byte || value instanceof Short 
+        || value instanceof Integer) {
+      value = ((Number) value).longValue();
+    }
+
+    byte[] labelByteArray = label.getBytes(DEFAULT_CHAR_ENCODING);
+    byte[] keyByteArray = key.getBytes(DEFAULT_CHAR_ENCODING);
+    byte[] valueByteArray = serializeObject(value);
+    ByteBuffer buffer =
+        ByteBuffer.allocate(Short.BYTES + labelByteArray.length
+            + Short.BYTES + keyByteArray.length
+            + valueByteArray.length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putShort((short) labelByteArray.length);
+    buffer.put(labelByteArray);
+    buffer.putShort((short) keyByteArray.length);
+    buffer.put(keyByteArray);
+    buffer.put(valueByteArray);
+    return buffer.array();
+  }
+
+  /**
+   * Generates the key prefix of one partition of the membership list of the
+   * vertices with the given label. The membership list is stored like an
+   * edge list under this prefix, with one entry per vertex.
+   *
+   * @param label Vertex label.
+   * @param partition Partition of the membership list.
+   *
+   * @return RAMCloud key prefix.
+   */
+  public static byte[] getLabelListKeyPrefix(String label, int partition) {
+    byte[] labelByteArray = label.getBytes(DEFAULT_CHAR_ENCODING);
+    ByteBuffer buffer =
+        ByteBuffer.allocate(Short.BYTES + labelByteArray.length
+            + Integer.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putShort((short) labelByteArray.length);
+    buffer.put(labelByteArray);
+    buffer.putInt(partition);
+    return buffer.array();
+  }
+
   /** 
    * Take two traversal results and merge them. 
    *
@@ -417,42 +708,93 @@ public class TorcHelper {
       TraversalResult trA,
       TraversalResult trB,
       boolean dedup) {
+    return fuse(trA, trB, dedup, null);
+  }
+
+  /** 
+   * Take two traversal results and merge them, optionally joining the base
+   * vertices of the first result in parallel. Each task builds the fused
+   * lists of a range of base vertices, and the lists are then gathered into
+   * the joined result. Results with few base vertices are joined in the
+   * calling thread.
+   *
+   * @param a First traversal result
+   * @param b Second traversal result
+   * @param dedup Whether or not to dedup the lists in the values of the merge.
+   * @param pool Pool in which to join in parallel, or null to join in the
+   * calling thread.
+   *
+   * @return Joined traversal result.
+   */
+  public static TraversalResult fuse(
+      TraversalResult trA,
+      TraversalResult trB,
+      boolean dedup,
+      ForkJoinPool pool) {
     Map<TorcVertex, List<TorcVertex>> a = trA.vMap;
     Map<TorcVertex, List<TorcVertex>> b = trB.vMap;
 
-    Map<TorcVertex, List<TorcVertex>> fusedMap = new HashMap<>(a.size());
-    Set<TorcVertex> globalFusedSet = new HashSet<>();
+    /* Index b by primitive ID, so that joining does not hash TorcVertex
+     * objects. Only read from here on, so it is shared by all tasks. */
+    UInt128ObjectMap<List<TorcVertex>> bIndex = 
+        new UInt128ObjectMap<>(b.size());
+    for (Map.Entry<TorcVertex, List<TorcVertex>> e : b.entrySet()) {
+      bIndex.put(e.getKey().id(), e.getValue());
+    }
 
-    for (Map.Entry e : a.entrySet()) {
-      TorcVertex aVertex = (TorcVertex)e.getKey();
-      List<TorcVertex> aVertexList = (List<TorcVertex>)e.getValue();
+    List<TorcVertex> aVertices = new ArrayList<>(a.keySet());
+    List<List<TorcVertex>> fusedLists = 
+        new ArrayList<>(Collections.nCopies(aVertices.size(), null));
 
-      if (dedup) {
-        Set<TorcVertex> fusedSet = new HashSet<>();
-        for (TorcVertex v : aVertexList) {
-          if (b.containsKey(v))
-            fusedSet.addAll(b.get(v));
-        }
+    forRange(pool, aVertices.size(), PARALLEL_GRAIN, i -> {
+      List<TorcVertex> fusedList = new ArrayList<>();
+      UInt128Set fusedIds = dedup ? new UInt128Set() : null;
+      for (TorcVertex v : a.get(aVertices.get(i))) {
+        List<TorcVertex> bVertexList = bIndex.get(v.id());
+        if (bVertexList == null)
+          continue;
 
-        if (fusedSet.size() > 0) {
-          fusedMap.put(aVertex, new ArrayList<>(fusedSet));
-          globalFusedSet.addAll(fusedSet);
-        }
-      } else {
-        List<TorcVertex> fusedList = new ArrayList<>();
-        for (TorcVertex v : aVertexList) {
-          if (b.containsKey(v))
-            fusedList.addAll(b.get(v));
+        if (dedup) {
+          for (TorcVertex w : bVertexList) {
+            if (fusedIds.add(w.id()))
+              fusedList.add(w);
+          }
+        } else {
+          fusedList.addAll(bVertexList);
         }
+      }
 
-        if (fusedList.size() > 0) {
-          fusedMap.put(aVertex, fusedList);
-          globalFusedSet.addAll(fusedList);
-        }
+      if (fusedList.size() > 0)
+        fusedLists.set(i, fusedList);
+    });
+
+    Map<TorcVertex, List<TorcVertex>> fusedMap = new HashMap<>(a.size());
+    UInt128Set globalFusedIds = new UInt128Set();
+    List<TorcVertex> globalFusedList = new ArrayList<>();
+    for (int i = 0; i < fusedLists.size(); i++) {
+      if (fusedLists.get(i) == null)
+        continue;
+
+      fusedMap.put(aVertices.get(i), fusedLists.get(i));
+      for (TorcVertex w : fusedLists.get(i)) {
+        if (globalFusedIds.add(w.id()))
+          globalFusedList.add(w);
       }
     }
 
-    return new TraversalResult(fusedMap, null, globalFusedSet);
+    return new TraversalResult(fusedMap, null, 
+        new HashSet<>(globalFusedList));
+  }
+
+  /*
+   * Returns the set of IDs of the given vertices.
+   */
+  private static UInt128Set idSet(Collection<TorcVertex> vertices) {
+    UInt128Set ids = new UInt128Set(vertices.size());
+    for (TorcVertex v : vertices) {
+      ids.add(v.id());
+    }
+    return ids;
   }
 
   /**
@@ -466,9 +808,7 @@ public class TorcHelper {
   public static void intersect(
       TraversalResult trA,
       TorcVertex b) {
-    Set<TorcVertex> set = new HashSet<>();
-    set.add(b);
-    intersect(trA, set);
+    intersect(trA, Collections.singletonList(b), null);
   }
 
   /**
@@ -482,7 +822,7 @@ public class TorcHelper {
   public static void intersect(
       TraversalResult trA,
       List<TorcVertex> b) {
-    intersect(trA, new HashSet<>(b));
+    intersect(trA, b, null);
   }
 
   /**
@@ -496,46 +836,28 @@ public class TorcHelper {
   public static void intersect(
       TraversalResult trA,
       Set<TorcVertex> b) {
-    if (trA.pMap == null) {
-      Map<TorcVertex, List<TorcVertex>> newMap = new HashMap<>(trA.vMap.size());
-      for (TorcVertex v : trA.vMap.keySet()) {
-        List<TorcVertex> vList = trA.vMap.get(v);
-
-        vList.retainAll(b);
-        
-        if (vList.size() > 0)
-          newMap.put(v, vList);
-      }
-
-      trA.vMap = newMap;
-    } else {
-      Map<TorcVertex, List<TorcVertex>> newVMap = new HashMap<>(trA.vMap.size());
-      Map<TorcVertex, List<Map<Object, Object>>> newPMap = new HashMap<>(trA.pMap.size());
-
-      for (TorcVertex v : trA.vMap.keySet()) {
-        List<TorcVertex> vList = trA.vMap.get(v);
-        List<Map<Object, Object>> pList = trA.pMap.get(v);
-        List<TorcVertex> newVList = new ArrayList<>(vList.size());
-        List<Map<Object, Object>> newPList = new ArrayList<>(pList.size());
-
-        for (int i = 0; i < vList.size(); i++) {
-          if (b.contains(vList.get(i))) {
-            newVList.add(vList.get(i));
-            newPList.add(pList.get(i));
-          }
-        }
-
-        if (newVList.size() > 0) {
-          newVMap.put(v, newVList);
-          newPMap.put(v, newPList);
-        }
-      }
-
-      trA.vMap = newVMap;
-      trA.pMap = newPMap;
-    }
+    intersect(trA, b, null);
+  }
 
-    trA.vSet.retainAll(b);
+  /**
+   * Intersects the values in the collection with those in the
+   * TraversalResult, optionally processing the base vertices in parallel.
+   * If the TraversalResult's neighbor lists are sorted (see
+   * {@link #sortNeighbors(TraversalResult, ForkJoinPool)}), each list is
+   * intersected by a linear merge against the sorted values, galloping over
+   * long runs of either side, instead of by hashing every neighbor. The
+   * resulting map will never have empty list values.
+   *
+   * @param trA TraversalResult to intersect values on.
+   * @param b Values to intersect TraversalResult values with.
+   * @param pool Pool in which to process the base vertices in parallel, or
+   * null to process them in the calling thread.
+   */
+  public static void intersect(
+      TraversalResult trA,
+      Collection<TorcVertex> b,
+      ForkJoinPool pool) {
+    filterNeighbors(trA, b, true, pool);
   }
 
   /**
@@ -549,92 +871,511 @@ public class TorcHelper {
   public static void subtract(
       TraversalResult trA,
       Set<TorcVertex> b) {
-    if (trA.pMap == null) {
-      Map<TorcVertex, List<TorcVertex>> newMap = new HashMap<>(trA.vMap.size());
-      for (TorcVertex v : trA.vMap.keySet()) {
-        List<TorcVertex> vList = trA.vMap.get(v);
+    subtract(trA, b, null);
+  }
 
-        vList.removeAll(b);
+  /**
+   * Subtracts the values in the collection from the TraversalResult,
+   * optionally processing the base vertices in parallel. Uses linear merges
+   * if the TraversalResult's neighbor lists are sorted, like
+   * {@link #intersect(TraversalResult, Collection, ForkJoinPool)}. The
+   * resulting map will never have empty list values.
+   *
+   * @param trA TraveresalResult to subtract values from.
+   * @param b Values to subtract out of TraversalResult.
+   * @param pool Pool in which to process the base vertices in parallel, or
+   * null to process them in the calling thread.
+   */
+  public static void subtract(
+      TraversalResult trA,
+      Collection<TorcVertex> b,
+      ForkJoinPool pool) {
+    filterNeighbors(trA, b, false, pool);
+  }
+
+  /**
+   * Sorts the neighbor lists of the TraversalResult by neighbor ID, in the
+   * order of UInt128.compareTo, keeping edge properties aligned,
+   * and marks the result as sorted. intersect, subtract and removeEdgeIf
+   * keep the lists sorted.
+   *
+   * @param tr TraversalResult whose neighbor lists to sort.
+   * @param pool Pool in which to sort the lists in parallel, or null to sort
+   * them in the calling thread.
+   */
+  public static void sortNeighbors(TraversalResult tr, ForkJoinPool pool) {
+    List<TorcVertex> bases = new ArrayList<>(tr.vMap.keySet());
+    List<List<TorcVertex>> nLists = new ArrayList<>(bases.size());
+    List<List<Map<Object, Object>>> pLists = 
+        (tr.pMap != null) ? new ArrayList<>(bases.size()) : null;
+    for (TorcVertex base : bases) {
+      nLists.add(tr.vMap.get(base));
+      if (pLists != null)
+        pLists.add(tr.pMap.get(base));
+    }
 
-        if (vList.size() > 0)
-          newMap.put(v, vList);
+    forRange(pool, bases.size(), PARALLEL_GRAIN, i -> {
+      List<TorcVertex> nList = nLists.get(i);
+      if (pLists == null) {
+        nList.sort(TorcHelper::compareIds);
+        return;
       }
 
-      trA.vMap = newMap;
-    } else {
-      Map<TorcVertex, List<TorcVertex>> newVMap = new HashMap<>(trA.vMap.size());
-      Map<TorcVertex, List<Map<Object, Object>>> newPMap = new HashMap<>(trA.pMap.size());
-
-      for (TorcVertex v : trA.vMap.keySet()) {
-        List<TorcVertex> vList = trA.vMap.get(v);
-        List<Map<Object, Object>> pList = trA.pMap.get(v);
-        List<TorcVertex> newVList = new ArrayList<>(vList.size());
-        List<Map<Object, Object>> newPList = new ArrayList<>(pList.size());
-
-        for (int i = 0; i < vList.size(); i++) {
-          if (!b.contains(vList.get(i))) {
-            newVList.add(vList.get(i));
-            newPList.add(pList.get(i));
-          }
+      List<Map<Object, Object>> pList = pLists.get(i);
+      Integer[] order = new Integer[nList.size()];
+      for (int j = 0; j < order.length; j++)
+        order[j] = j;
+      Arrays.sort(order, (x, y) -> compareIds(nList.get(x), nList.get(y)));
+
+      List<TorcVertex> sortedNList = new ArrayList<>(order.length);
+      List<Map<Object, Object>> sortedPList = new ArrayList<>(order.length);
+      for (int j : order) {
+        sortedNList.add(nList.get(j));
+        sortedPList.add(pList.get(j));
+      }
+      nList.clear();
+      nList.addAll(sortedNList);
+      pList.clear();
+      pList.addAll(sortedPList);
+    });
+
+    tr.sortedNeighbors = true;
+  }
+
+  /**
+   * Returns the elements of a that are also in b, where both lists are
+   * sorted by ID (as by sortNeighbors), using a linear merge that gallops
+   * over long runs of either list. Useful for example to find the mutual
+   * neighbors of two vertices.
+   *
+   * @param a Sorted list.
+   * @param b Sorted list.
+   *
+   * @return Sorted list of the elements of a that are in b.
+   */
+  public static List<TorcVertex> intersectSorted(List<TorcVertex> a,
+      List<TorcVertex> b) {
+    List<TorcVertex> result = new ArrayList<>();
+    int[] kept = mergeSelect(randomAccess(a), sortedIds(b), true);
+    for (int i : kept)
+      result.add(a.get(i));
+    return result;
+  }
+
+  /**
+   * Returns the elements of a that are not in b, where both lists are
+   * sorted by ID (as by sortNeighbors).
+   *
+   * @param a Sorted list.
+   * @param b Sorted list.
+   *
+   * @return Sorted list of the elements of a that are not in b.
+   */
+  public static List<TorcVertex> subtractSorted(List<TorcVertex> a,
+      List<TorcVertex> b) {
+    List<TorcVertex> result = new ArrayList<>();
+    int[] kept = mergeSelect(randomAccess(a), sortedIds(b), false);
+    for (int i : kept)
+      result.add(a.get(i));
+    return result;
+  }
+
+  /* Number of base vertices below which set operations are not split up
+   * further across threads. */
+  private static final int PARALLEL_GRAIN = 1 << 8;
+
+  /*
+   * Keeps (if retain is set) or drops the neighbors in b from the lists of
+   * the TraversalResult, dropping base vertices left without neighbors.
+   */
+  private static void filterNeighbors(TraversalResult tr,
+      Collection<TorcVertex> b, boolean retain, ForkJoinPool pool) {
+    List<TorcVertex> bases = new ArrayList<>(tr.vMap.keySet());
+    int n = bases.size();
+    List<List<TorcVertex>> newNLists = 
+        new ArrayList<>(Collections.nCopies(n, null));
+    List<List<Map<Object, Object>>> newPLists = (tr.pMap != null) 
+        ? new ArrayList<>(Collections.nCopies(n, null)) : null;
+
+    /* Sorted lists are merged against b's sorted IDs, others are probed
+     * against a hash set of b's IDs. */
+    long[] bIds = tr.sortedNeighbors ? sortedIds(b) : null;
+    UInt128Set bIdSet = tr.sortedNeighbors ? null : idSet(b);
+
+    forRange(pool, n, PARALLEL_GRAIN, i -> {
+      TorcVertex base = bases.get(i);
+      List<TorcVertex> nList = tr.vMap.get(base);
+      int[] kept;
+      if (bIds != null) {
+        kept = mergeSelect(randomAccess(nList), bIds, retain);
+      } else {
+        kept = new int[nList.size()];
+        int k = 0;
+        for (int j = 0; j < nList.size(); j++) {
+          if (bIdSet.contains(nList.get(j).id()) == retain)
+            kept[k++] = j;
         }
+        kept = Arrays.copyOf(kept, k);
+      }
+
+      if (kept.length == 0)
+        return;
+
+      List<TorcVertex> newNList = new ArrayList<>(kept.length);
+      for (int j : kept)
+        newNList.add(nList.get(j));
+      newNLists.set(i, newNList);
+
+      if (newPLists != null) {
+        List<Map<Object, Object>> pList = tr.pMap.get(base);
+        List<Map<Object, Object>> newPList = new ArrayList<>(kept.length);
+        for (int j : kept)
+          newPList.add(pList.get(j));
+        newPLists.set(i, newPList);
+      }
+    });
+
+    Map<TorcVertex, List<TorcVertex>> newVMap = new HashMap<>(n);
+    Map<TorcVertex, List<Map<Object, Object>>> newPMap = 
+        (newPLists != null) ? new HashMap<>(n) : null;
+    for (int i = 0; i < n; i++) {
+      if (newNLists.get(i) != null) {
+        newVMap.put(bases.get(i), newNLists.get(i));
+        if (newPMap != null)
+          newPMap.put(bases.get(i), newPLists.get(i));
+      }
+    }
+    tr.vMap = newVMap;
+    tr.pMap = newPMap;
 
-        if (newVList.size() > 0) {
-          newVMap.put(v, newVList);
-          newPMap.put(v, newPList);
+    if (bIds != null) {
+      tr.vSet.removeIf(v -> (indexOfId(bIds, 0, bIds.length / 2, 
+              v.id().getUpperLong(), v.id().getLowerLong()) >= 0) != retain);
+    } else {
+      tr.vSet.removeIf(v -> bIdSet.contains(v.id()) != retain);
+    }
+  }
+
+  /*
+   * Merges a list sorted by ID against sorted, distinct IDs, returning the
+   * indexes of the list elements that are (if retain is set) or are not in
+   * the IDs. Whenever one side is behind the other, it gallops ahead to
+   * catch up, so skewed sizes cost about the smaller size times the log of
+   * the larger, and similar sizes cost their sum.
+   */
+  private static int[] mergeSelect(List<TorcVertex> list, long[] ids, 
+      boolean retain) {
+    int n = list.size();
+    int m = ids.length / 2;
+    int[] kept = new int[n];
+    int k = 0;
+    int i = 0;
+    int j = 0;
+    while (i < n && j < m) {
+      UInt128 id = list.get(i).id();
+      int c = compareIds(id.getUpperLong(), id.getLowerLong(), ids[2 * j],
+          ids[2 * j + 1]);
+      if (c == 0) {
+        // Lists may contain the same neighbor more than once.
+        if (retain)
+          kept[k++] = i;
+        i++;
+      } else if (c < 0) {
+        int next = gallopList(list, i, n, ids[2 * j], ids[2 * j + 1]);
+        if (!retain) {
+          for (; i < next; i++)
+            kept[k++] = i;
         }
+        i = next;
+      } else {
+        j = gallopIds(ids, j, m, id.getUpperLong(), id.getLowerLong());
       }
+    }
 
-      trA.vMap = newVMap;
-      trA.pMap = newPMap;
+    if (!retain) {
+      for (; i < n; i++)
+        kept[k++] = i;
     }
 
-    trA.vSet.removeAll(b);
+    return Arrays.copyOf(kept, k);
+  }
+
+  /* Returns the first index in [from, to) whose element's ID is not less
+   * than the given ID, searching exponentially and then by bisection. */
+  private static int gallopList(List<TorcVertex> list, int from, int to,
+      long upper, long lower) {
+    int step = 1;
+    int lo = from;
+    int hi = from + 1;
+    while (hi < to && compareIds(list.get(hi), upper, lower) < 0) {
+      lo = hi;
+      step <<= 1;
+      hi = from + step;
+    }
+    hi = Math.min(hi, to);
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compareIds(list.get(mid), upper, lower) < 0)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  /* Like gallopList, over (upper, lower) pairs. */
+  private static int gallopIds(long[] ids, int from, int to, long upper,
+      long lower) {
+    int step = 1;
+    int lo = from;
+    int hi = from + 1;
+    while (hi < to 
+        && compareIds(ids[2 * hi], ids[2 * hi + 1], upper, lower) < 0) {
+      lo = hi;
+      step <<= 1;
+      hi = from + step;
+    }
+    hi = Math.min(hi, to);
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compareIds(ids[2 * mid], ids[2 * mid + 1], upper, lower) < 0)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  private static int indexOfId(long[] ids, int from, int to, long upper,
+      long lower) {
+    int i = gallopIds(ids, from, to, upper, lower);
+    if (i < to && ids[2 * i] == upper && ids[2 * i + 1] == lower)
+      return i;
+    return -1;
+  }
+
+  /*
+   * Returns the distinct IDs of the given vertices, sorted, as (upper,
+   * lower) pairs.
+   */
+  private static long[] sortedIds(Collection<TorcVertex> vertices) {
+    UInt128[] sorted = new UInt128[vertices.size()];
+    int n = 0;
+    for (TorcVertex v : vertices)
+      sorted[n++] = v.id();
+    Arrays.sort(sorted, (x, y) -> compareIds(x.getUpperLong(), 
+          x.getLowerLong(), y.getUpperLong(), y.getLowerLong()));
+
+    long[] ids = new long[2 * n];
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      long upper = sorted[i].getUpperLong();
+      long lower = sorted[i].getLowerLong();
+      if (m > 0 && ids[2 * m - 2] == upper && ids[2 * m - 1] == lower)
+        continue;
+      ids[2 * m] = upper;
+      ids[2 * m + 1] = lower;
+      m++;
+    }
+    return Arrays.copyOf(ids, 2 * m);
+  }
+
+  private static List<TorcVertex> randomAccess(List<TorcVertex> list) {
+    return (list instanceof RandomAccess) ? list : new ArrayList<>(list);
+  }
+
+  private static int compareIds(TorcVertex x, TorcVertex y) {
+    return compareIds(x.id().getUpperLong(), x.id().getLowerLong(), 
+        y.id().getUpperLong(), y.id().getLowerLong());
+  }
+
+  private static int compareIds(TorcVertex x, long upper, long lower) {
+    return compareIds(x.id().getUpperLong(), x.id().getLowerLong(), upper,
+        lower);
+  }
+
+  private static int compareIds(long aUpper, long aLower, long bUpper, 
+      long bLower) {
+    return UInt128.compare(aUpper, aLower, bUpper, bLower);
+  }
+
+  /*
+   * Runs body on every index in [0, n), splitting the range across the
+   * pool's threads in pieces of at most grain indexes. Runs in the calling
+   * thread if pool is null or the range is small.
+   */
+  private static void forRange(ForkJoinPool pool, int n, int grain,
+      IntConsumer body) {
+    if (pool == null || n <= grain) {
+      for (int i = 0; i < n; i++)
+        body.accept(i);
+    } else {
+      pool.invoke(new RangeTask(0, n, grain, body));
+    }
+  }
+
+  private static class RangeTask extends RecursiveAction {
+    final int from;
+    final int to;
+    final int grain;
+    final IntConsumer body;
+
+    RangeTask(int from, int to, int grain, IntConsumer body) {
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+      this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= grain) {
+        for (int i = from; i < to; i++)
+          body.accept(i);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new RangeTask(from, mid, grain, body),
+            new RangeTask(mid, to, grain, body));
+      }
+    }
   }
 
   public static void removeEdgeIf(
       TraversalResult tr,
       BiFunction<TorcVertex, Map<Object, Object>, Boolean> f) {
-    Map<TorcVertex, List<TorcVertex>> newVMap = new HashMap<>(tr.vMap.size());
-    Map<TorcVertex, List<Map<Object, Object>>> newPMap = null;
-    Set<TorcVertex> newVSet = new HashSet<>(tr.vSet.size());
-    if (tr.pMap != null)
-      newPMap = new HashMap<>(tr.pMap.size());
+    removeEdgeIf(tr, f, null);
+  }
 
-    for (TorcVertex b : tr.vMap.keySet()) {
+  /**
+   * Removes the edges of the TraversalResult for which f returns true,
+   * optionally evaluating f on the edges of different base vertices in
+   * parallel, in which case f must be safe to call concurrently. Base
+   * vertices left without neighbors are removed. Results with few base
+   * vertices are processed in the calling thread.
+   *
+   * @param tr TraversalResult to remove edges from.
+   * @param f Given a neighbor and the properties of the edge to it (or null
+   * if the result has no edge properties), returns whether to remove the
+   * edge.
+   * @param pool Pool in which to process in parallel, or null to process in
+   * the calling thread.
+   */
+  public static void removeEdgeIf(
+      TraversalResult tr,
+      BiFunction<TorcVertex, Map<Object, Object>, Boolean> f,
+      ForkJoinPool pool) {
+    List<TorcVertex> bases = new ArrayList<>(tr.vMap.keySet());
+    int n = bases.size();
+    List<List<TorcVertex>> newNLists = 
+        new ArrayList<>(Collections.nCopies(n, null));
+    List<List<Map<Object, Object>>> newPLists = (tr.pMap != null) 
+        ? new ArrayList<>(Collections.nCopies(n, null)) : null;
+
+    forRange(pool, n, PARALLEL_GRAIN, i -> {
+      TorcVertex b = bases.get(i);
       List<TorcVertex> nList = tr.vMap.get(b);
       List<TorcVertex> newNList = new ArrayList<>(nList.size());
       List<Map<Object, Object>> pList = null;
       List<Map<Object, Object>> newPList = null;
-      if (tr.pMap != null) {
+      if (newPLists != null) {
         pList = tr.pMap.get(b);
         newPList = new ArrayList<>(pList.size());
       }
 
-      for (int i = 0; i < nList.size(); i++) {
+      for (int j = 0; j < nList.size(); j++) {
         boolean remove;
         if (pList != null)
-          remove = f.apply(nList.get(i), pList.get(i));
+          remove = f.apply(nList.get(j), pList.get(j));
         else
-          remove = f.apply(nList.get(i), null);
+          remove = f.apply(nList.get(j), null);
 
         if (!remove) {
-          newNList.add(nList.get(i));
+          newNList.add(nList.get(j));
           if (newPList != null)
-            newPList.add(pList.get(i));
-          newVSet.add(nList.get(i));
+            newPList.add(pList.get(j));
         }
       }
 
       if (newNList.size() > 0) {
-        newVMap.put(b, newNList);
-        if (newPMap != null)
-          newPMap.put(b, newPList);
+        newNLists.set(i, newNList);
+        if (newPLists != null)
+          newPLists.set(i, newPList);
+      }
+    });
+
+    Map<TorcVertex, List<TorcVertex>> newVMap = new HashMap<>(n);
+    Map<TorcVertex, List<Map<Object, Object>>> newPMap = 
+        (newPLists != null) ? new HashMap<>(n) : null;
+    UInt128Set newVIds = new UInt128Set(tr.vSet.size());
+    List<TorcVertex> newVList = new ArrayList<>(tr.vSet.size());
+    for (int i = 0; i < n; i++) {
+      if (newNLists.get(i) == null)
+        continue;
+
+      newVMap.put(bases.get(i), newNLists.get(i));
+      if (newPMap != null)
+        newPMap.put(bases.get(i), newPLists.get(i));
+      for (TorcVertex v : newNLists.get(i)) {
+        if (newVIds.add(v.id()))
+          newVList.add(v);
       }
     }
 
     tr.vMap = newVMap;
     tr.pMap = newPMap;
-    tr.vSet = newVSet;
+    tr.vSet = new HashSet<>(newVList);
+  }
+
+  /**
+   * Same as {@link #fuse(TraversalResult, TraversalResult, boolean)}, for
+   * compact traversal results.
+   */
+  public static CompactTraversalResult fuse(
+      CompactTraversalResult trA,
+      CompactTraversalResult trB,
+      boolean dedup) {
+    return trA.fuse(trB, dedup);
+  }
+
+  /**
+   * Same as {@link #intersect(TraversalResult, TorcVertex)}, for compact
+   * traversal results.
+   */
+  public static void intersect(
+      CompactTraversalResult trA,
+      TorcVertex b) {
+    trA.retainNeighbors(Collections.singletonList(b));
+  }
+
+  /**
+   * Same as {@link #intersect(TraversalResult, Set)}, for compact traversal
+   * results.
+   */
+  public static void intersect(
+      CompactTraversalResult trA,
+      Collection<TorcVertex> b) {
+    trA.retainNeighbors(b);
+  }
+
+  /**
+   * Same as {@link #subtract(TraversalResult, Set)}, for compact traversal
+   * results.
+   */
+  public static void subtract(
+      CompactTraversalResult trA,
+      Collection<TorcVertex> b) {
+    trA.removeNeighbors(b);
+  }
+
+  public static void removeEdgeIf(
+      CompactTraversalResult tr,
+      BiFunction<TorcVertex, Map<Object, Object>, Boolean> f) {
+    tr.removeEdgeIf(f);
+  }
+
+  public static List<TorcVertex> keylist(
+      CompactTraversalResult trA) {
+    return trA.keylist();
   }
 
   public static List<TorcVertex> keylist(
@@ -212,7 +212,7 @@ public class UInt128 implements Comparable<UInt128> {
     } else if (n instanceof String) {
       String idStr = (String) n;
       if (idStr.startsWith("0x")) {
-        return new UInt128(idStr, 16);
+        return new UInt128(idStr.substring(2), 16);
       } else {
         return new UInt128(idStr, 10);
       }
@@ -296,41 +296,27 @@ public class UInt128 implements Comparable<UInt128> {
    */
   @Override
   public int compareTo(UInt128 that) {
-    long lower63BitMask = 0x7FFFFFFFFFFFFFFFL;
-
-    if (this.upperLong != that.upperLong) {
-      if (this.upperLong < 0 && that.upperLong > 0) {
-        return 1;
-      }
-
-      if (this.upperLong > 0 && that.upperLong < 0) {
-        return -1;
-      }
-
-      if ((this.upperLong & lower63BitMask)
-          > (that.upperLong & lower63BitMask)) {
-        return 1;
-      }
-
-      return -1;
-    } else if (this.lowerLong != that.lowerLong) {
-      if (this.lowerLong < 0 && that.lowerLong > 0) {
-        return 1;
-      }
-
-      if (this.lowerLong > 0 && that.lowerLong < 0) {
-        return -1;
-      }
-
-      if ((this.lowerLong & lower63BitMask)
-          > (that.lowerLong & lower63BitMask)) {
-        return 1;
-      }
-
-      return -1;
-    }
+    return compare(this.upperLong, this.lowerLong, that.upperLong, 
+        that.lowerLong);
+  }
 
-    return 0;
+  /**
+   * Compares two 128 bit unsigned integers given by their upper and lower 64
+   * bits, in the same order as {@link #compareTo(UInt128)}, without needing
+   * UInt128 instances.
+   *
+   * @param aUpper Upper 64 bits of the first number.
+   * @param aLower Lower 64 bits of the first number.
+   * @param bUpper Upper 64 bits of the second number.
+   * @param bLower Lower 64 bits of the second number.
+   *
+   * @return A negative number, zero, or a positive number as the first
+   * number is less than, equal to, or greater than the second.
+   */
+  public static int compare(long aUpper, long aLower, long bUpper, 
+      long bLower) {
+    int c = Long.compareUnsigned(aUpper, bUpper);
+    return (c != 0) ? c : Long.compareUnsigned(aLower, bLower);
   }
 
   /**
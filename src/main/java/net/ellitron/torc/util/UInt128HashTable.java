@@ -0,0 +1,266 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table of 128-bit keys, stored as (upper, lower) long
+ * pairs side by side in a single array, so that a lookup hashes two longs and
+ * probes consecutive memory instead of boxing the key and chasing entry
+ * objects. Collisions are resolved by linear probing, and removal shifts the
+ * following entries back rather than leaving tombstones. The all-zero key
+ * marks empty slots, so the key (0, 0) itself is kept in an extra slot at
+ * index capacity(). Subclasses keep their values in arrays of capacity() + 1
+ * slots, parallel to the keys. Not thread-safe.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+abstract class UInt128HashTable {
+
+  private static final int MIN_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.5f;
+
+  long[] keys;
+  private int mask;
+  private int maxFill;
+  private int size = 0;
+  private boolean hasZeroKey = false;
+
+  UInt128HashTable(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException(String.format(
+          "Expected size must not be negative, got %d", expectedSize));
+    }
+    allocate(tableSize(expectedSize));
+  }
+
+  /**
+   * Returns the number of keys.
+   *
+   * @return Number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all keys, keeping the table's capacity.
+   */
+  public void clear() {
+    Arrays.fill(keys, 0);
+    hasZeroKey = false;
+    size = 0;
+    clearValues();
+  }
+
+  /* Number of slots, excluding the slot of the zero key. */
+  final int capacity() {
+    return mask + 1;
+  }
+
+  /* Returns the slot holding the key, or -1 if the key is absent. */
+  final int slotOf(long upper, long lower) {
+    if (upper == 0 && lower == 0) {
+      return hasZeroKey ? capacity() : -1;
+    }
+
+    int slot = hash(upper, lower) & mask;
+    while (true) {
+      long u = keys[2 * slot];
+      long l = keys[2 * slot + 1];
+      if (u == upper && l == lower) {
+        return slot;
+      } else if (u == 0 && l == 0) {
+        return -1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /*
+   * Adds the key if it is absent. Returns the slot holding the key if it was
+   * already present, or -(slot + 1) if it was added.
+   */
+  final int insert(long upper, long lower) {
+    if (upper == 0 && lower == 0) {
+      if (hasZeroKey) {
+        return capacity();
+      }
+      hasZeroKey = true;
+      size++;
+      return -(capacity() + 1);
+    }
+
+    int slot = hash(upper, lower) & mask;
+    while (true) {
+      long u = keys[2 * slot];
+      long l = keys[2 * slot + 1];
+      if (u == upper && l == lower) {
+        return slot;
+      } else if (u == 0 && l == 0) {
+        break;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[2 * slot] = upper;
+    keys[2 * slot + 1] = lower;
+    if (++size > maxFill) {
+      rehash(2 * capacity());
+      slot = slotOf(upper, lower);
+    }
+    return -(slot + 1);
+  }
+
+  /* Removes the key, returning whether it was present. */
+  final boolean delete(long upper, long lower) {
+    int slot = slotOf(upper, lower);
+    if (slot < 0) {
+      return false;
+    }
+
+    size--;
+    if (slot == capacity()) {
+      hasZeroKey = false;
+      clearValue(slot);
+      return true;
+    }
+
+    /* Shift back the following entries of the probe sequence that would no
+     * longer be reachable across the emptied slot. */
+    int hole = slot;
+    slot = (slot + 1) & mask;
+    while (true) {
+      long u = keys[2 * slot];
+      long l = keys[2 * slot + 1];
+      if (u == 0 && l == 0) {
+        break;
+      }
+
+      int home = hash(u, l) & mask;
+      boolean reachable = (hole <= slot) 
+          ? (hole < home && home <= slot) 
+          : (hole < home || home <= slot);
+      if (!reachable) {
+        keys[2 * hole] = u;
+        keys[2 * hole + 1] = l;
+        moveValue(slot, hole);
+        hole = slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[2 * hole] = 0;
+    keys[2 * hole + 1] = 0;
+    clearValue(hole);
+    return true;
+  }
+
+  /*
+   * Returns the first occupied slot at or after the given one (the zero
+   * key's slot, capacity(), coming last), or -1 if there is none.
+   */
+  final int nextSlot(int slot) {
+    for (; slot < capacity(); slot++) {
+      if (keys[2 * slot] != 0 || keys[2 * slot + 1] != 0) {
+        return slot;
+      }
+    }
+    return (slot == capacity() && hasZeroKey) ? slot : -1;
+  }
+
+  final long upperAt(int slot) {
+    return (slot == capacity()) ? 0 : keys[2 * slot];
+  }
+
+  final long lowerAt(int slot) {
+    return (slot == capacity()) ? 0 : keys[2 * slot + 1];
+  }
+
+  /* Allocates the value arrays for the given capacity (plus one slot for the
+   * zero key). */
+  abstract void allocateValues(int capacity);
+
+  /* Moves the values of the old slots to the new ones after a rehash.
+   * newSlots[s] is the new slot of old slot s, or -1 if s was empty. */
+  abstract void rehashValues(int[] newSlots, int newCapacity);
+
+  abstract void moveValue(int from, int to);
+
+  abstract void clearValue(int slot);
+
+  abstract void clearValues();
+
+  private void allocate(int capacity) {
+    keys = new long[2 * capacity];
+    mask = capacity - 1;
+    maxFill = (int) (capacity * LOAD_FACTOR);
+    allocateValues(capacity);
+  }
+
+  private void rehash(int newCapacity) {
+    long[] oldKeys = keys;
+    int oldCapacity = capacity();
+    keys = new long[2 * newCapacity];
+    mask = newCapacity - 1;
+    maxFill = (int) (newCapacity * LOAD_FACTOR);
+
+    int[] newSlots = new int[oldCapacity + 1];
+    for (int s = 0; s < oldCapacity; s++) {
+      long u = oldKeys[2 * s];
+      long l = oldKeys[2 * s + 1];
+      if (u == 0 && l == 0) {
+        newSlots[s] = -1;
+        continue;
+      }
+
+      int slot = hash(u, l) & mask;
+      while (keys[2 * slot] != 0 || keys[2 * slot + 1] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      keys[2 * slot] = u;
+      keys[2 * slot + 1] = l;
+      newSlots[s] = slot;
+    }
+    newSlots[oldCapacity] = newCapacity;
+
+    rehashValues(newSlots, newCapacity);
+  }
+
+  private static int tableSize(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /* Mixes both halves of the key into all bits of the hash, so that keys
+   * differing only in their upper or lower half spread across the table. */
+  static int hash(long upper, long lower) {
+    long h = (upper * 0x9E3779B97F4A7C15L) ^ lower;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+}
@@ -0,0 +1,151 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from 128-bit IDs, keyed directly by their (upper, lower) long halves,
+ * to ints, without boxing either (see {@link UInt128HashTable}). Useful for
+ * counting, and for mapping IDs to positions in arrays. Not thread-safe.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class UInt128IntMap extends UInt128HashTable {
+
+  /**
+   * Receives the entries of the map.
+   */
+  @FunctionalInterface
+  public interface Visitor {
+    void visit(long upper, long lower, int value);
+  }
+
+  private int[] values;
+
+  public UInt128IntMap() {
+    this(0);
+  }
+
+  /**
+   * @param expectedSize Number of entries the map is sized for without
+   * growing.
+   */
+  public UInt128IntMap(int expectedSize) {
+    super(expectedSize);
+  }
+
+  public boolean containsKey(long upper, long lower) {
+    return slotOf(upper, lower) >= 0;
+  }
+
+  /**
+   * Returns the value of an ID.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   * @param defaultValue Value to return if the ID is not in the map.
+   *
+   * @return The value of the ID, or defaultValue.
+   */
+  public int getOrDefault(long upper, long lower, int defaultValue) {
+    int slot = slotOf(upper, lower);
+    return (slot >= 0) ? values[slot] : defaultValue;
+  }
+
+  public int getOrDefault(UInt128 id, int defaultValue) {
+    return getOrDefault(id.getUpperLong(), id.getLowerLong(), defaultValue);
+  }
+
+  /**
+   * Sets the value of an ID.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   * @param value New value.
+   */
+  public void put(long upper, long lower, int value) {
+    values[slot(insert(upper, lower))] = value;
+  }
+
+  public void put(UInt128 id, int value) {
+    put(id.getUpperLong(), id.getLowerLong(), value);
+  }
+
+  /**
+   * Adds to the value of an ID, which starts from 0 if the ID is not in the
+   * map.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   * @param delta Amount to add.
+   *
+   * @return The new value.
+   */
+  public int addTo(long upper, long lower, int delta) {
+    int slot = slot(insert(upper, lower));
+    return values[slot] += delta;
+  }
+
+  public boolean remove(long upper, long lower) {
+    return delete(upper, lower);
+  }
+
+  /**
+   * Passes every entry of the map to the visitor, in no particular order.
+   *
+   * @param visitor Receives the entries.
+   */
+  public void forEach(Visitor visitor) {
+    for (int s = nextSlot(0); s >= 0; s = nextSlot(s + 1)) {
+      visitor.visit(upperAt(s), lowerAt(s), values[s]);
+    }
+  }
+
+  private static int slot(int insertResult) {
+    return (insertResult < 0) ? -(insertResult + 1) : insertResult;
+  }
+
+  @Override
+  void allocateValues(int capacity) {
+    values = new int[capacity + 1];
+  }
+
+  @Override
+  void rehashValues(int[] newSlots, int newCapacity) {
+    int[] newValues = new int[newCapacity + 1];
+    for (int s = 0; s < newSlots.length; s++) {
+      if (newSlots[s] >= 0) {
+        newValues[newSlots[s]] = values[s];
+      }
+    }
+    values = newValues;
+  }
+
+  @Override
+  void moveValue(int from, int to) {
+    values[to] = values[from];
+  }
+
+  @Override
+  void clearValue(int slot) {
+    values[slot] = 0;
+  }
+
+  @Override
+  void clearValues() {
+    Arrays.fill(values, 0);
+  }
+}
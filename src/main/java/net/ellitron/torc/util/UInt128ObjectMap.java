@@ -0,0 +1,177 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Map from 128-bit IDs, keyed directly by their (upper, lower) long halves,
+ * to objects, without boxing the keys (see {@link UInt128HashTable}). Null
+ * values are not supported. Not thread-safe.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class UInt128ObjectMap<V> extends UInt128HashTable {
+
+  /**
+   * Receives the entries of the map.
+   */
+  @FunctionalInterface
+  public interface Visitor<V> {
+    void visit(long upper, long lower, V value);
+  }
+
+  private Object[] values;
+
+  public UInt128ObjectMap() {
+    this(0);
+  }
+
+  /**
+   * @param expectedSize Number of entries the map is sized for without
+   * growing.
+   */
+  public UInt128ObjectMap(int expectedSize) {
+    super(expectedSize);
+  }
+
+  public boolean containsKey(long upper, long lower) {
+    return slotOf(upper, lower) >= 0;
+  }
+
+  /**
+   * Returns the value of an ID.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   *
+   * @return The value of the ID, or null if the ID is not in the map.
+   */
+  public V get(long upper, long lower) {
+    int slot = slotOf(upper, lower);
+    return (slot >= 0) ? valueAt(slot) : null;
+  }
+
+  public V get(UInt128 id) {
+    return get(id.getUpperLong(), id.getLowerLong());
+  }
+
+  /**
+   * Sets the value of an ID.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   * @param value New value.
+   *
+   * @return The previous value of the ID, or null if it was not in the map.
+   */
+  public V put(long upper, long lower, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values are not supported");
+    }
+    int result = insert(upper, lower);
+    int slot = (result < 0) ? -(result + 1) : result;
+    V previous = valueAt(slot);
+    values[slot] = value;
+    return previous;
+  }
+
+  public V put(UInt128 id, V value) {
+    return put(id.getUpperLong(), id.getLowerLong(), value);
+  }
+
+  /**
+   * Returns the value of an ID, first setting it to a new value from the
+   * supplier if the ID is not in the map.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   * @param supplier Supplies the value of a new ID.
+   *
+   * @return The (possibly new) value of the ID.
+   */
+  public V computeIfAbsent(long upper, long lower, Supplier<V> supplier) {
+    int result = insert(upper, lower);
+    if (result >= 0) {
+      return valueAt(result);
+    }
+    V value = supplier.get();
+    values[-(result + 1)] = value;
+    return value;
+  }
+
+  /**
+   * Removes an ID.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   *
+   * @return The value of the ID, or null if it was not in the map.
+   */
+  public V remove(long upper, long lower) {
+    V value = get(upper, lower);
+    delete(upper, lower);
+    return value;
+  }
+
+  /**
+   * Passes every entry of the map to the visitor, in no particular order.
+   *
+   * @param visitor Receives the entries.
+   */
+  public void forEach(Visitor<V> visitor) {
+    for (int s = nextSlot(0); s >= 0; s = nextSlot(s + 1)) {
+      visitor.visit(upperAt(s), lowerAt(s), valueAt(s));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private V valueAt(int slot) {
+    /* Only put() and computeIfAbsent() store values, and they store Vs. */
+    return (V) values[slot];
+  }
+
+  @Override
+  void allocateValues(int capacity) {
+    values = new Object[capacity + 1];
+  }
+
+  @Override
+  void rehashValues(int[] newSlots, int newCapacity) {
+    Object[] newValues = new Object[newCapacity + 1];
+    for (int s = 0; s < newSlots.length; s++) {
+      if (newSlots[s] >= 0) {
+        newValues[newSlots[s]] = values[s];
+      }
+    }
+    values = newValues;
+  }
+
+  @Override
+  void moveValue(int from, int to) {
+    values[to] = values[from];
+  }
+
+  @Override
+  void clearValue(int slot) {
+    values[slot] = null;
+  }
+
+  @Override
+  void clearValues() {
+    Arrays.fill(values, null);
+  }
+}
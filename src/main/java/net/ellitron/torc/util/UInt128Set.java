@@ -0,0 +1,116 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+/**
+ * Set of 128-bit IDs keyed directly by their (upper, lower) long halves,
+ * without boxing (see {@link UInt128HashTable}). Used for the bookkeeping of
+ * traversals, such as deduplicating neighbors and intersecting neighbor
+ * lists. Not thread-safe.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class UInt128Set extends UInt128HashTable {
+
+  /**
+   * Receives the IDs of the set.
+   */
+  @FunctionalInterface
+  public interface Visitor {
+    void visit(long upper, long lower);
+  }
+
+  public UInt128Set() {
+    this(0);
+  }
+
+  /**
+   * @param expectedSize Number of IDs the set is sized for without growing.
+   */
+  public UInt128Set(int expectedSize) {
+    super(expectedSize);
+  }
+
+  /**
+   * Adds an ID.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   *
+   * @return True if the ID was not already in the set.
+   */
+  public boolean add(long upper, long lower) {
+    return insert(upper, lower) < 0;
+  }
+
+  public boolean add(UInt128 id) {
+    return add(id.getUpperLong(), id.getLowerLong());
+  }
+
+  public boolean contains(long upper, long lower) {
+    return slotOf(upper, lower) >= 0;
+  }
+
+  public boolean contains(UInt128 id) {
+    return contains(id.getUpperLong(), id.getLowerLong());
+  }
+
+  /**
+   * Removes an ID.
+   *
+   * @param upper Upper 64 bits of the ID.
+   * @param lower Lower 64 bits of the ID.
+   *
+   * @return True if the ID was in the set.
+   */
+  public boolean remove(long upper, long lower) {
+    return delete(upper, lower);
+  }
+
+  public boolean remove(UInt128 id) {
+    return remove(id.getUpperLong(), id.getLowerLong());
+  }
+
+  /**
+   * Passes every ID in the set to the visitor, in no particular order.
+   *
+   * @param visitor Receives the IDs.
+   */
+  public void forEach(Visitor visitor) {
+    for (int s = nextSlot(0); s >= 0; s = nextSlot(s + 1)) {
+      visitor.visit(upperAt(s), lowerAt(s));
+    }
+  }
+
+  @Override
+  void allocateValues(int capacity) {
+  }
+
+  @Override
+  void rehashValues(int[] newSlots, int newCapacity) {
+  }
+
+  @Override
+  void moveValue(int from, int to) {
+  }
+
+  @Override
+  void clearValue(int slot) {
+  }
+
+  @Override
+  void clearValues() {
+  }
+}
@@ -0,0 +1,153 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache mapping vertex IDs to vertex labels. Vertex labels never
+ * change once a vertex is created, so cached labels never need to be
+ * invalidated, only evicted to bound memory use.
+ *
+ * IDs are keyed by their upper and lower 64 bits, so lookups do not need a
+ * UInt128. The cache is a fixed-size, 4-way set associative table with CLOCK
+ * replacement within each set (see {@link ClockSets}), so the labels of
+ * vertices that traversals keep revisiting, like popular forums or tags,
+ * outlive those of vertices seen once. The cache is safe to share between
+ * threads without locking. Each entry holds an ID together with its label,
+ * so a reader never pairs an ID with another vertex's label, and if two
+ * threads caching labels in the same set replace each other's entries, the
+ * lost label is simply read again from RAMCloud.
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class VertexLabelCache {
+
+  private static final int WAYS = 4;
+
+  private final Entry[] entries;
+  private final int setMask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private static final class Entry extends ClockSets.Entry {
+    final long upperLong;
+    final long lowerLong;
+    final String label;
+
+    Entry(long upperLong, long lowerLong, String label) {
+      this.upperLong = upperLong;
+      this.lowerLong = lowerLong;
+      this.label = label;
+    }
+  }
+
+  /**
+   * Creates a cache.
+   *
+   * @param capacity Maximum number of labels held in the cache. Rounded up to
+   * a power of two.
+   */
+  public VertexLabelCache(int capacity) {
+    this.entries = 
+        new Entry[ClockSets.slots(capacity, WAYS, "VertexLabelCache")];
+    this.setMask = entries.length / WAYS - 1;
+  }
+
+  /**
+   * Looks up the label of a vertex.
+   *
+   * @param upperLong Upper 64 bits of the vertex ID.
+   * @param lowerLong Lower 64 bits of the vertex ID.
+   *
+   * @return The vertex's label, or null if it is not cached.
+   */
+  public String get(long upperLong, long lowerLong) {
+    int base = setIndex(upperLong, lowerLong);
+    for (int i = base; i < base + WAYS; i++) {
+      Entry e = entries[i];
+      if (e != null && e.lowerLong == lowerLong && e.upperLong == upperLong) {
+        e.mark();
+        hits.increment();
+        return e.label;
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  public String get(UInt128 vertexId) {
+    return get(vertexId.getUpperLong(), vertexId.getLowerLong());
+  }
+
+  /**
+   * Caches the label of a vertex.
+   *
+   * @param upperLong Upper 64 bits of the vertex ID.
+   * @param lowerLong Lower 64 bits of the vertex ID.
+   * @param label The vertex's label.
+   */
+  public void put(long upperLong, long lowerLong, String label) {
+    int base = setIndex(upperLong, lowerLong);
+    for (int i = base; i < base + WAYS; i++) {
+      Entry e = entries[i];
+      if (e != null && e.lowerLong == lowerLong && e.upperLong == upperLong) {
+        return;
+      }
+    }
+    entries[ClockSets.victim(entries, base, WAYS)] = 
+        new Entry(upperLong, lowerLong, label);
+  }
+
+  public void put(UInt128 vertexId, String label) {
+    put(vertexId.getUpperLong(), vertexId.getLowerLong(), label);
+  }
+
+  /**
+   * Empties the cache. Hit and miss counts are not reset.
+   */
+  public void clear() {
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = null;
+    }
+  }
+
+  /**
+   * @return Maximum number of labels held in the cache.
+   */
+  public int capacity() {
+    return entries.length;
+  }
+
+  /**
+   * @return Number of lookups that found a cached label.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return Number of lookups that did not find a cached label.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  private int setIndex(long upperLong, long lowerLong) {
+    long h = (lowerLong ^ (upperLong * 0x9E3779B97F4A7C15L)) 
+        * 0x9E3779B97F4A7C15L;
+    return ((int) (h >>> 32) & setMask) * WAYS;
+  }
+}
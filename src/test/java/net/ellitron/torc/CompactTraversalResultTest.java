@@ -0,0 +1,128 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import static org.junit.Assert.*;
+
+import net.ellitron.torc.util.TorcHelper;
+import net.ellitron.torc.util.UInt128;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class CompactTraversalResultTest {
+
+  public CompactTraversalResultTest() {
+  }
+
+  private static TorcVertex v(long id) {
+    return new TorcVertex(null, new UInt128(id), "Person");
+  }
+
+  private static byte[] props(long weight) {
+    Map<Object, Object> map = new HashMap<>();
+    map.put("weight", weight);
+    return TorcHelper.serializeObject(map);
+  }
+
+  @Test
+  public void build_groupsAndSortsBaseVertices() {
+    CompactTraversalResult.Builder builder =
+        new CompactTraversalResult.Builder(null, false);
+    builder.add(new UInt128(3), "Person", new UInt128(30), "Post", null);
+    builder.add(new UInt128(1), "Person", new UInt128(10), "Post", null);
+    builder.add(new UInt128(3), "Person", new UInt128(31), "Comment", null);
+    builder.add(new UInt128(1), "Person", new UInt128(11), "Post", null);
+    builder.add(new UInt128(-1L, 0), "Person", new UInt128(40), "Post",
+        null);
+    CompactTraversalResult r = builder.build();
+
+    assertEquals(3, r.size());
+    assertEquals(5, r.edgeCount());
+    assertEquals(Arrays.asList(v(1), v(3), new TorcVertex(null,
+            new UInt128(-1L, 0))), r.keylist());
+    assertArrayEquals(new int[] {0, 2, 4, 5}, r.getOffsets());
+    assertEquals(Arrays.asList(v(30), v(31)), r.vMap().get(v(3)));
+    assertEquals("Comment", r.vMap().get(v(3)).get(1).label());
+    assertEquals(5, r.vSet().size());
+    assertNull(r.pMap());
+    assertEquals(1, r.indexOf(0, 3));
+    assertEquals(-1, r.indexOf(0, 2));
+  }
+
+  @Test
+  public void intersectAndSubtract_keepPropertiesAligned() {
+    CompactTraversalResult.Builder builder =
+        new CompactTraversalResult.Builder(null, true);
+    builder.add(new UInt128(1), "Person", new UInt128(10), "Person",
+        props(10));
+    builder.add(new UInt128(1), "Person", new UInt128(11), "Person",
+        props(11));
+    builder.add(new UInt128(2), "Person", new UInt128(12), "Person",
+        props(12));
+    CompactTraversalResult r = builder.build();
+    assertEquals(2, r.vMap().size());
+
+    TorcHelper.intersect(r, Arrays.asList(v(11), v(12)));
+    assertEquals(2, r.size());
+    assertEquals(11L, r.pMap().get(v(1)).get(0).get("weight"));
+
+    TorcHelper.subtract(r, Arrays.asList(v(12)));
+    assertEquals(Arrays.asList(v(1)), r.keylist());
+    assertEquals(Arrays.asList(v(11)), r.vMap().get(v(1)));
+
+    TorcHelper.removeEdgeIf(r, (n, p) -> (Long) p.get("weight") == 11L);
+    assertEquals(0, r.size());
+    assertEquals(0, r.edgeCount());
+    assertTrue(r.vSet().isEmpty());
+  }
+
+  @Test
+  public void fuse_joinsOnNeighborsWithDedup() {
+    CompactTraversalResult.Builder a =
+        new CompactTraversalResult.Builder(null, false);
+    a.add(new UInt128(1), "Person", new UInt128(10), "Person", null);
+    a.add(new UInt128(1), "Person", new UInt128(11), "Person", null);
+    a.add(new UInt128(2), "Person", new UInt128(12), "Person", null);
+
+    CompactTraversalResult.Builder b =
+        new CompactTraversalResult.Builder(null, false);
+    b.add(new UInt128(10), "Person", new UInt128(100), "Forum", null);
+    b.add(new UInt128(11), "Person", new UInt128(100), "Forum", null);
+    b.add(new UInt128(11), "Person", new UInt128(101), "Forum", null);
+
+    CompactTraversalResult ra = a.build();
+    CompactTraversalResult rb = b.build();
+
+    CompactTraversalResult fused = TorcHelper.fuse(ra, rb, false);
+    assertEquals(Arrays.asList(v(1)), fused.keylist());
+    assertEquals(3, fused.edgeCount());
+
+    CompactTraversalResult dedup = TorcHelper.fuse(ra, rb, true);
+    List<TorcVertex> nList = dedup.vMap().get(v(1));
+    assertEquals(2, nList.size());
+    assertEquals("Forum", nList.get(0).label());
+    assertEquals(TorcHelper.fuse(ra.toTraversalResult(),
+          rb.toTraversalResult(), true).vSet, dedup.vSet());
+  }
+}
@@ -0,0 +1,120 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import static org.junit.Assert.*;
+
+import net.ellitron.torc.PropertyPredicate.Op;
+import net.ellitron.torc.util.PropertyMap;
+import net.ellitron.torc.util.TorcHelper;
+import net.ellitron.torc.util.UInt128;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class PropertyPredicateTest {
+
+  public PropertyPredicateTest() {
+  }
+
+  private static Map<Object, Object> props(Object... keyValues) {
+    Map<Object, Object> map = new PropertyMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      map.put(keyValues[i], keyValues[i + 1]);
+    }
+    return map;
+  }
+
+  /* Checks that evaluating on the serialized and deserialized forms
+   * agree. */
+  private static boolean test(PropertyPredicate p, Map<Object, Object> map) {
+    byte[] ser = TorcHelper.serializeObject(map);
+    boolean result = p.test(ser, 0, ser.length);
+    assertEquals(result, p.test(map));
+    return result;
+  }
+
+  @Test
+  public void test_evaluatesRangeOnSerializedMap() {
+    PropertyPredicate p = PropertyPredicate.of("creationDate", Op.GTE, 100L)
+        .and("creationDate", Op.LT, 200);
+
+    assertTrue(test(p, props("name", "x", "creationDate", 100L)));
+    assertTrue(test(p, props("creationDate", 199L, "weight", 3)));
+    assertFalse(test(p, props("creationDate", 200L)));
+    assertFalse(test(p, props("creationDate", -5L)));
+    assertFalse(test(p, props("name", "x")));
+    assertFalse(test(p, props("creationDate", "150")));
+    assertFalse(p.test(new byte[0], 0, 0));
+  }
+
+  @Test
+  public void test_comparesStringsAndMissingValues() {
+    assertTrue(test(PropertyPredicate.of("city", Op.EQ, "Paris"),
+          props("city", "Paris")));
+    assertFalse(test(PropertyPredicate.of("city", Op.EQ, "Paris"),
+          props("city", "Pari")));
+    assertTrue(test(PropertyPredicate.of("city", Op.LT, "Parisx"),
+          props("city", "Paris")));
+    assertTrue(test(PropertyPredicate.of("city", Op.NEQ, "Paris"),
+          props("name", "Paris")));
+    assertTrue(test(PropertyPredicate.of("city", Op.GT, "Z"),
+          props("city", "é")));
+  }
+
+  @Test
+  public void test_handlesCompressedMaps() {
+    Map<Object, Object> map = props("creationDate", 5L, "content", 
+        new String(new char[500]).replace('\0', 'a'));
+    byte[] ser = TorcHelper.compressObject(TorcHelper.serializeObject(map), 
+        64);
+    assertFalse(TorcHelper.isSerializedMap(ser, 0));
+    assertTrue(PropertyPredicate.of("creationDate", Op.EQ, 5)
+        .test(ser, 0, ser.length));
+  }
+
+  @Test
+  public void decodeSerializedEdges_skipsFilteredEdges() {
+    ByteBuffer seg = ByteBuffer.allocate(1 << 10)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    for (long n = 0; n < 10; n++) {
+      byte[] ser = TorcHelper.serializeObject(props("creationDate", n));
+      seg.put(new UInt128(n).toByteArray());
+      seg.putShort((short) ser.length);
+      seg.put(ser);
+    }
+    seg.flip();
+
+    List<TorcSerializedEdge> eList = new ArrayList<>();
+    TorcEdgeList.decodeSerializedEdges(seg, eList,
+        PropertyPredicate.of("creationDate", Op.GTE, 3L)
+            .and("creationDate", Op.LT, 5L));
+
+    assertEquals(2, eList.size());
+    assertEquals(new UInt128(3), eList.get(0).vertexId);
+    assertEquals(new UInt128(4), eList.get(1).vertexId);
+    assertEquals(4L, ((Map) TorcHelper.deserializeObject(
+            eList.get(1).serializedProperties)).get("creationDate"));
+  }
+}
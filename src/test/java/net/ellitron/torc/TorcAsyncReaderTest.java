@@ -0,0 +1,163 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcAsyncReaderTest {
+
+  public TorcAsyncReaderTest() {
+  }
+
+  private static byte[] key(int n) {
+    return new byte[] {(byte) n};
+  }
+
+  @Test
+  public void readObjects_coalescesQueuedRequests() throws Exception {
+    CountDownLatch firstRead = new CountDownLatch(1);
+    CountDownLatch queued = new CountDownLatch(1);
+    List<Integer> readSizes = Collections.synchronizedList(new ArrayList<>());
+
+    TorcAsyncReader reader = new TorcAsyncReader(1, 
+        (tableId, keyPrefixes) -> new HashMap<>(),
+        keys -> {
+          readSizes.add(keys.size());
+          firstRead.countDown();
+          try {
+            queued.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+          byte[][] values = new byte[keys.size()][];
+          for (int i = 0; i < keys.size(); i++) {
+            /* Odd keys do not exist. */
+            values[i] = (keys.get(i)[0] % 2 == 0) ? keys.get(i) : null;
+          }
+          return values;
+        }, () -> {}, () -> {});
+
+    try {
+      CompletableFuture<byte[][]> first = 
+          reader.readObjects(Collections.singletonList(key(0)));
+      firstRead.await();
+
+      /* Queued up behind the first read, so served by a single read. */
+      List<CompletableFuture<byte[][]>> futures = new ArrayList<>();
+      for (int n = 0; n < 10; n += 2) {
+        futures.add(reader.readObjects(Arrays.asList(key(n), 
+                key(n + 1))));
+      }
+      queued.countDown();
+
+      assertArrayEquals(key(0), first.get()[0]);
+      for (int i = 0; i < futures.size(); i++) {
+        byte[][] values = futures.get(i).get();
+        assertEquals(2, values.length);
+        assertArrayEquals(key(2 * i), values[0]);
+        assertNull(values[1]);
+      }
+      assertEquals(Arrays.asList(1, 10), readSizes);
+    } finally {
+      reader.shutdown();
+    }
+  }
+
+  @Test
+  public void readEdgeLists_failsAllCoalescedRequests() throws Exception {
+    TorcAsyncReader reader = new TorcAsyncReader(2, 
+        (tableId, keyPrefixes) -> {
+          if (tableId == 1) {
+            throw new IllegalStateException("boom");
+          }
+          Map<byte[], List<TorcSerializedEdge>> edgeLists = new HashMap<>();
+          for (byte[] keyPrefix : keyPrefixes) {
+            edgeLists.put(keyPrefix, new ArrayList<>());
+          }
+          return edgeLists;
+        }, keys -> new byte[keys.size()][], () -> {}, () -> {});
+
+    try {
+      byte[] prefix = key(7);
+      Map<byte[], List<TorcSerializedEdge>> edgeLists = 
+          reader.readEdgeLists(2, Collections.singletonList(prefix)).get();
+      assertTrue(edgeLists.containsKey(prefix));
+
+      try {
+        reader.readEdgeLists(1, Collections.singletonList(prefix)).get();
+        fail("Expected the read failure to be passed on");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+
+      assertEquals(0, reader.readObjects(new ArrayList<>()).get().length);
+    } finally {
+      reader.shutdown();
+    }
+  }
+
+  @Test
+  public void readObjects_failsInsteadOfHanging() throws Exception {
+    TorcAsyncReader reader = new TorcAsyncReader(2, 
+        (tableId, keyPrefixes) -> new HashMap<>(),
+        keys -> new byte[keys.size()][], 
+        () -> {
+          throw new IllegalStateException("coordinator unreachable");
+        }, () -> {});
+
+    try {
+      for (int i = 0; i < 3; i++) {
+        try {
+          reader.readObjects(Collections.singletonList(key(i)))
+              .get(5, TimeUnit.SECONDS);
+          fail("Expected the initialization failure to be passed on");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+      }
+    } finally {
+      reader.shutdown();
+    }
+
+    TorcAsyncReader stopped = new TorcAsyncReader(1, 
+        (tableId, keyPrefixes) -> new HashMap<>(),
+        keys -> new byte[keys.size()][], () -> {}, () -> {});
+    stopped.shutdown();
+    try {
+      stopped.readObjects(Collections.singletonList(key(0)))
+          .get(5, TimeUnit.SECONDS);
+      fail("Expected a read after shutdown to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import static org.junit.Assert.*;
+
+import net.ellitron.torc.util.UInt128;
+
+import org.apache.tinkerpop.gremlin.structure.Direction;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcBidirectionalSearchTest {
+
+  public TorcBidirectionalSearchTest() {
+  }
+
+  private static TorcVertex v(long id) {
+    return new TorcVertex(null, new UInt128(id), "Person");
+  }
+
+  /* Directed graph held in memory, read like edge lists. */
+  private static class Graph {
+    final Map<Long, List<TorcSerializedEdge>> out = new HashMap<>();
+    final Map<Long, List<TorcSerializedEdge>> in = new HashMap<>();
+
+    void addEdge(long from, long to) {
+      out.computeIfAbsent(from, k -> new ArrayList<>())
+          .add(new TorcSerializedEdge(null, new UInt128(to)));
+      in.computeIfAbsent(to, k -> new ArrayList<>())
+          .add(new TorcSerializedEdge(null, new UInt128(from)));
+    }
+
+    TorcBidirectionalSearch search() {
+      return new TorcBidirectionalSearch((frontier, dir) -> {
+        List<List<TorcSerializedEdge>> edgeLists = new ArrayList<>();
+        for (TorcVertex vertex : frontier) {
+          long id = vertex.id().getLowerLong();
+          List<TorcSerializedEdge> edges = new ArrayList<>();
+          if (dir != Direction.IN && out.containsKey(id))
+            edges.addAll(out.get(id));
+          if (dir != Direction.OUT && in.containsKey(id))
+            edges.addAll(in.get(id));
+          edgeLists.add(edges.isEmpty() ? null : edges);
+        }
+        return edgeLists;
+      }, id -> new TorcVertex(null, id, "Person"));
+    }
+  }
+
+  @Test
+  public void run_findsAllShortestPathsInGrid() {
+    /* 4x4 grid, vertex 4 * row + col, with edges pointing right and down. */
+    Graph g = new Graph();
+    for (int r = 0; r < 4; r++) {
+      for (int c = 0; c < 4; c++) {
+        if (c < 3)
+          g.addEdge(4 * r + c, 4 * r + c + 1);
+        if (r < 3)
+          g.addEdge(4 * r + c, 4 * (r + 1) + c);
+      }
+    }
+
+    for (Direction dir : new Direction[] {Direction.OUT, Direction.BOTH}) {
+      List<List<TorcVertex>> one = g.search().run(v(0), v(15), dir, 10, 
+          false);
+      assertEquals(1, one.size());
+      assertEquals(7, one.get(0).size());
+
+      List<List<TorcVertex>> all = g.search().run(v(0), v(15), dir, 10, 
+          true);
+      assertEquals(20, all.size());
+      assertEquals(20, new HashSet<>(all).size());
+      for (List<TorcVertex> path : all) {
+        assertEquals(v(0), path.get(0));
+        assertEquals(v(15), path.get(6));
+        for (int i = 0; i < 6; i++) {
+          long step = path.get(i + 1).id().getLowerLong() 
+              - path.get(i).id().getLowerLong();
+          assertTrue(step == 1 || step == 4);
+        }
+      }
+    }
+
+    /* Against the direction of the edges. */
+    assertEquals(20, g.search().run(v(15), v(0), Direction.IN, 10, true)
+        .size());
+    assertTrue(g.search().run(v(15), v(0), Direction.OUT, 10, true)
+        .isEmpty());
+  }
+
+  @Test
+  public void run_respectsMaxDepth() {
+    Graph g = new Graph();
+    g.addEdge(0, 1);
+    g.addEdge(1, 2);
+    g.addEdge(2, 3);
+
+    assertEquals(Arrays.asList(v(0), v(1), v(2), v(3)), 
+        g.search().run(v(0), v(3), Direction.OUT, 3, false).get(0));
+    assertTrue(g.search().run(v(0), v(3), Direction.OUT, 2, false)
+        .isEmpty());
+    assertTrue(g.search().run(v(0), v(4), Direction.OUT, 10, false)
+        .isEmpty());
+    assertEquals(Collections.singletonList(Collections.singletonList(v(2))),
+        g.search().run(v(2), v(2), Direction.OUT, 0, true));
+  }
+}
@@ -20,6 +20,8 @@ import net.ellitron.torc.util.*;
 import edu.stanford.ramcloud.*;
 import edu.stanford.ramcloud.ClientException.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -355,6 +357,152 @@ public class TorcEdgeListTest {
     rctx.close();
   }
 
+  @Test
+  public void stream_visitsEdgesInListOrderWithSmallWindow() {
+    byte[] keyPrefix = TorcHelper.getEdgeListKeyPrefix(
+        new UInt128(42), 
+        "hasCreator", 
+        Direction.IN,
+        "Comment");
+    byte[] emptyKeyPrefix = TorcHelper.getEdgeListKeyPrefix(
+        new UInt128(43), 
+        "hasCreator", 
+        Direction.IN,
+        "Comment");
+
+    for (int i = 0; i < (1<<12); i++) {
+      UInt128 neighborId = new UInt128(i);
+      TorcEdgeList.prepend(
+          client,
+          tableId,
+          keyPrefix,
+          neighborId, 
+          neighborId.toByteArray());
+    }
+
+    int[] next = new int[] {(1<<12) - 1};
+    TorcEdgeList.stream(
+        client,
+        null,
+        tableId,
+        Arrays.asList(emptyKeyPrefix, keyPrefix),
+        2,
+        (listIndex, upper, lower, props) -> {
+          assertEquals(1, listIndex);
+          assertEquals(new UInt128(next[0]), new UInt128(upper, lower));
+          byte[] propBytes = new byte[props.remaining()];
+          props.get(propBytes);
+          assertTrue(Arrays.equals(
+              new UInt128(next[0]).toByteArray(), propBytes));
+          next[0]--;
+        });
+
+    assertEquals(-1, next[0]);
+  }
+
+  @Test
+  public void batchPrepend_matchesRepeatedPrepend() throws Exception {
+    int numEdges = 1 << 10;
+    List<UInt128> neighborIds = new ArrayList<>();
+    List<byte[]> serializedProps = new ArrayList<>();
+    for (int i = 0; i < numEdges; i++) {
+      neighborIds.add(new UInt128(i));
+      serializedProps.add(new UInt128(i).toByteArray());
+    }
+
+    // Once with uncompressed segments, and once with every segment
+    // compressed.
+    for (int compressionThreshold : new int[] {-1, 0}) {
+      UInt128 prependVertexId = new UInt128(42 + 2 * compressionThreshold);
+      UInt128 batchVertexId = new UInt128(43 + 2 * compressionThreshold);
+      byte[] prependKeyPrefix = TorcHelper.getEdgeListKeyPrefix(
+          prependVertexId, 
+          "hasCreator", 
+          Direction.IN,
+          "Comment");
+      byte[] batchKeyPrefix = TorcHelper.getEdgeListKeyPrefix(
+          batchVertexId, 
+          "hasCreator", 
+          Direction.IN,
+          "Comment");
+
+      for (int i = 0; i < numEdges; i++) {
+        TorcEdgeList.prepend(
+            client,
+            tableId,
+            prependKeyPrefix,
+            neighborIds.get(i), 
+            serializedProps.get(i),
+            compressionThreshold);
+      }
+
+      // In two batches, so that the second prepends to an existing list.
+      int half = numEdges / 2;
+      TorcEdgeList.batchPrepend(
+          client,
+          tableId,
+          Arrays.asList(batchKeyPrefix),
+          Arrays.asList(neighborIds.subList(0, half)),
+          Arrays.asList(serializedProps.subList(0, half)),
+          compressionThreshold);
+      TorcEdgeList.batchPrepend(
+          client,
+          tableId,
+          Arrays.asList(batchKeyPrefix),
+          Arrays.asList(neighborIds.subList(half, numEdges)),
+          Arrays.asList(serializedProps.subList(half, numEdges)),
+          compressionThreshold);
+
+      RAMCloudTransaction rctx = new RAMCloudTransaction(client);
+
+      int segNum = 0;
+      while (true) {
+        RAMCloudObject prependSeg = rctx.read(tableId, 
+            TorcEdgeList.getSegmentKey(prependKeyPrefix, segNum));
+        RAMCloudObject batchSeg = rctx.read(tableId, 
+            TorcEdgeList.getSegmentKey(batchKeyPrefix, segNum));
+        if (prependSeg == null) {
+          assertNull(batchSeg);
+          break;
+        }
+        assertNotNull(batchSeg);
+        assertArrayEquals(prependSeg.getValueBytes(), 
+            batchSeg.getValueBytes());
+        segNum++;
+      }
+      assertTrue(segNum > 2);
+
+      List<TorcEdge> prependList = TorcEdgeList.read(
+          rctx,
+          tableId,
+          prependKeyPrefix,
+          null, 
+          prependVertexId,
+          "hasCreator", 
+          Direction.IN);
+      List<TorcEdge> batchList = TorcEdgeList.read(
+          rctx,
+          tableId,
+          batchKeyPrefix,
+          null, 
+          batchVertexId,
+          "hasCreator", 
+          Direction.IN);
+
+      assertEquals(numEdges, prependList.size());
+      assertEquals(numEdges, batchList.size());
+      for (int j = 0; j < numEdges; j++) {
+        UInt128 expectedId = new UInt128(numEdges - 1 - j);
+        assertEquals(expectedId, prependList.get(j).getV1Id());
+        assertEquals(expectedId, batchList.get(j).getV1Id());
+        assertArrayEquals(expectedId.toByteArray(), 
+            batchList.get(j).getSerializedProperties());
+      }
+
+      rctx.close();
+    }
+  }
+
   @After
   public void after() throws Exception {
     client.dropTable("test");
@@ -0,0 +1,219 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import static org.junit.Assert.*;
+
+import net.ellitron.torc.util.UInt128;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests of TorcGraph features that the TinkerPop suites do not cover. Like
+ * TorcGraphStructureStandardTest, these need a RAMCloud cluster (see
+ * TorcGraphProvider).
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcGraphTest {
+
+  private final TorcGraphProvider provider = new TorcGraphProvider();
+  private TorcGraph graph = null;
+
+  public TorcGraphTest() {
+  }
+
+  private TorcGraph open(String testMethodName, 
+      Map<String, Object> overrides) {
+    Configuration config = provider.newGraphConfiguration("graph", 
+        getClass(), testMethodName, overrides, null);
+    graph = (TorcGraph) provider.openTestGraph(config);
+    return graph;
+  }
+
+  /* Reads the vertex back by ID, so its properties come from RAMCloud. */
+  private static TorcVertex reread(TorcGraph graph, Vertex v) {
+    return (TorcVertex) graph.vertices(v.id()).next();
+  }
+
+  @Test
+  public void setVertexProperty_perKeyLayoutReadBack() {
+    Map<String, Object> overrides = new HashMap<>();
+    overrides.put(TorcGraph.CONFIG_PROPERTY_LAYOUT, "perKey");
+    TorcGraph graph = open("setVertexProperty_perKeyLayoutReadBack", 
+        overrides);
+
+    Vertex v = graph.addVertex(T.label, "person", "name", "marko");
+    v.property("age", 29);
+    graph.tx().commit();
+
+    TorcVertex u = reread(graph, v);
+    assertEquals("marko", u.value("name"));
+    assertEquals(29, (int) u.<Integer>value("age"));
+    assertEquals(new HashSet<>(Arrays.asList("name", "age")), u.keys());
+  }
+
+  @Test
+  public void setVertexProperty_perKeyLayoutKeyListUpdates() {
+    Map<String, Object> overrides = new HashMap<>();
+    overrides.put(TorcGraph.CONFIG_PROPERTY_LAYOUT, "perKey");
+    TorcGraph graph = open("setVertexProperty_perKeyLayoutKeyListUpdates", 
+        overrides);
+
+    Vertex v = graph.addVertex(T.label, "person");
+    graph.tx().commit();
+    assertTrue(reread(graph, v).keys().isEmpty());
+
+    /* A new key is added to the list of keys. */
+    v.property("name", "marko");
+    graph.tx().commit();
+    assertEquals(new HashSet<>(Arrays.asList("name")), 
+        reread(graph, v).keys());
+
+    v.property("age", 29);
+    graph.tx().commit();
+    assertEquals(new HashSet<>(Arrays.asList("name", "age")), 
+        reread(graph, v).keys());
+
+    /* Setting an existing key only replaces its value. */
+    v.property("name", "josh");
+    graph.tx().commit();
+    TorcVertex u = reread(graph, v);
+    assertEquals(new HashSet<>(Arrays.asList("name", "age")), u.keys());
+    assertEquals("josh", u.value("name"));
+    assertEquals(29, (int) u.<Integer>value("age"));
+
+    /* Other cardinalities merge with the stored value. */
+    v.property("nicknames", new ArrayList<>(Arrays.asList("mark")));
+    graph.tx().commit();
+    v.property(VertexProperty.Cardinality.list, "nicknames", "marky");
+    graph.tx().commit();
+    u = reread(graph, v);
+    assertEquals(new HashSet<>(Arrays.asList("name", "age", "nicknames")), 
+        u.keys());
+    assertEquals(Arrays.asList("mark", "marky"), u.value("nicknames"));
+  }
+
+  @Test
+  public void fillProperties_mixedLayouts() {
+    Map<String, Object> overrides = new HashMap<>();
+    overrides.put(TorcGraph.CONFIG_PER_KEY_PROPERTY_LABELS, "person");
+    TorcGraph graph = open("fillProperties_mixedLayouts", overrides);
+
+    Vertex person = graph.addVertex(T.label, "person", "name", "marko",
+        "age", 29, "city", "santa fe");
+    Vertex software = graph.addVertex(T.label, "software", "name", "lop",
+        "lang", "java");
+    graph.tx().commit();
+
+    TorcVertex p = reread(graph, person);
+    TorcVertex s = reread(graph, software);
+    graph.fillProperties(Arrays.asList(p, s));
+    assertEquals("marko", p.getProperty("name"));
+    assertEquals(29, p.getProperty("age"));
+    assertEquals("santa fe", p.getProperty("city"));
+    assertEquals("lop", s.getProperty("name"));
+    assertEquals("java", s.getProperty("lang"));
+
+    /* Only the requested properties of a per-key vertex are read. */
+    p = reread(graph, person);
+    graph.fillProperties(Arrays.asList(p), "name", "age");
+    Map<Object, Object> expected = new HashMap<>();
+    expected.put("name", "marko");
+    expected.put("age", 29);
+    assertEquals(expected, p.getProperties());
+  }
+
+  @Test
+  public void allocateVertexId_concurrentAllocatorsNeverRepeat() 
+      throws Exception {
+    Map<String, Object> overrides = new HashMap<>();
+    /* Small blocks, so that the threads lease many blocks concurrently. */
+    overrides.put(TorcGraph.CONFIG_ID_BLOCK_SIZE, 7);
+    TorcGraph graph = open("allocateVertexId_concurrentAllocatorsNeverRepeat",
+        overrides);
+
+    int numThreads = 8;
+    int idsPerThread = 1000;
+    List<UInt128> ids = Collections.synchronizedList(new ArrayList<>());
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < idsPerThread; j++) {
+          ids.add(graph.allocateVertexId());
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(numThreads * idsPerThread, ids.size());
+    assertEquals(ids.size(), new HashSet<>(ids).size());
+  }
+
+  @Test
+  public void has_indexedPropertyMatchesAcrossIntegralTypes() {
+    Map<String, Object> overrides = new HashMap<>();
+    overrides.put(TorcGraph.CONFIG_INDEXED_PROPERTIES, "person.age");
+    TorcGraph graph = open("has_indexedPropertyMatchesAcrossIntegralTypes",
+        overrides);
+
+    Vertex a = graph.addVertex(T.label, "person", "age", 5L);
+    Vertex b = graph.addVertex(T.label, "person", "age", 5);
+    graph.addVertex(T.label, "person", "age", 6L);
+    graph.tx().commit();
+
+    Set<Object> expected = new HashSet<>(Arrays.asList(a.id(), b.id()));
+    assertEquals(expected, ids(graph.lookup("person", "age", 5)));
+    assertEquals(expected, ids(graph.lookup("person", "age", 5L)));
+    for (Object value : new Object[] {5, 5L, 5.0}) {
+      assertEquals(expected, new HashSet<>(graph.traversal().V()
+            .hasLabel("person").has("age", value).id().toList()));
+    }
+  }
+
+  private static Set<Object> ids(List<TorcVertex> vertices) {
+    Set<Object> ids = new HashSet<>();
+    for (TorcVertex v : vertices) {
+      ids.add(v.id());
+    }
+    return ids;
+  }
+
+  @After
+  public void after() throws Exception {
+    if (graph != null) {
+      graph.deleteGraph();
+      graph.closeAllThreads();
+    }
+  }
+}
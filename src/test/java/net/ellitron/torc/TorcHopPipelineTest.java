@@ -0,0 +1,167 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import static org.junit.Assert.*;
+
+import net.ellitron.torc.util.UInt128;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcHopPipelineTest {
+
+  public TorcHopPipelineTest() {
+  }
+
+  /* Stage that links vertex n to vertices 2n and 2n + 1, like a binary
+   * tree, passing on each vertex once. */
+  private static class TreeStage implements TorcHopPipeline.Stage {
+    final Set<UInt128> found = new HashSet<>();
+
+    @Override
+    public void accept(List<TorcVertex> chunk,
+        Consumer<List<TorcVertex>> out) {
+      List<TorcVertex> next = new ArrayList<>();
+      for (TorcVertex v : chunk) {
+        long n = v.id().getLowerLong();
+        for (long m : new long[] {2 * n, 2 * n + 1}) {
+          if (found.add(new UInt128(m))) {
+            next.add(new TorcVertex(null, new UInt128(m), "Node"));
+          }
+        }
+      }
+      out.accept(next);
+    }
+
+    @Override
+    public void finish(Consumer<List<TorcVertex>> out) {
+    }
+  }
+
+  private static List<TorcVertex> range(long from, long to) {
+    List<TorcVertex> vertices = new ArrayList<>();
+    for (long n = from; n < to; n++) {
+      vertices.add(new TorcVertex(null, new UInt128(n), "Node"));
+    }
+    return vertices;
+  }
+
+  private static Set<TorcVertex> run(TorcWorkerPool pool, int numStages,
+      List<TorcVertex> start, Set<Thread> stageThreads) {
+    List<TorcHopPipeline.Stage> stages = new ArrayList<>();
+    for (int i = 0; i < numStages; i++) {
+      stages.add(new TreeStage());
+    }
+    Set<TorcVertex> result = new HashSet<>();
+    TorcHopPipeline.run(start, stages, pool, 
+        () -> stageThreads.add(Thread.currentThread()), result::addAll);
+    return result;
+  }
+
+  @Test
+  public void run_parallelMatchesSequential() {
+    List<TorcVertex> start = range(1000, 2000);
+    Set<Thread> stageThreads = Collections.synchronizedSet(new HashSet<>());
+    AtomicInteger cleanups = new AtomicInteger();
+    TorcWorkerPool pool = new TorcWorkerPool("Test", 3, 
+        cleanups::incrementAndGet);
+
+    Set<TorcVertex> sequential = run(null, 3, start, stageThreads);
+    assertTrue(stageThreads.isEmpty());
+    assertEquals(new HashSet<>(range(8000, 16000)), sequential);
+
+    /* Pool threads are reused from one run to the next. */
+    for (int i = 0; i < 3; i++) {
+      assertEquals(sequential, run(pool, 3, start, stageThreads));
+    }
+    assertEquals(3, stageThreads.size());
+    assertEquals(0, cleanups.get());
+
+    /* Too few free threads, so the stages run in the calling thread. */
+    assertEquals(new HashSet<>(range(16000, 32000)), 
+        run(pool, 4, start, stageThreads));
+    assertEquals(3, stageThreads.size());
+
+    pool.shutdown();
+    assertEquals(3, cleanups.get());
+  }
+
+  @Test
+  public void run_propagatesStageFailure() {
+    TorcHopPipeline.Stage failing = new TorcHopPipeline.Stage() {
+      @Override
+      public void accept(List<TorcVertex> chunk,
+          Consumer<List<TorcVertex>> out) {
+        throw new IllegalStateException("boom");
+      }
+
+      @Override
+      public void finish(Consumer<List<TorcVertex>> out) {
+      }
+    };
+
+    TorcWorkerPool pool = new TorcWorkerPool("Test", 3, () -> {});
+    try {
+      TorcHopPipeline.run(range(0, 5000),
+          Arrays.asList(new TreeStage(), failing, new TreeStage()), pool,
+          () -> {}, chunk -> {});
+      fail("Expected the stage failure to be rethrown");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void run_interruptedCallerStillReleasesStages() throws Exception {
+    TorcWorkerPool pool = new TorcWorkerPool("Test", 2, () -> {});
+    try {
+      Thread.currentThread().interrupt();
+      try {
+        run(pool, 2, range(0, 5000), 
+            Collections.synchronizedSet(new HashSet<>()));
+        fail("Expected the interrupt to fail the traversal");
+      } catch (RuntimeException e) {
+        assertTrue(e.getCause() instanceof InterruptedException);
+      }
+      assertTrue(Thread.interrupted());
+
+      /* The stages saw the end of their input and gave their threads
+       * back. */
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!pool.tryReserve(2)) {
+        assertTrue(System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+    } finally {
+      Thread.interrupted();
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcScanIteratorTest {
+
+  public TorcScanIteratorTest() {
+  }
+
+  /* Scan producing the integers below n in chunks of 10, counting how many
+   * chunks it has handed over. */
+  private static Consumer<Consumer<List<Integer>>> range(int n, 
+      AtomicInteger produced) {
+    return sink -> {
+      for (int base = 0; base < n; base += 10) {
+        List<Integer> chunk = new ArrayList<>();
+        for (int i = base; i < Math.min(base + 10, n); i++) {
+          chunk.add(i);
+        }
+        sink.accept(chunk);
+        produced.incrementAndGet();
+      }
+    };
+  }
+
+  @Test
+  public void iterator_streamsWithBoundedBuffering() throws Exception {
+    AtomicInteger produced = new AtomicInteger();
+    CountDownLatch cleanedUp = new CountDownLatch(1);
+    TorcScanIterator<Integer> it = new TorcScanIterator<>(
+        range(100000, produced), () -> {}, cleanedUp::countDown);
+
+    assertTrue(it.hasNext());
+    assertEquals(0, (int) it.next());
+
+    /* The scan blocks once the queue is full, rather than running ahead. */
+    Thread.sleep(200);
+    assertTrue(produced.get() < 100);
+
+    long sum = 0;
+    int count = 1;
+    while (it.hasNext()) {
+      sum += it.next();
+      count++;
+    }
+    assertEquals(100000, count);
+    assertEquals(100000L * 99999 / 2, sum);
+    assertTrue(cleanedUp.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void close_cancelsScan() throws Exception {
+    AtomicInteger produced = new AtomicInteger();
+    CountDownLatch cleanedUp = new CountDownLatch(1);
+    TorcScanIterator<Integer> it = new TorcScanIterator<>(
+        range(100000, produced), () -> {}, cleanedUp::countDown);
+
+    assertEquals(0, (int) it.next());
+    it.close();
+    assertFalse(it.hasNext());
+    assertTrue(cleanedUp.await(5, TimeUnit.SECONDS));
+    assertTrue(produced.get() < 100);
+  }
+
+  @Test
+  public void hasNext_rethrowsScanFailure() {
+    TorcScanIterator<Integer> it = new TorcScanIterator<>(sink -> {
+      sink.accept(Arrays.asList(1, 2));
+      throw new IllegalStateException("boom");
+    }, () -> {}, () -> {});
+
+    assertEquals(1, (int) it.next());
+    assertEquals(2, (int) it.next());
+    try {
+      it.hasNext();
+      fail("Expected the scan failure to be rethrown");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class LZ4CodecTest {
+
+  public LZ4CodecTest() {
+  }
+
+  private static byte[] roundTrip(byte[] input) {
+    byte[] compressed = new byte[LZ4Codec.maxCompressedLength(input.length)];
+    int len = LZ4Codec.compress(input, 0, input.length, compressed, 0);
+    byte[] output = new byte[input.length];
+    LZ4Codec.decompress(compressed, 0, len, output, 0, input.length);
+    return output;
+  }
+
+  @Test
+  public void roundTrip_empty() {
+    byte[] input = new byte[0];
+    assertArrayEquals(input, roundTrip(input));
+  }
+
+  @Test
+  public void roundTrip_short() {
+    byte[] input = "abcdabcd".getBytes();
+    assertArrayEquals(input, roundTrip(input));
+  }
+
+  @Test
+  public void roundTrip_random() {
+    Random rand = new Random(42);
+    for (int len : new int[] {13, 100, 4096, 100000}) {
+      byte[] input = new byte[len];
+      rand.nextBytes(input);
+      assertArrayEquals(input, roundTrip(input));
+    }
+  }
+
+  @Test
+  public void roundTrip_repetitive() {
+    byte[] input = new byte[70000];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = (byte) (i % 7);
+    }
+    byte[] compressed = new byte[LZ4Codec.maxCompressedLength(input.length)];
+    int len = LZ4Codec.compress(input, 0, input.length, compressed, 0);
+    assertTrue(len < input.length / 10);
+    byte[] output = new byte[input.length];
+    LZ4Codec.decompress(compressed, 0, len, output, 0, input.length);
+    assertArrayEquals(input, output);
+  }
+
+  @Test
+  public void roundTrip_offsets() {
+    byte[] input = "xxxxthe quick brown fox, the quick brown fox, the quick".getBytes();
+    byte[] compressed = new byte[LZ4Codec.maxCompressedLength(input.length) + 3];
+    int len = LZ4Codec.compress(input, 4, input.length - 4, compressed, 3);
+    byte[] output = new byte[input.length - 4 + 2];
+    LZ4Codec.decompress(compressed, 3, len, output, 2, input.length - 4);
+    assertArrayEquals(Arrays.copyOfRange(input, 4, input.length),
+        Arrays.copyOfRange(output, 2, output.length));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void decompress_wrongLength() {
+    byte[] input = "the quick brown fox jumps over the lazy dog".getBytes();
+    byte[] compressed = new byte[LZ4Codec.maxCompressedLength(input.length)];
+    int len = LZ4Codec.compress(input, 0, input.length, compressed, 0);
+    byte[] output = new byte[input.length + 1];
+    LZ4Codec.decompress(compressed, 0, len, output, 0, input.length + 1);
+  }
+
+  @Test
+  public void compressObject_belowThresholdUnchanged() {
+    Map<Object, Object> map = new HashMap<>();
+    map.put("name", "marko");
+    byte[] serialized = TorcHelper.serializeObject(map);
+    assertSame(serialized, TorcHelper.compressObject(serialized, -1));
+    assertSame(serialized,
+        TorcHelper.compressObject(serialized, serialized.length));
+  }
+
+  @Test
+  public void compressObject_deserializesTransparently() {
+    Map<Object, Object> map = new HashMap<>();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      sb.append("property value ");
+    }
+    map.put("description", sb.toString());
+    map.put("age", 29);
+    byte[] serialized = TorcHelper.serializeObject(map);
+    byte[] compressed = TorcHelper.compressObject(serialized, 0);
+    assertTrue(compressed.length < serialized.length);
+
+    Map<Object, Object> result =
+        (Map<Object, Object>) TorcHelper.deserializeObject(compressed);
+    assertEquals(map.get("description"), result.get("description"));
+    assertEquals(map.get("age"), result.get("age"));
+  }
+}
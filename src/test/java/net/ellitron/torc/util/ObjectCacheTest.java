@@ -0,0 +1,85 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class ObjectCacheTest {
+
+  private static final byte[] KEY = new byte[] {1, 2, 3};
+
+  public ObjectCacheTest() {
+  }
+
+  @Test
+  public void get_afterPut() {
+    ObjectCache dut = new ObjectCache(1 << 20, 60000);
+    byte[] value = new byte[] {4, 5};
+    dut.put(7, KEY, value, 1, dut.stamp());
+    assertArrayEquals(value, dut.get(7, new byte[] {1, 2, 3}));
+    assertNull(dut.get(8, KEY));
+    assertEquals(1, dut.hitCount());
+    assertEquals(1, dut.missCount());
+  }
+
+  @Test
+  public void put_olderVersionIgnored() {
+    ObjectCache dut = new ObjectCache(1 << 20, 60000);
+    dut.put(7, KEY, new byte[] {2}, 2, dut.stamp());
+    dut.put(7, KEY, new byte[] {1}, 1, dut.stamp());
+    assertArrayEquals(new byte[] {2}, dut.get(7, KEY));
+  }
+
+  @Test
+  public void put_readStartedBeforeInvalidationIgnored() {
+    ObjectCache dut = new ObjectCache(1 << 20, 60000);
+    dut.put(7, KEY, new byte[] {1}, 1, dut.stamp());
+    long stamp = dut.stamp();
+    dut.invalidate(7, KEY);
+    assertNull(dut.get(7, KEY));
+    dut.put(7, KEY, new byte[] {1}, 1, stamp);
+    assertNull(dut.get(7, KEY));
+    dut.put(7, KEY, new byte[] {2}, 2, dut.stamp());
+    assertArrayEquals(new byte[] {2}, dut.get(7, KEY));
+  }
+
+  @Test
+  public void get_expiredEntryMisses() throws InterruptedException {
+    ObjectCache dut = new ObjectCache(1 << 20, 1);
+    dut.put(7, KEY, new byte[] {1}, 1, dut.stamp());
+    Thread.sleep(5);
+    assertNull(dut.get(7, KEY));
+  }
+
+  @Test
+  public void put_evictsLeastRecentlyUsed() {
+    ObjectCache dut = new ObjectCache(16 * 1024, 60000);
+    byte[] hotKey = new byte[] {-1};
+    dut.put(7, hotKey, new byte[64], 1, dut.stamp());
+    for (int i = 0; i < 10000; i++) {
+      dut.put(7, new byte[] {(byte) i, (byte) (i >> 8)}, new byte[64], 1, 
+          dut.stamp());
+      dut.get(7, hotKey);
+    }
+    assertTrue(dut.evictionCount() > 0);
+    assertNotNull(dut.get(7, hotKey));
+  }
+}
@@ -0,0 +1,131 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class PropertyMapTest {
+
+  public PropertyMapTest() {
+  }
+
+  @Test
+  public void put_preservesInsertionOrder() {
+    PropertyMap<Object, Object> dut = new PropertyMap<>(1);
+    for (int i = 0; i < 100; i++) {
+      assertNull(dut.put("key" + i, i));
+    }
+    assertEquals(100, dut.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals("key" + i, dut.keyAt(i));
+      assertEquals(i, dut.valueAt(i));
+      assertEquals(i, dut.get("key" + i));
+    }
+    assertNull(dut.get("key100"));
+  }
+
+  @Test
+  public void put_replacesExistingValue() {
+    PropertyMap<Object, Object> dut = new PropertyMap<>();
+    dut.put("name", "marko");
+    dut.put("age", 29);
+    assertEquals("marko", dut.put("name", "josh"));
+    assertEquals(2, dut.size());
+    assertEquals("name", dut.keyAt(0));
+    assertEquals("josh", dut.valueAt(0));
+  }
+
+  @Test
+  public void remove_compactsEntries() {
+    PropertyMap<Object, Object> dut = new PropertyMap<>();
+    dut.put("a", 1);
+    dut.put("b", 2);
+    dut.put("c", 3);
+    assertEquals(2, dut.remove("b"));
+    assertNull(dut.remove("b"));
+    assertEquals(2, dut.size());
+    assertEquals("a", dut.keyAt(0));
+    assertEquals("c", dut.keyAt(1));
+    assertEquals(3, dut.get("c"));
+    assertFalse(dut.containsKey("b"));
+  }
+
+  @Test
+  public void entrySet_noNullEntries() {
+    PropertyMap<Object, Object> dut = new PropertyMap<>(16);
+    dut.put("a", 1);
+    dut.put("b", 2);
+    assertEquals(2, dut.entrySet().size());
+    List<Object> keys = new ArrayList<>();
+    for (Map.Entry<Object, Object> e : dut.entrySet()) {
+      assertNotNull(e.getKey());
+      keys.add(e.getKey());
+    }
+    assertEquals(Arrays.asList("a", "b"), keys);
+  }
+
+  @Test
+  public void entrySet_iteratorRemoveAndSetValue() {
+    PropertyMap<Object, Object> dut = new PropertyMap<>();
+    dut.put("a", 1);
+    dut.put("b", 2);
+    dut.put("c", 3);
+    Iterator<Map.Entry<Object, Object>> it = dut.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Object, Object> e = it.next();
+      if (e.getKey().equals("a")) {
+        it.remove();
+      } else {
+        e.setValue((Integer) e.getValue() * 10);
+      }
+    }
+    assertEquals(2, dut.size());
+    assertEquals(20, dut.get("b"));
+    assertEquals(30, dut.get("c"));
+  }
+
+  @Test
+  public void equals_hashMap() {
+    PropertyMap<Object, Object> dut = new PropertyMap<>();
+    Map<Object, Object> expected = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      dut.put(i, "v" + i);
+      expected.put(i, "v" + i);
+    }
+    assertEquals(expected, dut);
+    assertEquals(dut, expected);
+    assertEquals(expected.hashCode(), dut.hashCode());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void keyAt_outOfBounds() {
+    PropertyMap<Object, Object> dut = new PropertyMap<>(8);
+    dut.put("a", 1);
+    dut.keyAt(1);
+  }
+}
@@ -0,0 +1,107 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class StringPoolTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public StringPoolTest() {
+  }
+
+  @Test
+  public void intern_returnsCanonicalInstance() {
+    StringPool dut = new StringPool(16, 64, UTF8);
+    byte[] buf = "xxChromeyyChrome".getBytes(UTF8);
+    String a = dut.intern(buf, 2, 6);
+    String b = dut.intern(buf, 10, 6);
+    assertEquals("Chrome", a);
+    assertSame(a, b);
+  }
+
+  @Test
+  public void intern_longStringsNotPooled() {
+    StringPool dut = new StringPool(16, 4, UTF8);
+    byte[] buf = "Firefox".getBytes(UTF8);
+    String a = dut.intern(buf, 0, buf.length);
+    String b = dut.intern(buf, 0, buf.length);
+    assertEquals("Firefox", a);
+    assertEquals(a, b);
+    assertNotSame(a, b);
+  }
+
+  @Test
+  public void intern_boundedAndCorrectUnderEviction() {
+    StringPool dut = new StringPool(8, 64, UTF8);
+    assertEquals(8, dut.capacity());
+    for (int i = 0; i < 1000; i++) {
+      byte[] buf = ("value" + i).getBytes(UTF8);
+      assertEquals("value" + i, dut.intern(buf, 0, buf.length));
+    }
+  }
+
+  @Test
+  public void intern_hotEntrySurvivesColdTraffic() {
+    StringPool dut = new StringPool(2, 64, UTF8);
+    byte[] hot = "en".getBytes(UTF8);
+    String first = dut.intern(hot, 0, hot.length);
+    dut.intern(hot, 0, hot.length);
+    byte[] cold = "cold".getBytes(UTF8);
+    dut.intern(cold, 0, cold.length);
+    byte[] colder = "colder".getBytes(UTF8);
+    dut.intern(colder, 0, colder.length);
+    assertSame(first, dut.intern(hot, 0, hot.length));
+  }
+
+  @Test
+  public void deserializeObject_poolsKeysAndValues() {
+    StringPool pool = new StringPool(1024, 64, UTF8);
+    Map<Object, Object> map = new HashMap<>();
+    map.put("gender", "female");
+    byte[] ser = TorcHelper.serializeObject(map);
+    Map<Object, Object> out1 = (Map<Object, Object>)
+        TorcHelper.deserializeObject(ser, pool);
+    Map<Object, Object> out2 = (Map<Object, Object>)
+        TorcHelper.deserializeObject(ser, pool);
+    assertEquals(map, out1);
+    assertSame(out1.get("gender"), out2.get("gender"));
+    assertSame(((PropertyMap) out1).keyAt(0), 
+        ((PropertyMap) out2).keyAt(0));
+  }
+
+  @Test
+  public void deserializeObject_withoutPoolDoesNotPool() {
+    StringPool pool = new StringPool(1024, 64, UTF8);
+    byte[] ser = TorcHelper.serializeObject("female");
+    String pooled = (String) TorcHelper.deserializeObject(ser, pool);
+    String a = (String) TorcHelper.deserializeObject(ser);
+    String b = (String) TorcHelper.deserializeObject(ser);
+    assertEquals("female", a);
+    assertNotSame(pooled, a);
+    assertNotSame(a, b);
+  }
+}
@@ -0,0 +1,192 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import net.ellitron.torc.TorcVertex;
+import net.ellitron.torc.TraversalResult;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class TorcHelperTest {
+
+  public TorcHelperTest() {
+  }
+
+  private static TorcVertex v(long upper, long lower) {
+    return new TorcVertex(null, new UInt128(upper, lower), "Person");
+  }
+
+  /* Random result with many base vertices whose neighbor lists (with
+   * duplicates) are drawn from IDs on both sides of the sign bit. */
+  private static TraversalResult randomResult(long seed, boolean withProps) {
+    Random rand = new Random(seed);
+    Map<TorcVertex, List<TorcVertex>> vMap = new HashMap<>();
+    Map<TorcVertex, List<Map<Object, Object>>> pMap = 
+        withProps ? new HashMap<>() : null;
+    Set<TorcVertex> vSet = new HashSet<>();
+    for (int b = 0; b < 1000; b++) {
+      List<TorcVertex> nList = new ArrayList<>();
+      List<Map<Object, Object>> pList = new ArrayList<>();
+      int size = rand.nextInt(3) == 0 ? 200 : 5;
+      for (int i = 0; i < size; i++) {
+        TorcVertex n = v(rand.nextBoolean() ? -1L : 0L, rand.nextInt(500));
+        nList.add(n);
+        Map<Object, Object> props = new HashMap<>();
+        props.put("n", n.id().getLowerLong());
+        pList.add(props);
+        vSet.add(n);
+      }
+      vMap.put(v(1, b), nList);
+      if (withProps)
+        pMap.put(v(1, b), pList);
+    }
+    return new TraversalResult(vMap, pMap, vSet);
+  }
+
+  private static void assertSameResult(TraversalResult expected,
+      TraversalResult actual) {
+    assertEquals(expected.vSet, actual.vSet);
+    assertEquals(expected.vMap.keySet(), actual.vMap.keySet());
+    for (TorcVertex b : expected.vMap.keySet()) {
+      assertEquals(new HashSet<>(expected.vMap.get(b)), 
+          new HashSet<>(actual.vMap.get(b)));
+      assertEquals(expected.vMap.get(b).size(), actual.vMap.get(b).size());
+      if (actual.pMap != null) {
+        List<TorcVertex> nList = actual.vMap.get(b);
+        List<Map<Object, Object>> pList = actual.pMap.get(b);
+        for (int i = 0; i < nList.size(); i++) {
+          assertEquals(nList.get(i).id().getLowerLong(), pList.get(i).get("n"));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void intersectAndSubtract_sortedMergeMatchesHashing() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (boolean withProps : new boolean[] {false, true}) {
+        List<TorcVertex> b = new ArrayList<>();
+        Random rand = new Random(1);
+        for (int i = 0; i < 300; i++) {
+          b.add(v(rand.nextBoolean() ? -1L : 0L, rand.nextInt(500)));
+        }
+
+        TraversalResult hashed = randomResult(7, withProps);
+        TorcHelper.intersect(hashed, new HashSet<>(b));
+        TraversalResult merged = randomResult(7, withProps);
+        TorcHelper.sortNeighbors(merged, pool);
+        TorcHelper.intersect(merged, b, pool);
+        assertSameResult(hashed, merged);
+
+        hashed = randomResult(8, withProps);
+        TorcHelper.subtract(hashed, new HashSet<>(b));
+        merged = randomResult(8, withProps);
+        TorcHelper.sortNeighbors(merged, null);
+        TorcHelper.subtract(merged, b, pool);
+        assertSameResult(hashed, merged);
+        assertTrue(merged.sortedNeighbors);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void intersectSorted_gallopsOverSkewedLists() {
+    List<TorcVertex> a = new ArrayList<>();
+    for (long i = 0; i < 10000; i++) {
+      a.add(v(0, i));
+    }
+    a.add(v(-1L, 0));
+    List<TorcVertex> b = Arrays.asList(v(0, 5), v(0, 5000), v(0, 20000),
+        v(-1L, 0));
+
+    assertEquals(Arrays.asList(v(0, 5), v(0, 5000), v(-1L, 0)), 
+        TorcHelper.intersectSorted(a, b));
+    assertEquals(Arrays.asList(v(0, 5), v(0, 5000), v(-1L, 0)), 
+        TorcHelper.intersectSorted(b, a));
+    assertEquals(a.size() - 3, TorcHelper.subtractSorted(a, b).size());
+    assertEquals(Arrays.asList(v(0, 20000)), 
+        TorcHelper.subtractSorted(b, a));
+  }
+
+  @Test
+  public void fuseAndRemoveEdgeIf_parallelMatchesSerial() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      TraversalResult a = randomResult(3, false);
+      Map<TorcVertex, List<TorcVertex>> bMap = new HashMap<>();
+      Random rand = new Random(4);
+      for (TorcVertex n : a.vSet) {
+        if (rand.nextBoolean())
+          bMap.put(n, Arrays.asList(v(2, rand.nextInt(50)),
+                v(2, rand.nextInt(50))));
+      }
+      TraversalResult b = new TraversalResult(bMap, null, new HashSet<>());
+
+      for (boolean dedup : new boolean[] {false, true}) {
+        TraversalResult serial = TorcHelper.fuse(a, b, dedup);
+        TraversalResult parallel = TorcHelper.fuse(a, b, dedup, pool);
+        assertEquals(serial.vMap, parallel.vMap);
+        assertEquals(serial.vSet, parallel.vSet);
+      }
+
+      TraversalResult serial = randomResult(5, true);
+      TorcHelper.removeEdgeIf(serial, 
+          (n, p) -> (Long) p.get("n") % 3 == 0);
+      TraversalResult parallel = randomResult(5, true);
+      TorcHelper.removeEdgeIf(parallel, 
+          (n, p) -> (Long) p.get("n") % 3 == 0, pool);
+      assertEquals(serial.vMap, parallel.vMap);
+      assertEquals(serial.pMap, parallel.pMap);
+      assertEquals(serial.vSet, parallel.vSet);
+      for (TorcVertex n : parallel.vSet) {
+        assertTrue(n.id().getLowerLong() % 3 != 0);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void getIndexKeyPrefix_widensIntegralValues() {
+    byte[] expected = TorcHelper.getIndexKeyPrefix("person", "age", 5L);
+    assertArrayEquals(expected, 
+        TorcHelper.getIndexKeyPrefix("person", "age", 5));
+    assertArrayEquals(expected, 
+        TorcHelper.getIndexKeyPrefix("person", "age", (short) 5));
+    assertFalse(Arrays.equals(expected, 
+        TorcHelper.getIndexKeyPrefix("person", "age", 6)));
+    assertFalse(Arrays.equals(expected, 
+        TorcHelper.getIndexKeyPrefix("person", "age", "5")));
+  }
+}
@@ -0,0 +1,50 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class UInt128IntMapTest {
+
+  public UInt128IntMapTest() {
+  }
+
+  @Test
+  public void addTo_countsOccurrences() {
+    UInt128IntMap dut = new UInt128IntMap();
+    for (long i = 0; i < 3000; i++) {
+      dut.addTo(i % 1000, 0, 1);
+    }
+    assertEquals(1000, dut.size());
+    assertEquals(3, dut.getOrDefault(0, 0, -1));
+    assertEquals(3, dut.getOrDefault(new UInt128(999, 0), -1));
+    assertEquals(-1, dut.getOrDefault(1000, 0, -1));
+
+    dut.put(5, 0, 42);
+    assertEquals(42, dut.getOrDefault(5, 0, -1));
+    assertTrue(dut.remove(5, 0));
+    assertFalse(dut.containsKey(5, 0));
+
+    int[] total = new int[1];
+    dut.forEach((upper, lower, value) -> total[0] += value);
+    assertEquals(2997, total[0]);
+  }
+}
@@ -0,0 +1,68 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class UInt128ObjectMapTest {
+
+  public UInt128ObjectMapTest() {
+  }
+
+  @Test
+  public void put_keepsValuesAlignedThroughGrowthAndRemoval() {
+    UInt128ObjectMap<String> dut = new UInt128ObjectMap<>();
+    Map<UInt128, String> expected = new HashMap<>();
+    Random rand = new Random(7);
+    for (int i = 0; i < 50000; i++) {
+      UInt128 id = new UInt128(rand.nextInt(2), rand.nextInt(2048));
+      if (rand.nextInt(3) > 0) {
+        String value = Integer.toString(i);
+        assertEquals(expected.put(id, value), dut.put(id, value));
+      } else {
+        assertEquals(expected.remove(id), 
+            dut.remove(id.getUpperLong(), id.getLowerLong()));
+      }
+    }
+
+    assertEquals(expected.size(), dut.size());
+    Map<UInt128, String> actual = new HashMap<>();
+    dut.forEach((upper, lower, value) -> 
+        actual.put(new UInt128(upper, lower), value));
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void computeIfAbsent_suppliesOnlyNewValues() {
+    UInt128ObjectMap<StringBuilder> dut = new UInt128ObjectMap<>();
+    dut.computeIfAbsent(0, 0, StringBuilder::new).append("a");
+    dut.computeIfAbsent(0, 0, StringBuilder::new).append("b");
+    dut.computeIfAbsent(1, 2, StringBuilder::new).append("c");
+    assertEquals("ab", dut.get(0, 0).toString());
+    assertEquals("c", dut.get(new UInt128(1, 2)).toString());
+    assertNull(dut.get(2, 1));
+    assertEquals(2, dut.size());
+  }
+}
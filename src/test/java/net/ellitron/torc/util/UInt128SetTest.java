@@ -0,0 +1,82 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class UInt128SetTest {
+
+  public UInt128SetTest() {
+  }
+
+  @Test
+  public void add_handlesZeroKeyAndGrowth() {
+    UInt128Set dut = new UInt128Set();
+    assertTrue(dut.add(0, 0));
+    assertFalse(dut.add(new UInt128(0)));
+    for (long i = 1; i <= 1000; i++) {
+      assertTrue(dut.add(i, -i));
+    }
+    assertEquals(1001, dut.size());
+    assertTrue(dut.contains(0, 0));
+    assertTrue(dut.contains(new UInt128(500, -500)));
+    assertFalse(dut.contains(-500, 500));
+
+    Set<UInt128> visited = new HashSet<>();
+    dut.forEach((upper, lower) -> visited.add(new UInt128(upper, lower)));
+    assertEquals(1001, visited.size());
+    assertTrue(visited.contains(new UInt128(0)));
+
+    dut.clear();
+    assertTrue(dut.isEmpty());
+    assertFalse(dut.contains(0, 0));
+    assertFalse(dut.contains(1, -1));
+  }
+
+  @Test
+  public void remove_matchesHashSetUnderRandomOps() {
+    UInt128Set dut = new UInt128Set(4);
+    Set<UInt128> expected = new HashSet<>();
+    Random rand = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      /* Few distinct keys, so that adds and removes hit the same probe
+       * sequences often. */
+      UInt128 id = new UInt128(rand.nextInt(4), rand.nextInt(256));
+      if (rand.nextBoolean()) {
+        assertEquals(expected.add(id), dut.add(id));
+      } else {
+        assertEquals(expected.remove(id), dut.remove(id));
+      }
+      assertEquals(expected.size(), dut.size());
+    }
+
+    for (long upper = 0; upper < 4; upper++) {
+      for (long lower = 0; lower < 256; lower++) {
+        assertEquals(expected.contains(new UInt128(upper, lower)),
+            dut.contains(upper, lower));
+      }
+    }
+  }
+}
@@ -190,6 +190,24 @@ public class UInt128Test {
     assertTrue(b.compareTo(a) == 0);
   }
 
+  @Test
+  public void compareTo_upperHalfWithOnlyTopBitSet() {
+    UInt128 a = new UInt128(0x8000000000000000L, 0);
+    UInt128 b = new UInt128(0, 0);
+    assertTrue(a.compareTo(b) > 0);
+    assertTrue(b.compareTo(a) < 0);
+    a = new UInt128(0x8000000000000000L, 5);
+    b = new UInt128(0x7FFFFFFFFFFFFFFFL, -1L);
+    assertTrue(a.compareTo(b) > 0);
+    assertTrue(b.compareTo(a) < 0);
+    a = new UInt128(0, 0x8000000000000000L);
+    b = new UInt128(0, 0);
+    assertTrue(a.compareTo(b) > 0);
+    assertTrue(b.compareTo(a) < 0);
+    assertEquals(0, UInt128.compare(0x8000000000000000L, 1, 
+          0x8000000000000000L, 1));
+  }
+
   @Test
   public void equals_sameValue() {
     UInt128 a = new UInt128("DEADBEEFDEADBEEFDEADBEEFDEADBEEF", 16);
@@ -197,4 +215,12 @@ public class UInt128Test {
     assertTrue(a.compareTo(b) == 0);
     assertTrue(b.compareTo(a) == 0);
   }
+
+  @Test
+  public void decode_hexString_roundTripsToString() {
+    UInt128 a = new UInt128(0xDEADBEEFL, 0xCAFEBABEDEADBEEFL);
+    assertEquals(a, UInt128.decode(a.toString()));
+    assertEquals(new UInt128(255L), UInt128.decode("0xFF"));
+    assertEquals(new UInt128(255L), UInt128.decode("255"));
+  }
 }
@@ -0,0 +1,67 @@
+/* Copyright (c) 2015-2019 Stanford University
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR(S) DISCLAIM ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL AUTHORS BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package net.ellitron.torc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Jonathan Ellithorpe (jde@cs.stanford.edu)
+ */
+public class VertexLabelCacheTest {
+
+  public VertexLabelCacheTest() {
+  }
+
+  @Test
+  public void get_afterPut() {
+    VertexLabelCache dut = new VertexLabelCache(16);
+    dut.put(new UInt128(1, 2), "Person");
+    assertEquals("Person", dut.get(1, 2));
+    assertEquals("Person", dut.get(new UInt128(1, 2)));
+    assertNull(dut.get(2, 1));
+    assertEquals(2, dut.hitCount());
+    assertEquals(1, dut.missCount());
+  }
+
+  @Test
+  public void get_boundedAndCorrectUnderEviction() {
+    VertexLabelCache dut = new VertexLabelCache(64);
+    assertEquals(64, dut.capacity());
+    for (long i = 0; i < 10000; i++) {
+      dut.put(0, i, "Label" + (i % 7));
+    }
+    int found = 0;
+    for (long i = 0; i < 10000; i++) {
+      String label = dut.get(0, i);
+      if (label != null) {
+        assertEquals("Label" + (i % 7), label);
+        found++;
+      }
+    }
+    assertTrue(found > 0);
+    assertTrue(found <= dut.capacity());
+  }
+
+  @Test
+  public void clear_removesEntries() {
+    VertexLabelCache dut = new VertexLabelCache(16);
+    dut.put(0, 42, "Post");
+    dut.clear();
+    assertNull(dut.get(0, 42));
+  }
+}